@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.analytics;
+
+import com.newrelic.agent.android.AgentConfiguration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures adding events to the event buffer, while it is filling and once it is full
+ * (when each new event is sampled into the buffer in place of an existing one).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventManagerBenchmark {
+
+    @Param({"filling", "full"})
+    String bufferState;
+
+    EventManagerImpl eventManager;
+    AnalyticsEvent event;
+    boolean full;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        eventManager = new EventManagerImpl();
+        eventManager.initialize(new AgentConfiguration());
+        full = "full".equals(bufferState);
+
+        final Set<AnalyticsAttribute> attributes = new HashSet<>();
+        attributes.add(new AnalyticsAttribute("stringAttribute", "A string value"));
+        attributes.add(new AnalyticsAttribute("doubleAttribute", 42.5d));
+        attributes.add(new AnalyticsAttribute("booleanAttribute", true));
+        event = new CustomEvent("BenchmarkEvent", attributes);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillBuffer() {
+        eventManager.empty();
+        if (full) {
+            while (eventManager.size() < eventManager.getMaxEventPoolSize()) {
+                eventManager.addEvent(event);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        eventManager.shutdown();
+    }
+
+    @Benchmark
+    public boolean addEvent() {
+        if (!full && eventManager.size() >= eventManager.getMaxEventPoolSize() - 1) {
+            eventManager.empty();
+        }
+        return eventManager.addEvent(event);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.analytics;
+
+import com.newrelic.agent.android.AgentConfiguration;
+import com.newrelic.agent.android.NullAgentImpl;
+import com.newrelic.agent.android.test.stub.StubAnalyticsAttributeStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of recording custom events with a range of attribute counts,
+ * the bulk of which is spent validating attribute names and values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordCustomEventBenchmark {
+
+    @Param({"10", "50", "255"})
+    int attributeCount;
+
+    AnalyticsControllerImpl controller;
+    AnalyticsValidator validator;
+    Map<String, Object> eventAttributes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AgentConfiguration agentConfiguration = new AgentConfiguration();
+        agentConfiguration.setEnableAnalyticsEvents(true);
+        agentConfiguration.setAnalyticsAttributeStore(new StubAnalyticsAttributeStore());
+
+        AnalyticsControllerImpl.shutdown();
+        AnalyticsControllerImpl.initialize(agentConfiguration, new NullAgentImpl());
+
+        controller = AnalyticsControllerImpl.getInstance();
+        validator = new AnalyticsValidator();
+
+        eventAttributes = new HashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            switch (i % 3) {
+                case 0:
+                    eventAttributes.put("stringAttribute" + i, "A string value with some éxtended characters " + i);
+                    break;
+                case 1:
+                    eventAttributes.put("doubleAttribute" + i, i * 1.5d);
+                    break;
+                default:
+                    eventAttributes.put("booleanAttribute" + i, (i % 2) == 0);
+                    break;
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyEventPool() {
+        controller.getEventManager().empty();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        AnalyticsControllerImpl.shutdown();
+    }
+
+    @Benchmark
+    public boolean recordCustomEvent() {
+        return controller.recordCustomEvent("BenchmarkEvent", eventAttributes);
+    }
+
+    @Benchmark
+    public Set<AnalyticsAttribute> validateAttributes() {
+        return validator.toValidatedAnalyticsAttributes(eventAttributes);
+    }
+}
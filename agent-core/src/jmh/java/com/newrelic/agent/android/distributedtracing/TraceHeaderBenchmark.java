@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.distributedtracing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request cost of trace IDs and trace headers. The legacy benchmarks reproduce the
+ * UUID and formatter based implementation, for comparison. Run with {@code -prof gc} to report
+ * allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceHeaderBenchmark {
+
+    TraceContext traceContext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TraceConfiguration.setInstance(new TraceConfiguration("332029", "2827902", "190"));
+        traceContext = new TraceContext.W3CTraceContext(null);
+    }
+
+    @Benchmark
+    public String traceId() {
+        return DistributedTracing.generateTraceId();
+    }
+
+    @Benchmark
+    public String legacyTraceId() {
+        return legacyRandomBytes(32);
+    }
+
+    @Benchmark
+    public String spanId() {
+        return DistributedTracing.generateSpanId();
+    }
+
+    @Benchmark
+    public String legacySpanId() {
+        return legacyRandomBytes(16);
+    }
+
+    @Benchmark
+    public String traceParent() {
+        return traceContext.traceParent.getHeaderValue();
+    }
+
+    @Benchmark
+    public String legacyTraceParent() {
+        return String.format(Locale.ROOT, TraceParent.TRACE_PARENT_HEADER_FMT,
+                String.format(Locale.ROOT, "%02x", TraceParent.TRACE_PARENT_VERSION),
+                traceContext.traceId,
+                traceContext.getParentId(),
+                String.format(Locale.ROOT, "%02x", 1));
+    }
+
+    @Benchmark
+    public String traceState() {
+        return ((TraceState.W3CTraceState) traceContext.traceState).getVendorState();
+    }
+
+    @Benchmark
+    public String legacyTraceState() {
+        final TraceConfiguration traceConfiguration = traceContext.traceConfiguration;
+        return String.format(Locale.ROOT, TraceState.W3CTraceState.TRACE_STATE_HEADER_FMT,
+                TraceState.TRACE_STATE_VERSION,
+                TraceState.TRACE_STATE_PARENT_TYPE,
+                String.format(Locale.ROOT, "%s", traceConfiguration.accountId),
+                String.format(Locale.ROOT, "%s", traceConfiguration.applicationId),
+                traceContext.getParentId(),
+                TraceContext.TRACE_FIELD_UNUSED,
+                TraceContext.TRACE_FIELD_UNUSED,
+                TraceContext.TRACE_FIELD_UNUSED,
+                traceContext.traceState.timestampMs);
+    }
+
+    static String legacyRandomBytes(int minLength) {
+        String randomBytes = "";
+        while (randomBytes.length() < minLength) {
+            randomBytes += UUID.randomUUID().toString().replace("-", "");
+        }
+        return randomBytes.substring(0, minLength);
+    }
+}
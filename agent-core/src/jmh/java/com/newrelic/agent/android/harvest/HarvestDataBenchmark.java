@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.harvest;
+
+import com.google.gson.JsonArray;
+import com.newrelic.agent.android.analytics.AnalyticsAttribute;
+import com.newrelic.agent.android.analytics.AnalyticsEvent;
+import com.newrelic.agent.android.analytics.CustomEvent;
+import com.newrelic.agent.android.test.mock.Providers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serializing a harvest with a range of transaction, metric and event counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HarvestDataBenchmark {
+
+    @Param({"10", "1000"})
+    int entityCount;
+
+    HarvestData harvestData;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harvestData = new HarvestData();
+        harvestData.setDataToken(Providers.provideDataToken());
+        harvestData.setDeviceInformation(Providers.provideDeviceInformation());
+        harvestData.setHarvestTimeDelta(60d);
+        harvestData.setSessionAttributes(Providers.provideSessionAttributes());
+        harvestData.setAnalyticsEnabled(true);
+
+        final Collection<AnalyticsEvent> events = new ArrayList<>();
+        for (int i = 0; i < entityCount; i++) {
+            HttpTransaction transaction = Providers.provideHttpTransaction();
+            transaction.setTimestamp((long) i);
+            harvestData.getHttpTransactions().add(transaction);
+            harvestData.getMetrics().addMetric("Mobile/Benchmark/Metric" + i, i * 1.5d);
+
+            final Set<AnalyticsAttribute> attributes = new HashSet<>();
+            attributes.add(new AnalyticsAttribute("index", (double) i));
+            attributes.add(new AnalyticsAttribute("name", "BenchmarkEvent" + i));
+            events.add(new CustomEvent("BenchmarkEvent", attributes));
+        }
+        harvestData.setAnalyticsEvents(events);
+    }
+
+    @Benchmark
+    public JsonArray asJsonArray() {
+        return harvestData.asJsonArray();
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return harvestData.toJsonString();
+    }
+}
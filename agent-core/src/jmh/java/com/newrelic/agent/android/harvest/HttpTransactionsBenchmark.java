@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.harvest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the steady-state cost of recording a transaction into a buffer holding a range
+ * of transaction counts: each operation expires the oldest transaction and adds a new one.
+ * The copy-on-write variant reproduces the previous full-scan expiry for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpTransactionsBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    int transactionCount;
+
+    HttpTransactions transactions;
+    Collection<HttpTransaction> copyOnWriteTransactions;
+    long timestamp;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        transactions = new HttpTransactions();
+        copyOnWriteTransactions = new CopyOnWriteArrayList<>();
+
+        for (timestamp = 0; timestamp < transactionCount; timestamp++) {
+            transactions.add(provideTransaction(timestamp));
+            copyOnWriteTransactions.add(provideTransaction(timestamp));
+        }
+    }
+
+    @Benchmark
+    public boolean addTransaction() {
+        transactions.expire(timestamp - transactionCount + 1);
+        return transactions.add(provideTransaction(timestamp++), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public boolean addTransactionCopyOnWrite() {
+        final long cutoff = timestamp - transactionCount + 1;
+        final Collection<HttpTransaction> expired = new ArrayList<>();
+
+        for (HttpTransaction transaction : copyOnWriteTransactions) {
+            if (transaction.getTimestamp() < cutoff) {
+                expired.add(transaction);
+            }
+        }
+        copyOnWriteTransactions.removeAll(expired);
+
+        return copyOnWriteTransactions.add(provideTransaction(timestamp++));
+    }
+
+    private static HttpTransaction provideTransaction(long timestamp) {
+        HttpTransaction transaction = new HttpTransaction();
+        transaction.setUrl("https://httpbin.org/status/200");
+        transaction.setHttpMethod("GET");
+        transaction.setStatusCode(200);
+        transaction.setTimestamp(timestamp);
+        return transaction;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.instrumentation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request work done by instrumented HTTP clients when a request is made:
+ * creating the transaction state and inspecting the request. The connection is never opened.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionStateUtilBenchmark {
+    static final String URL = "https://httpbin.org/anything/benchmark?query=value";
+
+    HttpURLConnection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        connection = (HttpURLConnection) new URL(URL).openConnection();
+        connection.setRequestMethod("POST");
+    }
+
+    @Benchmark
+    public TransactionState inspectAndInstrument() {
+        final TransactionState transactionState = new TransactionState();
+        TransactionStateUtil.inspectAndInstrument(transactionState, URL, "GET");
+        return transactionState;
+    }
+
+    @Benchmark
+    public TransactionState inspectAndInstrumentConnection() {
+        final TransactionState transactionState = new TransactionState();
+        TransactionStateUtil.inspectAndInstrument(transactionState, connection);
+        return transactionState;
+    }
+}
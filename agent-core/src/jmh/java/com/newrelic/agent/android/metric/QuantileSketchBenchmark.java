@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.metric;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of recording and merging quantile sketches of log-normal latencies, compared
+ * to a plain metric sample. The accuracy and bin count (memory) of each sketch configuration are
+ * printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuantileSketchBenchmark {
+
+    @Param({"0.01", "0.02", "0.05"})
+    double relativeAccuracy;
+
+    double[] values;
+    QuantileSketch sketch;
+    QuantileSketch populated;
+    Metric metric;
+    int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(42);
+        values = new double[1 << 16];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(-2.5 + random.nextGaussian() * 1.2);
+        }
+
+        sketch = new QuantileSketch(relativeAccuracy, QuantileSketch.DEFAULT_MAX_BINS);
+        populated = new QuantileSketch(relativeAccuracy, QuantileSketch.DEFAULT_MAX_BINS);
+        for (double value : values) {
+            populated.add(value);
+        }
+        metric = new Metric("Benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        final double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        double maxError = 0;
+        for (double q : new double[]{0.5, 0.9, 0.95, 0.99, 0.999}) {
+            final double expected = sorted[(int) (q * (sorted.length - 1))];
+            maxError = Math.max(maxError, Math.abs(populated.getQuantile(q) - expected) / expected);
+        }
+
+        System.out.println();
+        System.out.println("relativeAccuracy=" + relativeAccuracy + " bins=" + populated.getBinCount()
+                + " bytes~" + (populated.getBinCount() * 8) + " maxRelativeError=" + maxError);
+    }
+
+    @Benchmark
+    public void add() {
+        sketch.add(values[index++ & (values.length - 1)]);
+    }
+
+    @Benchmark
+    public void sampleMetric() {
+        metric.sample(values[index++ & (values.length - 1)]);
+    }
+
+    @Benchmark
+    public QuantileSketch merge() {
+        final QuantileSketch merged = new QuantileSketch(relativeAccuracy, QuantileSketch.DEFAULT_MAX_BINS);
+        merged.merge(populated);
+        return merged;
+    }
+
+    @Benchmark
+    public double quantile() {
+        return populated.getQuantile(0.99);
+    }
+}
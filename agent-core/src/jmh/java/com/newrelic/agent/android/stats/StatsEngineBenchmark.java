@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.stats;
+
+import com.newrelic.agent.android.metric.MetricNames;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures recording into the StatsEngine across a range of distinct metric names, and the
+ * name decoration done by the supportability instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsEngineBenchmark {
+
+    @Param({"1", "100"})
+    int metricCount;
+
+    String[] names;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        names = new String[metricCount];
+        for (int i = 0; i < metricCount; i++) {
+            names[i] = MetricNames.SUPPORTABILITY_AGENT + "Benchmark/Metric" + i;
+        }
+        StatsEngine.reset();
+    }
+
+    @Benchmark
+    public void inc(Cursor cursor) {
+        StatsEngine.get().inc(nextName(cursor));
+    }
+
+    @Benchmark
+    public void sample(Cursor cursor) {
+        StatsEngine.get().sample(nextName(cursor), 42.5f);
+    }
+
+    @Benchmark
+    public void incSupportability(Cursor cursor) {
+        StatsEngine.SUPPORTABILITY.inc(nextName(cursor));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void incContended(Cursor cursor) {
+        StatsEngine.get().inc(nextName(cursor));
+    }
+
+    private String nextName(Cursor cursor) {
+        final String name = names[cursor.next];
+        cursor.next = (cursor.next + 1) % metricCount;
+        return name;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.tracing;
+
+import com.newrelic.agent.android.FeatureFlag;
+import com.newrelic.agent.android.TaskQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the enterMethod()/exitMethod() pair injected into instrumented methods,
+ * with and without an active interaction trace. An activity trace is started for each batch
+ * of method traces, so the trace tree stays the size of a real interaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceMachineBenchmark {
+    static final int METHODS_PER_TRACE = 200;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FeatureFlag.enableFeature(FeatureFlag.InteractionTracing);
+        FeatureFlag.enableFeature(FeatureFlag.DefaultInteractions);
+        TraceMachine.HEALTHY_TRACE_TIMEOUT = 60000;
+        TraceMachine.setTraceMachineInterface(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        TraceMachine.haltTracing();
+        TaskQueue.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(METHODS_PER_TRACE)
+    public void enterExitMethod() {
+        TraceMachine.startTracing("BenchmarkActivity");
+        for (int i = 0; i < METHODS_PER_TRACE; i++) {
+            TraceMachine.enterMethod("BenchmarkActivity#onCreate");
+            TraceMachine.exitMethod();
+        }
+        TraceMachine.haltTracing();
+        TaskQueue.clear();
+    }
+
+    @Benchmark
+    public void enterExitMethodInactive() {
+        TraceMachine.enterMethod("BenchmarkActivity#onCreate");
+        TraceMachine.exitMethod();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures deflating harvest-like JSON payloads of a range of sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeflatorBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    int payloadSize;
+
+    byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final StringBuilder json = new StringBuilder(payloadSize + 256).append('[');
+        for (int i = 0; json.length() < payloadSize; i++) {
+            json.append("{\"name\":\"Mobile/Activity/Name/Display MainActivity\",\"scope\":\"\",")
+                    .append("\"count\":").append(i % 17 + 1)
+                    .append(",\"total\":").append(i * 0.137d)
+                    .append(",\"min\":").append(i % 5)
+                    .append(",\"max\":").append(i % 97)
+                    .append(",\"timestamp\":").append(1700000000000L + i * 31L)
+                    .append("},");
+        }
+        json.setLength(payloadSize - 1);
+        payload = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] deflate() {
+        return Deflator.deflate(payload);
+    }
+}
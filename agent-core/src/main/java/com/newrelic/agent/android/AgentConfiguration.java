@@ -37,6 +37,7 @@ public class AgentConfiguration implements HarvestConfigurable {
     private static final String DEFAULT_REGION_CRASH_COLLECTOR_HOST = "mobile-crash.%s.nr-data.net";
 
     public static final String DEFAULT_FED_RAMP_COLLECTOR_HOST = "gov-mobile-collector.newrelic.com";
+    public static final double DEFAULT_SAMPLER_OVERHEAD_BUDGET = 0.02;   // 2% of the sampling thread
     private static final String DEFAULT_FED_RAMP_CRASH_COLLECTOR_HOST = "gov-mobile-crash.newrelic.com";
 
     private static final String HEX_COLLECTOR_PATH = "/mobile/f";
@@ -44,6 +45,7 @@ public class AgentConfiguration implements HarvestConfigurable {
 
     private static final int NUM_IO_THREADS = 3;    // Harvest + Crash + Flatbuffer
     private static final int PAYLOAD_TTL = 2 * 24 * 60 * 60 * 1000;    // 2 days in ms
+    private static final float HARVEST_HIGH_WATER_MARK = 0.8f;          // 80% of the fullest buffer
 
     static final String DEFAULT_DEVICE_UUID = "0";
     static final int DEVICE_UUID_MAX_LEN = 40;
@@ -62,6 +64,9 @@ public class AgentConfiguration implements HarvestConfigurable {
     private String customBuildId = null;
     private String region = null;
     private String launchActivityClassName = null;
+    private double samplerOverheadBudget = DEFAULT_SAMPLER_OVERHEAD_BUDGET;
+    private long samplerIdleInterval = 0;     // ms; sampling is suspended between traces
+    private float harvestHighWaterMark = HARVEST_HIGH_WATER_MARK;
     private CrashStore crashStore;
     private AnalyticsAttributeStore analyticsAttributeStore;
     private PayloadStore<Payload> payloadStore = new NullPayloadStore<Payload>();
@@ -366,6 +371,45 @@ public class AgentConfiguration implements HarvestConfigurable {
         this.launchActivityClassName = launchActivityClassName;
     }
 
+    public double getSamplerOverheadBudget() {
+        return samplerOverheadBudget;
+    }
+
+    /**
+     * Set the fraction of time the vitals sampler may spend sampling, in (0, 1]. The sampling
+     * interval is lengthened to keep the measured sampling cost within this budget.
+     */
+    public void setSamplerOverheadBudget(double samplerOverheadBudget) {
+        if (samplerOverheadBudget > 0 && samplerOverheadBudget <= 1) {
+            this.samplerOverheadBudget = samplerOverheadBudget;
+        }
+    }
+
+    public long getSamplerIdleInterval() {
+        return samplerIdleInterval;
+    }
+
+    /**
+     * Set the sampling interval (in ms) used between activity traces, or 0 to suspend sampling.
+     */
+    public void setSamplerIdleInterval(long samplerIdleInterval) {
+        this.samplerIdleInterval = Math.max(0, samplerIdleInterval);
+    }
+
+    public float getHarvestHighWaterMark() {
+        return harvestHighWaterMark;
+    }
+
+    /**
+     * Set the fraction of a harvest buffer, in (0, 1], that triggers an early harvest when
+     * adaptive harvest scheduling is enabled.
+     */
+    public void setHarvestHighWaterMark(float harvestHighWaterMark) {
+        if (harvestHighWaterMark > 0 && harvestHighWaterMark <= 1) {
+            this.harvestHighWaterMark = harvestHighWaterMark;
+        }
+    }
+
     public LogReportingConfiguration getLogReportingConfiguration() {
         return logReportingConfiguration;
     }
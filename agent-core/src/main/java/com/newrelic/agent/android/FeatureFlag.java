@@ -26,7 +26,11 @@ public enum FeatureFlag {
     LogReporting,
     ApplicationExitReporting,
     BackgroundReporting,
-    EventPersistence;
+    EventPersistence,
+    HttpTransactionAggregation,
+    SQLiteStatementStatistics,
+    AdaptiveHarvestScheduling,
+    MethodDistributions;
 
     public static final Set<FeatureFlag> enabledFeatures = new HashSet<FeatureFlag>();
 
@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android;
+
+import com.newrelic.agent.android.logging.AgentLog;
+import com.newrelic.agent.android.logging.AgentLogManager;
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.stats.StatsEngine;
+import com.newrelic.agent.android.util.NamedThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Declarative agent startup: each step names the steps it depends on, and independent steps
+ * are run concurrently on a small worker pool.
+ * <p>
+ * {@link #start()} runs all immediate steps and returns once they have completed, or after
+ * a timeout, in which case the unfinished steps (and those depending on them) complete in the
+ * background. Work that needs a step to have completed should be queued with
+ * {@link #afterStep(String, Runnable)}. Deferred steps are held until {@link #startDeferred()}
+ * is called (by the agent, after the app's first frame has been drawn), and are then run in
+ * the background. Each step is timed into a {@code Supportability/AgentHealth/Startup/<step>} metric.
+ * <p>
+ * A graph is built once and may be started again (when the agent is restarted), which reruns its
+ * immediate steps. Deferred steps are only ever run once.
+ */
+public class StartupGraph {
+    private static final AgentLog log = AgentLogManager.getAgentLog();
+
+    static final int POOL_SIZE = 2;
+    static final long STARTUP_TIMEOUT_MS = TimeUnit.MILLISECONDS.convert(10, TimeUnit.SECONDS);
+
+    private static final ExecutorService executor = provideExecutor();
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final Queue<Step> deferredSteps = new ArrayDeque<>();
+    private final AtomicBoolean deferredStarted = new AtomicBoolean(false);
+    private final long timeoutMs;
+    private volatile Run lastRun;
+
+    public StartupGraph() {
+        this(STARTUP_TIMEOUT_MS);
+    }
+
+    StartupGraph(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Add a step that may run on any thread once its dependencies have completed.
+     */
+    public StartupGraph add(String name, Runnable task, String... dependencies) {
+        return addStep(new Step(name, task, false, dependencies));
+    }
+
+    /**
+     * Add a step that must run on the thread that calls {@link #start()}.
+     */
+    public StartupGraph addOnCallerThread(String name, Runnable task, String... dependencies) {
+        return addStep(new Step(name, task, true, dependencies));
+    }
+
+    /**
+     * Add a non-critical step that is held until {@link #startDeferred()} is called.
+     * If deferred steps have already been started, the task is run immediately on the calling thread.
+     */
+    public StartupGraph defer(String name, Runnable task) {
+        final Step step = new Step(name, task, false);
+
+        synchronized (deferredSteps) {
+            if (!deferredStarted.get()) {
+                deferredSteps.add(step);
+                return this;
+            }
+        }
+
+        step.run();
+        return this;
+    }
+
+    public boolean isDeferredStarted() {
+        return deferredStarted.get();
+    }
+
+    /**
+     * Run the task once the named step has completed: immediately on the calling thread if it
+     * already has, otherwise on the thread that completes it. The task is dropped if the step
+     * fails or is skipped.
+     */
+    public void afterStep(String name, Runnable task) {
+        final Step step = steps.get(name);
+        if (step == null) {
+            throw new IllegalArgumentException("Unknown startup step [" + name + "]");
+        }
+        step.whenComplete(task);
+    }
+
+    public boolean hasStep(String name) {
+        return steps.containsKey(name);
+    }
+
+    /**
+     * Returns true if the named step has run, or has been skipped.
+     */
+    public boolean isComplete(String name) {
+        final Step step = steps.get(name);
+        return step != null && step.complete;
+    }
+
+    /**
+     * Run all immediate steps, respecting their dependencies, and wait for them to complete.
+     * Steps depending on a failed step are skipped, and the first failure is rethrown once
+     * all other steps have finished.
+     * <p>
+     * If the steps don't complete within the startup timeout, the timeout is logged and this
+     * returns, while the remaining steps complete in the background.
+     *
+     * <p>
+     * A graph whose previous run is still completing in the background is not restarted.
+     *
+     * @return true if all steps completed, false on a timeout
+     */
+    public boolean start() {
+        final long tStart = System.nanoTime();
+
+        validate();
+
+        final Run previous = lastRun;
+        if (previous != null && !previous.finished) {
+            log.warn("StartupGraph: previous startup is still completing in the background, and will not be restarted");
+            return false;
+        }
+
+        for (Step step : steps.values()) {
+            step.reset();
+        }
+
+        final Run run = new Run();
+        lastRun = run;
+
+        for (Step step : steps.values()) {
+            run.pendingDependencies.put(step.name, step.dependencies.size());
+            for (String dependency : step.dependencies) {
+                List<Step> list = run.dependents.get(dependency);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    run.dependents.put(dependency, list);
+                }
+                list.add(step);
+            }
+        }
+
+        for (Step step : steps.values()) {
+            if (step.dependencies.isEmpty()) {
+                schedule(step, run);
+            }
+        }
+
+        final boolean finished = run.drain(timeoutMs);
+
+        StatsEngine.SUPPORTABILITY.sampleTimeMs(MetricNames.SUPPORTABILITY_STARTUP_TOTAL,
+                TimeUnit.MILLISECONDS.convert(System.nanoTime() - tStart, TimeUnit.NANOSECONDS));
+
+        if (!finished) {
+            final List<String> unfinished = new ArrayList<>();
+            for (Step step : steps.values()) {
+                if (!step.complete) {
+                    unfinished.add(step.name);
+                }
+            }
+            log.error("StartupGraph: timed out after " + timeoutMs + "ms waiting for startup steps " + unfinished
+                    + ", which will complete in the background");
+            StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_STARTUP_TIMEOUT);
+
+            // keep releasing dependents as the remaining steps complete
+            new NamedThreadFactory("Startup-Background", true).newThread(() -> run.drain(0)).start();
+        }
+
+        final Throwable failure = run.failure;
+        if (failure != null) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new RuntimeException(failure);
+        }
+
+        return finished;
+    }
+
+    /**
+     * Release the deferred steps to run in the background. Only the first call has any effect.
+     */
+    public void startDeferred() {
+        synchronized (deferredSteps) {
+            if (!deferredStarted.compareAndSet(false, true)) {
+                return;
+            }
+        }
+
+        Step step;
+        while ((step = deferredSteps.poll()) != null) {
+            final Step deferred = step;
+            executor.execute(deferred::run);
+        }
+    }
+
+    StartupGraph addStep(Step step) {
+        if (steps.containsKey(step.name)) {
+            throw new IllegalArgumentException("Duplicate startup step [" + step.name + "]");
+        }
+        steps.put(step.name, step);
+        return this;
+    }
+
+    /**
+     * Ensure all dependencies are known, and that there are no cycles.
+     */
+    void validate() {
+        final Map<String, Integer> inDegree = new HashMap<>();
+        final Queue<Step> ready = new ArrayDeque<>();
+        int visited = 0;
+
+        for (Step step : steps.values()) {
+            for (String dependency : step.dependencies) {
+                if (!steps.containsKey(dependency)) {
+                    throw new IllegalStateException("Startup step [" + step.name + "] depends on unknown step [" + dependency + "]");
+                }
+            }
+            inDegree.put(step.name, step.dependencies.size());
+            if (step.dependencies.isEmpty()) {
+                ready.add(step);
+            }
+        }
+
+        while (!ready.isEmpty()) {
+            final Step step = ready.poll();
+            visited++;
+            for (Step other : steps.values()) {
+                if (other.dependencies.contains(step.name)) {
+                    int count = inDegree.get(other.name) - 1;
+                    inDegree.put(other.name, count);
+                    if (count == 0) {
+                        ready.add(other);
+                    }
+                }
+            }
+        }
+
+        if (visited != steps.size()) {
+            throw new IllegalStateException("Startup steps contain a dependency cycle");
+        }
+    }
+
+    private void schedule(final Step step, final Run run) {
+        if (step.onCallerThread) {
+            run.callerThreadSteps.add(step);
+        } else {
+            executor.execute(() -> {
+                step.run();
+                run.completed.add(step);
+            });
+        }
+    }
+
+    private static ExecutorService provideExecutor() {
+        // a small pool whose threads exit once startup has completed
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("Startup"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * The bookkeeping for one run of the graph. It is drained by the caller of {@link #start()},
+     * and by a background thread if that times out.
+     */
+    private class Run {
+        final Map<String, List<Step>> dependents = new HashMap<>();
+        final Map<String, Integer> pendingDependencies = new HashMap<>();
+        final Queue<Step> callerThreadSteps = new ArrayDeque<>();
+        final BlockingQueue<Step> completed = new LinkedBlockingQueue<>();
+        int remaining = steps.size();
+        volatile Throwable failure = null;
+        volatile boolean finished = false;
+
+        /**
+         * Run caller thread steps and release dependents as steps complete.
+         *
+         * @param timeoutMs The longest wait for a step to complete, or 0 to wait indefinitely
+         * @return false if the wait timed out
+         */
+        synchronized boolean drain(long timeoutMs) {
+            while (remaining > 0) {
+                Step step = callerThreadSteps.poll();
+
+                if (step != null) {
+                    step.run();
+                } else {
+                    try {
+                        step = (timeoutMs > 0) ? completed.poll(timeoutMs, TimeUnit.MILLISECONDS) : completed.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (step == null) {
+                        return false;
+                    }
+                }
+
+                remaining--;
+
+                if (step.failure != null && failure == null) {
+                    failure = step.failure;
+                }
+
+                List<Step> waiting = dependents.get(step.name);
+                if (waiting != null) {
+                    for (Step dependent : waiting) {
+                        if (step.failure != null || step.skipped) {
+                            dependent.skipped = true;
+                        }
+                        int count = pendingDependencies.get(dependent.name) - 1;
+                        pendingDependencies.put(dependent.name, count);
+                        if (count == 0) {
+                            if (dependent.skipped) {
+                                log.warn("StartupGraph: skipping step [" + dependent.name + "] after failed dependency");
+                                dependent.skip();
+                                completed.add(dependent);
+                            } else {
+                                schedule(dependent, this);
+                            }
+                        }
+                    }
+                }
+            }
+
+            finished = true;
+            return true;
+        }
+    }
+
+    static class Step {
+        final String name;
+        final Runnable task;
+        final boolean onCallerThread;
+        final List<String> dependencies;
+
+        volatile Throwable failure;
+        volatile boolean skipped;
+        volatile boolean complete;
+        volatile long durationMs = -1;
+        private final List<Runnable> completionTasks = new ArrayList<>();
+
+        Step(String name, Runnable task, boolean onCallerThread, String... dependencies) {
+            this.name = name;
+            this.task = task;
+            this.onCallerThread = onCallerThread;
+            this.dependencies = Collections.unmodifiableList(Arrays.asList(dependencies));
+        }
+
+        void run() {
+            final long tStart = System.nanoTime();
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("StartupGraph: step [" + name + "] failed: " + e);
+                failure = e;
+            } finally {
+                durationMs = TimeUnit.MILLISECONDS.convert(System.nanoTime() - tStart, TimeUnit.NANOSECONDS);
+                StatsEngine.SUPPORTABILITY.sampleTimeMs(MetricNames.SUPPORTABILITY_STARTUP + name, durationMs);
+            }
+            onComplete();
+        }
+
+        void reset() {
+            synchronized (completionTasks) {
+                failure = null;
+                skipped = false;
+                complete = false;
+                durationMs = -1;
+            }
+        }
+
+        void skip() {
+            skipped = true;
+            onComplete();
+        }
+
+        void whenComplete(Runnable task) {
+            synchronized (completionTasks) {
+                if (!complete) {
+                    completionTasks.add(task);
+                    return;
+                }
+            }
+            runCompletionTask(task);
+        }
+
+        private void onComplete() {
+            final List<Runnable> tasks;
+            synchronized (completionTasks) {
+                complete = true;
+                tasks = new ArrayList<>(completionTasks);
+                completionTasks.clear();
+            }
+            for (Runnable task : tasks) {
+                runCompletionTask(task);
+            }
+        }
+
+        private void runCompletionTask(Runnable task) {
+            if (failure != null || skipped) {
+                log.warn("StartupGraph: dropping work queued after step [" + name + "], which did not complete");
+                return;
+            }
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("StartupGraph: work queued after step [" + name + "] failed: " + e);
+            }
+        }
+    }
+}
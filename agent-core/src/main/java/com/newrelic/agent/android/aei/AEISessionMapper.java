@@ -11,34 +11,64 @@ import com.google.gson.reflect.TypeToken;
 import com.newrelic.agent.android.logging.AgentLogManager;
 import com.newrelic.agent.android.util.Streams;
 
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Maps the pids of prior processes to the session they ran in.
+ * <p>
+ * The store is an append-only binary log: a header, then one record per put or erase.
+ * Flushing appends the records since the last flush, rather than rewriting the whole map.
+ * The log is compacted to a snapshot of the map when it has grown well past the map's size.
+ * A torn record at the end of the log (from a process killed mid-write) is ignored.
+ * Stores written in the older JSON format are read, and rewritten as binary on the next flush.
+ */
 public class AEISessionMapper {
 
     static final Gson gson = new GsonBuilder().create();
 
+    static final int MAGIC = 0x4E52534D;    // "NRSM"
+    static final byte VERSION = 1;
+    static final byte RECORD_PUT = 1;
+    static final byte RECORD_ERASE = 2;
+    static final int COMPACTION_SLACK = 16;
+
     final File mapStore;
     final Map<Integer, AEISessionMeta> mapper;
+    final List<Record> journal;
+    int storedRecords;
+    boolean compact;
 
     public AEISessionMapper(File mapStore) {
         this.mapStore = mapStore;
         this.mapper = new HashMap<>();
+        this.journal = new ArrayList<>();
+        this.storedRecords = 0;
+        this.compact = false;
         if (mapStore.exists()) {
             load();
         }
     }
 
-    public AEISessionMapper put(int pid, AEISessionMeta model) {
+    public synchronized AEISessionMapper put(int pid, AEISessionMeta model) {
         if (model != null && !(model.sessionId == null || model.sessionId.isEmpty())) {
             mapper.put(pid, model);
+            journal.add(new Record(RECORD_PUT, pid, model));
         } else {
             AgentLogManager.getAgentLog().debug("Refusing to store null or empty session model for pid[" + pid + "]");
         }
@@ -66,18 +96,24 @@ public class AEISessionMapper {
                 ? defaultSessionId : model.sessionId;
     }
 
-    @SuppressWarnings("unchecked")
-    public AEISessionMapper load() {
+    public synchronized AEISessionMapper load() {
         if (mapStore.exists() && mapStore.canRead()) {
             try {
-                String storeData = Streams.slurpString(mapStore, StandardCharsets.UTF_8.toString());
-                final Type gtype = new TypeToken<Map<Integer, AEISessionMeta>>(){}.getType();
-                Map map = gson.fromJson(storeData, gtype);
+                if (isBinaryStore()) {
+                    loadRecords();
+                } else {
+                    loadJson();
+                    compact = true;
+                }
 
-                map.forEach((key, val) -> mapper.putIfAbsent((Integer) key, (AEISessionMeta) val));
+                // unflushed changes must be replayed after the stored records
+                if (!journal.isEmpty()) {
+                    compact = true;
+                }
 
             } catch (Exception e) {
                 AgentLogManager.getAgentLog().error("Cannot read session ID mapper: " + e);
+                compact = true;
             }
         } else {
             AgentLogManager.getAgentLog().debug("Cannot read session ID mapper: file does not exist or is unreadable");
@@ -86,13 +122,21 @@ public class AEISessionMapper {
         return this;
     }
 
-    public boolean flush() {
+    public synchronized boolean flush() {
         if (mapper.isEmpty()) {
             mapStore.delete();
+            journal.clear();
+            storedRecords = 0;
+            compact = false;
         } else {
-            try (BufferedWriter os = Streams.newBufferedFileWriter(mapStore)) {
-                os.write(gson.toJson(mapper));
-                os.flush();
+            try {
+                if (compact || !mapStore.exists() || storedRecords + journal.size() > 2 * mapper.size() + COMPACTION_SLACK) {
+                    writeSnapshot();
+                } else if (!journal.isEmpty()) {
+                    appendJournal();
+                }
+                journal.clear();
+                compact = false;
 
             } catch (IOException e) {
                 AgentLogManager.getAgentLog().error("Cannot write session ID mapping file: " + e);
@@ -101,18 +145,24 @@ public class AEISessionMapper {
         return mapStore.exists() && mapStore.canRead();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         mapper.clear();
+        journal.clear();
+        compact = true;
     }
 
-    public void delete() {
+    public synchronized void delete() {
         if (mapStore.exists()) {
             mapStore.delete();
         }
+        storedRecords = 0;
+        compact = true;
     }
 
-    public void erase(int pid) {
-        mapper.remove(pid);
+    public synchronized void erase(int pid) {
+        if (mapper.remove(pid) != null) {
+            journal.add(new Record(RECORD_ERASE, pid, null));
+        }
     }
 
     public int size() {
@@ -127,7 +177,124 @@ public class AEISessionMapper {
         currentKeySet.stream()
                 .filter(pid -> !pidSet.contains(pid))
                 .collect(Collectors.toSet())
-                .forEach(pid -> mapper.remove(pid));
+                .forEach(pid -> erase(pid));
+    }
+
+    boolean isBinaryStore() throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(mapStore))) {
+            return mapStore.length() >= 5 && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Replay the records in the store. Stored values do not replace those already in the map.
+     */
+    void loadRecords() throws IOException {
+        final Map<Integer, AEISessionMeta> stored = new HashMap<>();
+        int records = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mapStore)))) {
+            in.readInt();
+            if (in.readByte() != VERSION) {
+                throw new IOException("Unsupported session ID mapper version");
+            }
+
+            int type;
+            while ((type = in.read()) != -1) {
+                try {
+                    final int pid = in.readInt();
+                    if (type == RECORD_PUT) {
+                        final int realAgentId = in.readInt();
+                        stored.put(pid, new AEISessionMeta(in.readUTF(), realAgentId));
+                    } else if (type == RECORD_ERASE) {
+                        stored.remove(pid);
+                    } else {
+                        AgentLogManager.getAgentLog().debug("Session ID mapper: ignoring records after invalid type[" + type + "]");
+                        compact = true;
+                        break;
+                    }
+                    records++;
+
+                } catch (EOFException e) {
+                    // a torn record, dropped when the store is compacted on the next flush
+                    AgentLogManager.getAgentLog().debug("Session ID mapper: ignoring incomplete record");
+                    compact = true;
+                    break;
+                }
+            }
+        }
+
+        stored.forEach(mapper::putIfAbsent);
+        storedRecords = records;
+    }
+
+    @SuppressWarnings("unchecked")
+    void loadJson() throws IOException {
+        String storeData = Streams.slurpString(mapStore, StandardCharsets.UTF_8.toString());
+        final Type gtype = new TypeToken<Map<Integer, AEISessionMeta>>(){}.getType();
+        Map map = gson.fromJson(storeData, gtype);
+
+        if (map != null) {
+            map.forEach((key, val) -> mapper.putIfAbsent((Integer) key, (AEISessionMeta) val));
+        }
+        storedRecords = 0;
+    }
+
+    /**
+     * Replace the store with a snapshot of the map, through a temp file so a failed write
+     * leaves the prior store intact.
+     */
+    void writeSnapshot() throws IOException {
+        final File tmpStore = new File(mapStore.getAbsolutePath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpStore, false)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            for (Map.Entry<Integer, AEISessionMeta> entry : mapper.entrySet()) {
+                new Record(RECORD_PUT, entry.getKey(), entry.getValue()).writeTo(out);
+            }
+            out.flush();
+        }
+
+        if (!tmpStore.renameTo(mapStore)) {
+            mapStore.delete();
+            if (!tmpStore.renameTo(mapStore)) {
+                tmpStore.delete();
+                throw new IOException("Cannot replace session ID mapping file");
+            }
+        }
+        storedRecords = mapper.size();
+    }
+
+    void appendJournal() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mapStore, true)))) {
+            for (Record record : journal) {
+                record.writeTo(out);
+            }
+            out.flush();
+        }
+        storedRecords += journal.size();
+    }
+
+    static class Record {
+        final byte type;
+        final int pid;
+        final AEISessionMeta model;
+
+        Record(byte type, int pid, AEISessionMeta model) {
+            this.type = type;
+            this.pid = pid;
+            this.model = model;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeByte(type);
+            out.writeInt(pid);
+            if (type == RECORD_PUT) {
+                out.writeInt(model.realAgentId);
+                out.writeUTF(model.sessionId);
+            }
+        }
     }
 
     public static class AEISessionMeta {
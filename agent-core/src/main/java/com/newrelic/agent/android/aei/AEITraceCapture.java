@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.aei;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Copies an ART system trace (as returned by ApplicationExitInfo.getTraceInputStream()) from
+ * one stream to another, a line at a time, without holding the trace in memory.
+ * <p>
+ * The trace is split into sections: a new section starts at each thread header
+ * ({@code "name" prio=...}) and ends at a blank line. Only the first {@code headLines} and
+ * last {@code tailLines} lines of a section are kept, and the lines in between are replaced
+ * with an elision marker. Once about {@code maxSize} characters have been written, the
+ * remaining sections are dropped. Framing lines ({@code ----- pid ...}, {@code DALVIK THREADS (n):},
+ * {@code ----- end n -----}) are always kept, so the capture can still be decomposed by
+ * {@link AEITrace}.
+ * <p>
+ * Markers are wrapped in parentheses, which AEITrace filters from thread stacks.
+ */
+public class AEITraceCapture {
+    public static final int DEFAULT_MAX_SIZE = 256 * 1024;
+    public static final int DEFAULT_HEAD_LINES = 64;
+    public static final int DEFAULT_TAIL_LINES = 16;
+    public static final int MAX_LINE_LENGTH = 1024;
+
+    static final String ELIDED_LINES_MARKER = "  (... %d lines elided ...)";
+    static final String DROPPED_SECTIONS_MARKER = "(... %d sections dropped ...)";
+
+    private final int maxSize;
+    private final int headLines;
+    private final int tailLines;
+
+    private final String[] tail;
+    private int tailStart;
+    private int tailCount;
+    private int sectionLines;
+    private int sectionElided;
+    private int pendingDropped;
+    private boolean inSection;
+    private boolean sectionDropped;
+    private boolean capped;
+
+    private long charsRead;
+    private long charsWritten;
+    private int sections;
+    private int truncatedSections;
+    private int droppedSections;
+
+    public AEITraceCapture() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public AEITraceCapture(int maxSize) {
+        this(maxSize, DEFAULT_HEAD_LINES, DEFAULT_TAIL_LINES);
+    }
+
+    public AEITraceCapture(int maxSize, int headLines, int tailLines) {
+        if (maxSize <= 0 || headLines <= 0 || tailLines < 0) {
+            throw new IllegalArgumentException("Invalid trace capture limits");
+        }
+        this.maxSize = maxSize;
+        this.headLines = headLines;
+        this.tailLines = tailLines;
+        this.tail = new String[tailLines];
+    }
+
+    /**
+     * Copy the trace from the input stream to the output stream. Neither stream is closed, so
+     * the caller can wrap the output (in a GZIPOutputStream, for example) and finish it.
+     *
+     * @return This capture, with the stats of the copy
+     */
+    public AEITraceCapture capture(InputStream in, OutputStream out) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        final StringBuilder line = new StringBuilder(128);
+
+        while (readLine(reader, line)) {
+            onLine(line.toString(), writer);
+        }
+        endSection(writer);
+        writeDropped(writer);
+        writer.flush();
+
+        return this;
+    }
+
+    void onLine(String line, Writer writer) throws IOException {
+        if (isFramingLine(line)) {
+            endSection(writer);
+            writeDropped(writer);
+            write(line, writer);
+
+        } else if (line.trim().isEmpty()) {
+            endSection(writer);
+            if (pendingDropped == 0) {
+                write(line, writer);
+            }
+
+        } else {
+            if (!inSection || line.startsWith("\"")) {
+                endSection(writer);
+                startSection(writer);
+            }
+            appendToSection(line, writer);
+        }
+    }
+
+    private void startSection(Writer writer) throws IOException {
+        inSection = true;
+        sections++;
+        sectionLines = 0;
+        sectionElided = 0;
+        tailStart = 0;
+        tailCount = 0;
+        sectionDropped = capped;
+        if (sectionDropped) {
+            droppedSections++;
+            pendingDropped++;
+        } else {
+            writeDropped(writer);
+        }
+    }
+
+    private void appendToSection(String line, Writer writer) throws IOException {
+        sectionLines++;
+        if (sectionDropped) {
+            return;
+        }
+
+        if (sectionLines <= headLines) {
+            if (!fits(line)) {
+                capped = true;
+                sectionElided++;
+            } else {
+                write(line, writer);
+            }
+        } else if (tailLines == 0) {
+            sectionElided++;
+        } else {
+            // keep the last lines of the section in a ring
+            if (tailCount == tailLines) {
+                tailStart = (tailStart + 1) % tailLines;
+                tailCount--;
+                sectionElided++;
+            }
+            tail[(tailStart + tailCount) % tailLines] = line;
+            tailCount++;
+        }
+    }
+
+    private void endSection(Writer writer) throws IOException {
+        if (!inSection) {
+            return;
+        }
+        inSection = false;
+
+        if (!sectionDropped) {
+            // the tail is written only if it fits after the elision marker
+            int tailSize = 0;
+            for (int i = 0; i < tailCount; i++) {
+                tailSize += tail[(tailStart + i) % tailLines].length() + 1;
+            }
+            if (tailCount > 0 && (capped || charsWritten + tailSize + ELIDED_LINES_MARKER.length() + 10 > maxSize)) {
+                capped = true;
+                sectionElided += tailCount;
+                tailCount = 0;
+            }
+
+            if (sectionElided > 0) {
+                truncatedSections++;
+                write(String.format(ELIDED_LINES_MARKER, sectionElided), writer);
+            }
+            for (int i = 0; i < tailCount; i++) {
+                write(tail[(tailStart + i) % tailLines], writer);
+            }
+        }
+
+        for (int i = 0; i < tailLines; i++) {
+            tail[i] = null;
+        }
+        tailCount = 0;
+    }
+
+    private void writeDropped(Writer writer) throws IOException {
+        if (pendingDropped > 0) {
+            write(String.format(DROPPED_SECTIONS_MARKER, pendingDropped), writer);
+            pendingDropped = 0;
+        }
+    }
+
+    private boolean fits(String line) {
+        return !capped && charsWritten + line.length() + 1 <= maxSize;
+    }
+
+    private void write(String line, Writer writer) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+        charsWritten += line.length() + 1;
+    }
+
+    /**
+     * Read the next line into the builder, discarding anything past MAX_LINE_LENGTH.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean readLine(BufferedReader reader, StringBuilder line) throws IOException {
+        line.setLength(0);
+
+        int c = reader.read();
+        if (c == -1) {
+            return false;
+        }
+
+        while (c != -1 && c != '\n') {
+            charsRead++;
+            if (c != '\r' && line.length() < MAX_LINE_LENGTH) {
+                line.append((char) c);
+            }
+            c = reader.read();
+        }
+        if (c == '\n') {
+            charsRead++;
+        }
+
+        return true;
+    }
+
+    static boolean isFramingLine(String line) {
+        final String trimmed = line.trim();
+        return trimmed.startsWith("----- ") || trimmed.startsWith("DALVIK THREADS");
+    }
+
+    /**
+     * Returns the number of characters read from the trace.
+     */
+    public long getCharsRead() {
+        return charsRead;
+    }
+
+    /**
+     * Returns the number of characters written to the capture, before any compression.
+     */
+    public long getCharsWritten() {
+        return charsWritten;
+    }
+
+    public int getSections() {
+        return sections;
+    }
+
+    public int getTruncatedSections() {
+        return truncatedSections;
+    }
+
+    public int getDroppedSections() {
+        return droppedSections;
+    }
+
+    public boolean isTruncated() {
+        return truncatedSections > 0 || droppedSections > 0;
+    }
+}
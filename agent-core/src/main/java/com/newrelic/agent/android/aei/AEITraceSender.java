@@ -156,4 +156,9 @@ public class AEITraceSender extends PayloadSender {
     public boolean shouldRetry() {
         return true;
     }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.AEI;
+    }
 }
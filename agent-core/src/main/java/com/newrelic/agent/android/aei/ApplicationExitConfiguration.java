@@ -14,6 +14,9 @@ public class ApplicationExitConfiguration {
     @SerializedName("enabled")
     boolean enabled;
 
+    // local only: the limit on the size of a captured AEI trace, in characters
+    transient int maxTraceSize = AEITraceCapture.DEFAULT_MAX_SIZE;
+
     public ApplicationExitConfiguration(boolean enabled) {
         this.enabled = enabled;
     }
@@ -26,6 +29,14 @@ public class ApplicationExitConfiguration {
         this.enabled = enabled;
     }
 
+    public int getMaxTraceSize() {
+        return maxTraceSize > 0 ? maxTraceSize : AEITraceCapture.DEFAULT_MAX_SIZE;
+    }
+
+    public void setMaxTraceSize(int maxTraceSize) {
+        this.maxTraceSize = maxTraceSize;
+    }
+
     public void setConfiguration(ApplicationExitConfiguration applicationExitConfiguration) {
         if (!applicationExitConfiguration.equals(this)) {
             if (!enabled && applicationExitConfiguration.enabled) {
@@ -91,4 +91,14 @@ public class AgentDataSender extends PayloadSender {
     protected boolean shouldUploadOpportunistically() {
         return PayloadController.shouldUploadOpportunistically();
     }
+
+    @Override
+    public String getEndpoint() {
+        return getProtocol() + agentConfiguration.getHexCollectorHost() + agentConfiguration.getHexCollectorPath();
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.HANDLED_EXCEPTION;
+    }
 }
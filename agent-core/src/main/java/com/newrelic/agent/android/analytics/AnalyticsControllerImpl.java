@@ -23,13 +23,14 @@ import com.newrelic.agent.android.tracing.TraceLifecycleAware;
 import com.newrelic.agent.android.tracing.TraceMachine;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class AnalyticsControllerImpl extends HarvestAdapter implements AnalyticsController {
     // Insights allows 254 attributes per event: the delta is allocated to events we create
@@ -45,6 +46,8 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
     private final EventManagerImpl eventManager;
     private final AtomicBoolean isEnabled;
     private final InteractionCompleteListener interactionListener;
+    private final AtomicLong attributeVersion;
+    private final AtomicReference<SessionAttributeSnapshot> attributeSnapshot;
 
     private AgentImpl agentImpl;
     private AnalyticsAttributeStore attributeStore;
@@ -131,6 +134,8 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
         systemAttributes = new ConcurrentLinkedQueue<AnalyticsAttribute>();
         userAttributes = new ConcurrentLinkedQueue<AnalyticsAttribute>();
         interactionListener = new InteractionCompleteListener();
+        attributeVersion = new AtomicLong(0);
+        attributeSnapshot = new AtomicReference<SessionAttributeSnapshot>(SessionAttributeSnapshot.EMPTY);
     }
 
     void reinitialize(AgentConfiguration agentConfiguration, AgentImpl agentImpl) {
@@ -209,6 +214,8 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
                 systemAttributes.add(new AnalyticsAttribute(AnalyticsAttribute.APP_BUILD_ATTRIBUTE, appBuildString));
             }
         }
+
+        invalidateSessionAttributes();
     }
 
     /**
@@ -237,15 +244,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
     public Set<AnalyticsAttribute> getSystemAttributes() {
         log.audit("AnalyticsControllerImpl.getSystemAttributes(): " + systemAttributes.size());
 
-        // The set of returned system attributes, and each attribute within it, should be immutable
-        final Set<AnalyticsAttribute> attrs = new HashSet<AnalyticsAttribute>(systemAttributes.size());
-
-        for (AnalyticsAttribute attr : systemAttributes) {
-            // Clone the attribute to prevent it from being modified after addition to the set
-            attrs.add(new AnalyticsAttribute(attr));
-        }
-
-        return Collections.unmodifiableSet(attrs);
+        return getSessionAttributeSnapshot().getSystemAttributes();
     }
 
     /**
@@ -257,20 +256,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
     public Set<AnalyticsAttribute> getUserAttributes() {
         log.audit("AnalyticsControllerImpl.getUserAttributes(): " + userAttributes.size());
 
-        // The set of returned user attributes, and each attribute within it, should be immutable
-        final Set<AnalyticsAttribute> attrs = new HashSet<AnalyticsAttribute>(userAttributes.size());
-
-        for (AnalyticsAttribute attr : userAttributes) {
-            // Clone the attribute to prevent it from being modified after addition to the set
-            attrs.add(new AnalyticsAttribute(attr));
-
-            // only return the first 128 attributes
-            if (attrs.size() == MAX_ATTRIBUTES) {
-                break;
-            }
-        }
-
-        return Collections.unmodifiableSet(attrs);
+        return getSessionAttributeSnapshot().getUserAttributes();
     }
 
     /**
@@ -282,13 +268,37 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
     public Set<AnalyticsAttribute> getSessionAttributes() {
         log.audit("AnalyticsControllerImpl.getSessionAttributes(): " + getSessionAttributeCount());
 
-        // The set of returned session attributes, and each attribute within it, should be immutable
-        final Set<AnalyticsAttribute> attrs = new HashSet<AnalyticsAttribute>(getSessionAttributeCount());
+        return getSessionAttributeSnapshot().getSessionAttributes();
+    }
+
+    /**
+     * Get the current immutable snapshot of system and user attributes. The snapshot is
+     * rebuilt only after an attribute has been added, changed or removed, and is otherwise
+     * shared by all callers.
+     *
+     * @return Current session attribute snapshot
+     */
+    public SessionAttributeSnapshot getSessionAttributeSnapshot() {
+        SessionAttributeSnapshot snapshot = attributeSnapshot.get();
+        final long version = attributeVersion.get();
+
+        if (snapshot.getVersion() != version) {
+            final SessionAttributeSnapshot rebuilt = new SessionAttributeSnapshot(version, systemAttributes, userAttributes, MAX_ATTRIBUTES);
 
-        attrs.addAll(getSystemAttributes());
-        attrs.addAll(getUserAttributes());
+            // a concurrent rebuild may have won, but either result reflects the same version
+            attributeSnapshot.compareAndSet(snapshot, rebuilt);
+            snapshot = rebuilt;
+        }
 
-        return Collections.unmodifiableSet(attrs);
+        return snapshot;
+    }
+
+    /**
+     * Mark the current attribute snapshot as stale. Must be called *after* any change to the
+     * system or user attribute collections, or to the value of an attribute within them.
+     */
+    void invalidateSessionAttributes() {
+        attributeVersion.incrementAndGet();
     }
 
     @Override
@@ -342,6 +352,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
         } else {
             cachedAttribute.setStringValue(value);
             cachedAttribute.setPersistent(persistent);
+            invalidateSessionAttributes();
             if (cachedAttribute.isPersistent()) {
                 if (!attributeStore.store(cachedAttribute)) {
                     log.error("Failed to store attribute [" + cachedAttribute + "] to attribute store.");
@@ -391,6 +402,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
         } else {
             cachedAttribute.setDoubleValue(value);
             cachedAttribute.setPersistent(persistent);
+            invalidateSessionAttributes();
             if (cachedAttribute.isPersistent()) {
                 if (!attributeStore.store(cachedAttribute)) {
                     log.error("Failed to store attribute [" + cachedAttribute + "] to attribute store.");
@@ -438,6 +450,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
         } else {
             cachedAttribute.setBooleanValue(value);
             cachedAttribute.setPersistent(persistent);
+            invalidateSessionAttributes();
             if (cachedAttribute.isPersistent()) {
                 if (!attributeStore.store(cachedAttribute)) {
                     log.error("Failed to store attribute [" + cachedAttribute + "] to attribute store.");
@@ -491,6 +504,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
             // This is a new attribute
             // Add the new attribute to the set
             systemAttributes.add(attribute);
+            invalidateSessionAttributes();
             if (attribute.isPersistent()) {
                 if (!attributeStore.store(attribute)) {
                     log.error("Failed to store attribute " + attribute + " to attribute store.");
@@ -514,6 +528,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
             }
 
             cachedAttribute.setPersistent(persistent);
+            invalidateSessionAttributes();
 
             if (cachedAttribute.isPersistent()) {
                 if (!attributeStore.store(cachedAttribute)) {
@@ -552,6 +567,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
             // The attribute with the provided name was previously a Double.  Get the value and increment it
             cachedAttribute.setDoubleValue(cachedAttribute.getDoubleValue() + value);
             cachedAttribute.setPersistent(persistent);
+            invalidateSessionAttributes();
 
             if (cachedAttribute.isPersistent()) {
                 if (!attributeStore.store(cachedAttribute)) {
@@ -590,6 +606,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
         AnalyticsAttribute cachedAttribute = getAttribute(name);
         if (cachedAttribute != null) {
             userAttributes.remove(cachedAttribute);
+            invalidateSessionAttributes();
             if (cachedAttribute.isPersistent()) {
                 attributeStore.delete(cachedAttribute);
             }
@@ -615,6 +632,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
 
             attributeStore.clear();
             userAttributes.clear();
+            invalidateSessionAttributes();
 
             return true;
         } else{
@@ -732,6 +750,8 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
                 size++;
             }
         }
+
+        invalidateSessionAttributes();
     }
 
     private AnalyticsAttribute getSystemAttribute(String name) {
@@ -767,6 +787,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
         systemAttributes.clear();
         userAttributes.clear();
         eventManager.empty();
+        invalidateSessionAttributes();
     }
 
     /**
@@ -984,6 +1005,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
             if (validator.isValidAttribute(attribute)) {
                 // Add the new attribute to the set
                 userAttributes.add(attribute);
+                invalidateSessionAttributes();
                 if (attribute.isPersistent()) {
                     if (!attributeStore.store(attribute)) {
                         log.error("Failed to store attribute [" + attribute + "] to attribute store.");
@@ -1021,10 +1043,7 @@ public class AnalyticsControllerImpl extends HarvestAdapter implements Analytics
                     // have the most up-to-date values. Collect the session attributes.
                     // The session attributes are only included in the harvest data if there are
                     // events that must be transmitted.
-                    Set<AnalyticsAttribute> sessionAttributes = new HashSet<AnalyticsAttribute>();
-                    sessionAttributes.addAll(getSystemAttributes());
-                    sessionAttributes.addAll(getUserAttributes());
-                    harvestData.setSessionAttributes(sessionAttributes);
+                    harvestData.setSessionAttributes(getSessionAttributeSnapshot());
 
                     // hand-off current event set atomically
                     Collection<AnalyticsEvent> pendingEvents = eventManager.getQueuedEventsSnapshot();
@@ -12,6 +12,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 public class AnalyticsValidator {
     private static final AgentLog log = AgentLogManager.getAgentLog();
@@ -20,6 +22,11 @@ public class AnalyticsValidator {
     private static final String NR_PREFIX = "nr.";
     private static final String PUBLIC_PREFIX = "Public_";
 
+    // Names that have already passed attribute name validation. Custom event attribute names
+    // are usually drawn from a small vocabulary, so the cache is simply reset when full.
+    static final int MAX_VALIDATED_NAMES = 512;
+    static final Set<String> validatedAttributeNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     // Reminder: add updates from https://docs.newrelic.com/docs/insights/insights-data-sources/custom-data/insights-custom-data-requirements-limits#reserved-words
     static final Set<String> reservedAttributeNames = new HashSet<String>() {{
         add(AnalyticsAttribute.EVENT_TYPE_ATTRIBUTE);
@@ -88,6 +95,10 @@ public class AnalyticsValidator {
      * @return True if valid attribute name
      */
     public boolean isValidAttributeName(String attributeName) {
+        if (attributeName != null && validatedAttributeNames.contains(attributeName)) {
+            return true;
+        }
+
         boolean valid = isValidKeyName(attributeName);
 
         if (valid) {
@@ -97,6 +108,13 @@ public class AnalyticsValidator {
             }
         }
 
+        if (valid) {
+            if (validatedAttributeNames.size() >= MAX_VALIDATED_NAMES) {
+                validatedAttributeNames.clear();
+            }
+            validatedAttributeNames.add(attributeName);
+        }
+
         return valid;
     }
 
@@ -106,6 +124,12 @@ public class AnalyticsValidator {
             return true;
         }
 
+        // all reserved prefixes start with either 'n' or 'P'
+        final char firstChar = attributeName.isEmpty() ? 0 : attributeName.charAt(0);
+        if (firstChar != 'n' && firstChar != 'P') {
+            return false;
+        }
+
         if (attributeName.startsWith(NEW_RELIC_PREFIX)) {
             log.error("Attribute name [" + attributeName + "] starts with reserved prefix [" + NEW_RELIC_PREFIX + "]");
             return true;
@@ -132,7 +156,7 @@ public class AnalyticsValidator {
      * Check that the attribute value meets requirements
      */
     public boolean isValidAttributeValue(String name, String value) {
-        boolean valid = (value != null) && !value.isEmpty() && (value.getBytes().length < AnalyticsAttribute.ATTRIBUTE_VALUE_MAX_LENGTH);
+        boolean valid = (value != null) && !value.isEmpty() && (utf8Length(value, AnalyticsAttribute.ATTRIBUTE_VALUE_MAX_LENGTH) < AnalyticsAttribute.ATTRIBUTE_VALUE_MAX_LENGTH);
 
         if (!valid) {
             log.error("Attribute value for name [" + name + "] is null, empty, or exceeds the maximum length of " + AnalyticsAttribute.ATTRIBUTE_VALUE_MAX_LENGTH + " bytes.");
@@ -141,6 +165,37 @@ public class AnalyticsValidator {
         return valid;
     }
 
+    /**
+     * Count the UTF-8 encoded length of a string without encoding it. Unpaired surrogates
+     * are counted as a single replacement byte, as String.getBytes() would do.
+     *
+     * @param value String to measure
+     * @param limit Counting stops once this many bytes have been seen
+     * @return Encoded length in bytes, or a value >= limit if the limit was reached
+     */
+    static int utf8Length(final String value, final int limit) {
+        final int length = value.length();
+        int bytes = 0;
+
+        for (int i = 0; i < length && bytes < limit; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && (i + 1 < length) && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+
+        return bytes;
+    }
+
     public boolean isValidAttribute(final AnalyticsAttribute attribute) {
         return (attribute != null) &&
                 isValidAttributeName(attribute.getName()) &&
@@ -194,6 +249,7 @@ public class AnalyticsValidator {
     // Event validations
     //
     private static final String ALLOWABLE_EVENT_TYPE_CHARS = "^[\\p{L}\\p{Nd} _:.]+$";
+    private static final Pattern ALLOWABLE_EVENT_TYPE_PATTERN = Pattern.compile(ALLOWABLE_EVENT_TYPE_CHARS);
 
     static final Set<String> reservedEventTypes = new HashSet<String>() {{
         add(AnalyticsEvent.EVENT_TYPE_MOBILE);
@@ -226,7 +282,7 @@ public class AnalyticsValidator {
         boolean valid = (eventType != null);
 
         if (valid) {
-            valid = eventType.matches(ALLOWABLE_EVENT_TYPE_CHARS);
+            valid = ALLOWABLE_EVENT_TYPE_PATTERN.matcher(eventType).matches();
         }
 
         if (!valid) {
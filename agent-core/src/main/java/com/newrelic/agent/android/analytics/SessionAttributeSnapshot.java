@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.analytics;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, versioned copy of the system and user attributes held by the analytics controller.
+ * <p>
+ * A snapshot is only rebuilt when an attribute changes, and is otherwise shared by reference
+ * between events, crashes, logs and harvests. The JSON forms of the session attributes are
+ * created lazily on first use and cached for the life of the snapshot.
+ */
+public class SessionAttributeSnapshot {
+    static final SessionAttributeSnapshot EMPTY = new SessionAttributeSnapshot(-1,
+            Collections.<AnalyticsAttribute>emptyList(),
+            Collections.<AnalyticsAttribute>emptyList(), 0);
+
+    private final long version;
+    private final Set<AnalyticsAttribute> systemAttributes;
+    private final Set<AnalyticsAttribute> userAttributes;
+    private final Set<AnalyticsAttribute> sessionAttributes;
+
+    private volatile JsonObject jsonObject;
+    private volatile Map<String, Object> jsonAttributeMap;
+
+    SessionAttributeSnapshot(long version, Collection<AnalyticsAttribute> systemAttributes,
+                             Collection<AnalyticsAttribute> userAttributes, int maxUserAttributes) {
+        final Set<AnalyticsAttribute> system = new HashSet<>(systemAttributes.size());
+        for (AnalyticsAttribute attr : systemAttributes) {
+            // Clone the attribute to prevent it from being modified after addition to the set
+            system.add(new AnalyticsAttribute(attr));
+        }
+
+        final Set<AnalyticsAttribute> user = new HashSet<>(userAttributes.size());
+        for (AnalyticsAttribute attr : userAttributes) {
+            if (user.size() == maxUserAttributes) {
+                break;
+            }
+            user.add(new AnalyticsAttribute(attr));
+        }
+
+        // system attributes take precedence over user attributes of the same name
+        final Set<AnalyticsAttribute> session = new HashSet<>(system.size() + user.size());
+        session.addAll(system);
+        session.addAll(user);
+
+        this.version = version;
+        this.systemAttributes = Collections.unmodifiableSet(system);
+        this.userAttributes = Collections.unmodifiableSet(user);
+        this.sessionAttributes = Collections.unmodifiableSet(session);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Set<AnalyticsAttribute> getSystemAttributes() {
+        return systemAttributes;
+    }
+
+    public Set<AnalyticsAttribute> getUserAttributes() {
+        return userAttributes;
+    }
+
+    public Set<AnalyticsAttribute> getSessionAttributes() {
+        return sessionAttributes;
+    }
+
+    /**
+     * Returns the session attributes as a JSON object, suitable for the harvest {@code data} payload.
+     * The returned object is shared, and must not be modified by the caller.
+     */
+    public JsonObject asJsonObject() {
+        JsonObject json = jsonObject;
+
+        if (json == null) {
+            json = new JsonObject();
+            for (AnalyticsAttribute attribute : sessionAttributes) {
+                switch (attribute.getAttributeDataType()) {
+                    case STRING:
+                        json.addProperty(attribute.getName(), attribute.getStringValue());
+                        break;
+                    case DOUBLE:
+                        json.addProperty(attribute.getName(), attribute.getDoubleValue());
+                        break;
+                    case BOOLEAN:
+                        json.addProperty(attribute.getName(), attribute.getBooleanValue());
+                        break;
+                }
+            }
+            jsonObject = json;
+        }
+
+        return json;
+    }
+
+    /**
+     * Returns an immutable map of session attribute names to their {@link JsonElement} values,
+     * suitable for merging into log payload attributes.
+     */
+    public Map<String, Object> asJsonAttributeMap() {
+        Map<String, Object> map = jsonAttributeMap;
+
+        if (map == null) {
+            map = new HashMap<>(sessionAttributes.size());
+            for (AnalyticsAttribute attribute : sessionAttributes) {
+                map.put(attribute.getName(), attribute.asJsonElement());
+            }
+            map = Collections.unmodifiableMap(map);
+            jsonAttributeMap = map;
+        }
+
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionAttributeSnapshot{" +
+                "version=" + version +
+                ", sessionAttributes=" + sessionAttributes +
+                '}';
+    }
+}
@@ -120,4 +120,8 @@ public class CrashSender extends PayloadSender {
         return URI.create(getProtocol() + agentConfiguration.getCrashCollectorHost() + CRASH_COLLECTOR_PATH);
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.CRASH;
+    }
 }
@@ -14,7 +14,7 @@ import com.newrelic.agent.android.logging.AgentLogManager;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -44,6 +44,8 @@ public class DistributedTracing implements TraceFacade, TraceListener {
     public static final String NR_SPAN_ID_ATTRIBUTE = "span.id";
     public static final String ACTION_TYPE_ATTRIBUTE = "actionType";
 
+    static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     AtomicReference<TraceListener> traceListener = new AtomicReference<TraceListener>(this);
 
     public static final DistributedTracing getInstance() {
@@ -119,12 +121,45 @@ public class DistributedTracing implements TraceFacade, TraceListener {
         }
     }
 
+    /**
+     * Generate a random, lowercase hex string of the requested length. Random longs are hex encoded
+     * directly through a lookup table; a value of all zeroes (forbidden by the W3C spec) is rejected.
+     *
+     * @param minLength Length in characters
+     * @return Random hex string
+     */
     static String generateRandomBytes(int minLength) {
-        String randomBytes = "";
-        while (randomBytes.length() < minLength) {
-            randomBytes += UUID.randomUUID().toString().replace("-", "");
+        final char[] chars = new char[minLength];
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        long nonZero;
+
+        do {
+            nonZero = 0;
+            for (int offset = 0; offset < minLength; offset += 16) {
+                final long value = random.nextLong();
+                nonZero |= encodeHex(value, chars, offset);
+            }
+        } while (nonZero == 0);
+
+        return new String(chars);
+    }
+
+    /**
+     * Hex encode up to 16 nibbles of a long, most significant first.
+     *
+     * @return Non-zero if any encoded nibble was non-zero
+     */
+    static long encodeHex(long value, char[] chars, int offset) {
+        final int nibbles = Math.min(16, chars.length - offset);
+        long encoded = 0;
+
+        for (int i = 0; i < nibbles; i++) {
+            final int nibble = (int) (value >>> (60 - (i * 4))) & 0xf;
+            chars[offset + i] = HEX_DIGITS[nibble];
+            encoded |= nibble;
         }
-        return randomBytes.substring(0, minLength);
+
+        return encoded;
     }
 
     /**
@@ -18,6 +18,8 @@ public class TraceConfiguration extends HarvestAdapter {
     String applicationId;
     String trustedAccountId;
 
+    private volatile HeaderParts headerParts = new HeaderParts(null, null, null);
+
     static TraceConfiguration getInstance() {
         return instance.get();
     }
@@ -59,4 +61,43 @@ public class TraceConfiguration extends HarvestAdapter {
         accountId = harvestConfiguration.getAccount_id();
         trustedAccountId = harvestConfiguration.getTrusted_account_key();
     }
+
+    /**
+     * Returns the header fields that are constant for this configuration, rebuilding
+     * them only when the account, application or trusted account has changed.
+     */
+    HeaderParts getHeaderParts() {
+        HeaderParts parts = headerParts;
+        if (!parts.matches(accountId, applicationId, trustedAccountId)) {
+            parts = new HeaderParts(accountId, applicationId, trustedAccountId);
+            headerParts = parts;
+        }
+        return parts;
+    }
+
+    /**
+     * Formatted header fields shared by every trace of a session.
+     */
+    static class HeaderParts {
+        final String accountId;
+        final String applicationId;
+        final String trustedAccountId;
+        final String vendor;                // trustedAccountId@nr
+        final String vendorStatePrefix;     // version-parentType-accountId-applicationId-
+
+        HeaderParts(String accountId, String applicationId, String trustedAccountId) {
+            this.accountId = String.valueOf(accountId);
+            this.applicationId = String.valueOf(applicationId);
+            this.trustedAccountId = trustedAccountId;
+            this.vendor = trustedAccountId + "@nr";
+            this.vendorStatePrefix = TraceState.TRACE_STATE_VERSION + "-" + TraceState.TRACE_STATE_PARENT_TYPE
+                    + "-" + this.accountId + "-" + this.applicationId + "-";
+        }
+
+        boolean matches(String accountId, String applicationId, String trustedAccountId) {
+            return this.accountId.equals(String.valueOf(accountId))
+                    && this.applicationId.equals(String.valueOf(applicationId))
+                    && (this.trustedAccountId == null ? trustedAccountId == null : this.trustedAccountId.equals(trustedAccountId));
+        }
+    }
 }
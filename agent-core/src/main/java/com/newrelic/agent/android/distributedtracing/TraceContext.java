@@ -27,6 +27,8 @@ public abstract class TraceContext {
     protected static final AgentLog log = AgentLogManager.getAgentLog();
 
     static final String TRACE_FIELD_UNUSED = "";
+    static final String SAMPLED = "01";
+    static final String NOT_SAMPLED = "00";
 
     public static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
     public static final String INVALID_SPAN_ID = "0000000000000000";
@@ -98,7 +100,7 @@ public abstract class TraceContext {
      * @return sampled state formatted to spec
      */
     public String getSampled() {
-        return String.format(Locale.ROOT, "%02x", traceConfiguration.isSampled() ? 1 : 0);
+        return traceConfiguration.isSampled() ? SAMPLED : NOT_SAMPLED;
     }
 
     /**
@@ -106,21 +108,21 @@ public abstract class TraceContext {
      * @return vendor formatted to spec
      */
     public String getVendor() {
-        return String.format(Locale.ROOT, "%s@nr", traceConfiguration.trustedAccountId);
+        return traceConfiguration.getHeaderParts().vendor;
     }
 
     /**
      * @return Account ID formatted to spec
      */
     public String getAccountId() {
-        return String.format(Locale.ROOT, "%s", traceConfiguration.accountId);
+        return traceConfiguration.getHeaderParts().accountId;
     }
 
     /**
      * @return Application ID formatted to spec
      */
     public String getApplicationId() {
-        return String.format(Locale.ROOT, "%s", traceConfiguration.applicationId);
+        return traceConfiguration.getHeaderParts().applicationId;
     }
 
     /**
@@ -15,6 +15,7 @@ public abstract class TraceParent implements TraceHeader {
     public static final String TRACE_PARENT_HEADER = "traceparent";
     static final int TRACE_PARENT_VERSION = 0;
     static final String TRACE_PARENT_HEADER_FMT = "%s-%s-%s-%s";
+    static final String TRACE_PARENT_VERSION_STRING = String.format(Locale.ROOT, "%02x", TRACE_PARENT_VERSION);
 
     final TraceContext traceContext;
     final String parentId;
@@ -50,7 +51,7 @@ public abstract class TraceParent implements TraceHeader {
      * @return version formatted to spec
      */
     public String getVersion() {
-        return String.format(Locale.ROOT, "%02x", TRACE_PARENT_VERSION);
+        return TRACE_PARENT_VERSION_STRING;
     }
 
     static class W3CTraceParent extends TraceParent {
@@ -79,12 +80,16 @@ public abstract class TraceParent implements TraceHeader {
          **/
         @Override
         public String getHeaderValue() {
-            return String.format(Locale.ROOT,
-                    TRACE_PARENT_HEADER_FMT,
-                    getVersion(),
-                    traceContext.traceId,
-                    parentId,
-                    traceContext.getSampled());
+            final String version = getVersion();
+            final String sampled = traceContext.getSampled();
+
+            // equivalent to TRACE_PARENT_HEADER_FMT, without the cost of the formatter
+            return new StringBuilder(version.length() + traceContext.traceId.length() + parentId.length() + sampled.length() + 3)
+                    .append(version).append('-')
+                    .append(traceContext.traceId).append('-')
+                    .append(parentId).append('-')
+                    .append(sampled)
+                    .toString();
         }
     }
 }
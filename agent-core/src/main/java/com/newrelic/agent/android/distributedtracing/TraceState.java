@@ -6,7 +6,6 @@
 package com.newrelic.agent.android.distributedtracing;
 
 import java.util.HashMap;
-import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -86,25 +85,26 @@ public abstract class TraceState implements TraceHeader {
         @Override
         public String getHeaderValue() {
             StringBuilder builder = new StringBuilder();
-            for (String key : entries.keySet()) {
-                builder.append(String.format("%s=%s,", key, entries.get(key)));
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(entry.getKey()).append('=').append(entry.getValue());
             }
-            builder.deleteCharAt(builder.length() - 1);
             return builder.toString();
         }
 
         String getVendorState() {
-            return String.format(Locale.ROOT,
-                    TRACE_STATE_HEADER_FMT,
-                    TraceState.TRACE_STATE_VERSION,         // trace state version
-                    TraceState.TRACE_STATE_PARENT_TYPE,     // trace parent type (always Mobile)
-                    traceContext.getAccountId(),            // account identifier of the application
-                    traceContext.getApplicationId(),        // the app identifier
-                    traceContext.getParentId(),             // guid of the calling span (parent)
-                    TraceContext.TRACE_FIELD_UNUSED,        // transactionId
-                    TraceContext.TRACE_FIELD_UNUSED,        // sampled
-                    TraceContext.TRACE_FIELD_UNUSED,        // priority (omitted for Mobile)
-                    timestampMs);
+            // equivalent to TRACE_STATE_HEADER_FMT: the version, parent type, account and app
+            // identifiers are constant for the session, and are formatted once per configuration
+            return new StringBuilder(64)
+                    .append(traceContext.traceConfiguration.getHeaderParts().vendorStatePrefix)
+                    .append(traceContext.getParentId()).append('-')          // guid of the calling span (parent)
+                    .append(TraceContext.TRACE_FIELD_UNUSED).append('-')     // transactionId
+                    .append(TraceContext.TRACE_FIELD_UNUSED).append('-')     // sampled
+                    .append(TraceContext.TRACE_FIELD_UNUSED).append('-')     // priority (omitted for Mobile)
+                    .append(timestampMs)
+                    .toString();
         }
     }
 }
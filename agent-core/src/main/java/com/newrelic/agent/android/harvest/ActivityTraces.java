@@ -6,9 +6,13 @@
 package com.newrelic.agent.android.harvest;
 
 import com.google.gson.JsonArray;
+import com.google.gson.stream.JsonWriter;
 import com.newrelic.agent.android.harvest.type.HarvestableArray;
 import com.newrelic.agent.android.tracing.ActivityTrace;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -26,6 +30,51 @@ public class ActivityTraces extends HarvestableArray {
         return array;
     }
 
+    /**
+     * Stream all traces to the writer. The output matches {@code asJsonArray().toString()}.
+     */
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginArray();
+        for (ActivityTrace activityTrace : activityTraces) {
+            activityTrace.writeJson(writer);
+        }
+        writer.endArray();
+    }
+
+    @Override
+    public String toJsonString() {
+        final StringWriter stringWriter = new StringWriter();
+
+        try {
+            final JsonWriter writer = new JsonWriter(stringWriter);
+            writer.setLenient(true);
+            writeJson(writer);
+            writer.flush();
+        } catch (IOException e) {
+            // a StringWriter does not throw
+        }
+
+        return stringWriter.toString();
+    }
+
+    /**
+     * Returns the length of {@link #toJsonString()}, without buffering the JSON.
+     */
+    public long getJsonLength() {
+        final CountingWriter countingWriter = new CountingWriter();
+
+        try {
+            final JsonWriter writer = new JsonWriter(countingWriter);
+            writer.setLenient(true);
+            writeJson(writer);
+            writer.flush();
+        } catch (IOException e) {
+            // a CountingWriter does not throw
+        }
+
+        return countingWriter.count;
+    }
+
     public synchronized void add(ActivityTrace activityTrace) {
         activityTraces.add(activityTrace);
     }
@@ -45,4 +94,34 @@ public class ActivityTraces extends HarvestableArray {
     public Collection<ActivityTrace> getActivityTraces() {
         return activityTraces;
     }
+
+    /**
+     * Counts the characters written, and discards them.
+     */
+    private static final class CountingWriter extends Writer {
+        long count = 0;
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -6,6 +6,7 @@
 package com.newrelic.agent.android.harvest;
 
 import com.newrelic.agent.android.AgentConfiguration;
+import com.newrelic.agent.android.FeatureFlag;
 import com.newrelic.agent.android.activity.config.ActivityTraceConfiguration;
 import com.newrelic.agent.android.analytics.AnalyticsAttribute;
 import com.newrelic.agent.android.analytics.AnalyticsControllerImpl;
@@ -53,6 +54,9 @@ public class Harvest implements HarvestConfigurable {
         createHarvester();
         harvester.setAgentConfiguration(agentConfiguration);
         harvester.setHarvestConfiguration(instance.getConfiguration());
+        if (FeatureFlag.featureEnabled(FeatureFlag.AdaptiveHarvestScheduling)) {
+            harvestTimer.setSchedulingPolicy(new HarvestSchedulingPolicy(agentConfiguration.getHarvestHighWaterMark()));
+        }
         flushHarvestableCaches();
     }
 
@@ -89,6 +93,12 @@ public class Harvest implements HarvestConfigurable {
         }
     }
 
+    public static void sendOfflineData() {
+        if (isInitialized()) {
+            instance.getHarvester().sendOfflineData();
+        }
+    }
+
     /**
      * Instances are used without checking throughout the code.
      * Don't allow null instances through the settor
@@ -134,16 +144,21 @@ public class Harvest implements HarvestConfigurable {
     public static void addHttpTransaction(HttpTransaction txn) {
         if (isDisabled()) return;
 
-        HttpTransactions transactions = instance.getHarvestData().getHttpTransactions();
-        instance.getHarvester().expireHttpTransactions();
+        if (FeatureFlag.featureEnabled(FeatureFlag.HttpTransactionAggregation)) {
+            // fold into a per-endpoint rollup, which is not subject to the transaction limit
+            instance.getHarvestData().getHttpTransactionRollups().add(txn);
+            StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_TRANS_AGGREGATED);
+        } else {
+            HttpTransactions transactions = instance.getHarvestData().getHttpTransactions();
+            instance.getHarvester().expireHttpTransactions();
 
-        int transactionLimit = instance.getConfiguration().getReport_max_transaction_count();
-        if (transactions.count() >= transactionLimit) {
-            StatsEngine.get().inc(MetricNames.SUPPORTABILITY_TRANS_DROPPED);
-            log.debug("Maximum number of transactions (" + transactionLimit + ") reached. HTTP Transaction dropped.");
-            return;
+            int transactionLimit = instance.getConfiguration().getReport_max_transaction_count();
+            if (!transactions.add(txn, transactionLimit)) {
+                StatsEngine.get().inc(MetricNames.SUPPORTABILITY_TRANS_DROPPED);
+                log.debug("Maximum number of transactions (" + transactionLimit + ") reached. HTTP Transaction dropped.");
+                return;
+            }
         }
-        transactions.add(txn);
 
         AnalyticsControllerImpl analyticsController = AnalyticsControllerImpl.getInstance();
 
@@ -213,11 +228,14 @@ public class Harvest implements HarvestConfigurable {
             return;
         }
 
-        if (!isInitialized()) {
-            if (!isUnregisteredListener(harvestAware)) {
-                addUnregisteredListener(harvestAware);
+        // checked under the lock, so a listener can't be added after the pending list has been registered
+        synchronized (unregisteredLifecycleListeners) {
+            if (!isInitialized()) {
+                if (!isUnregisteredListener(harvestAware)) {
+                    addUnregisteredListener(harvestAware);
+                }
+                return;
             }
-            return;
         }
         instance.getHarvester().addHarvestListener(harvestAware);
     }
@@ -228,11 +246,13 @@ public class Harvest implements HarvestConfigurable {
             return;
         }
 
-        if (!isInitialized()) {
-            if (isUnregisteredListener(harvestAware)) {
-                removeUnregisteredListener(harvestAware);
+        synchronized (unregisteredLifecycleListeners) {
+            if (!isInitialized()) {
+                if (isUnregisteredListener(harvestAware)) {
+                    removeUnregisteredListener(harvestAware);
+                }
+                return;
             }
-            return;
         }
         instance.getHarvester().removeHarvestListener(harvestAware);
     }
@@ -313,16 +333,23 @@ public class Harvest implements HarvestConfigurable {
     }
 
     private static void registerUnregisteredListeners() {
-        for (HarvestLifecycleAware harvestAware : unregisteredLifecycleListeners) {
+        final Collection<HarvestLifecycleAware> listeners;
+
+        synchronized (unregisteredLifecycleListeners) {
+            listeners = new ArrayList<>(unregisteredLifecycleListeners);
+            unregisteredLifecycleListeners.clear();
+        }
+        for (HarvestLifecycleAware harvestAware : listeners) {
             addHarvestListener(harvestAware);
         }
-        unregisteredLifecycleListeners.clear();
     }
 
     private static boolean isUnregisteredListener(HarvestLifecycleAware harvestAware) {
         if (harvestAware == null)
             return false;
-        return unregisteredLifecycleListeners.contains(harvestAware);
+        synchronized (unregisteredLifecycleListeners) {
+            return unregisteredLifecycleListeners.contains(harvestAware);
+        }
     }
 
     protected HarvestTimer getHarvestTimer() {
@@ -5,20 +5,26 @@
 
 package com.newrelic.agent.android.harvest;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 import com.newrelic.agent.android.Agent;
 import com.newrelic.agent.android.FeatureFlag;
 import com.newrelic.agent.android.analytics.AnalyticsAttribute;
 import com.newrelic.agent.android.analytics.AnalyticsEvent;
+import com.newrelic.agent.android.analytics.SessionAttributeSnapshot;
 import com.newrelic.agent.android.harvest.type.HarvestableArray;
 import com.newrelic.agent.android.logging.AgentLog;
 import com.newrelic.agent.android.logging.AgentLogManager;
 import com.newrelic.agent.android.metric.MetricNames;
 import com.newrelic.agent.android.stats.StatsEngine;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -33,6 +39,7 @@ import java.util.Set;
  *     <li>{@link DeviceInformation} describing device hardware.</li>
  *     <li>The time since last harvest.</li>
  *     <li>{@link HttpTransactions} which contains HTTP request metrics.</li>
+ *     <li>{@link HttpTransactionRollups} which contains aggregated HTTP request metrics, when enabled.</li>
  *     <li>{@link MachineMeasurements} for resource metrics such as CPU and Memory.</li>
  *     <li>{@link ActivityTraces} which contains interactions.</li>
  *     <li>{@link AgentHealth} unused.</li>
@@ -43,21 +50,28 @@ import java.util.Set;
  */
 public class HarvestData extends HarvestableArray implements HarvestConfigurable {
     private static final AgentLog log = AgentLogManager.getAgentLog();
+    private static final Gson gson = new Gson();
+
+    // the position of the activity traces in the harvest data array
+    static final int ACTIVITY_TRACES_INDEX = 6;
 
     private DataToken dataToken;
     private DeviceInformation deviceInformation;
     private double harvestTimeDelta;
     private HttpTransactions httpTransactions;
+    private HttpTransactionRollups httpTransactionRollups;
     private MachineMeasurements machineMeasurements;
     private ActivityTraces activityTraces;
     private AgentHealth agentHealth;
     private Set<AnalyticsAttribute> sessionAttributes;
+    private JsonObject sessionAttributesJson;
     private Collection<AnalyticsEvent> analyticsEvents;
     private boolean analyticsEnabled;
 
     public HarvestData() {
         dataToken = new DataToken();
         httpTransactions = new HttpTransactions();
+        httpTransactionRollups = new HttpTransactionRollups();
         activityTraces = new ActivityTraces();
         machineMeasurements = new MachineMeasurements();
         deviceInformation = Agent.getDeviceInformation();
@@ -74,6 +88,70 @@ public class HarvestData extends HarvestableArray implements HarvestConfigurable
      */
     @Override
     public JsonArray asJsonArray() {
+        return asJsonArray(true);
+    }
+
+    /**
+     * Streams the JSON for a harvest {@code data} post. The activity traces are written straight into
+     * the output, rather than built as a JSON tree first, and are replaced by an empty array if they
+     * reach the maximum size.
+     *
+     * @return The same JSON as {@code asJsonArray().toString()}
+     */
+    @Override
+    public String toJsonString() {
+        final StringWriter stringWriter = new StringWriter();
+        final TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+
+        try {
+            final JsonWriter writer = new JsonWriter(stringWriter);
+            writer.setLenient(true);
+
+            final JsonArray array = asJsonArray(false);
+            writer.beginArray();
+            for (int i = 0; i < array.size(); i++) {
+                if (i == ACTIVITY_TRACES_INDEX) {
+                    writeActivityTraces(writer, stringWriter.getBuffer());
+                } else {
+                    elementAdapter.write(writer, array.get(i));
+                }
+            }
+            writer.endArray();
+            writer.flush();
+        } catch (IOException e) {
+            // a StringWriter does not throw
+        }
+
+        return stringWriter.toString();
+    }
+
+    private void writeActivityTraces(JsonWriter writer, StringBuffer buffer) throws IOException {
+        final long activityTraceJsonLength;
+
+        if (FeatureFlag.featureEnabled(FeatureFlag.DefaultInteractions)) {
+            writer.flush();
+            final int mark = buffer.length();
+            activityTraces.writeJson(writer);
+            writer.flush();
+
+            // less the separator written before the traces
+            activityTraceJsonLength = buffer.length() - mark - 1;
+            if (activityTraceJsonLength < Harvest.getHarvestConfiguration().getActivity_trace_max_size()) {
+                return;
+            }
+            buffer.setLength(mark);
+        } else {
+            activityTraceJsonLength = activityTraces.getJsonLength();
+        }
+
+        StatsEngine.get().sample(MetricNames.SUPPORTABILITY_TRACES_DROPPED, (float) activityTraceJsonLength);
+        writer.jsonValue("[]");
+    }
+
+    /**
+     * @param withActivityTraces If false, the activity traces are left as an empty array, to be streamed by the caller
+     */
+    private JsonArray asJsonArray(boolean withActivityTraces) {
         JsonArray array = new JsonArray();
 
         /**
@@ -94,36 +172,56 @@ public class HarvestData extends HarvestableArray implements HarvestConfigurable
         array.add(dataToken.asJson());
         array.add(deviceInformation.asJson());
         array.add(new JsonPrimitive(harvestTimeDelta));
-        array.add(httpTransactions.asJson());
-        array.add(machineMeasurements.asJson());
-        array.add(new JsonArray()); // must be empty per the harvest data spec
 
-        JsonElement activityTracesElement = activityTraces.asJson();
+        if (httpTransactionRollups.isEmpty()) {
+            array.add(httpTransactions.asJson());
+            array.add(machineMeasurements.asJson());
+        } else {
+            // aggregated transactions are reported as exemplar transactions and rollup metrics
+            JsonArray transactions = httpTransactions.asJsonArray();
+            for (HttpTransaction exemplar : httpTransactionRollups.getExemplars()) {
+                transactions.add(exemplar.asJson());
+            }
+            array.add(transactions);
 
-        // Check the length of the Activity Trace and ensure it's under our limit.
-        String activityTraceJson = activityTracesElement.toString();
-        if (activityTraceJson.length() < Harvest.getHarvestConfiguration().getActivity_trace_max_size() && FeatureFlag.featureEnabled(FeatureFlag.DefaultInteractions)) {
-            array.add(activityTracesElement);
+            JsonArray metrics = machineMeasurements.asJsonArray();
+            metrics.addAll(httpTransactionRollups.asJsonArray());
+            array.add(metrics);
+        }
+
+        array.add(new JsonArray()); // must be empty per the harvest data spec
+
+        if (withActivityTraces) {
+            // Check the length of the Activity Trace and ensure it's under our limit
+            final long activityTraceJsonLength = activityTraces.getJsonLength();
+            if (activityTraceJsonLength < Harvest.getHarvestConfiguration().getActivity_trace_max_size() && FeatureFlag.featureEnabled(FeatureFlag.DefaultInteractions)) {
+                array.add(activityTraces.asJson());
+            } else {
+                StatsEngine.get().sample(MetricNames.SUPPORTABILITY_TRACES_DROPPED, (float) activityTraceJsonLength);
+                array.add(new JsonArray());
+            }
         } else {
-            StatsEngine.get().sample(MetricNames.SUPPORTABILITY_TRACES_DROPPED, (float) activityTraceJson.length());
             array.add(new JsonArray());
         }
 
         array.add(agentHealth.asJson());
 
         if (analyticsEnabled) {
-            JsonObject sessionAttrObj = new JsonObject();
-            for (AnalyticsAttribute attribute : sessionAttributes) {
-                switch (attribute.getAttributeDataType()) {
-                    case STRING:
-                        sessionAttrObj.addProperty(attribute.getName(), attribute.getStringValue());
-                        break;
-                    case DOUBLE:
-                        sessionAttrObj.addProperty(attribute.getName(), attribute.getDoubleValue());
-                        break;
-                    case BOOLEAN:
-                        sessionAttrObj.addProperty(attribute.getName(), attribute.getBooleanValue());
-                        break;
+            JsonObject sessionAttrObj = sessionAttributesJson;
+            if (sessionAttrObj == null) {
+                sessionAttrObj = new JsonObject();
+                for (AnalyticsAttribute attribute : sessionAttributes) {
+                    switch (attribute.getAttributeDataType()) {
+                        case STRING:
+                            sessionAttrObj.addProperty(attribute.getName(), attribute.getStringValue());
+                            break;
+                        case DOUBLE:
+                            sessionAttrObj.addProperty(attribute.getName(), attribute.getDoubleValue());
+                            break;
+                        case BOOLEAN:
+                            sessionAttrObj.addProperty(attribute.getName(), attribute.getBooleanValue());
+                            break;
+                    }
                 }
             }
             array.add(sessionAttrObj);
@@ -149,10 +247,12 @@ public class HarvestData extends HarvestableArray implements HarvestConfigurable
 
     public void reset() {
         httpTransactions.clear();
+        httpTransactionRollups.clear();
         activityTraces.clear();
         machineMeasurements.clear();
         agentHealth.clear();
-        sessionAttributes.clear();
+        sessionAttributes = new HashSet<AnalyticsAttribute>();
+        sessionAttributesJson = null;
         analyticsEvents.clear();
     }
 
@@ -189,6 +289,17 @@ public class HarvestData extends HarvestableArray implements HarvestConfigurable
     public void setSessionAttributes(Set<AnalyticsAttribute> sessionAttributes) {
         log.debug("HarvestData.setSessionAttributes invoked with attribute set " + sessionAttributes);
         this.sessionAttributes = new HashSet<AnalyticsAttribute>(sessionAttributes);
+        this.sessionAttributesJson = null;
+    }
+
+    /**
+     * Use the attributes (and their pre-built JSON) from an immutable session attribute snapshot.
+     * The snapshot is shared by reference and is not copied.
+     */
+    public void setSessionAttributes(SessionAttributeSnapshot snapshot) {
+        log.debug("HarvestData.setSessionAttributes invoked with attribute snapshot " + snapshot.getVersion());
+        this.sessionAttributes = snapshot.getSessionAttributes();
+        this.sessionAttributesJson = snapshot.asJsonObject();
     }
 
     public Collection<AnalyticsEvent> getAnalyticsEvents() {
@@ -207,6 +318,10 @@ public class HarvestData extends HarvestableArray implements HarvestConfigurable
         return httpTransactions;
     }
 
+    public HttpTransactionRollups getHttpTransactionRollups() {
+        return httpTransactionRollups;
+    }
+
     public MachineMeasurements getMetrics() {
         return getMachineMeasurements();
     }
@@ -242,6 +357,7 @@ public class HarvestData extends HarvestableArray implements HarvestConfigurable
                 ", deviceInformation=" + deviceInformation +
                 ", harvestTimeDelta=" + harvestTimeDelta +
                 ", httpTransactions=" + httpTransactions +
+                ", httpTransactionRollups=" + httpTransactionRollups +
                 ", machineMeasurements=" + machineMeasurements +
                 ", activityTraces=" + activityTraces +
                 ", sessionAttributes=" + sessionAttributes +
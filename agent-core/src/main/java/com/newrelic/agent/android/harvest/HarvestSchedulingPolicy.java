@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.harvest;
+
+import com.newrelic.agent.android.Agent;
+import com.newrelic.agent.android.analytics.AnalyticsControllerImpl;
+import com.newrelic.agent.android.analytics.EventManager;
+import com.newrelic.agent.android.api.common.WanType;
+import com.newrelic.agent.android.background.ApplicationStateMonitor;
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.stats.StatsEngine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the next harvest should run, from the amount of buffered data, the network and
+ * the application state, rather than at a fixed period.
+ * <p>
+ * A harvest runs early when a buffer crosses the high-water mark, or when the app moves from the
+ * foreground to the background, but never sooner than the minimum interval after the last one.
+ * Otherwise the harvest period is stretched when little data is pending, or the network is
+ * metered or offline (when early harvests are also suppressed). Each harvest is recorded as a
+ * supportability metric named for the reason it was chosen, with the time since the last harvest.
+ */
+public class HarvestSchedulingPolicy {
+    public static final float DEFAULT_HIGH_WATER_MARK = 0.8f;
+    public static final float DEFAULT_LOW_WATER_MARK = 0.1f;
+    public static final long DEFAULT_MIN_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    public static final long DEFAULT_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    static final int METERED_STRETCH = 3;
+    static final int IDLE_STRETCH = 2;
+    static final int OFFLINE_STRETCH = 5;
+    static final long PERIOD_LEEWAY = TimeUnit.SECONDS.toMillis(1);
+
+    public enum Network {
+        UNMETERED,
+        METERED,
+        OFFLINE
+    }
+
+    public enum Reason {
+        Period,
+        HighWaterMark,
+        Backgrounded,
+        LowData,
+        Metered,
+        Offline
+    }
+
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    /**
+     * Reports how full the harvest buffers are, as the fraction [0, 1] of the fullest buffer.
+     */
+    public interface BufferSource {
+        float getFillFraction();
+    }
+
+    public interface NetworkSource {
+        Network getNetwork();
+    }
+
+    public interface AppStateSource {
+        boolean isInBackground();
+    }
+
+    private final Clock clock;
+    private final BufferSource bufferSource;
+    private final NetworkSource networkSource;
+    private final AppStateSource appStateSource;
+    private final float highWaterMark;
+    private final float lowWaterMark;
+    private final long minInterval;
+    private final long checkInterval;
+
+    private long lastHarvestTime = 0;
+    private boolean inBackground = false;
+    private long interval;
+    private Reason reason = Reason.Period;
+
+    public HarvestSchedulingPolicy(Clock clock, BufferSource bufferSource, NetworkSource networkSource, AppStateSource appStateSource,
+                                   float highWaterMark, float lowWaterMark, long minInterval, long checkInterval) {
+        if (highWaterMark <= 0 || highWaterMark > 1 || lowWaterMark < 0 || lowWaterMark >= highWaterMark) {
+            throw new IllegalArgumentException("Invalid harvest buffer water marks");
+        }
+        if (minInterval < 0 || checkInterval <= 0) {
+            throw new IllegalArgumentException("Invalid harvest scheduling interval");
+        }
+
+        this.clock = clock;
+        this.bufferSource = bufferSource;
+        this.networkSource = networkSource;
+        this.appStateSource = appStateSource;
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+        this.minInterval = minInterval;
+        this.checkInterval = checkInterval;
+        this.inBackground = appStateSource.isInBackground();
+        this.interval = HarvestTimer.DEFAULT_HARVEST_PERIOD;    // until the first check sets it from the period
+    }
+
+    public HarvestSchedulingPolicy(float highWaterMark) {
+        this(System::currentTimeMillis, HarvestSchedulingPolicy::getAgentBufferFill, HarvestSchedulingPolicy::getAgentNetwork,
+                ApplicationStateMonitor::isAppInBackground, highWaterMark, Math.min(DEFAULT_LOW_WATER_MARK, highWaterMark / 2),
+                DEFAULT_MIN_INTERVAL, DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * Decide whether a harvest should run now. A harvest that runs should be reported through
+     * {@link #harvested()}.
+     *
+     * @param period The configured harvest period in ms
+     * @return The reason for the harvest, or null if the harvest should wait
+     */
+    public synchronized Reason shouldHarvest(long period) {
+        final long now = clock.currentTimeMillis();
+        final long elapsed = (lastHarvestTime == 0) ? Long.MAX_VALUE : now - lastHarvestTime;
+        final boolean wasInBackground = inBackground;
+        final Network network = networkSource.getNetwork();
+        final float fill = bufferSource.getFillFraction();
+
+        inBackground = appStateSource.isInBackground();
+        update(period, network, fill);
+
+        if (elapsed == Long.MAX_VALUE) {
+            return Reason.Period;
+        }
+
+        if (elapsed >= minInterval && network != Network.OFFLINE) {
+            if (inBackground && !wasInBackground) {
+                return record(Reason.Backgrounded, elapsed);
+            }
+            if (fill >= highWaterMark) {
+                return record(Reason.HighWaterMark, elapsed);
+            }
+        }
+
+        if (elapsed + PERIOD_LEEWAY >= interval) {
+            return record(reason, elapsed);
+        }
+
+        return null;
+    }
+
+    /**
+     * Note that a harvest has run, whether or not this policy chose it.
+     */
+    public synchronized void harvested() {
+        lastHarvestTime = clock.currentTimeMillis();
+    }
+
+    /**
+     * @return The delay in ms until the harvest should be reconsidered
+     */
+    public synchronized long getNextCheckDelay() {
+        final long remaining = (lastHarvestTime == 0) ? 0 : interval - (clock.currentTimeMillis() - lastHarvestTime);
+
+        return Math.max(1, Math.min(remaining, checkInterval));
+    }
+
+    /**
+     * @return The current harvest interval in ms, which may be stretched from the period
+     */
+    public synchronized long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return The reason for the current harvest interval
+     */
+    public synchronized Reason getReason() {
+        return reason;
+    }
+
+    private void update(long period, Network network, float fill) {
+        // stretches don't compound: the longest one applies
+        if (network == Network.OFFLINE) {
+            interval = period * OFFLINE_STRETCH;
+            reason = Reason.Offline;
+        } else if (network == Network.METERED) {
+            interval = period * METERED_STRETCH;
+            reason = Reason.Metered;
+        } else if (fill < lowWaterMark) {
+            interval = period * IDLE_STRETCH;
+            reason = Reason.LowData;
+        } else {
+            interval = period;
+            reason = Reason.Period;
+        }
+    }
+
+    private Reason record(Reason reason, long elapsed) {
+        StatsEngine.SUPPORTABILITY.sample(MetricNames.SUPPORTABILITY_HARVEST_SCHEDULE + reason.name(), (float) elapsed);
+        return reason;
+    }
+
+    static float getAgentBufferFill() {
+        float fill = 0f;
+
+        final EventManager eventManager = AnalyticsControllerImpl.getInstance().getEventManager();
+        if (eventManager != null && eventManager.getMaxEventPoolSize() > 0) {
+            fill = (float) eventManager.size() / eventManager.getMaxEventPoolSize();
+        }
+
+        final Harvest harvest = Harvest.getInstance();
+        if (harvest != null && harvest.getHarvestData() != null) {
+            final int maxTransactions = Harvest.getHarvestConfiguration().getReport_max_transaction_count();
+            if (maxTransactions > 0) {
+                fill = Math.max(fill, (float) harvest.getHarvestData().getHttpTransactions().count() / maxTransactions);
+            }
+        }
+
+        return Math.min(fill, 1f);
+    }
+
+    static Network getAgentNetwork() {
+        final String wanType = Agent.getActiveNetworkWanType();
+
+        if (WanType.NONE.equals(wanType)) {
+            return Network.OFFLINE;
+        } else if (wanType == null || WanType.WIFI.equals(wanType) || WanType.UNKNOWN.equals(wanType)) {
+            return Network.UNMETERED;
+        }
+
+        return Network.METERED;
+    }
+}
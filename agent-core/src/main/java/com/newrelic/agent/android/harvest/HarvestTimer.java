@@ -31,6 +31,7 @@ public class HarvestTimer implements Runnable {
     protected long lastTickTime;
     private long startTimeMs;
     private final Lock lock = new ReentrantLock();
+    private HarvestSchedulingPolicy schedulingPolicy = null;
 
     public HarvestTimer(Harvester harvester) {
         this.harvester = harvester;
@@ -45,13 +46,59 @@ public class HarvestTimer implements Runnable {
             log.error("HarvestTimer: Exception in timer tick: " + e.getMessage());
             AgentHealth.noticeException(e);
         } finally {
+            scheduleNextRun();
             lock.unlock();
         }
     }
 
+    /**
+     * Schedule the next run, which replaces any run already scheduled. The delay is the
+     * period, unless a scheduling policy chooses to check sooner.
+     */
+    private void scheduleNextRun() {
+        try {
+            lock.lock();
+            if (tickFuture != null && !scheduler.isShutdown()) {
+                tickFuture.cancel(false);
+                tickFuture = scheduler.schedule(this, getNextRunDelay(), TimeUnit.MILLISECONDS);
+            }
+        } catch (Exception e) {
+            log.error("HarvestTimer: Unable to schedule the next tick: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long getNextRunDelay() {
+        if (isAdaptive()) {
+            return Math.min(schedulingPolicy.getNextCheckDelay(), period);
+        }
+        return period;
+    }
+
+    /**
+     * The scheduling policy only applies once the harvester has connected, so connecting
+     * isn't delayed.
+     */
+    private boolean isAdaptive() {
+        return schedulingPolicy != null && harvester.getCurrentState() == Harvester.State.CONNECTED;
+    }
+
     private void tickIfReady() {
         long lastTickDelta = timeSinceLastTick();
 
+        if (isAdaptive() && lastTickDelta != NEVER_TICKED) {
+            final HarvestSchedulingPolicy.Reason reason = schedulingPolicy.shouldHarvest(period);
+            if (reason == null) {
+                log.debug("HarvestTimer: Harvest deferred (" + lastTickDelta + " delta, " + schedulingPolicy.getReason()
+                        + " interval " + schedulingPolicy.getInterval() + "ms). Skipping.");
+                return;
+            }
+            log.debug("HarvestTimer: Harvest scheduled for " + reason + " (" + lastTickDelta + " delta)");
+            tickSafely();
+            return;
+        }
+
         // We want to run if the last tick was 5999ms ago (with a period of 6000ms) so we add a small leeway to the
         // delta before checking it against period.
         if (lastTickDelta + HARVEST_PERIOD_LEEWAY < period && lastTickDelta != NEVER_TICKED) {
@@ -60,7 +107,10 @@ public class HarvestTimer implements Runnable {
         }
 
         log.debug("HarvestTimer: time since last tick: " + lastTickDelta);
+        tickSafely();
+    }
 
+    private void tickSafely() {
         // Perform the actual tick logic
         try {
             tick();
@@ -91,6 +141,9 @@ public class HarvestTimer implements Runnable {
                 }
             }
             lastTickTime = now();
+            if (schedulingPolicy != null) {
+                schedulingPolicy.harvested();
+            }
         } catch (Exception e) {
             log.error("HarvestTimer: Exception in harvest execute: " + e.getMessage());
             AgentHealth.noticeException(e);
@@ -125,8 +178,14 @@ public class HarvestTimer implements Runnable {
         log.debug("HarvestTimer: Starting with a period of " + period + "ms");
         startTimeMs = now();
 
-        // Harvest timer MUST always start immediately, per the spec
-        tickFuture = scheduler.scheduleWithFixedDelay(this, 0, period, TimeUnit.MILLISECONDS);
+        // Harvest timer MUST always start immediately, per the spec. Each run schedules the next, so
+        // the future is assigned under the lock before the first run can look for it.
+        try {
+            lock.lock();
+            tickFuture = scheduler.schedule(this, 0, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
 
         // Advance the harvester now.
         harvester.start();
@@ -178,6 +237,18 @@ public class HarvestTimer implements Runnable {
         this.period = period;
     }
 
+    /**
+     * Schedule harvests with the given policy once the harvester has connected, or at the
+     * fixed period if null.
+     */
+    public void setSchedulingPolicy(HarvestSchedulingPolicy schedulingPolicy) {
+        this.schedulingPolicy = schedulingPolicy;
+    }
+
+    public HarvestSchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
     public long timeSinceLastTick() {
         if (lastTickTime == 0) {
             return NEVER_TICKED;
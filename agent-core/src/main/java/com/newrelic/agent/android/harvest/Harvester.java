@@ -98,6 +98,14 @@ public class Harvester implements HarvestConfigurable {
             return;
         }
 
+        // checked here rather than at startup, so app launch doesn't wait on the saved state
+        if (Agent.isDisabled()) {
+            log.warn("This version of the agent has been disabled.");
+            transition(State.DISABLED);
+            execute();
+            return;
+        }
+
         if (Agent.getImpl().updateSavedConnectInformation()) {
             configureHarvester(HarvestConfiguration.getDefaultHarvestConfiguration()); // clear stored harvester configuration
             harvestData.getDataToken().clear(); // invalidate dataToken to force reconnect
@@ -233,6 +241,7 @@ public class Harvester implements HarvestConfigurable {
 
         log.info("Harvester: connected");
         log.info("Harvester: Sending [" + harvestData.getHttpTransactions().count() + "] HTTP transactions.");
+        log.info("Harvester: Sending [" + harvestData.getHttpTransactionRollups().count() + "] HTTP transaction rollups.");
         log.info("Harvester: Sending [" + harvestData.getActivityTraces().count() + "] activity traces.");
         log.info("Harvester: Sending [" + harvestData.getSessionAttributes().size() + "] session attributes.");
         log.info("Harvester: Sending [" + harvestData.getAnalyticsEvents().size() + "] analytics events.");
@@ -249,9 +258,9 @@ public class Harvester implements HarvestConfigurable {
 
         //Background reporting
         if (FeatureFlag.featureEnabled(FeatureFlag.BackgroundReporting) && ApplicationStateMonitor.isAppInBackground()) {
-            StatsEngine.get().sampleTimeMs(MetricNames.SUPPORTABILITY_COLLECTOR + "Harvest/Background/", response.getResponseTime());
+            StatsEngine.get().sampleTimeMs(MetricNames.SUPPORTABILITY_COLLECTOR + "Harvest/Background/", response.getResponseTime(), true);
         } else {
-            StatsEngine.get().sampleTimeMs(MetricNames.SUPPORTABILITY_COLLECTOR + "Harvest/", response.getResponseTime());
+            StatsEngine.get().sampleTimeMs(MetricNames.SUPPORTABILITY_COLLECTOR + "Harvest/", response.getResponseTime(), true);
         }
 
         log.debug("Harvest data response: " + response.getResponseCode());
@@ -320,31 +329,37 @@ public class Harvester implements HarvestConfigurable {
             }
 
             return;
-        } else {
-            //Offline Storage
-            try {
-                if (FeatureFlag.featureEnabled(FeatureFlag.OfflineStorage)) {
-                    Map<String, String> harvestDataObjects = Agent.getAllOfflineData();
-                    for (Map.Entry<String, String> entry : harvestDataObjects.entrySet()) {
-                        HarvestResponse eachResponse = harvestConnection.sendData(entry.getValue());
-                        if (eachResponse.isOK()) {
-                            File file = new File(entry.getKey());
-                            file.delete();
-                        }
-                        StatsEngine.get().inc(MetricNames.SUPPORTABILITY_COLLECTOR + "Harvest/OfflineStorage" + eachResponse.getResponseCode());
-                    }
-                }
-            } catch (Exception ex) {
-                log.error("OfflineStorage: " + ex);
-            }
         }
 
-        // Notify all listeners that the harvester finished
+        // Notify all listeners that the harvester finished. Offline payloads are
+        // replayed by the agent, through sendOfflineData(), once startup has completed.
         fireOnHarvestComplete();
 
         harvestData.reset();
     }
 
+    /**
+     * Send the harvest payloads persisted while offline, deleting each once it has been accepted.
+     */
+    public void sendOfflineData() {
+        //Offline Storage
+        try {
+            if (FeatureFlag.featureEnabled(FeatureFlag.OfflineStorage)) {
+                Map<String, String> harvestDataObjects = Agent.getAllOfflineData();
+                for (Map.Entry<String, String> entry : harvestDataObjects.entrySet()) {
+                    HarvestResponse eachResponse = harvestConnection.sendData(entry.getValue());
+                    if (eachResponse.isOK()) {
+                        File file = new File(entry.getKey());
+                        file.delete();
+                    }
+                    StatsEngine.get().inc(MetricNames.SUPPORTABILITY_COLLECTOR + "Harvest/OfflineStorage" + eachResponse.getResponseCode());
+                }
+            }
+        } catch (Exception ex) {
+            log.error("OfflineStorage: " + ex);
+        }
+    }
+
     /**
      * This method is executed when Harvester is in the {@link State#DISABLED} state.
      * <p/>
@@ -555,29 +570,12 @@ public class Harvester implements HarvestConfigurable {
 
     public void expireHttpTransactions() {
         HttpTransactions transactions = harvestData.getHttpTransactions();
+        long maxAge = harvestConfiguration.getReportMaxTransactionAgeMilliseconds();
 
-        // The synchronized instance is not actually local.
-        //noinspection SynchronizationOnLocalVariableOrMethodParameter
-        synchronized (transactions) {
-            Collection<HttpTransaction> expiredTransactions = new ArrayList<HttpTransaction>();
-            long now = System.currentTimeMillis();
-            long maxAge = harvestConfiguration.getReportMaxTransactionAgeMilliseconds();
-
-            // Find all HttpTransactions which should be expired.
-            for (HttpTransaction txn : transactions.getHttpTransactions()) {
-                if (txn.getTimestamp() < now - maxAge) {
-                    log.audit("HttpTransaction too old, purging: " + txn);
-                    expiredTransactions.add(txn);
-                }
-            }
-
-            if (!expiredTransactions.isEmpty()) {
-                log.debug("Purging [" + expiredTransactions.size() + "] expired HttpTransactions from HarvestData");
-                // Remove all of the expired HttpTransactions.
-                for (HttpTransaction txn : expiredTransactions) {
-                    transactions.remove(txn);
-                }
-            }
+        // transactions are time-ordered, so expired transactions are removed from the head
+        int expired = transactions.expire(System.currentTimeMillis() - maxAge);
+        if (expired > 0) {
+            log.debug("Purging [" + expired + "] expired HttpTransactions from HarvestData");
         }
     }
 
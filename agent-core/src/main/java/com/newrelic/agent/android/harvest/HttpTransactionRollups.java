@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.harvest;
+
+import com.google.gson.JsonArray;
+import com.newrelic.agent.android.harvest.type.HarvestableArray;
+import com.newrelic.agent.android.metric.Metric;
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.metric.QuantileSketch;
+import com.newrelic.agent.android.stats.StatsEngine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Aggregates {@link HttpTransaction HttpTransactions} into per-endpoint rollups, keyed by
+ * normalized URL, HTTP method, status class, carrier and WAN type.
+ * <p>
+ * Each rollup records the request count, byte totals, response time statistics and a
+ * {@link QuantileSketch} of response times, and retains a small reservoir of exemplar transactions.
+ * Harvest payload size therefore grows with the number of distinct endpoints rather than the
+ * number of requests. Rollups are reported as {@code Mobile/Network/Rollup/} metrics, and
+ * exemplars are reported as regular HTTP transactions.
+ */
+public class HttpTransactionRollups extends HarvestableArray {
+    static final int DEFAULT_MAX_ROLLUPS = 250;
+    static final int DEFAULT_EXEMPLARS_PER_ROLLUP = 3;
+
+    static final String OTHER = "Other";
+    static final String FAILED = "Failed";
+
+    private final Map<String, Rollup> rollups = new LinkedHashMap<String, Rollup>();
+    private final Random random = new Random();
+    private int maxRollups = DEFAULT_MAX_ROLLUPS;
+    private int exemplarsPerRollup = DEFAULT_EXEMPLARS_PER_ROLLUP;
+
+    /**
+     * Fold a transaction into the rollup for its endpoint. Once the rollup limit has been
+     * reached, transactions to new endpoints are folded into a single overflow rollup.
+     */
+    public synchronized void add(HttpTransaction transaction) {
+        final String url = normalizeUrl(transaction.getUrl());
+        final String statusClass = statusClassOf(transaction);
+        String name = MetricNames.METRIC_NETWORK_ROLLUP + url + "/" + transaction.getHttpMethod() + "/" + statusClass
+                + "/" + transaction.getCarrier() + "/" + transaction.getWanType();
+
+        Rollup rollup = rollups.get(name);
+        if (rollup == null) {
+            if (rollups.size() >= maxRollups) {
+                StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_TRANS_ROLLUP_OVERFLOW);
+                name = MetricNames.METRIC_NETWORK_ROLLUP + OTHER;
+                rollup = rollups.get(name);
+            }
+            if (rollup == null) {
+                rollup = new Rollup(name);
+                rollups.put(name, rollup);
+            }
+        }
+
+        rollup.add(transaction);
+    }
+
+    public synchronized void setMaxRollups(int maxRollups) {
+        this.maxRollups = maxRollups;
+    }
+
+    public synchronized void setExemplarsPerRollup(int exemplarsPerRollup) {
+        this.exemplarsPerRollup = exemplarsPerRollup;
+    }
+
+    /**
+     * Returns the exemplar transactions retained by all rollups.
+     */
+    public synchronized Collection<HttpTransaction> getExemplars() {
+        final List<HttpTransaction> exemplars = new ArrayList<HttpTransaction>();
+        for (Rollup rollup : rollups.values()) {
+            exemplars.addAll(rollup.exemplars);
+        }
+        return exemplars;
+    }
+
+    /**
+     * Returns the rollup metrics, aggregated from all folded transactions.
+     */
+    public synchronized Collection<Metric> getMetrics() {
+        final List<Metric> metrics = new ArrayList<Metric>();
+        for (Rollup rollup : rollups.values()) {
+            rollup.addMetrics(metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the number of transactions folded into all rollups.
+     */
+    public synchronized long getTransactionCount() {
+        long count = 0;
+        for (Rollup rollup : rollups.values()) {
+            count += rollup.responseTime.getCount();
+        }
+        return count;
+    }
+
+    public synchronized int count() {
+        return rollups.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return rollups.isEmpty();
+    }
+
+    public synchronized void clear() {
+        rollups.clear();
+    }
+
+    /**
+     * Returns the rollup metrics in the same format as {@link MachineMeasurements}.
+     */
+    @Override
+    public JsonArray asJsonArray() {
+        final MachineMeasurements measurements = new MachineMeasurements();
+        for (Metric metric : getMetrics()) {
+            measurements.addMetric(metric);
+        }
+        return measurements.asJsonArray();
+    }
+
+    /**
+     * Reduce a URL to a low-cardinality endpoint: the scheme, query and fragment are removed,
+     * and path segments that look like identifiers (numbers, UUIDs and long hex strings) are
+     * replaced with {@code *}.
+     */
+    static String normalizeUrl(String url) {
+        if (url == null || url.isEmpty()) {
+            return OTHER;
+        }
+
+        int start = url.indexOf("://");
+        start = (start < 0) ? 0 : start + 3;
+
+        int end = url.length();
+        for (int i = start; i < end; i++) {
+            final char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+
+        final StringBuilder sb = new StringBuilder(end - start);
+        int segmentStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || url.charAt(i) == '/') {
+                if (segmentStart > start && isIdentifier(url, segmentStart, i)) {
+                    sb.append('*');
+                } else {
+                    sb.append(url, segmentStart, i);
+                }
+                if (i < end) {
+                    sb.append('/');
+                }
+                segmentStart = i + 1;
+            }
+        }
+
+        // drop a trailing separator so that "/path" and "/path/" share a rollup
+        if (sb.length() > 1 && sb.charAt(sb.length() - 1) == '/') {
+            sb.setLength(sb.length() - 1);
+        }
+
+        return sb.toString();
+    }
+
+    static String statusClassOf(HttpTransaction transaction) {
+        final int statusCode = transaction.getStatusCode();
+        if (transaction.getErrorCode() != 0 || statusCode < 100 || statusCode > 599) {
+            return FAILED;
+        }
+        return (statusCode / 100) + "xx";
+    }
+
+    private static boolean isIdentifier(String url, int start, int end) {
+        final int length = end - start;
+        if (length == 0) {
+            return false;
+        }
+
+        boolean digits = true;
+        boolean hex = true;
+        int dashes = 0;
+
+        for (int i = start; i < end; i++) {
+            final char c = url.charAt(i);
+            if (c == '-') {
+                dashes++;
+                digits = false;
+            } else if (c < '0' || c > '9') {
+                digits = false;
+                if (!((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                    hex = false;
+                }
+            }
+        }
+
+        // 12345, 0123456789abcdef, 123e4567-e89b-12d3-a456-426614174000
+        return digits || (hex && dashes == 0 && length >= 16) || (hex && dashes == 4 && length == 36);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "HttpTransactionRollups{" +
+                "rollups=" + rollups.size() +
+                ", transactions=" + getTransactionCount() +
+                '}';
+    }
+
+    class Rollup {
+        final String name;
+        final Metric responseTime;
+        final List<HttpTransaction> exemplars = new ArrayList<HttpTransaction>();
+        long bytesSent;
+        long bytesReceived;
+
+        Rollup(String name) {
+            this.name = name;
+            this.responseTime = new Metric(name + "/ResponseTime");
+            this.responseTime.setSketch(new QuantileSketch());
+        }
+
+        void add(HttpTransaction transaction) {
+            responseTime.sample(transaction.getTotalTime());
+            bytesSent += transaction.getBytesSent();
+            bytesReceived += transaction.getBytesReceived();
+
+            // reservoir sampling: every transaction has an equal chance of being an exemplar
+            final long seen = responseTime.getCount();
+            if (exemplars.size() < exemplarsPerRollup) {
+                exemplars.add(transaction);
+            } else if (exemplarsPerRollup > 0) {
+                final long slot = (long) (random.nextDouble() * seen);
+                if (slot < exemplarsPerRollup) {
+                    exemplars.set((int) slot, transaction);
+                }
+            }
+        }
+
+        void addMetrics(Collection<Metric> metrics) {
+            metrics.add(new Metric(responseTime));
+
+            // byte totals use the same layout as data usage metrics
+            final Metric bytes = new Metric(name + "/Bytes");
+            bytes.setCount(responseTime.getCount());
+            bytes.setTotal((double) bytesSent);
+            bytes.setExclusive((double) bytesReceived);
+            bytes.setMinFieldValue(0.0);
+            bytes.setMaxFieldValue(0.0);
+            bytes.setSumOfSquares(0.0);
+            metrics.add(bytes);
+        }
+    }
+}
@@ -10,28 +10,74 @@ import com.newrelic.agent.android.harvest.type.HarvestableArray;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.ListIterator;
 
 /**
  * A managed collection of {@link HttpTransaction} objects.
+ * <p>
+ * Transactions are kept in timestamp order. Since transactions are recorded as they complete,
+ * new entries almost always belong at the tail, and expired entries are always at the head, so
+ * adding, expiring and enforcing the transaction count limit are constant-time operations.
  */
 public class HttpTransactions extends HarvestableArray {
-    private final Collection<HttpTransaction> httpTransactions = new CopyOnWriteArrayList<HttpTransaction>();
+    private final LinkedList<HttpTransaction> httpTransactions = new LinkedList<HttpTransaction>();
 
     public synchronized void add(HttpTransaction httpTransaction) {
-        httpTransactions.add(httpTransaction);
+        final long timestamp = timestampOf(httpTransaction);
+        final ListIterator<HttpTransaction> iterator = httpTransactions.listIterator(httpTransactions.size());
+
+        // walk back from the tail to the insertion point, usually zero steps
+        while (iterator.hasPrevious()) {
+            if (timestampOf(iterator.previous()) <= timestamp) {
+                iterator.next();
+                break;
+            }
+        }
+        iterator.add(httpTransaction);
+    }
+
+    /**
+     * Add a transaction if the collection holds fewer than {@code limit} transactions.
+     *
+     * @return true if the transaction was added, false if the limit has been reached
+     */
+    public synchronized boolean add(HttpTransaction httpTransaction, int limit) {
+        if (httpTransactions.size() >= limit) {
+            return false;
+        }
+        add(httpTransaction);
+        return true;
     }
 
     public synchronized void remove(HttpTransaction transaction) {
         httpTransactions.remove(transaction);
     }
 
-    public void clear() {
+    /**
+     * Remove all transactions with a timestamp older than the passed cutoff.
+     *
+     * @param cutoff Oldest timestamp (in milliseconds) to retain
+     * @return the number of transactions removed
+     */
+    public synchronized int expire(long cutoff) {
+        int expired = 0;
+
+        while (!httpTransactions.isEmpty() && timestampOf(httpTransactions.peekFirst()) < cutoff) {
+            httpTransactions.removeFirst();
+            expired++;
+        }
+
+        return expired;
+    }
+
+    public synchronized void clear() {
         httpTransactions.clear();
     }
 
     @Override
-    public JsonArray asJsonArray() {
+    public synchronized JsonArray asJsonArray() {
         JsonArray array = new JsonArray();
         for (HttpTransaction transaction : httpTransactions) {
             array.add(transaction.asJson());
@@ -39,16 +85,24 @@ public class HttpTransactions extends HarvestableArray {
         return array;
     }
 
-    public Collection<HttpTransaction> getHttpTransactions() {
-        return httpTransactions;
+    /**
+     * Returns a snapshot of the current transactions, in timestamp order.
+     */
+    public synchronized Collection<HttpTransaction> getHttpTransactions() {
+        return Collections.unmodifiableList(new ArrayList<HttpTransaction>(httpTransactions));
     }
 
-    public int count() {
+    public synchronized int count() {
         return httpTransactions.size();
     }
 
+    private static long timestampOf(HttpTransaction transaction) {
+        final Long timestamp = transaction.getTimestamp();
+        return timestamp == null ? 0 : timestamp;
+    }
+
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return "HttpTransactions{" +
                 "httpTransactions=" + httpTransactions +
                 '}';
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.instrumentation.sqlite;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reduces SQL statements to a canonical shape, so that statements differing only in their
+ * literal values are aggregated together.
+ * <p>
+ * String, numeric and blob literals and bind parameters are replaced with {@code ?}, IN lists
+ * are collapsed to a single {@code ?}, and repeated VALUES rows are collapsed to the first row.
+ * Comments are removed, and tokens are separated by single spaces. Identifiers and keywords are
+ * retained as written. Fingerprints are cached by statement text, as most statements come from a
+ * small number of call sites.
+ */
+public class SQLiteFingerprinter {
+    static final int DEFAULT_CACHE_SIZE = 256;
+    static final int MAX_CACHED_SQL_LENGTH = 2048;
+    static final int MAX_FINGERPRINT_LENGTH = 255;
+
+    static final String PLACEHOLDER = "?";
+
+    private final Map<String, String> cache;
+
+    public SQLiteFingerprinter() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public SQLiteFingerprinter(final int cacheSize) {
+        this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the fingerprint of a statement, from the cache if it has been seen recently.
+     */
+    public String fingerprint(String sql) {
+        if (sql == null) {
+            return "";
+        }
+
+        final boolean cacheable = sql.length() <= MAX_CACHED_SQL_LENGTH;
+        if (cacheable) {
+            synchronized (cache) {
+                final String fingerprint = cache.get(sql);
+                if (fingerprint != null) {
+                    return fingerprint;
+                }
+            }
+        }
+
+        final String fingerprint = normalize(sql);
+        if (cacheable) {
+            synchronized (cache) {
+                cache.put(sql, fingerprint);
+            }
+        }
+
+        return fingerprint;
+    }
+
+    int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Returns the canonical shape of a statement, truncated to {@link #MAX_FINGERPRINT_LENGTH}.
+     */
+    static String normalize(String sql) {
+        final List<String> tokens = collapseLists(tokenize(sql));
+        final StringBuilder fingerprint = new StringBuilder(Math.min(sql.length(), MAX_FINGERPRINT_LENGTH));
+        String previous = null;
+
+        for (String token : tokens) {
+            if (previous != null && !previous.equals("(") && !previous.equals(".")
+                    && !token.equals(",") && !token.equals(")") && !token.equals(".") && !token.equals(";")) {
+                fingerprint.append(' ');
+            }
+            fingerprint.append(token);
+            previous = token;
+
+            if (fingerprint.length() >= MAX_FINGERPRINT_LENGTH) {
+                fingerprint.setLength(MAX_FINGERPRINT_LENGTH);
+                break;
+            }
+        }
+
+        return fingerprint.toString();
+    }
+
+    /**
+     * Split a statement into tokens, replacing literals and bind parameters with placeholders.
+     */
+    static List<String> tokenize(String sql) {
+        final List<String> tokens = new ArrayList<String>();
+        final int length = sql.length();
+        int i = 0;
+
+        while (i < length) {
+            final char c = sql.charAt(i);
+            final char next = (i + 1 < length) ? sql.charAt(i + 1) : 0;
+
+            if (Character.isWhitespace(c)) {
+                i++;
+
+            } else if (c == '-' && next == '-') {
+                while (i < length && sql.charAt(i) != '\n') {
+                    i++;
+                }
+
+            } else if (c == '/' && next == '*') {
+                final int end = sql.indexOf("*/", i + 2);
+                i = (end < 0) ? length : end + 2;
+
+            } else if (c == '\'') {
+                i = skipQuoted(sql, i, '\'');
+                tokens.add(PLACEHOLDER);
+
+            } else if ((c == 'x' || c == 'X') && next == '\'') {
+                i = skipQuoted(sql, i + 1, '\'');
+                tokens.add(PLACEHOLDER);
+
+            } else if (c == '"' || c == '`' || c == '[') {
+                final int end = skipQuoted(sql, i, c == '[' ? ']' : c);
+                tokens.add(sql.substring(i, end));
+                i = end;
+
+            } else if (isDigit(c) || (c == '.' && isDigit(next))
+                    || ((c == '-' || c == '+') && (isDigit(next) || next == '.') && isUnaryPosition(tokens))) {
+                i = skipNumber(sql, i + 1);
+                tokens.add(PLACEHOLDER);
+
+            } else if (c == '?') {
+                i++;
+                while (i < length && isDigit(sql.charAt(i))) {
+                    i++;
+                }
+                tokens.add(PLACEHOLDER);
+
+            } else if ((c == ':' || c == '@' || c == '$') && isIdentifierPart(next)) {
+                i = skipIdentifier(sql, i + 1);
+                tokens.add(PLACEHOLDER);
+
+            } else if (isIdentifierPart(c)) {
+                final int end = skipIdentifier(sql, i);
+                tokens.add(sql.substring(i, end));
+                i = end;
+
+            } else if (isOperatorPair(c, next)) {
+                tokens.add(sql.substring(i, i + 2));
+                i += 2;
+
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Collapse {@code IN (?, ?, ...)} to {@code IN (?)}, and {@code VALUES (..), (..)} to the first row
+     * when every row has the same shape.
+     */
+    static List<String> collapseLists(List<String> tokens) {
+        final List<String> collapsed = new ArrayList<String>(tokens.size());
+        int i = 0;
+
+        while (i < tokens.size()) {
+            final String token = tokens.get(i);
+            collapsed.add(token);
+            i++;
+
+            if (token.equalsIgnoreCase("IN") && i < tokens.size() && tokens.get(i).equals("(")) {
+                final int end = placeholderListEnd(tokens, i);
+                if (end > 0) {
+                    collapsed.add("(");
+                    collapsed.add(PLACEHOLDER);
+                    collapsed.add(")");
+                    i = end + 1;
+                }
+
+            } else if (token.equalsIgnoreCase("VALUES") && i < tokens.size() && tokens.get(i).equals("(")) {
+                final int rowEnd = groupEnd(tokens, i);
+                if (rowEnd > 0) {
+                    final List<String> row = tokens.subList(i, rowEnd + 1);
+                    collapsed.addAll(row);
+                    i = rowEnd + 1;
+
+                    // skip following rows of the same shape
+                    while (i + row.size() < tokens.size() && tokens.get(i).equals(",")
+                            && tokens.subList(i + 1, i + 1 + row.size()).equals(row)) {
+                        i += row.size() + 1;
+                    }
+                }
+            }
+        }
+
+        return collapsed;
+    }
+
+    /**
+     * Returns the index of the closing parenthesis of a list holding only placeholders, or -1.
+     */
+    static int placeholderListEnd(List<String> tokens, int open) {
+        boolean expectPlaceholder = true;
+        for (int i = open + 1; i < tokens.size(); i++) {
+            final String token = tokens.get(i);
+            if (token.equals(")")) {
+                return expectPlaceholder ? -1 : i;
+            }
+            if (!token.equals(expectPlaceholder ? PLACEHOLDER : ",")) {
+                return -1;
+            }
+            expectPlaceholder = !expectPlaceholder;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the parenthesis closing the group opened at {@code open}, or -1.
+     */
+    static int groupEnd(List<String> tokens, int open) {
+        int depth = 0;
+        for (int i = open; i < tokens.size(); i++) {
+            final String token = tokens.get(i);
+            if (token.equals("(")) {
+                depth++;
+            } else if (token.equals(")") && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isUnaryPosition(List<String> tokens) {
+        if (tokens.isEmpty()) {
+            return true;
+        }
+        final String previous = tokens.get(tokens.size() - 1);
+        final char last = previous.charAt(previous.length() - 1);
+
+        // a sign following an operand (identifier, literal or group) is a binary operator
+        return !(previous.equals(PLACEHOLDER) || last == ')' || last == '"' || last == '`' || last == ']'
+                || isIdentifierPart(last)) || isKeywordOperator(previous);
+    }
+
+    private static boolean isKeywordOperator(String token) {
+        return token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR") || token.equalsIgnoreCase("NOT")
+                || token.equalsIgnoreCase("IS") || token.equalsIgnoreCase("LIKE") || token.equalsIgnoreCase("BETWEEN")
+                || token.equalsIgnoreCase("WHERE") || token.equalsIgnoreCase("SELECT") || token.equalsIgnoreCase("SET")
+                || token.equalsIgnoreCase("VALUES") || token.equalsIgnoreCase("THEN") || token.equalsIgnoreCase("ELSE")
+                || token.equalsIgnoreCase("WHEN") || token.equalsIgnoreCase("LIMIT") || token.equalsIgnoreCase("OFFSET");
+    }
+
+    private static boolean isOperatorPair(char c, char next) {
+        return (c == '<' && (next == '=' || next == '>' || next == '<'))
+                || (c == '>' && (next == '=' || next == '>'))
+                || (c == '!' && next == '=')
+                || (c == '=' && next == '=')
+                || (c == '|' && next == '|');
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                // a doubled quote is an escaped quote
+                if (quote != ']' && i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    private static int skipNumber(String sql, int start) {
+        int i = start;
+        while (i < sql.length()) {
+            final char c = sql.charAt(i);
+            if (isDigit(c) || c == '.' || c == 'x' || c == 'X' || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+                i++;
+            } else if ((c == '+' || c == '-') && (sql.charAt(i - 1) == 'e' || sql.charAt(i - 1) == 'E')) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static int skipIdentifier(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && isIdentifierPart(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
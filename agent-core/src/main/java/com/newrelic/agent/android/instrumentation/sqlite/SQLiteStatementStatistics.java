@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.instrumentation.sqlite;
+
+import com.newrelic.agent.android.FeatureFlag;
+import com.newrelic.agent.android.TaskQueue;
+import com.newrelic.agent.android.harvest.Harvest;
+import com.newrelic.agent.android.harvest.HarvestAdapter;
+import com.newrelic.agent.android.metric.Metric;
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.metric.QuantileSketch;
+import com.newrelic.agent.android.stats.StatsEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Aggregates SQLite statement latencies by statement fingerprint.
+ * <p>
+ * Each fingerprint is recorded as a metric holding the call count, min, max, total and sum of
+ * squares of its durations (in seconds), and a {@link QuantileSketch} of their distribution.
+ * The number of distinct fingerprints is bounded; once reached, new statements are folded into
+ * a single overflow metric. Each harvest, the statements with the greatest total time are reported
+ * as {@code Mobile/Database/Statement/} metrics, and the aggregates are reset.
+ */
+public class SQLiteStatementStatistics extends HarvestAdapter {
+    static final int DEFAULT_MAX_STATEMENTS = 200;
+    static final int DEFAULT_REPORTED_STATEMENTS = 20;
+
+    static final String OTHER = "Other";
+
+    private static final SQLiteStatementStatistics instance = new SQLiteStatementStatistics();
+
+    private final SQLiteFingerprinter fingerprinter = new SQLiteFingerprinter();
+    private final Map<String, Metric> statements = new HashMap<String, Metric>();
+    private final AtomicBoolean registered = new AtomicBoolean(false);
+    private int maxStatements = DEFAULT_MAX_STATEMENTS;
+    private int reportedStatements = DEFAULT_REPORTED_STATEMENTS;
+
+    public static SQLiteStatementStatistics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Record the duration of a statement, if statement statistics are enabled.
+     */
+    public static void recordStatement(String sql, long durationNs) {
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            instance.record(sql, durationNs);
+        }
+    }
+
+    public void record(String sql, long durationNs) {
+        if (sql == null || durationNs < 0) {
+            return;
+        }
+
+        if (!registered.getAndSet(true)) {
+            Harvest.addHarvestListener(this);
+        }
+
+        final String fingerprint = fingerprinter.fingerprint(sql);
+        final double durationSec = (double) durationNs / TimeUnit.SECONDS.toNanos(1);
+
+        synchronized (this) {
+            String name = MetricNames.METRIC_DATABASE_STATEMENT + fingerprint;
+            Metric metric = statements.get(name);
+
+            if (metric == null) {
+                if (statements.size() >= maxStatements) {
+                    StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_DATABASE_STATEMENT_OVERFLOW);
+                    name = MetricNames.METRIC_DATABASE_STATEMENT + OTHER;
+                    metric = statements.get(name);
+                }
+                if (metric == null) {
+                    metric = new Metric(name);
+                    metric.setSketch(new QuantileSketch());
+                    statements.put(name, metric);
+                }
+            }
+
+            metric.sample(durationSec);
+        }
+    }
+
+    public synchronized void setMaxStatements(int maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+
+    public synchronized void setReportedStatements(int reportedStatements) {
+        this.reportedStatements = reportedStatements;
+    }
+
+    /**
+     * Returns the aggregated statements with the greatest total time, longest first.
+     */
+    public synchronized List<Metric> getTopStatements() {
+        final List<Metric> metrics = new ArrayList<Metric>(statements.values());
+        Collections.sort(metrics, new Comparator<Metric>() {
+            @Override
+            public int compare(Metric lhs, Metric rhs) {
+                return Double.compare(rhs.getTotal(), lhs.getTotal());
+            }
+        });
+
+        return new ArrayList<Metric>(metrics.subList(0, Math.min(reportedStatements, metrics.size())));
+    }
+
+    public synchronized int count() {
+        return statements.size();
+    }
+
+    public synchronized void clear() {
+        statements.clear();
+    }
+
+    @Override
+    public void onHarvest() {
+        final List<Metric> metrics;
+        final int dropped;
+
+        synchronized (this) {
+            metrics = getTopStatements();
+            dropped = statements.size() - metrics.size();
+            statements.clear();
+        }
+
+        for (Metric metric : metrics) {
+            TaskQueue.queue(metric);
+        }
+
+        if (dropped > 0) {
+            StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_DATABASE_STATEMENT_UNREPORTED, dropped);
+        }
+    }
+}
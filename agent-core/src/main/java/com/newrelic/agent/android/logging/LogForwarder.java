@@ -146,4 +146,8 @@ public class LogForwarder extends PayloadSender {
         return URI.create(getProtocol() + agentConfiguration.getCollectorHost() + "/mobile/logs");
     }
 
-}
\ No newline at end of file
+    @Override
+    public Priority getPriority() {
+        return Priority.LOGS;
+    }
+}
@@ -18,7 +18,6 @@ import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import com.newrelic.agent.android.AgentConfiguration;
 import com.newrelic.agent.android.ApplicationFramework;
-import com.newrelic.agent.android.analytics.AnalyticsAttribute;
 import com.newrelic.agent.android.analytics.AnalyticsControllerImpl;
 import com.newrelic.agent.android.harvest.Harvest;
 import com.newrelic.agent.android.harvest.HarvestLifecycleAware;
@@ -711,11 +710,7 @@ public class LogReporter extends PayloadReporter {
         // adding session attributes
         final AnalyticsControllerImpl analyticsController = AnalyticsControllerImpl.getInstance();
 
-        Map<String, Object> sessionAttributes = new HashMap<>();
-        for (AnalyticsAttribute analyticsAttribute : analyticsController.getSessionAttributes()) {
-            sessionAttributes.put(analyticsAttribute.getName(), analyticsAttribute.asJsonElement());
-        }
-        attrs.putAll(sessionAttributes);
+        attrs.putAll(analyticsController.getSessionAttributeSnapshot().asJsonAttributeMap());
 
         return attrs;
     }
@@ -5,6 +5,7 @@
 
 package com.newrelic.agent.android.measurement.consumer;
 
+import com.newrelic.agent.android.FeatureFlag;
 import com.newrelic.agent.android.measurement.MeasurementType;
 
 public class MethodMeasurementConsumer extends MetricMeasurementConsumer {
@@ -14,6 +15,11 @@ public class MethodMeasurementConsumer extends MetricMeasurementConsumer {
         super(MeasurementType.Method);
     }
 
+    @Override
+    protected boolean recordDistributions() {
+        return FeatureFlag.featureEnabled(FeatureFlag.MethodDistributions);
+    }
+
     @Override
     protected String formatMetricName(String name) {
         return METRIC_PREFIX + name.replace("#", "/");
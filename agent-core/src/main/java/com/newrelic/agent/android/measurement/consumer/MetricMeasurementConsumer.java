@@ -11,6 +11,7 @@ import com.newrelic.agent.android.measurement.Measurement;
 import com.newrelic.agent.android.measurement.MeasurementType;
 import com.newrelic.agent.android.metric.Metric;
 import com.newrelic.agent.android.metric.MetricStore;
+import com.newrelic.agent.android.metric.QuantileSketch;
 
 public abstract class MetricMeasurementConsumer extends BaseMeasurementConsumer implements HarvestLifecycleAware {
     protected MetricStore metrics;
@@ -25,6 +26,14 @@ public abstract class MetricMeasurementConsumer extends BaseMeasurementConsumer
 
     protected abstract String formatMetricName(String name);
 
+    /**
+     * Subclasses may record a distribution sketch with each new metric, from which percentiles are reported.
+     * Checked as each metric is created, so a feature flag enabled after startup takes effect on the next harvest.
+     */
+    protected boolean recordDistributions() {
+        return false;
+    }
+
     @Override
     public void consumeMeasurement(Measurement measurement) {
         final String name = formatMetricName(measurement.getName());
@@ -41,6 +50,9 @@ public abstract class MetricMeasurementConsumer extends BaseMeasurementConsumer
             Metric scopedMetric = metrics.get(name, scope);
             if (scopedMetric == null) {
                 scopedMetric = new Metric(name, scope);
+                if (recordDistributions()) {
+                    scopedMetric.setSketch(new QuantileSketch());
+                }
                 metrics.add(scopedMetric);
             }
 
@@ -54,6 +66,9 @@ public abstract class MetricMeasurementConsumer extends BaseMeasurementConsumer
 
             if (unscopedMetric == null) {
                 unscopedMetric = new Metric(name);
+                if (recordDistributions()) {
+                    unscopedMetric.setSketch(new QuantileSketch());
+                }
                 metrics.add(unscopedMetric);
             }
 
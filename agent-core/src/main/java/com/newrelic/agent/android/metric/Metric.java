@@ -19,6 +19,7 @@ public class Metric extends HarvestableObject {
     private Double sumOfSquares;
     private Double exclusive;
     private long count;
+    private QuantileSketch sketch;
 
     // Here are the things we'll need to send back to the collector.  Note that the average and sum of squares are only
     // computed on demand.
@@ -46,6 +47,7 @@ public class Metric extends HarvestableObject {
         sumOfSquares = metric.getSumOfSquares();
         exclusive = metric.getExclusive();
         count = metric.getCount();
+        sketch = metric.getSketch() == null ? null : new QuantileSketch(metric.getSketch());
     }
 
     public void sample(double value) {
@@ -61,6 +63,10 @@ public class Metric extends HarvestableObject {
 
         setMin(value);
         setMax(value);
+
+        if (sketch != null) {
+            sketch.add(value);
+        }
     }
 
     public void sampleMetricDataUsage(double bytesSent, double byteReceived) {
@@ -137,6 +143,14 @@ public class Metric extends HarvestableObject {
 
         setMin(metric.getMin());
         setMax(metric.getMax());
+
+        if (metric.getSketch() != null) {
+            if (sketch == null) {
+                sketch = new QuantileSketch(metric.getSketch());
+            } else {
+                sketch.merge(metric.getSketch());
+            }
+        }
     }
 
     public void increment(long value) {
@@ -216,7 +230,22 @@ public class Metric extends HarvestableObject {
         this.count = count;
     }
 
+    /**
+     * Record the distribution of sampled values, from which quantiles can be reported.
+     * Sketches are merged when metrics are aggregated.
+     */
+    public void setSketch(QuantileSketch sketch) {
+        this.sketch = sketch;
+    }
+
+    public QuantileSketch getSketch() {
+        return sketch;
+    }
+
     public void clear() {
+        if (sketch != null) {
+            sketch.clear();
+        }
         min = null;
         max = null;
         total = null;
@@ -261,6 +290,15 @@ public class Metric extends HarvestableObject {
             jsonObject.add("sum_of_squares", new JsonPrimitive(sumOfSquares));
         if (exclusive != null)
             jsonObject.add("exclusive", new JsonPrimitive(exclusive));
+        if (sketch != null && !sketch.isEmpty()) {
+            JsonObject percentiles = new JsonObject();
+            percentiles.add("50", new JsonPrimitive(sketch.getQuantile(0.50)));
+            percentiles.add("90", new JsonPrimitive(sketch.getQuantile(0.90)));
+            percentiles.add("95", new JsonPrimitive(sketch.getQuantile(0.95)));
+            percentiles.add("99", new JsonPrimitive(sketch.getQuantile(0.99)));
+            jsonObject.add("percentiles", percentiles);
+            jsonObject.add("sketch", sketch.asJsonObject());
+        }
 
         return jsonObject;
     }
@@ -19,6 +19,9 @@ public class MetricNames {
     public static final String METRIC_UUID_OVERRIDDEN = METRIC_MOBILE + "UUID/Overridden";
     public static final String METRIC_UUID_TRUNCATED = METRIC_MOBILE + "UUID/Truncated";
 
+    public static final String METRIC_NETWORK_ROLLUP = "Mobile/Network/Rollup/";
+    public static final String METRIC_DATABASE_STATEMENT = "Mobile/Database/Statement/";
+
     public static final String METRIC_SESSION = "Session/";
     public static final String SESSION_START = METRIC_SESSION + "Start";
     public static final String SESSION_DURATION = METRIC_SESSION + "Duration";
@@ -36,13 +39,22 @@ public class MetricNames {
 
     public static final String SUPPORTABILITY_AGENT = "Supportability/AgentHealth/";
     public static final String SUPPORTABILITY_TRANS_DROPPED = SUPPORTABILITY_AGENT + "TransactionsDropped";
+    public static final String SUPPORTABILITY_TRANS_AGGREGATED = SUPPORTABILITY_AGENT + "TransactionsAggregated";
+    public static final String SUPPORTABILITY_TRANS_ROLLUP_OVERFLOW = SUPPORTABILITY_AGENT + "TransactionRollupOverflow";
+    public static final String SUPPORTABILITY_DATABASE_STATEMENT_OVERFLOW = SUPPORTABILITY_AGENT + "DatabaseStatementOverflow";
+    public static final String SUPPORTABILITY_DATABASE_STATEMENT_UNREPORTED = SUPPORTABILITY_AGENT + "DatabaseStatementsUnreported";
     public static final String SUPPORTABILITY_TRACES_IGNORED = SUPPORTABILITY_AGENT + "IgnoredTraces";
     public static final String SUPPORTABILITY_TRACES_DROPPED = SUPPORTABILITY_AGENT + "BigActivityTracesDropped";
     public static final String SUPPORTABILITY_TRACES_HEALTHY = SUPPORTABILITY_AGENT + "HealthyActivityTraces";
     public static final String SUPPORTABILITY_TRACES_UNHEALTHY = SUPPORTABILITY_AGENT + "UnhealthyActivityTraces";
     public static final String SUPPORTABILITY_HARVEST_ON_MAIN_THREAD = SUPPORTABILITY_AGENT + "HarvestOnMainThread";
+    public static final String SUPPORTABILITY_HARVEST_SCHEDULE = SUPPORTABILITY_AGENT + "Harvest/Schedule/";
     public static final String SUPPORTABILITY_CONFIGURATION_CHANGED = SUPPORTABILITY_AGENT + "Configuration/Updated";
     public static final String SUPPORTABILITY_PAYLOAD_REMOVED_STALE = SUPPORTABILITY_AGENT + "Payload/Removed/Stale";
+    public static final String SUPPORTABILITY_PAYLOAD_QUEUE_DEPTH = SUPPORTABILITY_AGENT + "Payload/QueueDepth";
+    public static final String SUPPORTABILITY_PAYLOAD_WAIT_TIME = SUPPORTABILITY_AGENT + "Payload/WaitTime/";
+    public static final String SUPPORTABILITY_PAYLOAD_RETRY = SUPPORTABILITY_AGENT + "Payload/Retry/";
+    public static final String SUPPORTABILITY_PAYLOAD_BACKOFF = SUPPORTABILITY_AGENT + "Payload/Backoff";
     public static final String SUPPORTABILITY_SESSION_INVALID_DURATION = SUPPORTABILITY_AGENT + "Session/InvalidDuration";
     public static final String SUPPORTABILITY_RESPONSE_TIME_INVALID_DURATION = SUPPORTABILITY_AGENT + "Network/Request/ResponseTime/InvalidDuration";
 
@@ -97,6 +109,8 @@ public class MetricNames {
     public static final String SUPPORTABILITY_AEI_VISITED = SUPPORTABILITY_AEI + "visited";
     public static final String SUPPORTABILITY_AEI_SKIPPED = SUPPORTABILITY_AEI + "skipped";
     public static final String SUPPORTABILITY_AEI_DROPPED = SUPPORTABILITY_AEI + "dropped";
+    public static final String SUPPORTABILITY_AEI_TRACE_SIZE = SUPPORTABILITY_AEI + "TraceSize";
+    public static final String SUPPORTABILITY_AEI_TRACE_TRUNCATED = SUPPORTABILITY_AEI + "TraceTruncated";
     public static final String SUPPORTABILITY_AEI_UPLOAD_TIME = SUPPORTABILITY_AEI + "UploadTime";
     public static final String SUPPORTABILITY_AEI_FAILED_UPLOAD = SUPPORTABILITY_AEI + "FailedUpload";
 
@@ -110,6 +124,11 @@ public class MetricNames {
     public static final String BACKGROUND_HANDLED_EXCEPTION_COUNT = SUPPORTABILITY_BACKGROUND + "HandledException/Count";
     public static final String BACKGROUND_CRASH_COUNT = SUPPORTABILITY_BACKGROUND + "Crash/Count";
 
+    public static final String SUPPORTABILITY_STARTUP = SUPPORTABILITY_AGENT + "Startup/";
+    public static final String SUPPORTABILITY_STARTUP_TOTAL = SUPPORTABILITY_STARTUP + "Total";
+    public static final String SUPPORTABILITY_STARTUP_TIMEOUT = SUPPORTABILITY_STARTUP + "Timeout";
+    public static final String SUPPORTABILITY_SAMPLER_INTERVAL = SUPPORTABILITY_AGENT + "Sampler/Interval/";
+
     public static final String SUPPORTABILITY_DATA_TOKEN = SUPPORTABILITY_AGENT + "DataToken/";
     public static final String SUPPORTABILITY_INVALID_DATA_TOKEN = SUPPORTABILITY_DATA_TOKEN + "Invalid";
 
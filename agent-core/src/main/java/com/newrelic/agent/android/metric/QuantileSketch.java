@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.metric;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.newrelic.agent.android.harvest.type.HarvestableObject;
+
+/**
+ * A fixed-memory, mergeable quantile sketch with relative-error guarantees (DDSketch).
+ * <p>
+ * Positive values are counted in logarithmically sized bins, so any quantile is returned
+ * within {@code relativeAccuracy} of the true value. Bins are held in a dense array covering
+ * the observed range. Once that range would exceed {@code maxBins}, the lowest bins are
+ * collapsed together, which keeps memory fixed and preserves accuracy for the upper quantiles.
+ * Values below {@link #MIN_INDEXABLE_VALUE} (including zero and negative values) are counted
+ * as zero.
+ * <p>
+ * Sketches with the same relative accuracy can be merged without loss. This makes them
+ * suitable for aggregating durations across activities and harvests. Sketches are not
+ * thread safe; callers synchronize on the owning metric.
+ */
+public class QuantileSketch extends HarvestableObject {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BINS = 512;
+    public static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private static final long[] EMPTY_BINS = new long[0];
+    private static final int BIN_GROWTH = 8;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBins;
+
+    // bins[i] counts values with index (offset + i)
+    private long[] bins = EMPTY_BINS;
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        }
+        if (maxBins < 1) {
+            throw new IllegalArgumentException("Sketch must have at least one bin");
+        }
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBins = maxBins;
+    }
+
+    public QuantileSketch(QuantileSketch sketch) {
+        this(sketch.relativeAccuracy, sketch.maxBins);
+        merge(sketch);
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long n) {
+        if (n <= 0 || Double.isNaN(value)) {
+            return;
+        }
+
+        count += n;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        if (value < MIN_INDEXABLE_VALUE) {
+            zeroCount += n;
+        } else {
+            increment(indexOf(value), n);
+        }
+    }
+
+    /**
+     * Merge another sketch into this one. Both sketches must have the same relative accuracy.
+     */
+    public void merge(QuantileSketch sketch) {
+        if (sketch == null) {
+            return;
+        }
+        if (sketch.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different relative accuracy");
+        }
+        if (sketch.count == 0) {
+            return;
+        }
+
+        count += sketch.count;
+        zeroCount += sketch.zeroCount;
+        min = Math.min(min, sketch.min);
+        max = Math.max(max, sketch.max);
+
+        if (sketch.bins.length > 0) {
+            // cover the merged range in a single resize
+            if (bins.length == 0) {
+                bins = new long[1];
+                offset = sketch.offset;
+            }
+            final int lowIndex = Math.min(offset, sketch.offset);
+            final int highIndex = Math.max(offset + bins.length - 1, sketch.offset + sketch.bins.length - 1);
+            if (lowIndex < offset || highIndex >= offset + bins.length) {
+                resize(lowIndex, highIndex);
+            }
+        }
+
+        for (int i = 0; i < sketch.bins.length; i++) {
+            if (sketch.bins[i] > 0) {
+                increment(sketch.offset + i, sketch.bins[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated value at quantile {@code q}, or NaN if the sketch is empty.
+     *
+     * @param q Quantile, between 0 and 1
+     */
+    public double getQuantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        final double rank = q * (count - 1);
+        if (rank >= count - 1) {
+            return max;
+        }
+
+        long cumulative = zeroCount;
+        if (rank < cumulative) {
+            return Math.max(min, 0);
+        }
+
+        for (int i = 0; i < bins.length; i++) {
+            cumulative += bins[i];
+            if (rank < cumulative) {
+                return Math.max(min, Math.min(max, valueOf(offset + i)));
+            }
+        }
+
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Returns the number of allocated bins, which never exceeds {@code maxBins}.
+     */
+    public int getBinCount() {
+        return bins.length;
+    }
+
+    public void clear() {
+        bins = EMPTY_BINS;
+        offset = 0;
+        zeroCount = 0;
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    int indexOf(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    double valueOf(int index) {
+        // the midpoint of (gamma^(index-1), gamma^index], within relativeAccuracy of both bounds
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private void increment(int index, long n) {
+        if (bins.length == 0) {
+            bins = new long[1];
+            offset = index;
+        } else if (index < offset) {
+            // leave room for nearby values, unless that would collapse populated bins
+            final int highIndex = offset + bins.length - 1;
+            resize(Math.max(index - BIN_GROWTH, Math.min(index, highIndex - maxBins + 1)), highIndex);
+        } else if (index >= offset + bins.length) {
+            resize(offset, Math.max(index, Math.min(index + BIN_GROWTH, offset + maxBins - 1)));
+        }
+
+        // values below a collapsed range are counted in the lowest bin
+        bins[Math.max(index, offset) - offset] += n;
+    }
+
+    private void resize(int lowIndex, int highIndex) {
+        if (highIndex - lowIndex + 1 > maxBins) {
+            lowIndex = highIndex - maxBins + 1;
+        }
+
+        final long[] resized = new long[highIndex - lowIndex + 1];
+        for (int i = 0; i < bins.length; i++) {
+            resized[Math.max(offset + i, lowIndex) - lowIndex] += bins[i];
+        }
+
+        bins = resized;
+        offset = lowIndex;
+    }
+
+    @Override
+    public JsonObject asJsonObject() {
+        final JsonObject jsonObject = new JsonObject();
+        int first = 0;
+        int last = bins.length - 1;
+
+        while (first <= last && bins[first] == 0) {
+            first++;
+        }
+        while (last >= first && bins[last] == 0) {
+            last--;
+        }
+
+        final JsonArray binArray = new JsonArray();
+        for (int i = first; i <= last; i++) {
+            binArray.add(new JsonPrimitive(bins[i]));
+        }
+
+        jsonObject.add("relative_accuracy", new JsonPrimitive(relativeAccuracy));
+        jsonObject.add("count", new JsonPrimitive(count));
+        jsonObject.add("zero_count", new JsonPrimitive(zeroCount));
+        jsonObject.add("offset", new JsonPrimitive(offset + first));
+        jsonObject.add("bins", binArray);
+
+        return jsonObject;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{" +
+                "count=" + count +
+                ", bins=" + bins.length +
+                ", p50=" + (count > 0 ? getQuantile(0.5) : 0) +
+                ", p95=" + (count > 0 ? getQuantile(0.95) : 0) +
+                ", p99=" + (count > 0 ? getQuantile(0.99) : 0) +
+                '}';
+    }
+}
@@ -9,11 +9,13 @@ import com.newrelic.agent.android.logging.AgentLogManager;
 import com.newrelic.agent.android.util.Streams;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.GZIPOutputStream;
 
@@ -23,6 +25,7 @@ import java.util.zip.GZIPOutputStream;
  * contain the filename as well.
  * <p>
  * Requests to getBytes() will then return the contents of the file as UTF-8 encoded bytes.
+ * Senders should prefer getInputStream(), which reads the file as it is uploaded.
  * Payload data is persisted all-or-none. No edits or updates are supported.
  * <p>
  * Requests to putBytes(byte[]) will fill the file with the passed payload data.
@@ -63,6 +66,19 @@ public class FileBackedPayload extends Payload {
         return "".getBytes(StandardCharsets.UTF_8);
     }
 
+    /**
+     * Return a stream over the contents of the backing file, or an empty stream if it is missing.
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        File payloadFile = payloadFile();
+        if (payloadFile.exists()) {
+            return new FileInputStream(payloadFile);
+        }
+
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
     /**
      * Creates a File instance from the pathname data stored in the payload
      *
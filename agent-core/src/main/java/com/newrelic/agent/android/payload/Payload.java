@@ -8,6 +8,9 @@ package com.newrelic.agent.android.payload;
 import com.google.gson.JsonObject;
 import com.newrelic.agent.android.util.SafeJsonPrimitive;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.UUID;
 
@@ -34,6 +37,14 @@ public class Payload {
         return payload.array();
     }
 
+    /**
+     * Returns a stream over the payload data. Senders stream payloads rather than requesting
+     * their bytes, so large payloads are not materialized in memory.
+     */
+    public InputStream getInputStream() throws IOException {
+        return new ByteArrayInputStream(payload.array());
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
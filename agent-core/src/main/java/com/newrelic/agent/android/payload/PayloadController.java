@@ -18,19 +18,34 @@ import com.newrelic.agent.android.stats.StatsEngine;
 import com.newrelic.agent.android.stats.TicToc;
 import com.newrelic.agent.android.util.NamedThreadFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Schedules payload uploads.
+ * <p>
+ * Uploads run on a worker pool ordered by {@link PayloadSender.Priority}, then by payload size, so a
+ * burst of large, low priority payloads cannot delay small or urgent ones. Failed uploads that may be
+ * retried are held per collector endpoint, with exponential backoff and jitter (see {@link RetryBackoff}).
+ * New payloads bound for an endpoint in backoff join its held payloads, and all are released together
+ * when the backoff expires or an upload to that endpoint succeeds.
+ */
 public class PayloadController implements HarvestLifecycleAware {
 
     protected static final AgentLog log = AgentLogManager.getAgentLog();
@@ -46,6 +61,8 @@ public class PayloadController implements HarvestLifecycleAware {
     protected static ConcurrentLinkedQueue<PayloadReaper> payloadReaperRetryQueue = null;
     protected static Map<String, Future> reapersInFlight = null;
     protected static boolean opportunisticUploads = false;
+    protected static RetryBackoff retryBackoff = new RetryBackoff();
+    protected static final AtomicLong requeueAtMs = new AtomicLong(0);
 
     protected static final Runnable dequeueRunnable = () -> {
         if (isInitialized()) {
@@ -71,6 +88,8 @@ public class PayloadController implements HarvestLifecycleAware {
             requeueFuture = queueExecutor.scheduleWithFixedDelay(requeueRunnable, PayloadController.PAYLOAD_REQUEUE_PERIOD_MS, PayloadController.PAYLOAD_REQUEUE_PERIOD_MS, TimeUnit.MILLISECONDS);
             reapersInFlight = new ConcurrentHashMap<String, Future>();
             opportunisticUploads = false;
+            retryBackoff.clear();
+            requeueAtMs.set(0);
 
             CrashReporter crashReporter = CrashReporter.initialize(agentConfiguration);
             if (crashReporter != null) {
@@ -144,12 +163,8 @@ public class PayloadController implements HarvestLifecycleAware {
                 @Override
                 public PayloadSender call() throws Exception {
                     PayloadSender sender = super.call();
-                    if (sender != null && !sender.isSuccessfulResponse() && sender.shouldRetry()) {
-                        // resubmit the task
-                        payloadReaperRetryQueue.offer(this);
-                    }
-
                     reapersInFlight.remove(getUuid());
+                    onUploadComplete(this, sender);
                     return sender;
                 }
             };
@@ -163,7 +178,11 @@ public class PayloadController implements HarvestLifecycleAware {
             if (future != null) {
                 log.warn("PayloadController: Upload of payload [" + payloadReaper.getUuid() + "] is already in progress.");
             } else {
-                if (payloadSender.shouldUploadOpportunistically()) {
+                if (!retryBackoff.isReady(payloadReaper.getEndpoint())) {
+                    // the endpoint is backing off, so hold the payload with any others bound for it
+                    payloadReaperRetryQueue.offer(payloadReaper);
+                } else if (payloadSender.shouldUploadOpportunistically()) {
+                    payloadReaper.markQueued();
                     future = queueExecutor.submit(payloadReaper);
                     reapersInFlight.put(payloadReaper.getUuid(), future);
                 } else {
@@ -191,6 +210,7 @@ public class PayloadController implements HarvestLifecycleAware {
             if (future != null) {
                 log.warn("PayloadController: Upload of payload [" + payloadReaper.getUuid() + "] is already in progress.");
             } else {
+                payloadReaper.markQueued();
                 future = queueExecutor.submit(payloadReaper);
                 reapersInFlight.put(payloadReaper.getUuid(), future);
             }
@@ -199,6 +219,64 @@ public class PayloadController implements HarvestLifecycleAware {
         return future;
     }
 
+    /**
+     * Update the endpoint's backoff from the upload result, and hold the payload for retry if needed.
+     */
+    static void onUploadComplete(PayloadReaper payloadReaper, PayloadSender sender) {
+        if (sender == null) {
+            return;
+        }
+
+        final String endpoint = payloadReaper.getEndpoint();
+
+        if (sender.isSuccessfulResponse()) {
+            if (retryBackoff.getFailures(endpoint) > 0) {
+                // the endpoint has recovered, so release anything held for it
+                retryBackoff.onSuccess(endpoint);
+                scheduleRequeue(0);
+            }
+
+        } else if (sender.shouldRetry()) {
+            final long delayMs = retryBackoff.onFailure(endpoint);
+
+            payloadReaperRetryQueue.offer(payloadReaper);
+            StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_PAYLOAD_RETRY + payloadReaper.priority.name());
+            StatsEngine.SUPPORTABILITY.sample(MetricNames.SUPPORTABILITY_PAYLOAD_BACKOFF, delayMs);
+            scheduleRequeue(delayMs);
+        }
+    }
+
+    /**
+     * Schedule a pass over the held payloads, unless one is already due sooner.
+     */
+    static void scheduleRequeue(long delayMs) {
+        final long now = System.currentTimeMillis();
+        final long dueMs = now + delayMs;
+        final long pendingMs = requeueAtMs.get();
+
+        if (pendingMs > 0 && pendingMs <= dueMs) {
+            return;
+        }
+
+        if (requeueAtMs.compareAndSet(pendingMs, dueMs) && isInitialized()) {
+            try {
+                queueExecutor.schedule(requeueRunnable, delayMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.error("PayloadController.scheduleRequeue(): " + e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of payloads waiting to be uploaded, including those held for retry.
+     */
+    public static int getQueueDepth() {
+        if (!isInitialized()) {
+            return 0;
+        }
+        return payloadReaperQueue.size() + payloadReaperRetryQueue.size() + queueExecutor.getUploadQueueSize();
+    }
+
     /**
      * Upload if opportunistic uploads enabled, and network is active.
      * Otherwise batch the payload for delivery during harvest cycle
@@ -227,7 +305,11 @@ public class PayloadController implements HarvestLifecycleAware {
                     PayloadReaper payloadReaper = payloadReaperQueue.poll();
                     if (payloadReaper != null) {
                         try {
-                            submitPayload(payloadReaper);
+                            if (retryBackoff.isReady(payloadReaper.getEndpoint())) {
+                                submitPayload(payloadReaper);
+                            } else {
+                                payloadReaperRetryQueue.offer(payloadReaper);
+                            }
                         } catch (Exception e) {
                             log.error("PayloadController.dequeuePayloadSenders(): " + e);
                         }
@@ -243,16 +325,32 @@ public class PayloadController implements HarvestLifecycleAware {
     private void requeuePayloadSenders() {
         if (payloadQueueLock.tryLock()) {
             try {
+                final List<PayloadReaper> held = new ArrayList<>();
+                long nextDelayMs = Long.MAX_VALUE;
+
+                requeueAtMs.set(0);
                 while (!payloadReaperRetryQueue.isEmpty()) {
                     PayloadReaper payloadReaper = payloadReaperRetryQueue.poll();
                     if (payloadReaper != null) {
-                        if (!payloadReaper.sender.getPayload().isStale(agentConfiguration.getPayloadTTL())) {
-                            submitPayload(payloadReaper);
-                        } else {
+                        if (payloadReaper.sender.getPayload().isStale(agentConfiguration.getPayloadTTL())) {
                             log.warn("PayloadController: Will not re-queue stale payload.");
+                            continue;
+                        }
+
+                        final long delayMs = retryBackoff.getDelayMs(payloadReaper.getEndpoint());
+                        if (delayMs > 0) {
+                            held.add(payloadReaper);
+                            nextDelayMs = Math.min(nextDelayMs, delayMs);
+                        } else {
+                            submitPayload(payloadReaper);
                         }
                     }
                 }
+
+                if (!held.isEmpty()) {
+                    payloadReaperRetryQueue.addAll(held);
+                    scheduleRequeue(nextDelayMs);
+                }
             } finally {
                 payloadQueueLock.unlock();
             }
@@ -265,6 +363,7 @@ public class PayloadController implements HarvestLifecycleAware {
 
     @Override
     public void onHarvest() {
+        StatsEngine.SUPPORTABILITY.sample(MetricNames.SUPPORTABILITY_PAYLOAD_QUEUE_DEPTH, getQueueDepth());
         PayloadController.queueExecutor.submit(dequeueRunnable);
     }
 
@@ -272,21 +371,79 @@ public class PayloadController implements HarvestLifecycleAware {
         return reapersInFlight.containsKey(payload.getUuid());
     }
 
+    /**
+     * Runs scheduled and general tasks in submission order. Payload uploads ({@link PayloadReaper PayloadReapers})
+     * are run on a separate pool of the same size, ordered by priority.
+     */
     protected static class ThrottledScheduledThreadPoolExecutor extends ScheduledThreadPoolExecutor {
 
         protected static final int THROTTLE_LIMIT = 16;
         protected static final int THROTTLE_SLEEP = 50;
+        protected static final long UPLOAD_KEEPALIVE_MS = 60 * 1000;
+
+        private final ThreadPoolExecutor uploadExecutor;
 
         public ThrottledScheduledThreadPoolExecutor(int i, ThreadFactory threadFactory) {
             super(i, threadFactory);
+            uploadExecutor = new ThreadPoolExecutor(i, i, UPLOAD_KEEPALIVE_MS, TimeUnit.MILLISECONDS,
+                    new PriorityBlockingQueue<Runnable>(), threadFactory);
+            uploadExecutor.allowCoreThreadTimeOut(true);
         }
 
         @Override
         public <T> Future<T> submit(Callable<T> callable) {
+            if (callable instanceof PayloadReaper) {
+                if (uploadExecutor.getQueue().size() >= THROTTLE_LIMIT) {
+                    StatsEngine.get().inc(MetricNames.SUPPORTABILITY_HEX_UPLOAD_THROTTLED);
+                }
+
+                final PrioritizedUpload<T> upload = new PrioritizedUpload<T>(callable, (PayloadReaper) callable);
+                uploadExecutor.execute(upload);
+                return upload;
+            }
+
             if (getQueue().size() >= THROTTLE_LIMIT) {
                 StatsEngine.get().inc(MetricNames.SUPPORTABILITY_HEX_UPLOAD_THROTTLED);
             }
             return super.submit(callable);
         }
+
+        int getUploadQueueSize() {
+            return uploadExecutor.getQueue().size();
+        }
+
+        @Override
+        public void shutdown() {
+            super.shutdown();
+            uploadExecutor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            final List<Runnable> pending = new ArrayList<>(super.shutdownNow());
+            pending.addAll(uploadExecutor.shutdownNow());
+            return pending;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            return super.awaitTermination(timeout, unit)
+                    && uploadExecutor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    static class PrioritizedUpload<T> extends FutureTask<T> implements Comparable<PrioritizedUpload<?>> {
+        final PayloadReaper payloadReaper;
+
+        PrioritizedUpload(Callable<T> callable, PayloadReaper payloadReaper) {
+            super(callable);
+            this.payloadReaper = payloadReaper;
+        }
+
+        @Override
+        public int compareTo(PrioritizedUpload<?> other) {
+            return payloadReaper.compareTo(other.payloadReaper);
+        }
     }
 }
\ No newline at end of file
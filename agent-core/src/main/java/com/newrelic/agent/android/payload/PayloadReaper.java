@@ -5,11 +5,26 @@
 
 package com.newrelic.agent.android.payload;
 
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.stats.StatsEngine;
+
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a payload sender. Reapers are ordered by the sender's priority class, then by payload
+ * size (smallest first), then by submission order.
+ */
+class PayloadReaper implements Callable<PayloadSender>, Comparable<PayloadReaper> {
+    private static final AtomicLong sequencer = new AtomicLong(0);
 
-class PayloadReaper implements Callable<PayloadSender> {
     final PayloadSender sender;
     final PayloadSender.CompletionHandler handler;
+    final PayloadSender.Priority priority;
+    final long size;
+    final long sequence;
+    volatile long queuedNanos;
 
     public PayloadReaper(PayloadSender sender, PayloadSender.CompletionHandler handler) {
         if (sender == null) {
@@ -18,10 +33,17 @@ class PayloadReaper implements Callable<PayloadSender> {
 
         this.sender = sender;
         this.handler = handler;
+        this.priority = sender.getPriority() == null ? PayloadSender.Priority.DEFAULT : sender.getPriority();
+        this.size = sender.getPayload() == null ? 0 : sender.getPayload().size();
+        this.sequence = sequencer.incrementAndGet();
+        this.queuedNanos = System.nanoTime();
     }
 
     @Override
     public PayloadSender call() throws Exception {
+        StatsEngine.SUPPORTABILITY.sampleTimeMs(MetricNames.SUPPORTABILITY_PAYLOAD_WAIT_TIME + priority.name(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedNanos));
+
         try {
             PayloadSender payloadSender = sender.call();
 
@@ -53,8 +75,30 @@ class PayloadReaper implements Callable<PayloadSender> {
         return false;
     }
 
+    @Override
+    public int compareTo(PayloadReaper other) {
+        if (priority != other.priority) {
+            return priority.compareTo(other.priority);
+        }
+        if (size != other.size) {
+            return size < other.size ? -1 : 1;
+        }
+        return Long.compare(sequence, other.sequence);
+    }
+
     public String getUuid() {
         return sender.getPayload().getUuid();
     }
 
+    public String getEndpoint() {
+        return sender.getEndpoint();
+    }
+
+    /**
+     * Restart the wait time, when the reaper is handed to the upload pool.
+     */
+    void markQueued() {
+        queuedNanos = System.nanoTime();
+    }
+
 }
@@ -14,9 +14,9 @@ import com.newrelic.agent.android.logging.AgentLogManager;
 import com.newrelic.agent.android.metric.MetricNames;
 import com.newrelic.agent.android.stats.StatsEngine;
 import com.newrelic.agent.android.stats.TicToc;
+import com.newrelic.agent.android.util.Constants;
 import com.newrelic.agent.android.util.Streams;
 
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,6 +32,17 @@ import javax.net.ssl.HttpsURLConnection;
 public abstract class PayloadSender implements Callable<PayloadSender> {
     protected static final AgentLog log = AgentLogManager.getAgentLog();
 
+    /**
+     * Upload priority classes, highest first. Queued payloads are uploaded in priority order.
+     */
+    public enum Priority {
+        CRASH,
+        HANDLED_EXCEPTION,
+        LOGS,
+        AEI,
+        DEFAULT
+    }
+
     protected Payload payload;
     protected final AgentConfiguration agentConfiguration;
     protected final TicToc timer;
@@ -58,7 +69,7 @@ public abstract class PayloadSender implements Callable<PayloadSender> {
     }
 
     public int getPayloadSize() {
-        return payload.getBytes().length;
+        return (int) Math.min(payload.size(), Integer.MAX_VALUE);
     }
 
     public void setPayload(byte[] payloadBytes) {
@@ -124,17 +135,16 @@ public abstract class PayloadSender implements Callable<PayloadSender> {
     @SuppressWarnings("NewApi")
     public PayloadSender call() throws Exception {
         try {
-            byte[] payloadBytes = getPayload().getBytes();
             final HttpURLConnection connection = getConnection();
 
             try {
                 timer.tic();
+                if (connection.getDoOutput()) {
+                    setStreamingMode(connection);
+                }
                 connection.connect();
                 if (connection.getDoOutput()) {
-                    try (final OutputStream out = new BufferedOutputStream(connection.getOutputStream())) {
-                        out.write(payloadBytes);
-                        out.flush();
-                    }
+                    writePayload(connection);
                 }
 
                 responseCode = connection.getResponseCode();
@@ -155,6 +165,41 @@ public abstract class PayloadSender implements Callable<PayloadSender> {
         return this;
     }
 
+    /**
+     * Stream the request body rather than letting the connection buffer it: with a fixed length,
+     * or chunked when the payload is compressed as it is sent. Must be called before connecting.
+     */
+    @SuppressWarnings("NewApi")
+    protected void setStreamingMode(HttpURLConnection connection) {
+        if (shouldCompressPayload()) {
+            connection.setRequestProperty(Constants.Network.CONTENT_ENCODING_HEADER, Constants.Network.Encoding.GZIP);
+            connection.setChunkedStreamingMode(0);
+        } else {
+            connection.setFixedLengthStreamingMode(getPayload().size());
+        }
+    }
+
+    /**
+     * Copy the payload to the connection, gzipping it if requested. The payload is never fully
+     * read into memory.
+     */
+    protected void writePayload(HttpURLConnection connection) throws IOException {
+        try (final InputStream in = getPayload().getInputStream();
+             final OutputStream out = shouldCompressPayload()
+                     ? new GZIPOutputStream(connection.getOutputStream(), Streams.DEFAULT_BUFFER_SIZE)
+                     : connection.getOutputStream()) {
+            Streams.copy(in, out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Returns true if the payload should be gzipped as it is sent.
+     */
+    protected boolean shouldCompressPayload() {
+        return false;
+    }
+
     protected String getProtocol() {
         // unencrypted http no longer supported as of 09/24/2021
         return "https://";
@@ -214,6 +259,21 @@ public abstract class PayloadSender implements Callable<PayloadSender> {
         return URI.create(getProtocol() + agentConfiguration.getCollectorHost());
     }
 
+    public Priority getPriority() {
+        return Priority.DEFAULT;
+    }
+
+    /**
+     * Returns the collector endpoint this payload is bound for. Retries are scheduled per endpoint.
+     */
+    public String getEndpoint() {
+        try {
+            return getCollectorURI().toString();
+        } catch (Exception e) {
+            return getClass().getName();
+        }
+    }
+
     public interface CompletionHandler {
         default void onResponse(PayloadSender payloadSender) {
         }
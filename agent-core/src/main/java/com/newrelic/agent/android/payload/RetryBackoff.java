@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.payload;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tracks failed uploads per collector endpoint, and decides when each endpoint may be retried.
+ * <p>
+ * Every consecutive failure doubles the endpoint's delay, from {@code baseDelayMs} up to
+ * {@code maxDelayMs}. Half of each delay is randomized, so agents that fail together do not retry
+ * together. Payloads bound for an endpoint share its backoff, and are released together once it
+ * expires. A successful upload resets the endpoint.
+ */
+public class RetryBackoff {
+    public static final long DEFAULT_BASE_DELAY_MS = 5 * 1000;
+    public static final long DEFAULT_MAX_DELAY_MS = 10 * 60 * 1000;
+
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    static class Endpoint {
+        int failures = 0;
+        long retryAtMs = 0;
+    }
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    public RetryBackoff() {
+        this(System::currentTimeMillis, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+    }
+
+    public RetryBackoff(Clock clock, long baseDelayMs, long maxDelayMs) {
+        if (baseDelayMs <= 0 || maxDelayMs < baseDelayMs) {
+            throw new IllegalArgumentException("Invalid backoff delay range");
+        }
+        this.clock = clock;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Record a failed upload to the endpoint.
+     *
+     * @return The delay in ms before the endpoint should be retried
+     */
+    public long onFailure(String endpoint) {
+        final Endpoint state = getEndpoint(endpoint);
+
+        synchronized (state) {
+            state.failures++;
+            final long delay = jitter(delayFor(state.failures));
+            state.retryAtMs = Math.max(state.retryAtMs, clock.currentTimeMillis() + delay);
+            return state.retryAtMs - clock.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Record a successful upload to the endpoint, clearing its backoff.
+     */
+    public void onSuccess(String endpoint) {
+        endpoints.remove(endpoint);
+    }
+
+    /**
+     * Returns true if uploads to the endpoint are not being held back.
+     */
+    public boolean isReady(String endpoint) {
+        return getDelayMs(endpoint) == 0;
+    }
+
+    /**
+     * Returns the time in ms until the endpoint may be retried, or 0 if it is ready.
+     */
+    public long getDelayMs(String endpoint) {
+        final Endpoint state = endpoints.get(endpoint);
+        if (state == null) {
+            return 0;
+        }
+
+        synchronized (state) {
+            return Math.max(0, state.retryAtMs - clock.currentTimeMillis());
+        }
+    }
+
+    public int getFailures(String endpoint) {
+        final Endpoint state = endpoints.get(endpoint);
+        return state == null ? 0 : state.failures;
+    }
+
+    public void clear() {
+        endpoints.clear();
+    }
+
+    /**
+     * Returns the un-jittered delay after the given number of consecutive failures.
+     */
+    long delayFor(int failures) {
+        final int doublings = Math.min(Math.max(failures - 1, 0), 30);
+        return Math.min(maxDelayMs, baseDelayMs << doublings);
+    }
+
+    static long jitter(long delay) {
+        final long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    private Endpoint getEndpoint(String endpoint) {
+        Endpoint state = endpoints.get(endpoint);
+        if (state == null) {
+            final Endpoint created = new Endpoint();
+            state = endpoints.putIfAbsent(endpoint, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        return state;
+    }
+}
@@ -17,6 +17,7 @@ import com.newrelic.agent.android.logging.AgentLog;
 import com.newrelic.agent.android.logging.AgentLogManager;
 import com.newrelic.agent.android.metric.Metric;
 import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.metric.QuantileSketch;
 
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -121,8 +122,27 @@ public class StatsEngine extends HarvestAdapter {
      * @param time Time this call took in milliseconds. Negative time values are ignored.
      */
     public void sampleTimeMs(String name, long time) {
+        sampleTimeMs(name, time, false);
+    }
+
+    /**
+     * Record a time in milliseconds. This will also increment callCount by 1.
+     *
+     * @param name               Name of the metric.
+     * @param time               Time this call took in milliseconds. Negative time values are ignored.
+     * @param recordDistribution If true, the metric also records a {@link QuantileSketch} of sampled times,
+     *                           and is reported with percentiles.
+     */
+    public void sampleTimeMs(String name, long time, boolean recordDistribution) {
         if (time >= 0f && name != null) {
-            sample(name, (float) time / 1000f);
+            Metric m = lazyGet(name);
+
+            synchronized (m) {
+                if (recordDistribution && m.getSketch() == null) {
+                    m.setSketch(new QuantileSketch());
+                }
+                m.sample((float) time / 1000f);
+            }
         } else {
             log.error("StatsEngine.sampleTimeMs() called with negative time value[" + time + "] or missing metric name.");
         }
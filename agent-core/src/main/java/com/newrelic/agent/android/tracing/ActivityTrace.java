@@ -6,8 +6,12 @@
 package com.newrelic.agent.android.tracing;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 import com.newrelic.agent.android.Agent;
 import com.newrelic.agent.android.Measurements;
 import com.newrelic.agent.android.TaskQueue;
@@ -21,10 +25,15 @@ import com.newrelic.agent.android.metric.Metric;
 import com.newrelic.agent.android.metric.MetricNames;
 import com.newrelic.agent.android.util.SafeJsonPrimitive;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -59,6 +68,10 @@ public class ActivityTrace extends HarvestableArray {
 
     private static final String SIZE_NORMAL = "NORMAL";
 
+    // shared by all traces. Html escaping is disabled so streamed output matches JsonElement.toString()
+    private static final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private static final TypeAdapter<JsonElement> jsonElementAdapter = gson.getAdapter(JsonElement.class);
+
     private static final HashMap<String, String> ENVIRONMENT_TYPE = new HashMap<>() {{
         put("type", "ENVIRONMENT");
     }};
@@ -192,7 +205,7 @@ public class ActivityTrace extends HarvestableArray {
             return null;
         }
 
-        tree.add(new Gson().toJsonTree(params, GSON_STRING_MAP_TYPE));
+        tree.add(gson.toJsonTree(params, GSON_STRING_MAP_TYPE));
         tree.add(SafeJsonPrimitive.factory(rootTrace.entryTimestamp));
         tree.add(SafeJsonPrimitive.factory(rootTrace.exitTimestamp));
         tree.add(SafeJsonPrimitive.factory(rootTrace.displayName));
@@ -212,12 +225,38 @@ public class ActivityTrace extends HarvestableArray {
         return tree;
     }
 
+    /**
+     * Build the trace tree without recursion: each stack frame holds a segment and the iterator
+     * over its remaining children, so deep call chains cannot overflow the thread stack.
+     */
     private JsonArray traceToTree(final Trace trace) {
+        final JsonArray root = segmentOf(trace);
+        final Deque<TreeFrame> stack = new ArrayDeque<>();
+
+        stack.push(new TreeFrame(root, trace));
+        while (!stack.isEmpty()) {
+            final TreeFrame frame = stack.peek();
+            final Trace childTrace = nextChild(frame.children);
+
+            if (childTrace == null) {
+                frame.segment.add(frame.childSegments);
+                stack.pop();
+            } else {
+                final JsonArray childSegment = segmentOf(childTrace);
+                frame.childSegments.add(childSegment);
+                stack.push(new TreeFrame(childSegment, childTrace));
+            }
+        }
+
+        return root;
+    }
+
+    private JsonArray segmentOf(final Trace trace) {
         JsonArray segment = new JsonArray();
 
         trace.prepareForSerialization();
 
-        segment.add(new Gson().toJsonTree(trace.getParams(), GSON_STRING_MAP_TYPE));
+        segment.add(gson.toJsonTree(trace.getParams(), GSON_STRING_MAP_TYPE));
         segment.add(SafeJsonPrimitive.factory(trace.entryTimestamp));
         segment.add(SafeJsonPrimitive.factory(trace.exitTimestamp));
         segment.add(SafeJsonPrimitive.factory(trace.displayName));
@@ -231,29 +270,127 @@ public class ActivityTrace extends HarvestableArray {
         // Useful for debugging
         //segment.add(new JsonPrimitive(trace.UUID.toString()));
 
-        if (trace.getChildren().isEmpty()) {
-            segment.add(new JsonArray());
-        } else {
-            JsonArray children = new JsonArray();
+        return segment;
+    }
 
-            for (UUID traceUUID : trace.getChildren()) {
-                // Since we occasionally serialize a trace with missing children, it's important to check if they exist first.
-                Trace childTrace = traces.get(traceUUID);
-                if (childTrace != null) {
-                    children.add(traceToTree(childTrace));
-                }
+    /**
+     * Returns the next recorded child trace, or null when all children have been visited.
+     * Since we occasionally serialize a trace with missing children, it's important to check if they exist first.
+     */
+    private Trace nextChild(final Iterator<UUID> children) {
+        while (children.hasNext()) {
+            final Trace childTrace = traces.get(children.next());
+            if (childTrace != null) {
+                return childTrace;
             }
+        }
 
-            segment.add(children);
+        return null;
+    }
+
+    /**
+     * Stream the trace to a writer, producing the same JSON as {@code asJsonArray().toString()} without
+     * first building the trace tree in memory. The tree is walked iteratively. An unfinished trace
+     * is written as null.
+     */
+    public void writeJson(final JsonWriter writer) throws IOException {
+        if (!complete) {
+            log.verbose("Attempted to serialize trace " + rootTrace.myUUID.toString() + " but it has yet to be finalized");
+            writer.nullValue();
+            return;
         }
 
-        return segment;
+        writer.beginArray();
+        gson.toJson(params, GSON_STRING_MAP_TYPE, writer);
+        writer.value(rootTrace.entryTimestamp);
+        writer.value(rootTrace.exitTimestamp);
+        writer.value(SafeJsonPrimitive.checkNull(rootTrace.displayName));
+
+        writer.beginArray();
+        jsonElementAdapter.write(writer, getEnvironment());
+        writeTraceTree(writer, rootTrace);
+        jsonElementAdapter.write(writer, getVitalsAsJson());
+        if (previousActivity != null) {
+            jsonElementAdapter.write(writer, getPreviousActivityAsJson());
+        }
+        writer.endArray();
+
+        writer.endArray();
+    }
+
+    private void writeTraceTree(final JsonWriter writer, final Trace trace) throws IOException {
+        final Deque<Iterator<UUID>> stack = new ArrayDeque<>();
+
+        stack.push(writeSegmentHeader(writer, trace));
+        while (!stack.isEmpty()) {
+            final Trace childTrace = nextChild(stack.peek());
+
+            if (childTrace == null) {
+                writer.endArray();  // children
+                writer.endArray();  // segment
+                stack.pop();
+            } else {
+                stack.push(writeSegmentHeader(writer, childTrace));
+            }
+        }
+    }
+
+    /**
+     * Write a segment up to and including the start of its child array.
+     *
+     * @return An iterator over the segment's children
+     */
+    private Iterator<UUID> writeSegmentHeader(final JsonWriter writer, final Trace trace) throws IOException {
+        trace.prepareForSerialization();
+
+        writer.beginArray();
+        gson.toJson(trace.getParams(), GSON_STRING_MAP_TYPE, writer);
+        writer.value(trace.entryTimestamp);
+        writer.value(trace.exitTimestamp);
+        writer.value(SafeJsonPrimitive.checkNull(trace.displayName));
+
+        writer.beginArray();
+        writer.value(trace.threadId);
+        writer.value(SafeJsonPrimitive.checkNull(trace.threadName));
+        writer.endArray();
+
+        writer.beginArray();
+
+        return trace.getChildren().iterator();
+    }
+
+    @Override
+    public String toJsonString() {
+        final StringWriter stringWriter = new StringWriter();
+
+        try {
+            final JsonWriter writer = new JsonWriter(stringWriter);
+            writer.setLenient(true);
+            writeJson(writer);
+            writer.flush();
+        } catch (IOException e) {
+            // a StringWriter does not throw
+            log.error("Unable to serialize trace: " + e.getMessage());
+        }
+
+        return stringWriter.toString();
+    }
+
+    private static final class TreeFrame {
+        final JsonArray segment;
+        final JsonArray childSegments = new JsonArray();
+        final Iterator<UUID> children;
+
+        TreeFrame(JsonArray segment, Trace trace) {
+            this.segment = segment;
+            this.children = trace.getChildren().iterator();
+        }
     }
 
     private JsonArray getEnvironment() {
         JsonArray environment = new JsonArray();
 
-        environment.add(new Gson().toJsonTree(ENVIRONMENT_TYPE, GSON_STRING_MAP_TYPE));
+        environment.add(gson.toJsonTree(ENVIRONMENT_TYPE, GSON_STRING_MAP_TYPE));
 
         // Add the application and device information elements
         ConnectInformation connectInformation = new ConnectInformation(Agent.getApplicationInformation(), Agent.getDeviceInformation());
@@ -262,7 +399,7 @@ public class ActivityTrace extends HarvestableArray {
         // Add the environment params.  For the moment this includes just the size key.
         HashMap<String, String> environmentParams = new HashMap<String, String>();
         environmentParams.put("size", SIZE_NORMAL);
-        environment.add(new Gson().toJsonTree(environmentParams, GSON_STRING_MAP_TYPE));
+        environment.add(gson.toJsonTree(environmentParams, GSON_STRING_MAP_TYPE));
 
         return environment;
     }
@@ -274,7 +411,7 @@ public class ActivityTrace extends HarvestableArray {
     private JsonArray getVitalsAsJson() {
         JsonArray vitalsJson = new JsonArray();
 
-        vitalsJson.add(new Gson().toJsonTree(VITALS_TYPE, GSON_STRING_MAP_TYPE));
+        vitalsJson.add(gson.toJsonTree(VITALS_TYPE, GSON_STRING_MAP_TYPE));
 
         JsonObject vitalsMap = new JsonObject();
 
@@ -313,7 +450,7 @@ public class ActivityTrace extends HarvestableArray {
     private JsonArray getPreviousActivityAsJson() {
         final JsonArray historyJson = new JsonArray();
 
-        historyJson.add(new Gson().toJsonTree(ACTIVITY_HISTORY_TYPE, GSON_STRING_MAP_TYPE));
+        historyJson.add(gson.toJsonTree(ACTIVITY_HISTORY_TYPE, GSON_STRING_MAP_TYPE));
         historyJson.addAll(previousActivity.asJsonArray());
 
         return historyJson;
@@ -11,19 +11,28 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class NamedThreadFactory implements ThreadFactory {
     final ThreadGroup group;
     final String namePrefix;
+    final boolean daemon;
 
     final AtomicInteger threadNumber = new AtomicInteger(1);
 
     public NamedThreadFactory(String factoryName) {
+        this(factoryName, false);
+    }
+
+    /**
+     * @param daemon If true, threads are daemons and won't keep the process alive
+     */
+    public NamedThreadFactory(String factoryName, boolean daemon) {
         group = Thread.currentThread().getThreadGroup();
         namePrefix = "NR_" + factoryName + "-";
+        this.daemon = daemon;
     }
 
     @Override
     public Thread newThread(Runnable r) {
         Thread t = new Thread(group, r, namePrefix + threadNumber.getAndIncrement(), 0);
-        if (t.isDaemon()) {
-            t.setDaemon(false);
+        if (t.isDaemon() != daemon) {
+            t.setDaemon(daemon);
         }
         if (t.getPriority() != Thread.NORM_PRIORITY) {
             t.setPriority(Thread.NORM_PRIORITY);
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android;
+
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.stats.StatsEngine;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StartupGraphTest {
+
+    private StartupGraph graph;
+    private List<String> order;
+
+    @Before
+    public void setUp() throws Exception {
+        StatsEngine.SUPPORTABILITY.getStatsMap().clear();
+        graph = new StartupGraph();
+        order = new CopyOnWriteArrayList<>();
+    }
+
+    @Test
+    public void testDependencyOrder() {
+        graph.add("c", () -> order.add("c"), "a", "b")
+                .add("a", () -> order.add("a"))
+                .add("b", () -> order.add("b"), "a")
+                .add("d", () -> order.add("d"));
+        graph.start();
+
+        Assert.assertEquals(4, order.size());
+        Assert.assertTrue(order.indexOf("a") < order.indexOf("b"));
+        Assert.assertTrue(order.indexOf("b") < order.indexOf("c"));
+    }
+
+    @Test
+    public void testIndependentStepsRunConcurrently() {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Runnable rendezvous = () -> {
+            latch.countDown();
+            try {
+                Assert.assertTrue("Steps should run concurrently", latch.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            order.add(Thread.currentThread().getName());
+        };
+
+        graph.add("one", rendezvous).add("two", rendezvous);
+        graph.start();
+
+        Assert.assertEquals(2, order.size());
+        Assert.assertNotEquals(order.get(0), order.get(1));
+    }
+
+    @Test
+    public void testCallerThreadSteps() {
+        final Thread caller = Thread.currentThread();
+
+        graph.add("worker", () -> order.add("worker"))
+                .addOnCallerThread("caller", () -> {
+                    Assert.assertSame(caller, Thread.currentThread());
+                    order.add("caller");
+                }, "worker");
+        graph.start();
+
+        Assert.assertEquals("worker", order.get(0));
+        Assert.assertEquals("caller", order.get(1));
+    }
+
+    @Test
+    public void testFailedDependency() {
+        graph.add("broken", () -> {
+                    throw new IllegalStateException("broken");
+                })
+                .add("dependent", () -> order.add("dependent"), "broken")
+                .add("independent", () -> order.add("independent"));
+
+        try {
+            graph.start();
+            Assert.fail("Should rethrow step failure");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("broken", e.getMessage());
+        }
+
+        Assert.assertFalse("Should skip dependents of failed steps", order.contains("dependent"));
+        Assert.assertTrue(order.contains("independent"));
+    }
+
+    @Test
+    public void testInvalidGraphs() {
+        try {
+            new StartupGraph().add("a", () -> {
+            }, "missing").start();
+            Assert.fail("Should reject unknown dependencies");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        try {
+            new StartupGraph().add("a", () -> {
+            }, "b").add("b", () -> {
+            }, "a").start();
+            Assert.fail("Should reject cycles");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        try {
+            new StartupGraph().add("a", () -> {
+            }).add("a", () -> {
+            });
+            Assert.fail("Should reject duplicate steps");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDeferredSteps() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        graph.add("immediate", () -> order.add("immediate"))
+                .defer("deferred", () -> {
+                    order.add("deferred");
+                    latch.countDown();
+                });
+        graph.start();
+
+        Assert.assertFalse(graph.isDeferredStarted());
+        Assert.assertFalse("Should hold deferred steps", order.contains("deferred"));
+
+        graph.startDeferred();
+        graph.startDeferred();
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(graph.isDeferredStarted());
+
+        final AtomicInteger runs = new AtomicInteger(0);
+        graph.defer("late", runs::incrementAndGet);
+        Assert.assertEquals("Should run late steps immediately", 1, runs.get());
+    }
+
+    @Test
+    public void testStepMetrics() {
+        graph.add("timed", () -> order.add("timed"));
+        graph.start();
+
+        Assert.assertTrue(StatsEngine.SUPPORTABILITY.getStatsMap().containsKey(MetricNames.SUPPORTABILITY_STARTUP + "timed"));
+        Assert.assertTrue(StatsEngine.SUPPORTABILITY.getStatsMap().containsKey(MetricNames.SUPPORTABILITY_STARTUP_TOTAL));
+    }
+
+    @Test
+    public void testTimeoutCompletesInBackground() throws Exception {
+        final CountDownLatch stall = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        graph = new StartupGraph(100);
+        graph.add("slow", () -> {
+                    try {
+                        stall.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    order.add("slow");
+                })
+                .add("dependent", () -> order.add("dependent"), "slow")
+                .add("fast", () -> order.add("fast"));
+
+        Assert.assertFalse("Should time out", graph.start());
+        Assert.assertTrue(graph.isComplete("fast"));
+        Assert.assertFalse(graph.isComplete("slow"));
+        Assert.assertTrue(StatsEngine.SUPPORTABILITY.getStatsMap().containsKey(MetricNames.SUPPORTABILITY_STARTUP_TIMEOUT));
+
+        graph.afterStep("dependent", () -> {
+            order.add("after");
+            done.countDown();
+        });
+        Assert.assertFalse(order.contains("after"));
+
+        stall.countDown();
+        Assert.assertTrue("Should release dependents of late steps", done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(java.util.Arrays.asList("fast", "slow", "dependent", "after"), order);
+    }
+
+    @Test
+    public void testAfterStep() {
+        graph.add("step", () -> order.add("step"))
+                .add("broken", () -> {
+                    throw new IllegalStateException("broken");
+                });
+
+        try {
+            Assert.assertTrue(graph.start());
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        graph.afterStep("step", () -> order.add("after"));
+        graph.afterStep("broken", () -> order.add("not run"));
+        Assert.assertEquals(java.util.Arrays.asList("step", "after"), order);
+    }
+
+    @Test
+    public void testRestart() {
+        final AtomicInteger runs = new AtomicInteger(0);
+
+        graph.add("step", () -> runs.incrementAndGet())
+                .add("dependent", () -> order.add("dependent"), "step");
+
+        Assert.assertTrue(graph.start());
+        Assert.assertTrue(graph.start());
+
+        Assert.assertEquals(2, runs.get());
+        Assert.assertTrue(graph.isComplete("dependent"));
+        Assert.assertEquals(java.util.Arrays.asList("dependent", "dependent"), order);
+
+        graph.afterStep("dependent", () -> order.add("after"));
+        Assert.assertEquals("after", order.get(order.size() - 1));
+    }
+
+    @Test
+    public void testRestartWhileCompletingInBackground() {
+        final CountDownLatch stall = new CountDownLatch(1);
+
+        graph = new StartupGraph(100);
+        graph.add("slow", () -> {
+            try {
+                stall.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            order.add("slow");
+        });
+
+        Assert.assertFalse(graph.start());
+        Assert.assertFalse("Should not restart an unfinished startup", graph.start());
+        stall.countDown();
+    }
+}
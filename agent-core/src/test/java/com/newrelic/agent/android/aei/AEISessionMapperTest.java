@@ -18,7 +18,11 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Set;
 import java.util.UUID;
@@ -127,4 +131,107 @@ public class AEISessionMapperTest {
         mapper.erase(pidSet);
         Assert.assertNotNull(mapper.get(456));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void roundTrip() throws Exception {
+        mapper.flush();
+        Assert.assertTrue(mapper.isBinaryStore());
+
+        AEISessionMapper reloaded = new AEISessionMapper(sessionMapperFile);
+        Assert.assertEquals(3, reloaded.size());
+        for (int pid : new int[]{123, 234, 345}) {
+            Assert.assertEquals(mapper.getSessionId(pid), reloaded.getSessionId(pid));
+            Assert.assertEquals(mapper.getRealAgentID(pid), reloaded.getRealAgentID(pid));
+        }
+    }
+
+    @Test
+    public void flushAppendsChanges() throws Exception {
+        mapper.flush();
+        long length = sessionMapperFile.length();
+
+        mapper.put(456, new AEISessionMapper.AEISessionMeta(UUID.randomUUID().toString(), 654));
+        mapper.erase(123);
+        mapper.flush();
+        Assert.assertTrue(sessionMapperFile.length() > length);
+        Assert.assertEquals(5, mapper.storedRecords);
+
+        AEISessionMapper reloaded = new AEISessionMapper(sessionMapperFile);
+        Assert.assertEquals(3, reloaded.size());
+        Assert.assertNull(reloaded.get(123));
+        Assert.assertEquals(mapper.getSessionId(456), reloaded.getSessionId(456));
+
+        // nothing changed, nothing is written
+        length = sessionMapperFile.length();
+        reloaded.flush();
+        Assert.assertEquals(length, sessionMapperFile.length());
+    }
+
+    @Test
+    public void flushCompactsLog() throws Exception {
+        mapper.flush();
+        for (int i = 0; i < AEISessionMapper.COMPACTION_SLACK * 2; i++) {
+            mapper.put(123, new AEISessionMapper.AEISessionMeta(UUID.randomUUID().toString(), i + 1));
+            mapper.flush();
+            Assert.assertTrue(mapper.storedRecords <= 2 * mapper.size() + AEISessionMapper.COMPACTION_SLACK);
+        }
+
+        AEISessionMapper reloaded = new AEISessionMapper(sessionMapperFile);
+        Assert.assertEquals(3, reloaded.size());
+        Assert.assertEquals(AEISessionMapper.COMPACTION_SLACK * 2, reloaded.getRealAgentID(123));
+        Assert.assertFalse(new File(sessionMapperFile.getAbsolutePath() + ".tmp").exists());
+    }
+
+    @Test
+    public void loadIgnoresTornRecord() throws Exception {
+        mapper.flush();
+        mapper.put(456, new AEISessionMapper.AEISessionMeta(UUID.randomUUID().toString(), 654));
+        mapper.flush();
+
+        // drop the end of the last record, as if the process was killed while it was written
+        try (RandomAccessFile store = new RandomAccessFile(sessionMapperFile, "rw")) {
+            store.setLength(store.length() - 5);
+        }
+
+        AEISessionMapper reloaded = new AEISessionMapper(sessionMapperFile);
+        Assert.assertEquals(3, reloaded.size());
+        Assert.assertNull(reloaded.get(456));
+        Assert.assertTrue(reloaded.compact);
+
+        reloaded.put(567, new AEISessionMapper.AEISessionMeta(UUID.randomUUID().toString(), 765));
+        reloaded.flush();
+        Assert.assertEquals(4, new AEISessionMapper(sessionMapperFile).size());
+    }
+
+    @Test
+    public void loadLegacyStore() throws Exception {
+        String sessionId = UUID.randomUUID().toString();
+        Files.write(sessionMapperFile.toPath(), ("{\"666\":{\"sessionId\":\"" + sessionId + "\",\"realAgentId\":999}}").getBytes(StandardCharsets.UTF_8));
+
+        AEISessionMapper legacy = new AEISessionMapper(sessionMapperFile);
+        Assert.assertEquals(sessionId, legacy.getSessionId(666));
+        Assert.assertEquals(999, legacy.getRealAgentID(666));
+        Assert.assertFalse(legacy.isBinaryStore());
+
+        legacy.flush();
+        Assert.assertTrue(legacy.isBinaryStore());
+        Assert.assertEquals(sessionId, new AEISessionMapper(sessionMapperFile).getSessionId(666));
+    }
+
+    @Test
+    public void flushAfterClear() throws Exception {
+        mapper.flush();
+        mapper.clear();
+        mapper.put(456, new AEISessionMapper.AEISessionMeta(UUID.randomUUID().toString(), 654));
+        mapper.flush();
+
+        AEISessionMapper reloaded = new AEISessionMapper(sessionMapperFile);
+        Assert.assertEquals(1, reloaded.size());
+        Assert.assertNotNull(reloaded.get(456));
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(sessionMapperFile))) {
+            Assert.assertEquals(AEISessionMapper.MAGIC, in.readInt());
+            Assert.assertEquals(AEISessionMapper.VERSION, in.readByte());
+        }
+    }
+}
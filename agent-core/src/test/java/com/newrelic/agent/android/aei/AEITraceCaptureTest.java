@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.aei;
+
+import com.newrelic.agent.android.util.Streams;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class AEITraceCaptureTest {
+
+    @Test
+    public void captureSmallTrace() throws Exception {
+        final String sysTrace = Streams.slurpString(AEITraceCaptureTest.class.getResource("/applicationExitInfo/systrace").openStream());
+        final AEITraceCapture capture = new AEITraceCapture(sysTrace.length() * 2, 1000, 16);
+        final String captured = capture(capture, new ByteArrayInputStream(sysTrace.getBytes(StandardCharsets.UTF_8)));
+
+        Assert.assertFalse(capture.isTruncated());
+        Assert.assertEquals(sysTrace.length(), capture.getCharsRead());
+        Assert.assertEquals(sysTrace.replace("\r", "").strip(), captured.strip());
+    }
+
+    @Test
+    public void capturedTraceDecomposes() throws Exception {
+        final AEITraceCapture capture = new AEITraceCapture(8 * 1024, 8, 2);
+        final String captured = capture(capture, AEITraceCaptureTest.class.getResource("/applicationExitInfo/systrace").openStream());
+
+        Assert.assertTrue(capture.isTruncated());
+        Assert.assertTrue(capture.getCharsWritten() < capture.getCharsRead());
+
+        final AEITrace aeiTrace = new AEITrace().decomposeFromSystemTrace(captured);
+        Assert.assertEquals("6295", aeiTrace.pid);
+        Assert.assertEquals("2024-10-21 15:48:46.263477197-0700", aeiTrace.createTime);
+        Assert.assertFalse(aeiTrace.threads.isEmpty());
+        Assert.assertTrue(aeiTrace.threads.get(0).startsWith("\"Signal Catcher\""));
+        for (String thread : aeiTrace.threads) {
+            Assert.assertFalse(thread.contains("elided"));
+        }
+    }
+
+    @Test
+    public void keepsHeadAndTailOfSections() throws Exception {
+        final AEITraceCapture capture = new AEITraceCapture(1024 * 1024, 4, 2);
+        final String captured = capture(capture, syntheticTrace(3, 100));
+
+        Assert.assertEquals(3, capture.getTruncatedSections());
+        Assert.assertEquals(0, capture.getDroppedSections());
+        for (int thread = 0; thread < 3; thread++) {
+            Assert.assertTrue(captured.contains("\"thread-" + thread + "\" prio=5 tid=" + thread + " Waiting\n" +
+                    "  at frame" + thread + "_0\n" +
+                    "  at frame" + thread + "_1\n" +
+                    "  at frame" + thread + "_2\n" +
+                    "  (... 95 lines elided ...)\n" +
+                    "  at frame" + thread + "_98\n" +
+                    "  at frame" + thread + "_99\n"));
+            Assert.assertFalse(captured.contains("frame" + thread + "_3\n"));
+            Assert.assertFalse(captured.contains("frame" + thread + "_97\n"));
+        }
+        Assert.assertTrue(captured.contains("DALVIK THREADS (3):"));
+        Assert.assertTrue(captured.strip().endsWith("----- end 1234 -----"));
+    }
+
+    @Test
+    public void dropsSectionsPastSizeLimit() throws Exception {
+        final AEITraceCapture capture = new AEITraceCapture(2048, 8, 4);
+        final String captured = capture(capture, syntheticTrace(100, 20));
+
+        Assert.assertTrue(capture.isTruncated());
+        Assert.assertTrue(capture.getDroppedSections() > 90);
+        Assert.assertEquals(100, capture.getSections());
+        Assert.assertTrue(captured.length() < 2048 + 256);
+        Assert.assertTrue(captured.contains(String.format(AEITraceCapture.DROPPED_SECTIONS_MARKER, capture.getDroppedSections())));
+        Assert.assertTrue(captured.strip().endsWith("----- end 1234 -----"));
+
+        final AEITrace aeiTrace = new AEITrace().decomposeFromSystemTrace(captured);
+        Assert.assertEquals("1234", aeiTrace.pid);
+        Assert.assertEquals(100 - capture.getDroppedSections(), aeiTrace.threads.size());
+    }
+
+    @Test
+    public void clipsLongLines() throws Exception {
+        final String longLine = new String(new char[10 * AEITraceCapture.MAX_LINE_LENGTH]).replace('\0', 'x');
+        final AEITraceCapture capture = new AEITraceCapture();
+        final String captured = capture(capture, new ByteArrayInputStream(("\"main\" prio=5 tid=1\n" + longLine + "\n").getBytes(StandardCharsets.UTF_8)));
+
+        Assert.assertEquals(longLine.length() + 21, capture.getCharsRead());
+        Assert.assertEquals(AEITraceCapture.MAX_LINE_LENGTH + 21, captured.length());
+    }
+
+    @Test
+    public void captureLargeTraceInBoundedMemory() throws Exception {
+        final int threads = 2000;
+        final int frames = 500;
+        final AEITraceCapture capture = new AEITraceCapture();
+        final ByteArrayOutputStream artifact = new ByteArrayOutputStream();
+
+        try (OutputStream os = new GZIPOutputStream(artifact)) {
+            capture.capture(syntheticTrace(threads, frames), os);
+        }
+
+        Assert.assertTrue(capture.getCharsRead() > 10 * 1024 * 1024);
+        Assert.assertTrue(capture.getCharsWritten() <= AEITraceCapture.DEFAULT_MAX_SIZE + 1024);
+        Assert.assertTrue(artifact.size() < capture.getCharsWritten());
+
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(artifact.toByteArray()))) {
+            Assert.assertEquals(capture.getCharsWritten(), Streams.slurpString(is).length());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLimits() {
+        new AEITraceCapture(0);
+    }
+
+    private static String capture(AEITraceCapture capture, InputStream trace) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream is = trace) {
+            capture.capture(is, out);
+        }
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * A generated trace of the given size, read without ever being held in memory.
+     */
+    private static InputStream syntheticTrace(final int threads, final int frames) {
+        return new InputStream() {
+            int thread = -1;
+            int frame = 0;
+            byte[] line = String.format("----- pid 1234 at 2024-10-21 15:48:46.263477197-0700 -----\n\nDALVIK THREADS (%d):\n", threads)
+                    .getBytes(StandardCharsets.UTF_8);
+            int pos = 0;
+
+            @Override
+            public int read() {
+                if (line == null) {
+                    return -1;
+                }
+                if (pos == line.length) {
+                    line = nextLine();
+                    pos = 0;
+                    if (line == null) {
+                        return -1;
+                    }
+                }
+                return line[pos++];
+            }
+
+            byte[] nextLine() {
+                String next;
+                if (thread == threads) {
+                    return null;
+                } else if (thread == -1 || frame == frames) {
+                    thread++;
+                    frame = -1;
+                    if (thread == threads) {
+                        next = "----- end 1234 -----\n";
+                    } else {
+                        next = (thread == 0 ? "" : "\n") + "\"thread-" + thread + "\" prio=5 tid=" + thread + " Waiting\n";
+                    }
+                } else {
+                    next = "  at frame" + thread + "_" + frame + "\n";
+                }
+                frame++;
+                return next.getBytes(StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
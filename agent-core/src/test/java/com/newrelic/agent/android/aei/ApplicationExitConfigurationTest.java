@@ -100,4 +100,18 @@ public class ApplicationExitConfigurationTest {
         Assert.assertEquals("{\"enabled\":true}", gson.toJson(applicationExitConfiguration));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testMaxTraceSize() {
+        Assert.assertEquals(AEITraceCapture.DEFAULT_MAX_SIZE, applicationExitConfiguration.getMaxTraceSize());
+
+        applicationExitConfiguration.setMaxTraceSize(64 * 1024);
+        Assert.assertEquals(64 * 1024, applicationExitConfiguration.getMaxTraceSize());
+
+        applicationExitConfiguration.setConfiguration(new ApplicationExitConfiguration(true));
+        Assert.assertEquals(64 * 1024, applicationExitConfiguration.getMaxTraceSize());
+
+        applicationExitConfiguration.setMaxTraceSize(0);
+        Assert.assertEquals(AEITraceCapture.DEFAULT_MAX_SIZE, applicationExitConfiguration.getMaxTraceSize());
+    }
+
+}
@@ -725,6 +725,41 @@ public class AnalyticsControllerImplTests {
         Assert.assertTrue("Session attributes contains user attributes.", sessionAttributes.containsAll(controller.getUserAttributes()));
     }
 
+    @Test
+    public void testSessionAttributeSnapshot() throws Exception {
+        controller.initialize(config, new StubAgentImpl());
+        controller.setAttribute("userAttribute", "value");
+
+        SessionAttributeSnapshot snapshot = controller.getSessionAttributeSnapshot();
+        Assert.assertSame("Unchanged attributes should share the same snapshot.", snapshot, controller.getSessionAttributeSnapshot());
+        Assert.assertSame("Session attributes should be shared by reference.", snapshot.getSessionAttributes(), controller.getSessionAttributes());
+        Assert.assertSame("Snapshot JSON should be created once.", snapshot.asJsonObject(), snapshot.asJsonObject());
+        Assert.assertEquals("value", snapshot.asJsonObject().get("userAttribute").getAsString());
+
+        controller.setAttribute("userAttribute", "updated");
+        SessionAttributeSnapshot updated = controller.getSessionAttributeSnapshot();
+        Assert.assertNotSame("Changed attributes should rebuild the snapshot.", snapshot, updated);
+        Assert.assertTrue(updated.getVersion() > snapshot.getVersion());
+        Assert.assertEquals("updated", getAttributeByName(updated.getUserAttributes(), "userAttribute").getStringValue());
+        Assert.assertEquals("Prior snapshot should be immutable.", "value", getAttributeByName(snapshot.getUserAttributes(), "userAttribute").getStringValue());
+
+        controller.incrementAttribute("counter", 1);
+        Assert.assertNotSame(updated, controller.getSessionAttributeSnapshot());
+        Assert.assertEquals(1, controller.getSessionAttributeSnapshot().asJsonObject().get("counter").getAsInt());
+
+        updated = controller.getSessionAttributeSnapshot();
+        controller.removeAttribute("counter");
+        Assert.assertNull(getAttributeByName(controller.getUserAttributes(), "counter"));
+        Assert.assertFalse(controller.getSessionAttributeSnapshot().asJsonAttributeMap().containsKey("counter"));
+        Assert.assertTrue(updated.asJsonAttributeMap().containsKey("counter"));
+
+        try {
+            controller.getSessionAttributes().clear();
+            Assert.fail("Session attributes should be immutable");
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
     @Test
     public void testSessionDurationAttributeShouldBeAbsentOnSessionStart() throws Exception {
         StubAgentImpl agentImpl = new StubAgentImpl();
@@ -14,6 +14,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -84,6 +85,43 @@ public class AnalyticsValidatorTests {
         Assert.assertFalse(validator.isValidAttributeValue("name", superLongAttrValue));
     }
 
+    @Test
+    public void utf8Length() {
+        String[] values = {"value", "", "\u00e9t\u00e9", "\u65e5\u672c\u8a9e", "\ud83d\ude00 emoji", "lone \ud83d surrogate", "\ude00", superLongAttrValue};
+        for (String value : values) {
+            Assert.assertEquals(value.getBytes(StandardCharsets.UTF_8).length, AnalyticsValidator.utf8Length(value, Integer.MAX_VALUE));
+        }
+        Assert.assertTrue(AnalyticsValidator.utf8Length(superLongAttrValue, 16) >= 16);
+        Assert.assertTrue(AnalyticsValidator.utf8Length(superLongAttrValue, 16) < 20);
+    }
+
+    @Test
+    public void isMultiByteAttributeValueValid() {
+        StringBuilder value = new StringBuilder();
+        while (value.length() < (AnalyticsAttribute.ATTRIBUTE_VALUE_MAX_LENGTH / 2)) {
+            value.append("\u00e9");
+        }
+        Assert.assertFalse("Encoded length exceeds the limit", validator.isValidAttributeValue("name", value.toString()));
+        Assert.assertTrue(validator.isValidAttributeValue("name", value.substring(0, value.length() / 2)));
+    }
+
+    @Test
+    public void cachesValidatedAttributeNames() {
+        AnalyticsValidator.validatedAttributeNames.clear();
+
+        Assert.assertTrue(validator.isValidAttributeName("cachedName"));
+        Assert.assertTrue(AnalyticsValidator.validatedAttributeNames.contains("cachedName"));
+        Assert.assertTrue(validator.isValidAttributeName("cachedName"));
+
+        Assert.assertFalse(validator.isValidAttributeName("nr.reserved"));
+        Assert.assertFalse("Invalid names are never cached", AnalyticsValidator.validatedAttributeNames.contains("nr.reserved"));
+
+        for (int i = 0; i < AnalyticsValidator.MAX_VALIDATED_NAMES * 2; i++) {
+            Assert.assertTrue(validator.isValidAttributeName("name" + i));
+        }
+        Assert.assertTrue(AnalyticsValidator.validatedAttributeNames.size() <= AnalyticsValidator.MAX_VALIDATED_NAMES);
+    }
+
     @Test
     public void isAttributeNameReserved() {
         Assert.assertTrue(validator.isReservedAttributeName("nr..rrrr"));
@@ -267,6 +267,16 @@ public class DistributedTracingTest {
         Assert.assertNotEquals(TraceContext.INVALID_SPAN_ID, longGuid);
     }
 
+    @Test
+    public void testHexEncoder() {
+        char[] chars = new char[20];
+        Assert.assertNotEquals(0, DistributedTracing.encodeHex(0x0123456789abcdefL, chars, 0));
+        Assert.assertEquals(0, DistributedTracing.encodeHex(0x0000ffffffffffffL, chars, 16));
+        Assert.assertEquals("0123456789abcdef0000", new String(chars));
+        Assert.assertTrue(DistributedTracing.generateTraceId().matches("^[0-9a-f]{32}$"));
+        Assert.assertTrue(DistributedTracing.generateSpanId().matches("^[0-9a-f]{16}$"));
+    }
+
     static AnalyticsAttribute getAttributeByName(Collection<AnalyticsAttribute> attributes, String name) {
         for (AnalyticsAttribute eventAttr : attributes) {
             if (eventAttr.getName().equalsIgnoreCase(name)) {
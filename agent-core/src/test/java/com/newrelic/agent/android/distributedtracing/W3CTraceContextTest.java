@@ -9,7 +9,13 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
 public class W3CTraceContextTest{
+    // https://www.w3.org/TR/trace-context/#traceparent-header-field-values, version 00
+    static final String W3C_TRACE_PARENT_REGEX = "^00-[0-9a-f]{32}-[0-9a-f]{16}-[0-9a-f]{2}$";
 
     private TraceContext.W3CTraceContext traceContext;
 
@@ -41,4 +47,47 @@ public class W3CTraceContextTest{
         Assert.assertFalse(traceContext.getParentId().isEmpty());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testTraceParentConformance() {
+        final Set<String> traceIds = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            TraceContext context = new TraceContext.W3CTraceContext(null);
+            String headerValue = context.traceParent.getHeaderValue();
+
+            Assert.assertTrue(headerValue, headerValue.matches(W3C_TRACE_PARENT_REGEX));
+            Assert.assertNotEquals(TraceContext.INVALID_TRACE_ID, context.getTraceId());
+            Assert.assertNotEquals(TraceContext.INVALID_SPAN_ID, context.getParentId());
+            Assert.assertTrue(traceIds.add(context.getTraceId()));
+            Assert.assertEquals(String.format(Locale.ROOT, TraceParent.TRACE_PARENT_HEADER_FMT,
+                    "00", context.getTraceId(), context.getParentId(), "01"), headerValue);
+        }
+    }
+
+    @Test
+    public void testTraceStateConformance() {
+        TraceConfiguration.setInstance(new TraceConfiguration("332029", "2827902", "190"));
+        TraceContext context = new TraceContext.W3CTraceContext(null);
+        TraceState.W3CTraceState traceState = (TraceState.W3CTraceState) context.traceState;
+        String expected = String.format(Locale.ROOT, "%s@nr=" + TraceState.W3CTraceState.TRACE_STATE_HEADER_FMT,
+                "190", 0, 2, "332029", "2827902", context.getParentId(), "", "", "", traceState.timestampMs);
+
+        Assert.assertEquals(expected, traceState.getHeaderValue());
+        Assert.assertTrue(traceState.getHeaderValue().matches(TraceState.W3CTraceState.TRACE_STATE_HEADER_REGEX));
+    }
+
+    @Test
+    public void testHeaderPartsFollowConfiguration() {
+        TraceConfiguration traceConfiguration = TraceConfiguration.setInstance(new TraceConfiguration("1", "22", "333"));
+        TraceConfiguration.HeaderParts headerParts = traceConfiguration.getHeaderParts();
+
+        Assert.assertSame(headerParts, traceConfiguration.getHeaderParts());
+        Assert.assertEquals("333@nr", headerParts.vendor);
+        Assert.assertEquals("0-2-1-22-", headerParts.vendorStatePrefix);
+
+        traceConfiguration.accountId = "4";
+        Assert.assertNotSame(headerParts, traceConfiguration.getHeaderParts());
+        Assert.assertEquals("0-2-4-22-", traceConfiguration.getHeaderParts().vendorStatePrefix);
+        Assert.assertEquals("4", new TraceContext.W3CTraceContext(null).getAccountId());
+    }
+
+}
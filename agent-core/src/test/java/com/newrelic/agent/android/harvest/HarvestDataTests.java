@@ -228,6 +228,50 @@ public class HarvestDataTests {
 
     }
 
+    @Test
+    public void testStreamedJsonMatchesJsonTree() throws Exception {
+        TestHarvest harvest = new TestHarvest();
+        HarvestData harvestData = new HarvestData();
+        harvest.createHarvester();
+        harvest.setHarvestData(harvestData);
+        Harvest.setInstance(harvest);
+
+        harvestData.setAnalyticsEnabled(true);
+        harvestData.setDataToken(Providers.provideDataToken());
+        harvestData.setDeviceInformation(Providers.provideDeviceInformation());
+        harvestData.setActivityTraces(Providers.provideActivityTraces());
+
+        Assert.assertEquals(harvestData.asJsonArray().toString(), harvestData.toJsonString());
+
+        FeatureFlag.disableFeature(FeatureFlag.DefaultInteractions);
+        Assert.assertEquals(harvestData.asJsonArray().toString(), harvestData.toJsonString());
+    }
+
+    @Test
+    public void testStreamedJsonDropsOversizedActivityTraces() throws Exception {
+        TestHarvest harvest = new TestHarvest();
+        HarvestData harvestData = new HarvestData();
+        harvest.createHarvester();
+        harvest.setHarvestData(harvestData);
+        Harvest.setInstance(harvest);
+
+        ActivityTraces activityTraces = Providers.provideActivityTraces();
+        harvestData.setActivityTraces(activityTraces);
+
+        JsonArray array = new Gson().fromJson(harvestData.toJsonString(), JsonArray.class);
+        Assert.assertEquals(2, array.get(HarvestData.ACTIVITY_TRACES_INDEX).getAsJsonArray().size());
+
+        final int maxSize = Harvest.getHarvestConfiguration().getActivity_trace_max_size();
+        try {
+            Harvest.getHarvestConfiguration().setActivity_trace_max_size((int) activityTraces.getJsonLength());
+            array = new Gson().fromJson(harvestData.toJsonString(), JsonArray.class);
+            Assert.assertEquals(0, array.get(HarvestData.ACTIVITY_TRACES_INDEX).getAsJsonArray().size());
+            Assert.assertEquals(harvestData.asJsonArray().toString(), array.toString());
+        } finally {
+            Harvest.getHarvestConfiguration().setActivity_trace_max_size(maxSize);
+        }
+    }
+
     @Test
     public void testBuildHarvestHttpTransactions() {
         HttpTransactions transactions = new HttpTransactions();
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.harvest;
+
+import com.newrelic.agent.android.metric.Metric;
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.stats.StatsEngine;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class HarvestSchedulingPolicyTest {
+    private static final long PERIOD = TimeUnit.SECONDS.toMillis(60);
+
+    private long now;
+    private float fill;
+    private HarvestSchedulingPolicy.Network network;
+    private boolean inBackground;
+    private HarvestSchedulingPolicy policy;
+
+    @Before
+    public void setUp() throws Exception {
+        StatsEngine.reset();
+        now = TimeUnit.DAYS.toMillis(1);
+        fill = 0.5f;
+        network = HarvestSchedulingPolicy.Network.UNMETERED;
+        inBackground = false;
+        policy = new HarvestSchedulingPolicy(() -> now, () -> fill, () -> network, () -> inBackground,
+                0.8f, 0.1f, TimeUnit.SECONDS.toMillis(10), TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Test
+    public void testFirstHarvestIsImmediate() {
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.Period, policy.shouldHarvest(PERIOD));
+        Assert.assertEquals(1, policy.getNextCheckDelay());
+    }
+
+    @Test
+    public void testCheckDelayBeforeFirstCheck() {
+        harvest();
+
+        Assert.assertEquals(HarvestTimer.DEFAULT_HARVEST_PERIOD, policy.getInterval());
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(5), policy.getNextCheckDelay());
+    }
+
+    @Test
+    public void testHarvestsAtPeriod() {
+        harvest();
+
+        advance(PERIOD / 2);
+        Assert.assertNull(policy.shouldHarvest(PERIOD));
+        Assert.assertEquals(PERIOD, policy.getInterval());
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(5), policy.getNextCheckDelay());
+
+        advance(PERIOD / 2 - TimeUnit.SECONDS.toMillis(2));
+        Assert.assertNull(policy.shouldHarvest(PERIOD));
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(2), policy.getNextCheckDelay());
+
+        advance(TimeUnit.SECONDS.toMillis(2));
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.Period, policy.shouldHarvest(PERIOD));
+        assertRecorded(HarvestSchedulingPolicy.Reason.Period, 1, PERIOD);
+    }
+
+    @Test
+    public void testHighWaterMarkTriggersEarlyHarvest() {
+        harvest();
+
+        fill = 0.9f;
+        advance(TimeUnit.SECONDS.toMillis(5));
+        Assert.assertNull("Never sooner than the minimum interval", policy.shouldHarvest(PERIOD));
+
+        advance(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.HighWaterMark, policy.shouldHarvest(PERIOD));
+        assertRecorded(HarvestSchedulingPolicy.Reason.HighWaterMark, 1, TimeUnit.SECONDS.toMillis(15));
+
+        // buffer pressure overrides a metered network
+        harvest();
+        network = HarvestSchedulingPolicy.Network.METERED;
+        advance(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.HighWaterMark, policy.shouldHarvest(PERIOD));
+    }
+
+    @Test
+    public void testLowDataStretchesInterval() {
+        harvest();
+
+        fill = 0.01f;
+        advance(PERIOD);
+        Assert.assertNull(policy.shouldHarvest(PERIOD));
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.LowData, policy.getReason());
+        Assert.assertEquals(PERIOD * HarvestSchedulingPolicy.IDLE_STRETCH, policy.getInterval());
+
+        advance(PERIOD * (HarvestSchedulingPolicy.IDLE_STRETCH - 1));
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.LowData, policy.shouldHarvest(PERIOD));
+    }
+
+    @Test
+    public void testMeteredNetworkStretchesInterval() {
+        harvest();
+
+        network = HarvestSchedulingPolicy.Network.METERED;
+        fill = 0.01f;
+        advance(PERIOD * HarvestSchedulingPolicy.IDLE_STRETCH);
+        Assert.assertNull(policy.shouldHarvest(PERIOD));
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.Metered, policy.getReason());
+        Assert.assertEquals(PERIOD * HarvestSchedulingPolicy.METERED_STRETCH, policy.getInterval());
+
+        advance(PERIOD * (HarvestSchedulingPolicy.METERED_STRETCH - HarvestSchedulingPolicy.IDLE_STRETCH));
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.Metered, policy.shouldHarvest(PERIOD));
+    }
+
+    @Test
+    public void testOfflineSuppressesEarlyHarvests() {
+        harvest();
+
+        network = HarvestSchedulingPolicy.Network.OFFLINE;
+        fill = 1f;
+        inBackground = true;
+        advance(PERIOD);
+        Assert.assertNull(policy.shouldHarvest(PERIOD));
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.Offline, policy.getReason());
+        Assert.assertEquals(PERIOD * HarvestSchedulingPolicy.OFFLINE_STRETCH, policy.getInterval());
+
+        advance(PERIOD * (HarvestSchedulingPolicy.OFFLINE_STRETCH - 1));
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.Offline, policy.shouldHarvest(PERIOD));
+    }
+
+    @Test
+    public void testHarvestOnBackgroundTransition() {
+        harvest();
+
+        advance(TimeUnit.SECONDS.toMillis(20));
+        Assert.assertNull(policy.shouldHarvest(PERIOD));
+
+        inBackground = true;
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.Backgrounded, policy.shouldHarvest(PERIOD));
+        harvest();
+
+        // only on the transition
+        advance(TimeUnit.SECONDS.toMillis(20));
+        Assert.assertNull(policy.shouldHarvest(PERIOD));
+
+        inBackground = false;
+        Assert.assertNull(policy.shouldHarvest(PERIOD));
+        inBackground = true;
+        Assert.assertEquals(HarvestSchedulingPolicy.Reason.Backgrounded, policy.shouldHarvest(PERIOD));
+        assertRecorded(HarvestSchedulingPolicy.Reason.Backgrounded, 2, TimeUnit.SECONDS.toMillis(20));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWaterMarks() {
+        new HarvestSchedulingPolicy(() -> now, () -> fill, () -> network, () -> inBackground,
+                0.1f, 0.5f, TimeUnit.SECONDS.toMillis(10), TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void harvest() {
+        policy.harvested();
+    }
+
+    private void advance(long ms) {
+        now += ms;
+    }
+
+    private void assertRecorded(HarvestSchedulingPolicy.Reason reason, long count, long elapsed) {
+        final Metric metric = StatsEngine.SUPPORTABILITY.getStatsMap().get(MetricNames.SUPPORTABILITY_HARVEST_SCHEDULE + reason.name());
+        Assert.assertNotNull(metric);
+        Assert.assertEquals(count, metric.getCount());
+        Assert.assertEquals(elapsed, metric.getMax(), 0.1);
+    }
+}
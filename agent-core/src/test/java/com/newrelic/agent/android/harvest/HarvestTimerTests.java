@@ -151,6 +151,27 @@ public class HarvestTimerTests {
         Assert.assertFalse(timer.isRunning());
     }
 
+    @Test
+    public void testSchedulingPolicyTriggersEarlyHarvest() throws Exception {
+        final float[] fill = {0f};
+        final MockHarvester harvester = new MockHarvester();
+        final TestHarvestTimer timer = new TestHarvestTimer(harvester);
+
+        harvester.setConnected(true);
+        timer.setPeriod(60000);
+        timer.setSchedulingPolicy(new HarvestSchedulingPolicy(System::currentTimeMillis, () -> fill[0],
+                () -> HarvestSchedulingPolicy.Network.UNMETERED, () -> false, 0.8f, 0.1f, 0, 10));
+        timer.start();
+        Thread.sleep(200);
+        Assert.assertEquals("Should harvest once on start", 1, timer.getTicks());
+        Assert.assertTrue("Should check the policy between harvests", timer.getRuns() > 2);
+
+        fill[0] = 0.9f;
+        Thread.sleep(200);
+        timer.stop();
+        Assert.assertTrue("Should harvest early at the high-water mark", timer.getTicks() > 2);
+    }
+
     // @Test
     public void testWithLocalCollector() {
         Harvester harvester = createTestHarvester("AAa29aa59833841c861916f82cc3fb74011681fec3", "localhost:9080");
@@ -255,6 +276,7 @@ public class HarvestTimerTests {
 
     class MockHarvester extends Harvester {
         private boolean disable;
+        private boolean connected;
 
         @Override
         protected void execute() {
@@ -269,6 +291,15 @@ public class HarvestTimerTests {
         public void setDisabled(boolean disable) {
             this.disable = disable;
         }
+
+        @Override
+        public State getCurrentState() {
+            return connected ? State.CONNECTED : super.getCurrentState();
+        }
+
+        public void setConnected(boolean connected) {
+            this.connected = connected;
+        }
     }
 
     public Harvester createTestHarvester(String token, String host) {
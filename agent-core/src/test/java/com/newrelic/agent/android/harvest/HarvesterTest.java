@@ -97,6 +97,22 @@ public class HarvesterTest {
         Assert.assertSame(harvester.getCurrentState(), Harvester.State.DISCONNECTED);
     }
 
+    @Test
+    public void testDisabledAgentVersionDisablesHarvester() {
+        final StubAgentImpl agentImpl = new StubAgentImpl();
+        agentImpl.disable();
+        Agent.setImpl(agentImpl);
+
+        try {
+            harvester.execute();
+            Assert.assertEquals(Harvester.State.DISABLED, harvester.getCurrentState());
+            Assert.assertTrue(testAdapter.disabled());
+            Mockito.verify(harvester.getHarvestConnection(), Mockito.never()).sendConnect();
+        } finally {
+            Agent.setImpl(null);
+        }
+    }
+
     @Test
     public synchronized void testReconnectAndUploadOnHarvestConfigurationUpdated() {
         reconnectAndUploadOnHarvestConfigurationUpdated();
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.harvest;
+
+import com.google.gson.JsonArray;
+import com.newrelic.agent.android.metric.Metric;
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.metric.QuantileSketch;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class HttpTransactionRollupsTest {
+
+    private HttpTransactionRollups rollups;
+
+    @Before
+    public void setUp() throws Exception {
+        rollups = new HttpTransactionRollups();
+    }
+
+    @Test
+    public void testNormalizeUrl() {
+        Assert.assertEquals("httpbin.org/status", HttpTransactionRollups.normalizeUrl("https://httpbin.org/status/"));
+        Assert.assertEquals("httpbin.org/users/*/orders", HttpTransactionRollups.normalizeUrl("https://httpbin.org/users/12345/orders?page=2#top"));
+        Assert.assertEquals("httpbin.org/items/*", HttpTransactionRollups.normalizeUrl("http://httpbin.org/items/123e4567-e89b-12d3-a456-426614174000"));
+        Assert.assertEquals("httpbin.org/blobs/*", HttpTransactionRollups.normalizeUrl("http://httpbin.org/blobs/0123456789abcdef0123"));
+        Assert.assertEquals("httpbin.org/v2/cafe", HttpTransactionRollups.normalizeUrl("http://httpbin.org/v2/cafe"));
+        Assert.assertEquals("10.0.2.2:8080/ping", HttpTransactionRollups.normalizeUrl("http://10.0.2.2:8080/ping"));
+        Assert.assertEquals(HttpTransactionRollups.OTHER, HttpTransactionRollups.normalizeUrl(null));
+    }
+
+    @Test
+    public void testStatusClass() {
+        Assert.assertEquals("2xx", HttpTransactionRollups.statusClassOf(provideTransaction("https://httpbin.org", 204, 0.1)));
+        Assert.assertEquals("5xx", HttpTransactionRollups.statusClassOf(provideTransaction("https://httpbin.org", 503, 0.1)));
+
+        HttpTransaction failed = provideTransaction("https://httpbin.org", 0, 0.1);
+        failed.setErrorCode(-1009);
+        Assert.assertEquals(HttpTransactionRollups.FAILED, HttpTransactionRollups.statusClassOf(failed));
+    }
+
+    @Test
+    public void testAggregation() {
+        for (int i = 1; i <= 100; i++) {
+            rollups.add(provideTransaction("https://httpbin.org/users/" + i, 200, 0.1));
+        }
+        rollups.add(provideTransaction("https://httpbin.org/users/1", 404, 2));
+
+        Assert.assertEquals(2, rollups.count());
+        Assert.assertEquals(101, rollups.getTransactionCount());
+
+        Map<String, Metric> metrics = asMap(rollups);
+        String name = MetricNames.METRIC_NETWORK_ROLLUP + "httpbin.org/users/*/GET/2xx/wifi/wifi";
+
+        Metric responseTime = metrics.get(name + "/ResponseTime");
+        Assert.assertEquals(100, responseTime.getCount());
+        Assert.assertEquals(10, responseTime.getTotal(), 0.0001);
+
+        Metric bytes = metrics.get(name + "/Bytes");
+        Assert.assertEquals(100, bytes.getCount());
+        Assert.assertEquals(1000, bytes.getTotal(), 0);
+        Assert.assertEquals(10000, bytes.getExclusive(), 0);
+
+        Assert.assertEquals(0.1, responseTime.getSketch().getQuantile(0.99), 0.1 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+        Assert.assertEquals(2, metrics.get(MetricNames.METRIC_NETWORK_ROLLUP + "httpbin.org/users/*/GET/4xx/wifi/wifi/ResponseTime").getSketch().getQuantile(0.5), 2 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    @Test
+    public void testExemplarReservoir() {
+        rollups.setExemplarsPerRollup(2);
+        for (int i = 0; i < 1000; i++) {
+            rollups.add(provideTransaction("https://httpbin.org/get", 200, 0.1));
+        }
+        Assert.assertEquals(2, rollups.getExemplars().size());
+
+        rollups.setExemplarsPerRollup(0);
+        rollups.clear();
+        rollups.add(provideTransaction("https://httpbin.org/get", 200, 0.1));
+        Assert.assertTrue(rollups.getExemplars().isEmpty());
+    }
+
+    @Test
+    public void testRollupLimit() {
+        rollups.setMaxRollups(10);
+        for (int i = 0; i < 50; i++) {
+            rollups.add(provideTransaction("https://httpbin.org/endpoint" + i, 200, 0.1));
+        }
+
+        Assert.assertEquals(11, rollups.count());
+        Assert.assertEquals(50, rollups.getTransactionCount());
+        Assert.assertEquals(40, asMap(rollups).get(MetricNames.METRIC_NETWORK_ROLLUP + HttpTransactionRollups.OTHER + "/ResponseTime").getCount());
+    }
+
+    @Test
+    public void testHarvestData() {
+        HarvestData harvestData = new HarvestData();
+        harvestData.getHttpTransactions().add(provideTransaction("https://httpbin.org/post", 200, 0.1));
+        for (int i = 0; i < 100; i++) {
+            harvestData.getHttpTransactionRollups().add(provideTransaction("https://httpbin.org/get", 200, 0.1));
+        }
+
+        JsonArray json = harvestData.asJsonArray();
+        Assert.assertEquals(1 + HttpTransactionRollups.DEFAULT_EXEMPLARS_PER_ROLLUP, json.get(3).getAsJsonArray().size());
+        Assert.assertFalse(json.get(4).getAsJsonArray().isEmpty());
+
+        harvestData.reset();
+        Assert.assertTrue(harvestData.getHttpTransactionRollups().isEmpty());
+    }
+
+    private HttpTransaction provideTransaction(String url, int statusCode, double totalTime) {
+        HttpTransaction transaction = new HttpTransaction();
+        transaction.setUrl(url);
+        transaction.setHttpMethod("GET");
+        transaction.setStatusCode(statusCode);
+        transaction.setTotalTime(totalTime);
+        transaction.setCarrier("wifi");
+        transaction.setWanType("wifi");
+        transaction.setBytesSent(10);
+        transaction.setBytesReceived(100);
+        transaction.setTimestamp(System.currentTimeMillis());
+        return transaction;
+    }
+
+    private Map<String, Metric> asMap(HttpTransactionRollups rollups) {
+        Map<String, Metric> metrics = new HashMap<>();
+        for (Metric metric : rollups.getMetrics()) {
+            metrics.put(metric.getName(), metric);
+        }
+        return metrics;
+    }
+}
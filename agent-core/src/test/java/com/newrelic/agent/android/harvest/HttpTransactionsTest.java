@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.harvest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class HttpTransactionsTest {
+
+    private HttpTransactions transactions;
+
+    @Before
+    public void setUp() throws Exception {
+        transactions = new HttpTransactions();
+    }
+
+    @Test
+    public void testTimestampOrder() {
+        transactions.add(provideTransaction(100));
+        transactions.add(provideTransaction(300));
+        transactions.add(provideTransaction(200));
+        transactions.add(provideTransaction(50));
+        transactions.add(provideTransaction(300));
+
+        Assert.assertEquals(5, transactions.count());
+        Assert.assertEquals(asList(50, 100, 200, 300, 300), timestamps());
+    }
+
+    @Test
+    public void testExpire() {
+        for (int i = 1; i <= 10; i++) {
+            transactions.add(provideTransaction(i * 100));
+        }
+
+        Assert.assertEquals(0, transactions.expire(100));
+        Assert.assertEquals(4, transactions.expire(500));
+        Assert.assertEquals(6, transactions.count());
+        Assert.assertEquals(500L, transactions.getHttpTransactions().iterator().next().getTimestamp().longValue());
+
+        Assert.assertEquals(6, transactions.expire(Long.MAX_VALUE));
+        Assert.assertEquals(0, transactions.count());
+        Assert.assertEquals(0, transactions.expire(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testExpireOutOfOrderTransactions() {
+        transactions.add(provideTransaction(400));
+        transactions.add(provideTransaction(100));
+        transactions.add(provideTransaction(300));
+
+        Assert.assertEquals(2, transactions.expire(301));
+        Assert.assertEquals(asList(400), timestamps());
+    }
+
+    @Test
+    public void testLimit() {
+        Assert.assertTrue(transactions.add(provideTransaction(1), 2));
+        Assert.assertTrue(transactions.add(provideTransaction(2), 2));
+        Assert.assertFalse("Should enforce transaction limit", transactions.add(provideTransaction(3), 2));
+        Assert.assertEquals(2, transactions.count());
+
+        transactions.expire(2);
+        Assert.assertTrue(transactions.add(provideTransaction(3), 2));
+        Assert.assertEquals(asList(2, 3), timestamps());
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        HttpTransaction transaction = provideTransaction(1);
+        transactions.add(transaction);
+        transactions.add(provideTransaction(2));
+
+        transactions.remove(transaction);
+        Assert.assertEquals(asList(2), timestamps());
+
+        transactions.clear();
+        Assert.assertEquals(0, transactions.count());
+        Assert.assertEquals(0, transactions.asJsonArray().size());
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        transactions.add(provideTransaction(1));
+        try {
+            transactions.getHttpTransactions().clear();
+            Assert.fail("Should return an unmodifiable snapshot");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals(1, transactions.count());
+        }
+    }
+
+    private HttpTransaction provideTransaction(long timestamp) {
+        HttpTransaction transaction = new HttpTransaction();
+        transaction.setUrl("https://httpbin.org/status/200");
+        transaction.setHttpMethod("GET");
+        transaction.setTimestamp(timestamp);
+        return transaction;
+    }
+
+    private List<Long> timestamps() {
+        List<Long> timestamps = new ArrayList<>();
+        for (HttpTransaction transaction : transactions.getHttpTransactions()) {
+            timestamps.add(transaction.getTimestamp());
+        }
+        return timestamps;
+    }
+
+    private List<Long> asList(long... values) {
+        List<Long> list = new ArrayList<>();
+        for (long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
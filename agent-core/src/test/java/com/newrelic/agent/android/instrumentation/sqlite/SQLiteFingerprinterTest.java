@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.instrumentation.sqlite;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+public class SQLiteFingerprinterTest {
+
+    private SQLiteFingerprinter fingerprinter;
+
+    @Before
+    public void setUp() throws Exception {
+        fingerprinter = new SQLiteFingerprinter(4);
+    }
+
+    @Test
+    public void testFingerprintCorpus() throws Exception {
+        int statements = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                SQLiteFingerprinterTest.class.getResourceAsStream("/sqlite/fingerprints.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                String sql = fields[0].replace("\\t", "\t").replace("\\n", "\n");
+
+                Assert.assertEquals(sql, fields[1], SQLiteFingerprinter.normalize(sql));
+                Assert.assertEquals(fields[1], fingerprinter.fingerprint(sql));
+                statements++;
+            }
+        }
+
+        Assert.assertTrue(statements > 0);
+    }
+
+    @Test
+    public void testLiteralsShareFingerprint() {
+        Assert.assertEquals(fingerprinter.fingerprint("SELECT * FROM t WHERE a = 1 AND b IN (1, 2)"),
+                fingerprinter.fingerprint("SELECT * FROM t WHERE a = 99 AND b IN ('x', 'y', 'z')"));
+        Assert.assertNotEquals(fingerprinter.fingerprint("SELECT * FROM t WHERE a = 1"),
+                fingerprinter.fingerprint("SELECT * FROM t WHERE b = 1"));
+    }
+
+    @Test
+    public void testUnterminatedStatements() {
+        Assert.assertEquals("SELECT * FROM t WHERE a = ?", SQLiteFingerprinter.normalize("SELECT * FROM t WHERE a = 'open"));
+        Assert.assertEquals("SELECT a", SQLiteFingerprinter.normalize("SELECT a /* open"));
+        Assert.assertEquals("SELECT * FROM t WHERE a IN (?, ?", SQLiteFingerprinter.normalize("SELECT * FROM t WHERE a IN (1, 2"));
+        Assert.assertEquals("", fingerprinter.fingerprint(""));
+        Assert.assertEquals("", fingerprinter.fingerprint(null));
+    }
+
+    @Test
+    public void testFingerprintIsTruncated() {
+        StringBuilder sql = new StringBuilder("SELECT a0");
+        for (int i = 1; i < 200; i++) {
+            sql.append(", a").append(i);
+        }
+
+        String fingerprint = fingerprinter.fingerprint(sql.append(" FROM t").toString());
+        Assert.assertEquals(SQLiteFingerprinter.MAX_FINGERPRINT_LENGTH, fingerprint.length());
+        Assert.assertTrue(fingerprint.startsWith("SELECT a0, a1, a2"));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        for (int i = 0; i < 10; i++) {
+            fingerprinter.fingerprint("SELECT * FROM t" + i);
+        }
+        Assert.assertEquals(4, fingerprinter.cacheSize());
+
+        String sql = "SELECT * FROM t9";
+        Assert.assertSame(fingerprinter.fingerprint(sql), fingerprinter.fingerprint(sql));
+    }
+}
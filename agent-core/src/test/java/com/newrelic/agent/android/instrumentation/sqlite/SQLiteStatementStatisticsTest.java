@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.instrumentation.sqlite;
+
+import com.newrelic.agent.android.FeatureFlag;
+import com.newrelic.agent.android.metric.Metric;
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.stats.StatsEngine;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SQLiteStatementStatisticsTest {
+
+    private SQLiteStatementStatistics statistics;
+
+    @Before
+    public void setUp() throws Exception {
+        StatsEngine.reset();
+        statistics = new SQLiteStatementStatistics();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FeatureFlag.disableFeature(FeatureFlag.SQLiteStatementStatistics);
+        SQLiteStatementStatistics.getInstance().clear();
+    }
+
+    @Test
+    public void testAggregatesByFingerprint() {
+        statistics.record("SELECT * FROM t WHERE id = 1", TimeUnit.MILLISECONDS.toNanos(10));
+        statistics.record("SELECT * FROM t WHERE id = 2", TimeUnit.MILLISECONDS.toNanos(30));
+        statistics.record("SELECT * FROM t WHERE id IN (3, 4)", TimeUnit.MILLISECONDS.toNanos(5));
+        statistics.record(null, 1);
+        statistics.record("SELECT 1", -1);
+
+        Assert.assertEquals(2, statistics.count());
+
+        Metric metric = statistics.getTopStatements().get(0);
+        Assert.assertEquals(MetricNames.METRIC_DATABASE_STATEMENT + "SELECT * FROM t WHERE id = ?", metric.getName());
+        Assert.assertEquals(2, metric.getCount());
+        Assert.assertEquals(0.040, metric.getTotal(), 1e-9);
+        Assert.assertEquals(0.010, metric.getMin(), 1e-9);
+        Assert.assertEquals(0.030, metric.getMax(), 1e-9);
+        Assert.assertEquals(0.001, metric.getSumOfSquares(), 1e-9);
+        Assert.assertNotNull(metric.getSketch());
+        Assert.assertEquals(2, metric.getSketch().getCount());
+        Assert.assertEquals(0.010, metric.getSketch().getQuantile(0.5), 0.010 * 0.02);
+        Assert.assertEquals(0.030, metric.getSketch().getQuantile(1.0), 1e-9);
+    }
+
+    @Test
+    public void testTopStatementsAreBounded() {
+        statistics.setReportedStatements(3);
+        for (int i = 1; i <= 10; i++) {
+            statistics.record("SELECT * FROM t" + i, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        List<Metric> top = statistics.getTopStatements();
+        Assert.assertEquals(3, top.size());
+        Assert.assertEquals(MetricNames.METRIC_DATABASE_STATEMENT + "SELECT * FROM t10", top.get(0).getName());
+        Assert.assertEquals(MetricNames.METRIC_DATABASE_STATEMENT + "SELECT * FROM t8", top.get(2).getName());
+
+        statistics.onHarvest();
+        Assert.assertEquals(0, statistics.count());
+        Assert.assertEquals(7, (long) StatsEngine.SUPPORTABILITY.getStatsMap()
+                .get(MetricNames.SUPPORTABILITY_DATABASE_STATEMENT_UNREPORTED).getCount());
+    }
+
+    @Test
+    public void testOverflow() {
+        statistics.setMaxStatements(2);
+        statistics.record("SELECT * FROM a", 1000);
+        statistics.record("SELECT * FROM b", 1000);
+        statistics.record("SELECT * FROM c", 1000);
+        statistics.record("SELECT * FROM d", 1000);
+
+        Assert.assertEquals(3, statistics.count());
+        Assert.assertEquals(2, StatsEngine.SUPPORTABILITY.getStatsMap()
+                .get(MetricNames.SUPPORTABILITY_DATABASE_STATEMENT_OVERFLOW).getCount());
+
+        boolean hasOther = false;
+        for (Metric metric : statistics.getTopStatements()) {
+            if (metric.getName().equals(MetricNames.METRIC_DATABASE_STATEMENT + SQLiteStatementStatistics.OTHER)) {
+                Assert.assertEquals(2, metric.getCount());
+                hasOther = true;
+            }
+        }
+        Assert.assertTrue(hasOther);
+    }
+
+    @Test
+    public void testRecordStatementIsFeatureGated() {
+        SQLiteStatementStatistics.recordStatement("SELECT 1", 1000);
+        Assert.assertEquals(0, SQLiteStatementStatistics.getInstance().count());
+
+        FeatureFlag.enableFeature(FeatureFlag.SQLiteStatementStatistics);
+        SQLiteStatementStatistics.recordStatement("SELECT 1", 1000);
+        Assert.assertEquals(1, SQLiteStatementStatistics.getInstance().count());
+    }
+}
@@ -6,6 +6,7 @@
 package com.newrelic.agent.android.measurement.consumer;
 
 import com.newrelic.agent.android.AgentConfiguration;
+import com.newrelic.agent.android.FeatureFlag;
 import com.newrelic.agent.android.Measurements;
 import com.newrelic.agent.android.harvest.Harvest;
 import com.newrelic.agent.android.measurement.BaseMeasurement;
@@ -13,6 +14,8 @@ import com.newrelic.agent.android.measurement.CustomMetricMeasurement;
 import com.newrelic.agent.android.measurement.Measurement;
 import com.newrelic.agent.android.measurement.MeasurementTest;
 import com.newrelic.agent.android.measurement.MeasurementType;
+import com.newrelic.agent.android.measurement.MethodMeasurement;
+import com.newrelic.agent.android.instrumentation.MetricCategory;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -64,6 +67,23 @@ public class MetricMeasurementTest extends MeasurementTest {
         Assert.assertEquals(0, consumer.getMetrics().getAllUnscoped().size());
     }
 
+    @Test
+    public void recordMethodDistributions() {
+        final MethodMeasurementConsumer methodConsumer = new MethodMeasurementConsumer();
+        methodConsumer.consumeMeasurement(new MethodMeasurement("doWork", null, 1000, 1250, 250, MetricCategory.NONE));
+        Assert.assertNull("Method distributions are off by default", methodConsumer.getMetrics().get("Method/doWork").getSketch());
+
+        FeatureFlag.enableFeature(FeatureFlag.MethodDistributions);
+        try {
+            methodConsumer.getMetrics().clear();
+            methodConsumer.consumeMeasurement(new MethodMeasurement("doWork", null, 1000, 1250, 250, MetricCategory.NONE));
+            Assert.assertNotNull(methodConsumer.getMetrics().get("Method/doWork").getSketch());
+        } finally {
+            FeatureFlag.disableFeature(FeatureFlag.MethodDistributions);
+            Harvest.removeHarvestListener(methodConsumer);
+        }
+    }
+
     @Test
     public void addMetric() {
         consumer.addMetric(factory.provideMetric());
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.metric;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class QuantileSketchTest {
+
+    private QuantileSketch sketch;
+
+    @Before
+    public void setUp() throws Exception {
+        sketch = new QuantileSketch();
+    }
+
+    @Test
+    public void testEmptySketch() {
+        Assert.assertTrue(sketch.isEmpty());
+        Assert.assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+        Assert.assertEquals(0, sketch.getBinCount());
+    }
+
+    @Test
+    public void testRelativeAccuracy() {
+        final double[] values = provideLatencies(10000, 42);
+        for (double value : values) {
+            sketch.add(value);
+        }
+
+        Arrays.sort(values);
+        for (double q : new double[]{0, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 1}) {
+            final double expected = values[(int) (q * (values.length - 1))];
+            Assert.assertEquals("p" + q, expected, sketch.getQuantile(q), expected * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+        }
+        Assert.assertEquals(values.length, sketch.getCount());
+    }
+
+    @Test
+    public void testMerge() {
+        final QuantileSketch merged = new QuantileSketch();
+        final QuantileSketch other = new QuantileSketch();
+        final double[] values = provideLatencies(5000, 7);
+
+        for (int i = 0; i < values.length; i++) {
+            sketch.add(values[i]);
+            (i % 2 == 0 ? merged : other).add(values[i]);
+        }
+        merged.merge(other);
+
+        Assert.assertEquals(sketch.getCount(), merged.getCount());
+        for (double q : new double[]{0.5, 0.95, 0.99}) {
+            Assert.assertEquals("Merge should be lossless", sketch.getQuantile(q), merged.getQuantile(q), 0);
+        }
+
+        try {
+            merged.merge(new QuantileSketch(0.05, QuantileSketch.DEFAULT_MAX_BINS));
+            Assert.fail("Should not merge sketches with different accuracy");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFixedMemory() {
+        final double[] values = new double[100000];
+        sketch = new QuantileSketch(0.01, 64);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.pow(10, (i % 120) / 10.0 - 6);
+            sketch.add(values[i]);
+        }
+
+        Assert.assertTrue(sketch.getBinCount() <= 64);
+        Assert.assertEquals(values.length, sketch.getCount());
+
+        // collapsed bins lose low quantiles, but upper quantiles remain accurate
+        Arrays.sort(values);
+        for (double q : new double[]{0.99, 0.999, 1}) {
+            final double expected = values[(int) (q * (values.length - 1))];
+            Assert.assertEquals("p" + q, expected, sketch.getQuantile(q), expected * 0.01);
+        }
+        Assert.assertTrue(sketch.getQuantile(0.01) > values[(int) (0.01 * (values.length - 1))]);
+    }
+
+    @Test
+    public void testZeroAndNegativeValues() {
+        sketch.add(0);
+        sketch.add(-1);
+        sketch.add(1);
+        sketch.add(Double.NaN);
+
+        Assert.assertEquals(3, sketch.getCount());
+        Assert.assertEquals(0, sketch.getQuantile(0.5), 0);
+        Assert.assertEquals(1, sketch.getQuantile(1), 0);
+    }
+
+    @Test
+    public void testMetricAggregation() {
+        final Metric metric = new Metric("metric");
+        final Metric other = new Metric("metric");
+        metric.setSketch(new QuantileSketch());
+        other.setSketch(new QuantileSketch());
+
+        for (int i = 1; i <= 100; i++) {
+            metric.sample(i);
+            other.sample(i + 100);
+        }
+        metric.aggregate(other);
+
+        Assert.assertEquals(200, metric.getSketch().getCount());
+        Assert.assertEquals(190, metric.getSketch().getQuantile(0.95), 190 * 0.01);
+
+        final Metric copy = new Metric(metric);
+        copy.sample(1000);
+        Assert.assertEquals("Copies should not share sketches", 200, metric.getSketch().getCount());
+    }
+
+    @Test
+    public void testAsJson() {
+        sketch.add(0);
+        sketch.add(1);
+        sketch.add(1);
+        sketch.add(2);
+
+        final JsonObject json = sketch.asJsonObject();
+        Assert.assertEquals(4, json.get("count").getAsLong());
+        Assert.assertEquals(1, json.get("zero_count").getAsLong());
+        Assert.assertEquals(sketch.indexOf(1), json.get("offset").getAsInt());
+        Assert.assertEquals(2, json.get("bins").getAsJsonArray().get(0).getAsLong());
+
+        final Metric metric = new Metric("metric");
+        Assert.assertFalse(metric.asJsonObject().has("percentiles"));
+        metric.setSketch(sketch);
+        metric.sample(3);
+        Assert.assertTrue(metric.asJsonObject().getAsJsonObject("percentiles").has("99"));
+    }
+
+    static double[] provideLatencies(int count, long seed) {
+        // log-normal, roughly 5ms to 5s
+        final Random random = new Random(seed);
+        final double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.exp(-2.5 + random.nextGaussian() * 1.2);
+        }
+        return values;
+    }
+}
@@ -20,6 +20,7 @@ import org.junit.Test;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -65,6 +66,20 @@ public class FileBackedPayloadTest {
         Assert.assertEquals(dataFile.length(), payload.size());
     }
 
+    @Test
+    public void getInputStream() throws IOException {
+        payload.putBytes("the tea's too hot".getBytes(StandardCharsets.UTF_8));
+        try (InputStream in = payload.getInputStream()) {
+            Assert.assertEquals("the tea's too hot", Streams.slurpString(in, StandardCharsets.UTF_8.toString()));
+        }
+
+        Assert.assertTrue(dataFile.delete());
+        try (InputStream in = payload.getInputStream()) {
+            Assert.assertEquals(-1, in.read());
+        }
+        Assert.assertTrue(dataFile.createNewFile());
+    }
+
     @Test
     public void payloadFile() {
         Assert.assertEquals(dataFile, payload.payloadFile());
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.payload;
+
+import com.newrelic.agent.android.Agent;
+import com.newrelic.agent.android.AgentConfiguration;
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.stats.StatsEngine;
+import com.newrelic.agent.android.test.stub.StubAgentImpl;
+import com.newrelic.agent.android.util.NamedThreadFactory;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class PayloadSchedulingTest {
+
+    private static AgentConfiguration agentConfiguration;
+    private HttpServer server;
+    private URI endpoint;
+    private final Queue<Integer> responses = new ConcurrentLinkedQueue<>();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Long> requestTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                requests.add(new String(readAll(in), StandardCharsets.UTF_8));
+                requestTimes.add(System.currentTimeMillis());
+            }
+            final Integer status = responses.poll();
+            exchange.sendResponseHeaders(status == null ? HttpURLConnection.HTTP_OK : status, -1);
+            exchange.close();
+        });
+        server.start();
+        endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/upload");
+
+        Agent.setImpl(new StubAgentImpl() {
+            @Override
+            public boolean hasReachableNetworkConnection(String reachableHost) {
+                return true;
+            }
+        });
+
+        agentConfiguration = new AgentConfiguration();
+        PayloadController.initialize(agentConfiguration);
+        PayloadController.retryBackoff = new RetryBackoff(System::currentTimeMillis, 40, 400);
+        StatsEngine.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        PayloadController.shutdown();
+        PayloadController.retryBackoff = new RetryBackoff();
+        server.stop(0);
+    }
+
+    @Test
+    public void retriesThrottledUploadsWithBackoff() throws Exception {
+        responses.add(429);
+        responses.add(HttpURLConnection.HTTP_UNAVAILABLE);
+
+        PayloadController.submitPayload(new StubSender("logs", PayloadSender.Priority.LOGS));
+
+        awaitRequests(3);
+        Assert.assertEquals(3, requests.size());
+        Assert.assertTrue(requestTimes.get(1) - requestTimes.get(0) >= 20);     // at least half of the first delay
+        Assert.assertTrue(requestTimes.get(2) - requestTimes.get(1) >= 40);     // at least half of the doubled delay
+        Assert.assertEquals(0, PayloadController.retryBackoff.getFailures(endpoint.toString()));
+        Assert.assertEquals(2, StatsEngine.SUPPORTABILITY.getStatsMap()
+                .get(MetricNames.SUPPORTABILITY_PAYLOAD_RETRY + PayloadSender.Priority.LOGS.name()).getCount());
+        Assert.assertNotNull(StatsEngine.SUPPORTABILITY.getStatsMap()
+                .get(MetricNames.SUPPORTABILITY_PAYLOAD_WAIT_TIME + PayloadSender.Priority.LOGS.name()));
+    }
+
+    @Test
+    public void rejectedUploadsAreNotRetried() throws Exception {
+        responses.add(HttpURLConnection.HTTP_INTERNAL_ERROR);
+
+        Future future = PayloadController.submitPayload(new StubSender("rejected", PayloadSender.Priority.AEI));
+        future.get(5, TimeUnit.SECONDS);
+
+        Thread.sleep(200);
+        Assert.assertEquals(1, requests.size());
+        Assert.assertEquals(0, PayloadController.getQueueDepth());
+    }
+
+    @Test
+    public void holdsPayloadsForEndpointInBackoff() throws Exception {
+        PayloadController.retryBackoff = new RetryBackoff(System::currentTimeMillis, 400, 400);
+        responses.add(429);
+
+        PayloadController.submitPayload(new StubSender("first", PayloadSender.Priority.AEI)).get(5, TimeUnit.SECONDS);
+        Assert.assertFalse(PayloadController.retryBackoff.isReady(endpoint.toString()));
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertNull(PayloadController.submitPayload(new StubSender("held" + i, PayloadSender.Priority.CRASH)));
+        }
+        Assert.assertEquals(1, requests.size());
+        Assert.assertEquals(4, PayloadController.getQueueDepth());
+
+        awaitRequests(5);
+        Assert.assertEquals(5, requests.size());
+        Assert.assertTrue(requestTimes.get(1) - requestTimes.get(0) >= 200);
+        Assert.assertTrue(requests.subList(1, 5).containsAll(java.util.Arrays.asList("first", "held0", "held1", "held2")));
+    }
+
+    @Test
+    public void uploadsInPriorityOrder() throws Exception {
+        final PayloadController.ThrottledScheduledThreadPoolExecutor executor =
+                new PayloadController.ThrottledScheduledThreadPoolExecutor(1, new NamedThreadFactory("PayloadTest"));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        try {
+            executor.submit(new PayloadReaper(new StubSender("blocker", PayloadSender.Priority.DEFAULT) {
+                @Override
+                public PayloadSender call() throws Exception {
+                    started.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return this;
+                }
+            }, null));
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            final List<Future<PayloadSender>> futures = new ArrayList<>();
+            futures.add(executor.submit(new PayloadReaper(new OrderedSender("aei-large", PayloadSender.Priority.AEI, 4096, order), null)));
+            futures.add(executor.submit(new PayloadReaper(new OrderedSender("aei-small", PayloadSender.Priority.AEI, 16, order), null)));
+            futures.add(executor.submit(new PayloadReaper(new OrderedSender("logs", PayloadSender.Priority.LOGS, 16, order), null)));
+            futures.add(executor.submit(new PayloadReaper(new OrderedSender("handled", PayloadSender.Priority.HANDLED_EXCEPTION, 1024, order), null)));
+            futures.add(executor.submit(new PayloadReaper(new OrderedSender("crash", PayloadSender.Priority.CRASH, 8192, order), null)));
+            Assert.assertEquals(5, executor.getUploadQueueSize());
+
+            release.countDown();
+            for (Future<PayloadSender> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+
+            Assert.assertEquals(java.util.Arrays.asList("crash", "handled", "logs", "aei-small", "aei-large"), order);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (requests.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        final java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private class StubSender extends PayloadSender {
+        final PayloadSender.Priority priority;
+
+        StubSender(String body, PayloadSender.Priority priority) {
+            super(body.getBytes(StandardCharsets.UTF_8), PayloadSchedulingTest.agentConfiguration);
+            this.priority = priority;
+        }
+
+        @Override
+        protected HttpURLConnection getConnection() throws IOException {
+            final HttpURLConnection connection = (HttpURLConnection) getCollectorURI().toURL().openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setDoInput(true);
+            return connection;
+        }
+
+        @Override
+        protected URI getCollectorURI() {
+            return endpoint;
+        }
+
+        @Override
+        protected boolean shouldUploadOpportunistically() {
+            return true;
+        }
+
+        @Override
+        public boolean shouldRetry() {
+            return true;
+        }
+
+        @Override
+        public Priority getPriority() {
+            return priority;
+        }
+    }
+
+    private class OrderedSender extends StubSender {
+        final List<String> order;
+        final String name;
+
+        OrderedSender(String name, PayloadSender.Priority priority, int size, List<String> order) {
+            super(new String(new char[size]), priority);
+            this.name = name;
+            this.order = order;
+        }
+
+        @Override
+        public PayloadSender call() throws Exception {
+            order.add(name);
+            return this;
+        }
+    }
+}
@@ -12,6 +12,8 @@ import static org.mockito.internal.verification.VerificationModeFactory.atLeastO
 import com.newrelic.agent.android.AgentConfiguration;
 import com.newrelic.agent.android.crash.CrashReporterTests;
 import com.newrelic.agent.android.stats.StatsEngine;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -20,13 +22,20 @@ import org.mockito.Mockito;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
 import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 
 import javax.net.ssl.HttpsURLConnection;
 
@@ -279,4 +288,114 @@ public class PayloadSenderTest {
         Assert.assertNotEquals("Different payloads mean senders are NOT equal", thisSender, theOtherSender);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void streamLargeFileBackedPayload() throws Exception {
+        final long payloadSize = 50 * 1024 * 1024;
+        final File dataFile = File.createTempFile("payload-", ".dat");
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile, "rw")) {
+            raf.setLength(payloadSize);
+        }
+
+        final AtomicLong received = new AtomicLong(0);
+        final HttpServer server = startServer(received, null);
+
+        try {
+            payloadSender = new StreamingPayloadSender(new FileBackedPayload(dataFile), server, false);
+            Assert.assertEquals(payloadSize, payloadSender.getPayloadSize());
+
+            final long allocated = getThreadAllocatedBytes();
+            payloadSender.call();
+
+            Assert.assertEquals(HttpURLConnection.HTTP_OK, payloadSender.getResponseCode());
+            Assert.assertEquals(payloadSize, received.get());
+            // streamed through a fixed size buffer, rather than read into memory (at least once)
+            Assert.assertTrue(getThreadAllocatedBytes() - allocated < payloadSize / 10);
+
+        } finally {
+            server.stop(0);
+            Assert.assertTrue(dataFile.delete());
+        }
+    }
+
+    @Test
+    public void streamCompressedPayload() throws Exception {
+        final byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + (i % 26));
+        }
+
+        final AtomicLong received = new AtomicLong(0);
+        final AtomicReference<Headers> headers = new AtomicReference<>();
+        final HttpServer server = startServer(received, headers);
+
+        try {
+            payloadSender = new StreamingPayloadSender(new Payload(data), server, true);
+            payloadSender.call();
+
+            Assert.assertEquals(HttpURLConnection.HTTP_OK, payloadSender.getResponseCode());
+            Assert.assertEquals(data.length, received.get());
+            Assert.assertEquals("gzip", headers.get().getFirst("Content-Encoding"));
+            Assert.assertEquals("chunked", headers.get().getFirst("Transfer-Encoding"));
+
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private HttpServer startServer(final AtomicLong received, final AtomicReference<Headers> headers) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        server.createContext("/", exchange -> {
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                in = new GZIPInputStream(in);
+            }
+            if (headers != null) {
+                headers.set(exchange.getRequestHeaders());
+            }
+
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                received.addAndGet(count);
+            }
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            exchange.close();
+        });
+        server.start();
+
+        return server;
+    }
+
+    private static long getThreadAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private class StreamingPayloadSender extends PayloadSender {
+        final HttpServer server;
+        final boolean compress;
+
+        StreamingPayloadSender(Payload payload, HttpServer server, boolean compress) {
+            super(payload, PayloadSenderTest.this.agentConfiguration);
+            this.server = server;
+            this.compress = compress;
+        }
+
+        @Override
+        protected HttpURLConnection getConnection() throws IOException {
+            final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setDoInput(true);
+            return connection;
+        }
+
+        @Override
+        protected boolean shouldCompressPayload() {
+            return compress;
+        }
+    }
+}
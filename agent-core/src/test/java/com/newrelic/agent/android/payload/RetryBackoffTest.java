@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.payload;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RetryBackoffTest {
+    private static final String ENDPOINT = "https://mobile-collector.newrelic.com/mobile/v1";
+
+    private long now;
+    private RetryBackoff retryBackoff;
+
+    @Before
+    public void setUp() {
+        now = 1000;
+        retryBackoff = new RetryBackoff(() -> now, 100, 1000);
+    }
+
+    @Test
+    public void testDelayDoublesToLimit() {
+        Assert.assertEquals(100, retryBackoff.delayFor(1));
+        Assert.assertEquals(200, retryBackoff.delayFor(2));
+        Assert.assertEquals(800, retryBackoff.delayFor(4));
+        Assert.assertEquals(1000, retryBackoff.delayFor(5));
+        Assert.assertEquals(1000, retryBackoff.delayFor(100));
+    }
+
+    @Test
+    public void testJitter() {
+        for (int i = 0; i < 1000; i++) {
+            long delay = RetryBackoff.jitter(1000);
+            Assert.assertTrue(delay >= 500 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void testFailureHoldsEndpoint() {
+        Assert.assertTrue(retryBackoff.isReady(ENDPOINT));
+
+        long delay = retryBackoff.onFailure(ENDPOINT);
+        Assert.assertTrue(delay >= 50 && delay <= 100);
+        Assert.assertFalse(retryBackoff.isReady(ENDPOINT));
+        Assert.assertEquals(delay, retryBackoff.getDelayMs(ENDPOINT));
+        Assert.assertTrue(retryBackoff.isReady("https://other.endpoint"));
+
+        now += delay;
+        Assert.assertTrue(retryBackoff.isReady(ENDPOINT));
+        Assert.assertEquals(1, retryBackoff.getFailures(ENDPOINT));
+
+        delay = retryBackoff.onFailure(ENDPOINT);
+        Assert.assertTrue(delay >= 100 && delay <= 200);
+        Assert.assertEquals(2, retryBackoff.getFailures(ENDPOINT));
+    }
+
+    @Test
+    public void testConcurrentFailuresDoNotShortenDelay() {
+        long delay = retryBackoff.onFailure(ENDPOINT);
+        for (int i = 0; i < 5; i++) {
+            long next = retryBackoff.onFailure(ENDPOINT);
+            Assert.assertTrue(next >= delay);
+            delay = next;
+        }
+        Assert.assertTrue(delay <= 1000);
+    }
+
+    @Test
+    public void testSuccessResetsEndpoint() {
+        retryBackoff.onFailure(ENDPOINT);
+        retryBackoff.onFailure(ENDPOINT);
+        retryBackoff.onSuccess(ENDPOINT);
+
+        Assert.assertTrue(retryBackoff.isReady(ENDPOINT));
+        Assert.assertEquals(0, retryBackoff.getFailures(ENDPOINT));
+        Assert.assertTrue(retryBackoff.onFailure(ENDPOINT) <= 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        new RetryBackoff(() -> now, 1000, 100);
+    }
+}
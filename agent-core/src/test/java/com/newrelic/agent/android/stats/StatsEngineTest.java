@@ -74,6 +74,22 @@ public class StatsEngineTest {
         Assert.assertEquals(tEnd / 1000f, metric.getMax(), 0);
     }
 
+    @Test
+    public void sampleTimeMsWithDistribution() {
+        for (int i = 1; i <= 100; i++) {
+            StatsEngine.get().sampleTimeMs("metric", i * 10, true);
+        }
+
+        Metric metric = StatsEngine.get().lazyGet("metric");
+        Assert.assertEquals(100, metric.getCount());
+        Assert.assertNotNull(metric.getSketch());
+        Assert.assertEquals(0.99, metric.getSketch().getQuantile(0.99), 0.99 * 0.01);
+        Assert.assertTrue(metric.asJsonObject().has("percentiles"));
+
+        StatsEngine.get().sampleTimeMs("plainMetric", 10);
+        Assert.assertNull(StatsEngine.get().lazyGet("plainMetric").getSketch());
+    }
+
     @Test
     public void sampleMetricDataUsage() {
         Metric metric = StatsEngine.get().lazyGet("metric");
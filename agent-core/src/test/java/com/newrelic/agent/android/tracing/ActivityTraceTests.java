@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.tracing;
+
+import com.google.gson.JsonArray;
+import com.google.gson.stream.JsonWriter;
+import com.newrelic.agent.android.harvest.ActivityTraces;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.StringWriter;
+
+@RunWith(JUnit4.class)
+public class ActivityTraceTests {
+    private static final int TRACE_COUNT = ActivityTrace.MAX_TRACES;
+
+    private Trace rootTrace;
+    private ActivityTrace activityTrace;
+
+    @Before
+    public void setUp() throws Exception {
+        rootTrace = provideTrace("Display#onCreate", 1000);
+        activityTrace = new ActivityTrace(rootTrace);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (!activityTrace.isComplete()) {
+            activityTrace.discard();
+        }
+    }
+
+    @Test
+    public void testDeepTraceChain() throws Exception {
+        Trace parent = rootTrace;
+        for (int i = 0; i < TRACE_COUNT; i++) {
+            Trace child = provideTrace("Method#" + i, 1001 + i);
+            parent.addChild(child);
+            activityTrace.addCompletedTrace(child);
+            parent = child;
+        }
+        activityTrace.discard();
+
+        String json = activityTrace.toJsonString();
+        Assert.assertEquals(activityTrace.asJsonArray().toString(), json);
+
+        // every trace is nested in its parent
+        JsonArray segment = activityTrace.asJsonArray().get(4).getAsJsonArray().get(1).getAsJsonArray();
+        int depth = 0;
+        while (segment.get(5).getAsJsonArray().size() > 0) {
+            segment = segment.get(5).getAsJsonArray().get(0).getAsJsonArray();
+            depth++;
+        }
+        Assert.assertEquals(TRACE_COUNT, depth);
+    }
+
+    @Test
+    public void testWideTraceFanOut() throws Exception {
+        for (int i = 0; i < TRACE_COUNT; i++) {
+            Trace child = provideTrace("Method#" + i, 1001 + i);
+            rootTrace.addChild(child);
+            activityTrace.addCompletedTrace(child);
+        }
+        activityTrace.discard();
+
+        String json = activityTrace.toJsonString();
+        Assert.assertEquals(activityTrace.asJsonArray().toString(), json);
+
+        JsonArray segment = activityTrace.asJsonArray().get(4).getAsJsonArray().get(1).getAsJsonArray();
+        Assert.assertEquals(TRACE_COUNT, segment.get(5).getAsJsonArray().size());
+    }
+
+    @Test
+    public void testMissingChildrenAndEscapedValues() throws Exception {
+        Trace child = provideTrace("<Method>=\"quoted\"", 1001);
+        child.getParams().put("html", "<a href='x'>&</a>");
+        child.threadName = null;
+        rootTrace.addChild(child);
+        rootTrace.addChild(provideTrace("Missing#method", 1002));
+        activityTrace.addCompletedTrace(child);
+        activityTrace.discard();
+
+        Assert.assertEquals(activityTrace.asJsonArray().toString(), activityTrace.toJsonString());
+    }
+
+    @Test
+    public void testIncompleteTrace() throws Exception {
+        StringWriter stringWriter = new StringWriter();
+        activityTrace.writeJson(new JsonWriter(stringWriter));
+
+        Assert.assertNull(activityTrace.asJsonArray());
+        Assert.assertEquals("null", stringWriter.toString());
+    }
+
+    @Test
+    public void testActivityTraces() throws Exception {
+        ActivityTraces activityTraces = new ActivityTraces();
+
+        for (int i = 0; i < 3; i++) {
+            ActivityTrace trace = new ActivityTrace(provideTrace("Display#" + i, 1000));
+            Trace child = provideTrace("Method#" + i, 1001);
+            trace.rootTrace.addChild(child);
+            trace.addCompletedTrace(child);
+            trace.discard();
+            activityTraces.add(trace);
+        }
+        activityTraces.add(activityTrace);
+
+        Assert.assertEquals(activityTraces.asJsonArray().toString(), activityTraces.toJsonString());
+        Assert.assertEquals(activityTraces.toJsonString().length(), activityTraces.getJsonLength());
+    }
+
+    private static Trace provideTrace(String displayName, long entryTimestamp) {
+        Trace trace = new Trace(displayName, null, null);
+        trace.entryTimestamp = entryTimestamp;
+        trace.exitTimestamp = entryTimestamp + 1;
+        return trace;
+    }
+}
@@ -16,10 +16,12 @@ import android.location.Geocoder;
 import android.location.Location;
 import android.os.Build;
 import android.os.Environment;
+import android.os.Handler;
 import android.os.Looper;
 import android.os.Process;
 import android.os.StatFs;
 import android.text.TextUtils;
+import android.view.Choreographer;
 
 import com.newrelic.agent.android.aei.ApplicationExitMonitor;
 import com.newrelic.agent.android.analytics.AnalyticsAttribute;
@@ -42,6 +44,7 @@ import com.newrelic.agent.android.harvest.ConnectInformation;
 import com.newrelic.agent.android.harvest.DeviceInformation;
 import com.newrelic.agent.android.harvest.EnvironmentInformation;
 import com.newrelic.agent.android.harvest.Harvest;
+import com.newrelic.agent.android.harvest.HarvestConfiguration;
 import com.newrelic.agent.android.harvest.HarvestData;
 import com.newrelic.agent.android.harvest.HarvestLifecycleAware;
 import com.newrelic.agent.android.harvest.MachineMeasurements;
@@ -62,7 +65,7 @@ import com.newrelic.agent.android.payload.PayloadController;
 import com.newrelic.agent.android.sample.MachineMeasurementConsumer;
 import com.newrelic.agent.android.sample.Sampler;
 import com.newrelic.agent.android.stats.StatsEngine;
-import com.newrelic.agent.android.stores.SharedPrefsAnalyticsAttributeStore;
+import com.newrelic.agent.android.stores.JournaledAnalyticsAttributeStore;
 import com.newrelic.agent.android.stores.SharedPrefsCrashStore;
 import com.newrelic.agent.android.stores.SharedPrefsEventStore;
 import com.newrelic.agent.android.stores.SharedPrefsPayloadStore;
@@ -85,6 +88,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -97,6 +101,9 @@ public class AndroidAgentImpl implements
 
     private static final AgentLog log = AgentLogManager.getAgentLog();
 
+    // release deferred startup work if the app hasn't drawn a frame by then
+    static final long DEFERRED_STARTUP_TIMEOUT_MS = 5000;
+
     private final Context context;
     private SavedState savedState;
 
@@ -113,21 +120,17 @@ public class AndroidAgentImpl implements
     // Producers and consumers that are tightly coupled to Android implementations
     private MachineMeasurementConsumer machineMeasurementConsumer;
     private OfflineStorage offlineStorageInstance;
+    private volatile StartupGraph startupGraph;
+    private final AtomicBoolean offlineDataQueued = new AtomicBoolean(false);
 
     public AndroidAgentImpl(final Context context, final AgentConfiguration agentConfiguration) throws AgentInitializationException {
         // We want an Application context, not an Activity context.
         this.context = appContext(context);
         this.agentConfiguration = agentConfiguration;
+        // saved state is loaded in the background: do work that doesn't depend on it first
         this.savedState = new SavedState(this.context);
         this.offlineStorageInstance = new OfflineStorage(context);
 
-        if (isDisabled()) {
-            throw new AgentInitializationException("This version of the agent has been disabled");
-        }
-
-        // update with cached settings
-        agentConfiguration.updateConfiguration(savedState.getHarvestConfiguration());
-
         initApplicationInformation();
 
         // Register ourselves with the TraceMachine
@@ -135,10 +138,14 @@ public class AndroidAgentImpl implements
 
         agentConfiguration.setCrashStore(new SharedPrefsCrashStore(context));
         agentConfiguration.setPayloadStore(new SharedPrefsPayloadStore(context));
-        agentConfiguration.setAnalyticsAttributeStore(new SharedPrefsAnalyticsAttributeStore(context));
+        agentConfiguration.setAnalyticsAttributeStore(new JournaledAnalyticsAttributeStore(context));
         agentConfiguration.setEventStore(new SharedPrefsEventStore(context));
 
         ApplicationStateMonitor.getInstance().addApplicationStateListener(this);
+        if (agentConfiguration.getAnalyticsAttributeStore() instanceof ApplicationStateListener) {
+            // persist journaled attribute changes when the app is backgrounded
+            ApplicationStateMonitor.getInstance().addApplicationStateListener((ApplicationStateListener) agentConfiguration.getAnalyticsAttributeStore());
+        }
         startLogReporter(context, agentConfiguration);
         // used to determine when app backgrounds
         final UiBackgroundListener backgroundListener;
@@ -195,50 +202,98 @@ public class AndroidAgentImpl implements
     }
 
     protected void initialize() {
+        // the graph is built once, and its immediate steps rerun on each start
+        if (startupGraph == null) {
+            startupGraph = provideStartupGraph();
+        }
+        if (!startupGraph.start()) {
+            log.warn("Agent startup has not completed, and will continue in the background");
+        }
+    }
+
+    /**
+     * Describe agent initialization as a graph of steps. Independent steps run concurrently,
+     * and non-critical steps are deferred until after the app has drawn its first frame.
+     */
+    protected StartupGraph provideStartupGraph() {
+        final StartupGraph graph = new StartupGraph();
+
         // init this session's data
-        setupSession();
+        graph.addOnCallerThread("Session", () -> setupSession());
 
         // Agent init now emits metrics and attributes,
         // so the analytics engine must be initialized first
-        AnalyticsControllerImpl.initialize(agentConfiguration, this);
+        graph.add("AnalyticsController", () -> AnalyticsControllerImpl.initialize(agentConfiguration, this), "Session");
 
-        Harvest.addHarvestListener(savedState);
-        Harvest.initialize(agentConfiguration);
-        Harvest.setHarvestConfiguration(savedState.getHarvestConfiguration());
-        Harvest.setHarvestConnectInformation(savedState.getConnectInformation());
-        Harvest.addHarvestListener(this);
+        graph.add("Harvest", () -> {
+            Harvest.addHarvestListener(savedState);
+            if (agentConfiguration.getAnalyticsAttributeStore() instanceof HarvestLifecycleAware) {
+                Harvest.addHarvestListener((HarvestLifecycleAware) agentConfiguration.getAnalyticsAttributeStore());
+            }
+            // the saved configuration is applied by the harvester when it first runs
+            Harvest.initialize(agentConfiguration);
+            Harvest.addHarvestListener(this);
+        }, "AnalyticsController");
 
-        startLogReporter(context, agentConfiguration);
+        graph.add("Measurements", () -> {
+            Measurements.initialize();
+            log.info(MessageFormat.format("New Relic Agent v{0}", Agent.getVersion()));
+            log.verbose(MessageFormat.format("Application token: {0}", agentConfiguration.getApplicationToken()));
 
-        Measurements.initialize();
-        log.info(MessageFormat.format("New Relic Agent v{0}", Agent.getVersion()));
-        log.verbose(MessageFormat.format("Application token: {0}", agentConfiguration.getApplicationToken()));
+            machineMeasurementConsumer = new MachineMeasurementConsumer();
+            Measurements.addMeasurementConsumer(machineMeasurementConsumer);
 
-        machineMeasurementConsumer = new MachineMeasurementConsumer();
-        Measurements.addMeasurementConsumer(machineMeasurementConsumer);
+            StatsEngine.get().inc(MetricNames.SUPPORTABILITY_CRASH_UNCAUGHT_HANDLER
+                    .replace(MetricNames.TAG_NAME, getUnhandledExceptionHandlerName()));
+        }, "Harvest");
 
-        StatsEngine.get().inc(MetricNames.SUPPORTABILITY_CRASH_UNCAUGHT_HANDLER
-                .replace(MetricNames.TAG_NAME, getUnhandledExceptionHandlerName()));
-        PayloadController.initialize(agentConfiguration);
+        // both register harvest listeners, so must wait for the harvester
+        graph.add("PayloadController", () -> PayloadController.initialize(agentConfiguration), "Harvest");
 
         // Set up the sampler
-        Sampler.init(context);
+        graph.add("Sampler", () -> Sampler.init(context, agentConfiguration), "Harvest");
 
-        if (isInstantApp()) {
-            log.info("This appears to be an Instant App");
-            final AnalyticsAttribute attribute = new AnalyticsAttribute(AnalyticsAttribute.INSTANT_APP_ATTRIBUTE, true);
-            AnalyticsControllerImpl.getInstance().addAttributeUnchecked(attribute, false);
-        }
+        graph.add("InstantApp", () -> {
+            if (isInstantApp()) {
+                log.info("This appears to be an Instant App");
+                final AnalyticsAttribute attribute = new AnalyticsAttribute(AnalyticsAttribute.INSTANT_APP_ATTRIBUTE, true);
+                AnalyticsControllerImpl.getInstance().addAttributeUnchecked(attribute, false);
+            }
+        }, "AnalyticsController");
 
         if (FeatureFlag.featureEnabled(FeatureFlag.NativeReporting)) {
-            try {
-                NativeReporting.initialize(context, agentConfiguration);
-            } catch (NoClassDefFoundError e) {
-                log.error("NativeReporting feature is enabled, but agent-ndk was not found (probably missing as a dependency).");
-                log.error("Native reporting will not be enabled");
-            }
+            graph.add("NativeReporting", () -> {
+                try {
+                    NativeReporting.initialize(context, agentConfiguration);
+                } catch (NoClassDefFoundError e) {
+                    log.error("NativeReporting feature is enabled, but agent-ndk was not found (probably missing as a dependency).");
+                    log.error("Native reporting will not be enabled");
+                }
+            }, "Harvest", "Measurements");
         }
 
+        // the log reporter was started when the agent was created, so this refresh can wait
+        graph.defer("LogReporting", () -> startLogReporter(context, agentConfiguration));
+
+        return graph;
+    }
+
+    /**
+     * Release deferred startup steps once the first frame has been drawn, or after
+     * DEFERRED_STARTUP_TIMEOUT_MS if the app has no UI.
+     */
+    protected void startDeferredAfterFirstFrame(final StartupGraph graph) {
+        try {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            final Runnable release = () -> graph.startDeferred();
+
+            handler.post(() -> Choreographer.getInstance().postFrameCallback(frameTimeNanos -> handler.post(release)));
+            handler.postDelayed(release, DEFERRED_STARTUP_TIMEOUT_MS);
+
+        } catch (Exception e) {
+            log.error("Unable to defer startup tasks: " + e);
+            graph.startDeferred();
+        }
     }
 
     protected void setupSession() {
@@ -251,10 +306,23 @@ public class AndroidAgentImpl implements
         // no-op at present
     }
 
+    /**
+     * Update the harvester and agent configuration with the settings cached by the last connect.
+     */
+    void restoreSavedConfiguration() {
+        final HarvestConfiguration savedConfiguration = savedState.getHarvestConfiguration();
+
+        Harvest.setHarvestConfiguration(savedConfiguration);
+        agentConfiguration.updateConfiguration(savedConfiguration);
+    }
+
     @Override
     // Clear and re-save the savedState if it's out of date.
     // Returns true if an update was performed
     public boolean updateSavedConnectInformation() {
+        // the saved state is first needed here, on the harvest thread, rather than during startup
+        restoreSavedConfiguration();
+
         final ConnectInformation savedConnectInformation = savedState.getConnectInformation();
         final ConnectInformation newConnectInformation = new ConnectInformation(getApplicationInformation(), getDeviceInformation());
 
@@ -496,11 +564,15 @@ public class AndroidAgentImpl implements
 
     @Override
     public void start() {
-        if (!isDisabled()) {
-            initialize();
-            Harvest.start();
-
-            if (FeatureFlag.featureEnabled(FeatureFlag.NativeReporting)) {
+        // a disabled agent version is detected by the harvester, once the saved state has loaded
+        initialize();
+        // the harvester may still be initializing if startup timed out
+        startupGraph.afterStep("Harvest", Harvest::start);
+        startDeferredAfterFirstFrame(startupGraph);
+
+        if (FeatureFlag.featureEnabled(FeatureFlag.NativeReporting) && startupGraph.hasStep("NativeReporting")) {
+            // native reporting may still be initializing if startup timed out
+            startupGraph.afterStep("NativeReporting", () -> {
                 try {
                     if (NativeReporting.isInitialized()) {
                         NativeReporting.getInstance().start();
@@ -508,20 +580,17 @@ public class AndroidAgentImpl implements
                 } catch (NoClassDefFoundError e) {
                     log.error("Native reporting is not enabled");
                 }
-            }
-
-            if (FeatureFlag.featureEnabled(FeatureFlag.DistributedTracing)) {
-                // assume a user action caused the agent to start or return to foreground
-                UserActionFacade.getInstance().recordUserAction(UserActionType.AppLaunch);
-            }
+            });
+        }
 
-            //check if Compose is used for app or not
-            if(ComposeChecker.isComposeUsed(context)) {
-                StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_MOBILE_ANDROID_JETPACK_COMPOSE);
-            }
+        if (FeatureFlag.featureEnabled(FeatureFlag.DistributedTracing)) {
+            // assume a user action caused the agent to start or return to foreground
+            UserActionFacade.getInstance().recordUserAction(UserActionType.AppLaunch);
+        }
 
-        } else {
-            stop(false);
+        //check if Compose is used for app or not
+        if(ComposeChecker.isComposeUsed(context)) {
+            StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_MOBILE_ANDROID_JETPACK_COMPOSE);
         }
     }
 
@@ -873,6 +942,18 @@ public class AndroidAgentImpl implements
         return offlineStorageInstance.getAllOfflineData();
     }
 
+    /**
+     * Run a non-critical task now if deferred startup has completed, otherwise defer it until it has.
+     */
+    void runAfterStartup(String name, Runnable task) {
+        final StartupGraph graph = startupGraph;
+        if (graph != null) {
+            graph.defer(name, task);
+        } else {
+            task.run();
+        }
+    }
+
     /**
      * Called after connection has been made or configuration has been pulled from cache.
      */
@@ -882,7 +963,7 @@ public class AndroidAgentImpl implements
         if (FeatureFlag.featureEnabled(FeatureFlag.ApplicationExitReporting)) {
             // must be called after application information was gathered and AnalyticsController has been initialized
             if (agentConfiguration.getApplicationExitConfiguration().isEnabled()) {
-                new ApplicationExitMonitor(context).harvestApplicationExitInfo();
+                runAfterStartup("ApplicationExitInfo", () -> new ApplicationExitMonitor(context).harvestApplicationExitInfo());
             } else {
                 // removing the session Map as the feature is disabled
                 new ApplicationExitMonitor(context).resetSessionMap();
@@ -899,6 +980,23 @@ public class AndroidAgentImpl implements
         agentConfiguration.updateConfiguration(savedState.getHarvestConfiguration());
     }
 
+    /**
+     * Replay offline payloads after a successful harvest, once deferred startup has completed.
+     * A replay is not queued while another is pending or running.
+     */
+    @Override
+    public void onHarvestComplete() {
+        if (FeatureFlag.featureEnabled(FeatureFlag.OfflineStorage) && offlineDataQueued.compareAndSet(false, true)) {
+            runAfterStartup("OfflineStorage", () -> {
+                try {
+                    Harvest.sendOfflineData();
+                } finally {
+                    offlineDataQueued.set(false);
+                }
+            });
+        }
+    }
+
     @Override
     public void onHarvestConfigurationChanged() {
         agentConfiguration.updateConfiguration(savedState.getHarvestConfiguration());
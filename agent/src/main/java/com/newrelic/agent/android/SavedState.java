@@ -5,9 +5,7 @@
 
 package com.newrelic.agent.android;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.SharedPreferences;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -23,21 +21,29 @@ import com.newrelic.agent.android.logging.AgentLog;
 import com.newrelic.agent.android.logging.AgentLogManager;
 import com.newrelic.agent.android.metric.MetricNames;
 import com.newrelic.agent.android.stats.StatsEngine;
+import com.newrelic.agent.android.stores.SnapshotFileStore;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONTokener;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Harvest configuration and connect information persisted between app launches.
+ * <p>
+ * State is kept in a single snapshot file that is read on a background thread when the
+ * instance is created; callers only wait on that read when they first need the saved values.
+ * Values previously stored in SharedPreferences are migrated once, on first use.
+ */
 public class SavedState extends HarvestAdapter {
     private static final AgentLog log = AgentLogManager.getAgentLog();
 
     private final String PREFERENCE_FILE_PREFIX = "com.newrelic.android.agent.v1_";
+    private final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
     private final Gson gson = new GsonBuilder().create();
 
     // Harvest configuration
@@ -85,22 +91,39 @@ public class SavedState extends HarvestAdapter {
     private final HarvestConfiguration configuration = new HarvestConfiguration();
     private final ConnectInformation connectInformation = new ConnectInformation(new ApplicationInformation(), new DeviceInformation());
 
-    private final SharedPreferences prefs;
-    private final SharedPreferences.Editor editor;
-    private final Lock lock = new ReentrantLock();
+    private final SnapshotFileStore store;
+    private volatile boolean stateLoaded = false;
 
     // refresh the data token every 2 weeks
     private final long DATA_TOKEN_TTL_MS = TimeUnit.MILLISECONDS.convert(14, TimeUnit.DAYS);
 
-    @SuppressLint("CommitPrefEdits")
     public SavedState(Context context) {
-        prefs = context.getSharedPreferences(getPreferenceFileName(context.getPackageName()), 0);
-        editor = prefs.edit();
-        loadHarvestConfiguration();
-        loadConnectInformation();
+        final String preferenceFileName = getPreferenceFileName(context.getPackageName());
+        final File snapshotFile = new File(context.getFilesDir(), preferenceFileName + SNAPSHOT_FILE_SUFFIX);
+
+        store = new SnapshotFileStore(snapshotFile, () -> context.getSharedPreferences(preferenceFileName, 0).getAll());
+    }
+
+    /**
+     * Populate the configuration and connect information from the store, waiting
+     * for the snapshot to finish loading if necessary. If the load timed out, the
+     * defaults are used for now, and the next call tries again.
+     */
+    private void awaitSavedState() {
+        if (!stateLoaded) {
+            synchronized (this) {
+                if (!stateLoaded) {
+                    loadHarvestConfiguration();
+                    loadConnectInformation();
+                    // published only once the snapshot has loaded, as readers skip the lock
+                    stateLoaded = store.isLoaded();
+                }
+            }
+        }
     }
 
     public void saveHarvestConfiguration(HarvestConfiguration newConfiguration) {
+        awaitSavedState();
 
         DataToken dataToken = newConfiguration.getDataToken();
         if (!dataToken.isValid()) {
@@ -113,33 +136,39 @@ public class SavedState extends HarvestAdapter {
 
         log.info("Saving configuration: " + newConfiguration);
 
+        // the configuration is written as a single transaction
+        final SnapshotFileStore.Transaction transaction = store.edit();
+
         dataToken = newConfiguration.getDataToken();
         if (dataToken.isValid()) {
             final String newDataTokenStr = dataToken.toJsonString();
             log.info("Saving data token: " + newDataTokenStr);
-            save(PREF_DATA_TOKEN, newDataTokenStr);
-            save(PREF_DATA_TOKEN_EXPIRATION, System.currentTimeMillis() + getDataTokenTTL());
+            transaction.putString(PREF_DATA_TOKEN, newDataTokenStr);
+            transaction.putLong(PREF_DATA_TOKEN_EXPIRATION, System.currentTimeMillis() + getDataTokenTTL());
         } else {
             log.error("Refusing to save invalid data token: " + dataToken);
             StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_INVALID_DATA_TOKEN);
         }
 
-        save(PREF_CROSS_PROCESS_ID, newConfiguration.getCross_process_id());
-        save(PREF_SERVER_TIMESTAMP, newConfiguration.getServer_timestamp());
-        save(PREF_HARVEST_INTERVAL, (long) newConfiguration.getData_report_period());
-        save(PREF_MAX_TRANSACTION_AGE, (long) newConfiguration.getReport_max_transaction_age());
-        save(PREF_MAX_TRANSACTION_COUNT, (long) newConfiguration.getReport_max_transaction_count());
-        save(PREF_STACK_TRACE_LIMIT, newConfiguration.getStack_trace_limit());
-        save(PREF_RESPONSE_BODY_LIMIT, newConfiguration.getResponse_body_limit());
-        save(PREF_COLLECT_NETWORK_ERRORS, newConfiguration.isCollect_network_errors());
-        save(PREF_ERROR_LIMIT, newConfiguration.getError_limit());
-        save(PREF_ACCOUNT_ID, newConfiguration.getAccount_id());
-        save(PREF_TRUSTED_ACCOUNT_KEY, newConfiguration.getTrusted_account_key());
-        save(PREF_REMOTE_CONFIGURATION, gson.toJson(newConfiguration.getRemote_configuration()));
-        save(PREF_REQUEST_HEADERS_MAP, gson.toJson(newConfiguration.getRequest_headers_map()));
-        save(PREF_ENTITY_GUID, newConfiguration.getEntity_guid());
+        transaction.putString(PREF_CROSS_PROCESS_ID, newConfiguration.getCross_process_id());
+        transaction.putLong(PREF_SERVER_TIMESTAMP, newConfiguration.getServer_timestamp());
+        transaction.putLong(PREF_HARVEST_INTERVAL, (long) newConfiguration.getData_report_period());
+        transaction.putLong(PREF_MAX_TRANSACTION_AGE, (long) newConfiguration.getReport_max_transaction_age());
+        transaction.putLong(PREF_MAX_TRANSACTION_COUNT, (long) newConfiguration.getReport_max_transaction_count());
+        transaction.putInt(PREF_STACK_TRACE_LIMIT, newConfiguration.getStack_trace_limit());
+        transaction.putInt(PREF_RESPONSE_BODY_LIMIT, newConfiguration.getResponse_body_limit());
+        transaction.putBoolean(PREF_COLLECT_NETWORK_ERRORS, newConfiguration.isCollect_network_errors());
+        transaction.putInt(PREF_ERROR_LIMIT, newConfiguration.getError_limit());
+        transaction.putString(PREF_ACCOUNT_ID, newConfiguration.getAccount_id());
+        transaction.putString(PREF_TRUSTED_ACCOUNT_KEY, newConfiguration.getTrusted_account_key());
+        transaction.putString(PREF_REMOTE_CONFIGURATION, gson.toJson(newConfiguration.getRemote_configuration()));
+        transaction.putString(PREF_REQUEST_HEADERS_MAP, gson.toJson(newConfiguration.getRequest_headers_map()));
+        transaction.putString(PREF_ENTITY_GUID, newConfiguration.getEntity_guid());
+
+        activityTraceMinUtilization = (float) newConfiguration.getActivity_trace_min_utilization();
+        transaction.putFloat(PREF_ACTIVITY_TRACE_MIN_UTILIZATION, activityTraceMinUtilization);
 
-        saveActivityTraceMinUtilization((float) newConfiguration.getActivity_trace_min_utilization());
+        transaction.commit();
 
         // Reload the configuration(s)
         loadHarvestConfiguration();
@@ -216,18 +245,23 @@ public class SavedState extends HarvestAdapter {
     }
 
     public void saveConnectInformation(final ConnectInformation newConnectInformation) {
+        awaitSavedState();
+
         if (connectInformation.equals(newConnectInformation)) {
             return;
         }
 
-        saveApplicationInformation(newConnectInformation.getApplicationInformation());
-        saveDeviceInformation(newConnectInformation.getDeviceInformation());
+        final SnapshotFileStore.Transaction transaction = store.edit();
+        saveApplicationInformation(transaction, newConnectInformation.getApplicationInformation());
+        saveDeviceInformation(transaction, newConnectInformation.getDeviceInformation());
+        transaction.commit();
 
         // Reload the connect information
         loadConnectInformation();
     }
 
     public void saveDeviceId(final String deviceId) {
+        awaitSavedState();
         save(PREF_DEVICE_ID, deviceId);
         connectInformation.getDeviceInformation().setDeviceId(deviceId);
     }
@@ -240,28 +274,28 @@ public class SavedState extends HarvestAdapter {
         save(PREF_CONNECT_HASH, connectionToken.hashCode());
     }
 
-    private void saveApplicationInformation(final ApplicationInformation applicationInformation) {
-        save(PREF_APP_NAME, applicationInformation.getAppName());
-        save(PREF_APP_VERSION, applicationInformation.getAppVersion());
-        save(PREF_APP_BUILD, applicationInformation.getAppBuild());
-        save(PREF_PACKAGE_ID, applicationInformation.getPackageId());
-        save(PREF_VERSION_CODE, applicationInformation.getVersionCode());
+    private void saveApplicationInformation(final SnapshotFileStore.Transaction transaction, final ApplicationInformation applicationInformation) {
+        transaction.putString(PREF_APP_NAME, applicationInformation.getAppName());
+        transaction.putString(PREF_APP_VERSION, applicationInformation.getAppVersion());
+        transaction.putString(PREF_APP_BUILD, applicationInformation.getAppBuild());
+        transaction.putString(PREF_PACKAGE_ID, applicationInformation.getPackageId());
+        transaction.putInt(PREF_VERSION_CODE, applicationInformation.getVersionCode());
     }
 
-    private void saveDeviceInformation(final DeviceInformation deviceInformation) {
-        save(PREF_AGENT_NAME, deviceInformation.getAgentName());
-        save(PREF_AGENT_VERSION, deviceInformation.getAgentVersion());
-        save(PREF_DEVICE_ARCHITECTURE, deviceInformation.getArchitecture());
-        save(PREF_DEVICE_ID, deviceInformation.getDeviceId());
-        save(PREF_DEVICE_MODEL, deviceInformation.getModel());
-        save(PREF_DEVICE_MANUFACTURER, deviceInformation.getManufacturer());
-        save(PREF_DEVICE_RUN_TIME, deviceInformation.getRunTime());
-        save(PREF_DEVICE_SIZE, deviceInformation.getSize());
-        save(PREF_OS_NAME, deviceInformation.getOsName());
-        save(PREF_OS_BUILD, deviceInformation.getOsBuild());
-        save(PREF_OS_VERSION, deviceInformation.getOsVersion());
-        save(PREF_PLATFORM, deviceInformation.getApplicationFramework().toString());
-        save(PREF_PLATFORM_VERSION, deviceInformation.getApplicationFrameworkVersion());
+    private void saveDeviceInformation(final SnapshotFileStore.Transaction transaction, final DeviceInformation deviceInformation) {
+        transaction.putString(PREF_AGENT_NAME, deviceInformation.getAgentName());
+        transaction.putString(PREF_AGENT_VERSION, deviceInformation.getAgentVersion());
+        transaction.putString(PREF_DEVICE_ARCHITECTURE, deviceInformation.getArchitecture());
+        transaction.putString(PREF_DEVICE_ID, deviceInformation.getDeviceId());
+        transaction.putString(PREF_DEVICE_MODEL, deviceInformation.getModel());
+        transaction.putString(PREF_DEVICE_MANUFACTURER, deviceInformation.getManufacturer());
+        transaction.putString(PREF_DEVICE_RUN_TIME, deviceInformation.getRunTime());
+        transaction.putString(PREF_DEVICE_SIZE, deviceInformation.getSize());
+        transaction.putString(PREF_OS_NAME, deviceInformation.getOsName());
+        transaction.putString(PREF_OS_BUILD, deviceInformation.getOsBuild());
+        transaction.putString(PREF_OS_VERSION, deviceInformation.getOsVersion());
+        transaction.putString(PREF_PLATFORM, deviceInformation.getApplicationFramework().toString());
+        transaction.putString(PREF_PLATFORM_VERSION, deviceInformation.getApplicationFrameworkVersion());
     }
 
     public void loadConnectInformation() {
@@ -328,15 +362,17 @@ public class SavedState extends HarvestAdapter {
     }
 
     public HarvestConfiguration getHarvestConfiguration() {
+        awaitSavedState();
         return configuration;
     }
 
     public ConnectInformation getConnectInformation() {
+        awaitSavedState();
         return connectInformation;
     }
 
     boolean has(String key) {
-        return prefs.contains(key);
+        return store.contains(key);
     }
 
     @Override
@@ -374,79 +410,46 @@ public class SavedState extends HarvestAdapter {
     }
 
     public void save(String key, String value) {
-        lock.lock();
-        try {
-            editor.putString(key, value);
-            editor.apply();
-        } finally {
-            lock.unlock();
-        }
+        store.edit().putString(key, value).commit();
     }
 
     public void save(String key, boolean value) {
-        lock.lock();
-        try {
-            editor.putBoolean(key, value);
-            editor.apply();
-        } finally {
-            lock.unlock();
-        }
+        store.edit().putBoolean(key, value).commit();
     }
 
     public void save(String key, int value) {
-        lock.lock();
-        try {
-            editor.putInt(key, value);
-            editor.apply();
-        } finally {
-            lock.unlock();
-        }
+        store.edit().putInt(key, value).commit();
     }
 
     public void save(String key, long value) {
-        lock.lock();
-        try {
-            editor.putLong(key, value);
-            editor.apply();
-        } finally {
-            lock.unlock();
-        }
+        store.edit().putLong(key, value).commit();
     }
 
     public void save(String key, float value) {
-        lock.lock();
-        try {
-            editor.putFloat(key, value);
-            editor.apply();
-        } finally {
-            lock.unlock();
-        }
+        store.edit().putFloat(key, value).commit();
     }
 
     public String getString(String key) {
-        if (!prefs.contains(key))
-            return null;
-
-        return prefs.getString(key, null);
+        return store.getString(key, null);
     }
 
     public boolean getBoolean(String key) {
-        return prefs.getBoolean(key, false);
+        return store.getBoolean(key, false);
     }
 
     public long getLong(String key) {
-        return prefs.getLong(key, 0);
+        return store.getLong(key, 0);
     }
 
     public int getInt(String key) {
-        return prefs.getInt(key, 0);
+        return store.getInt(key, 0);
     }
 
     public Float getFloat(String key) {
-        if (!prefs.contains(key))
+        if (!store.contains(key))
             return null;
 
-        float f = prefs.getFloat(key, 0.0f);
+        float f = store.getFloat(key, 0.0f);
 
         // Round the float value to 2 decimal places. Float values read from prefs have float noise in the low bits.
         return ((int) (f * 100)) / 100.0f;
@@ -647,24 +650,20 @@ public class SavedState extends HarvestAdapter {
     }
 
     public void clear() {
-        lock.lock();
-        try {
-            editor.clear();
-            editor.apply();
-            configuration.setDefaultValues();
-        } finally {
-            lock.unlock();
-        }
+        awaitSavedState();
+        store.edit().clear().commit();
+        configuration.setDefaultValues();
     }
 
     public void remove(final String key) {
-        lock.lock();
-        try {
-            editor.remove(key).apply();
-        } catch (Exception ignored) {
-        } finally {
-            lock.unlock();
-        }
+        store.edit().remove(key).commit();
+    }
+
+    /**
+     * Block until all saved values have been written to storage.
+     */
+    public void flush() {
+        store.flush();
     }
 
     public boolean hasConnectionToken(final String appToken) {
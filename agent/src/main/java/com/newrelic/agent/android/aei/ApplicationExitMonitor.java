@@ -27,6 +27,7 @@ import com.newrelic.agent.android.stats.StatsEngine;
 import com.newrelic.agent.android.util.Streams;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -45,6 +46,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class ApplicationExitMonitor {
     private static final AgentLog log = AgentLogManager.getAgentLog();
@@ -167,33 +170,20 @@ public class ApplicationExitMonitor {
                     log.debug("ApplicationExitMonitor: Found session id [" + aeiSessionId + "] for AEI pid[" + exitInfo.getPid() + "]");
                 }
 
-                String traceReport = exitInfo.toString();
-
                 // remove any empty files
                 if (artifact.exists() && artifact.length() == 0) {
                     artifact.delete();
                 }
 
                 // write a marker so we don't inspect this record again (over-reporting)
-                try (OutputStream artifactOs = new FileOutputStream(artifact, false)) {
-
-                    if (null != exitInfo.getTraceInputStream()) {
-                        try (InputStream traceIs = exitInfo.getTraceInputStream()) {
-                            traceReport = Streams.slurpString(traceIs);
-                        } catch (IOException e) {
-                            log.info("ApplicationExitMonitor: " + e);
-                        }
-                    }
-
-                    artifactOs.write(traceReport.getBytes(StandardCharsets.UTF_8));
-                    artifactOs.flush();
-                    artifactOs.close();
-                    artifact.setReadOnly();
-
+                if (captureTrace(exitInfo, artifact)) {
                     recordsVisited.incrementAndGet();
+                }
 
-                } catch (IOException e) {
-                    log.debug("harvestApplicationExitInfo: AppExitInfo artifact error. " + e);
+                // only ANR traces are decomposed, from the bounded capture rather than the system trace
+                String traceReport = exitInfo.toString();
+                if (exitInfo.getReason() == ApplicationExitInfo.REASON_ANR) {
+                    traceReport = readTrace(artifact, traceReport);
                 }
 
                 // try to map the AEI with the session it occurred in
@@ -246,6 +236,63 @@ public class ApplicationExitMonitor {
         }
     }
 
+    /**
+     * Stream the exit record's trace into the artifact. The trace is truncated to the configured size,
+     * and compressed as it is read. If the record has no trace, the record itself is written.
+     *
+     * @return true if the artifact was written
+     **/
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    boolean captureTrace(ApplicationExitInfo exitInfo, File artifact) {
+        try (OutputStream artifactOs = new GZIPOutputStream(new FileOutputStream(artifact, false))) {
+            InputStream traceIs = null;
+            try {
+                traceIs = exitInfo.getTraceInputStream();
+            } catch (IOException e) {
+                log.info("ApplicationExitMonitor: " + e);
+            }
+
+            if (null != traceIs) {
+                try (InputStream is = traceIs) {
+                    int maxTraceSize = AgentConfiguration.getInstance().getApplicationExitConfiguration().getMaxTraceSize();
+                    AEITraceCapture capture = new AEITraceCapture(maxTraceSize).capture(is, artifactOs);
+
+                    StatsEngine.SUPPORTABILITY.sample(MetricNames.SUPPORTABILITY_AEI_TRACE_SIZE, capture.getCharsRead());
+                    if (capture.isTruncated()) {
+                        StatsEngine.SUPPORTABILITY.inc(MetricNames.SUPPORTABILITY_AEI_TRACE_TRUNCATED);
+                    }
+                } catch (IOException e) {
+                    log.info("ApplicationExitMonitor: " + e);
+                }
+            } else {
+                artifactOs.write(exitInfo.toString().getBytes(StandardCharsets.UTF_8));
+            }
+
+            artifactOs.flush();
+
+        } catch (IOException e) {
+            log.debug("harvestApplicationExitInfo: AppExitInfo artifact error. " + e);
+            return false;
+        }
+
+        artifact.setReadOnly();
+
+        return true;
+    }
+
+    /**
+     * Read a captured trace back from its artifact. The capture is size bounded.
+     **/
+    String readTrace(File artifact, String defaultTrace) {
+        try (InputStream traceIs = new GZIPInputStream(new FileInputStream(artifact))) {
+            return Streams.slurpString(traceIs, StandardCharsets.UTF_8.toString());
+        } catch (IOException e) {
+            log.debug("harvestApplicationExitInfo: Cannot read AppExitInfo artifact. " + e);
+        }
+
+        return defaultTrace;
+    }
+
     /**
      * Create an event for the AEI record and return the attributes
      **/
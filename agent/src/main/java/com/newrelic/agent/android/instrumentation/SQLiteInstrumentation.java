@@ -12,22 +12,34 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.CancellationSignal;
 
+import com.newrelic.agent.android.FeatureFlag;
+import com.newrelic.agent.android.instrumentation.sqlite.SQLiteStatementStatistics;
 import com.newrelic.agent.android.tracing.TraceMachine;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.TreeSet;
 
 @SuppressWarnings("unused")
 public class SQLiteInstrumentation {
     private static final ArrayList<String> categoryParams = new ArrayList<String>(Arrays.asList("category", MetricCategory.class.getName(), "DATABASE"));
 
+    // SQLiteDatabase.CONFLICT_NONE through CONFLICT_REPLACE
+    private static final String[] CONFLICT_CLAUSES = {"", " OR ROLLBACK", " OR ABORT", " OR FAIL", " OR IGNORE", " OR REPLACE"};
+    static final int CONFLICT_NONE = 0;
+    static final int CONFLICT_REPLACE = 5;
+
     SQLiteInstrumentation() {}
 
     @ReplaceCallSite
     public static Cursor query(SQLiteDatabase database, boolean distinct, String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit) {
         TraceMachine.enterMethod("SQLiteDatabase#query", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.query(distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            return timeFirstFill(cursor, queryStatement(distinct, table, columns, selection, groupBy, having, orderBy, limit), System.nanoTime() - startNs);
+        }
 
         return cursor;
     }
@@ -36,8 +48,12 @@ public class SQLiteInstrumentation {
     @TargetApi(16)
     public static Cursor query(SQLiteDatabase database, boolean distinct, String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit, CancellationSignal cancellationSignal) {
         TraceMachine.enterMethod("SQLiteDatabase#query", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.query(distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit, cancellationSignal);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            return timeFirstFill(cursor, queryStatement(distinct, table, columns, selection, groupBy, having, orderBy, limit), System.nanoTime() - startNs);
+        }
 
         return cursor;
     }
@@ -45,8 +61,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static Cursor query(SQLiteDatabase database, String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy) {
         TraceMachine.enterMethod("SQLiteDatabase#query", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.query(table, columns, selection, selectionArgs, groupBy, having, orderBy);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            return timeFirstFill(cursor, queryStatement(false, table, columns, selection, groupBy, having, orderBy, null), System.nanoTime() - startNs);
+        }
 
         return cursor;
     }
@@ -54,8 +74,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static Cursor query(SQLiteDatabase database, String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit) {
         TraceMachine.enterMethod("SQLiteDatabase#query", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.query(table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            return timeFirstFill(cursor, queryStatement(false, table, columns, selection, groupBy, having, orderBy, limit), System.nanoTime() - startNs);
+        }
 
         return cursor;
     }
@@ -63,8 +87,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static Cursor queryWithFactory(SQLiteDatabase database, SQLiteDatabase.CursorFactory cursorFactory, boolean distinct, String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit) {
         TraceMachine.enterMethod("SQLiteDatabase#queryWithFactory", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.queryWithFactory(cursorFactory, distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            return timeFirstFill(cursor, queryStatement(distinct, table, columns, selection, groupBy, having, orderBy, limit), System.nanoTime() - startNs);
+        }
 
         return cursor;
     }
@@ -73,8 +101,12 @@ public class SQLiteInstrumentation {
     @TargetApi(16)
     public static Cursor queryWithFactory(SQLiteDatabase database, SQLiteDatabase.CursorFactory cursorFactory, boolean distinct, String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit, CancellationSignal cancellationSignal) {
         TraceMachine.enterMethod("SQLiteDatabase#queryWithFactory", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.queryWithFactory(cursorFactory, distinct, table, columns, selection, selectionArgs, groupBy, having, orderBy, limit, cancellationSignal);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            return timeFirstFill(cursor, queryStatement(distinct, table, columns, selection, groupBy, having, orderBy, limit), System.nanoTime() - startNs);
+        }
 
         return cursor;
     }
@@ -82,46 +114,50 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static Cursor rawQuery(SQLiteDatabase database, String sql, String[] selectionArgs) {
         TraceMachine.enterMethod("SQLiteDatabase#rawQuery", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.rawQuery(sql, selectionArgs);
         TraceMachine.exitMethod();
-
-        return cursor;
+        return timeFirstFill(cursor, sql, System.nanoTime() - startNs);
     }
 
     @ReplaceCallSite
     @TargetApi(16)
     public static Cursor rawQuery(SQLiteDatabase database, String sql, String[] selectionArgs, CancellationSignal cancellationSignal) {
         TraceMachine.enterMethod("SQLiteDatabase#rawQuery", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.rawQuery(sql, selectionArgs, cancellationSignal);
         TraceMachine.exitMethod();
-
-        return cursor;
+        return timeFirstFill(cursor, sql, System.nanoTime() - startNs);
     }
 
     @ReplaceCallSite
     public static Cursor rawQueryWithFactory(SQLiteDatabase database, SQLiteDatabase.CursorFactory cursorFactory, String sql, String[] selectionArgs, String editTable) {
         TraceMachine.enterMethod("SQLiteDatabase#rawQueryWithFactory", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.rawQueryWithFactory(cursorFactory, sql, selectionArgs, editTable);
         TraceMachine.exitMethod();
-
-        return cursor;
+        return timeFirstFill(cursor, sql, System.nanoTime() - startNs);
     }
 
     @ReplaceCallSite
     @TargetApi(16)
     public static Cursor rawQueryWithFactory(SQLiteDatabase database, SQLiteDatabase.CursorFactory cursorFactory, String sql, String[] selectionArgs, String editTable, CancellationSignal cancellationSignal) {
         TraceMachine.enterMethod("SQLiteDatabase#rawQueryWithFactory", categoryParams);
+        final long startNs = System.nanoTime();
         final Cursor cursor = database.rawQueryWithFactory(cursorFactory, sql, selectionArgs, editTable, cancellationSignal);
         TraceMachine.exitMethod();
-
-        return cursor;
+        return timeFirstFill(cursor, sql, System.nanoTime() - startNs);
     }
 
     @ReplaceCallSite
     public static long insert(SQLiteDatabase database, String table, String nullColumnHack, ContentValues values) {
         TraceMachine.enterMethod("SQLiteDatabase#insert", categoryParams);
+        final long startNs = System.nanoTime();
         final long result = database.insert(table, nullColumnHack, values);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            SQLiteStatementStatistics.recordStatement(insertStatement(table, values, CONFLICT_NONE), System.nanoTime() - startNs);
+        }
 
         return result;
     }
@@ -129,8 +165,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static long insertOrThrow(SQLiteDatabase database, String table, String nullColumnHack, ContentValues values) throws SQLException  {
         TraceMachine.enterMethod("SQLiteDatabase#insertOrThrow", categoryParams);
+        final long startNs = System.nanoTime();
         final long result = database.insertOrThrow(table, nullColumnHack, values);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            SQLiteStatementStatistics.recordStatement(insertStatement(table, values, CONFLICT_NONE), System.nanoTime() - startNs);
+        }
 
         return result;
     }
@@ -138,8 +178,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static long insertWithOnConflict(SQLiteDatabase database, String table, String nullColumnHack, ContentValues initialValues, int conflictAlgorithm) {
         TraceMachine.enterMethod("SQLiteDatabase#insertWithOnConflict", categoryParams);
+        final long startNs = System.nanoTime();
         final long result = database.insertWithOnConflict(table, nullColumnHack, initialValues, conflictAlgorithm);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            SQLiteStatementStatistics.recordStatement(insertStatement(table, initialValues, conflictAlgorithm), System.nanoTime() - startNs);
+        }
 
         return result;
     }
@@ -147,8 +191,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static long replace(SQLiteDatabase database, String table, String nullColumnHack, ContentValues initialValues) {
         TraceMachine.enterMethod("SQLiteDatabase#replace", categoryParams);
+        final long startNs = System.nanoTime();
         final long result = database.replace(table, nullColumnHack, initialValues);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            SQLiteStatementStatistics.recordStatement(insertStatement(table, initialValues, CONFLICT_REPLACE), System.nanoTime() - startNs);
+        }
 
         return result;
     }
@@ -156,8 +204,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static long replaceOrThrow(SQLiteDatabase database, String table, String nullColumnHack, ContentValues initialValues) throws SQLException {
         TraceMachine.enterMethod("SQLiteDatabase#replaceOrThrow", categoryParams);
+        final long startNs = System.nanoTime();
         final long result = database.replaceOrThrow(table, nullColumnHack, initialValues);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            SQLiteStatementStatistics.recordStatement(insertStatement(table, initialValues, CONFLICT_REPLACE), System.nanoTime() - startNs);
+        }
 
         return result;
     }
@@ -165,8 +217,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static int delete(SQLiteDatabase database, String table, String whereClause, String[] whereArgs) {
         TraceMachine.enterMethod("SQLiteDatabase#delete", categoryParams);
+        final long startNs = System.nanoTime();
         final int result = database.delete(table, whereClause, whereArgs);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            SQLiteStatementStatistics.recordStatement(deleteStatement(table, whereClause), System.nanoTime() - startNs);
+        }
 
         return result;
     }
@@ -174,8 +230,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static int update(SQLiteDatabase database, String table, ContentValues values, String whereClause, String[] whereArgs) {
         TraceMachine.enterMethod("SQLiteDatabase#update", categoryParams);
+        final long startNs = System.nanoTime();
         final int result = database.update(table, values, whereClause, whereArgs);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            SQLiteStatementStatistics.recordStatement(updateStatement(table, values, whereClause, CONFLICT_NONE), System.nanoTime() - startNs);
+        }
 
         return result;
     }
@@ -183,8 +243,12 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static int updateWithOnConflict(SQLiteDatabase database, String table, ContentValues values, String whereClause, String[] whereArgs, int conflictAlgorithm) {
         TraceMachine.enterMethod("SQLiteDatabase#updateWithOnConflict", categoryParams);
+        final long startNs = System.nanoTime();
         final int result = database.updateWithOnConflict(table, values, whereClause, whereArgs, conflictAlgorithm);
         TraceMachine.exitMethod();
+        if (FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            SQLiteStatementStatistics.recordStatement(updateStatement(table, values, whereClause, conflictAlgorithm), System.nanoTime() - startNs);
+        }
 
         return result;
     }
@@ -192,14 +256,102 @@ public class SQLiteInstrumentation {
     @ReplaceCallSite
     public static void execSQL(SQLiteDatabase database, String sql) throws SQLException {
         TraceMachine.enterMethod("SQLiteDatabase#execSQL", categoryParams);
+        final long startNs = System.nanoTime();
         database.execSQL(sql);
         TraceMachine.exitMethod();
+        SQLiteStatementStatistics.recordStatement(sql, System.nanoTime() - startNs);
     }
 
     @ReplaceCallSite
     public static void execSQL(SQLiteDatabase database, String sql, Object[] bindArgs) throws SQLException {
         TraceMachine.enterMethod("SQLiteDatabase#execSQL", categoryParams);
+        final long startNs = System.nanoTime();
         database.execSQL(sql, bindArgs);
         TraceMachine.exitMethod();
+        SQLiteStatementStatistics.recordStatement(sql, System.nanoTime() - startNs);
+    }
+
+    /**
+     * SQLiteDatabase compiles queries lazily: the statement executes when the cursor window is first
+     * filled, not when the query returns. When statement statistics are collected, the cursor is wrapped
+     * so the first fill is timed along with the query call, whenever the caller first reads the cursor.
+     */
+    static Cursor timeFirstFill(Cursor cursor, String sql, long queryNs) {
+        if (cursor == null || !FeatureFlag.featureEnabled(FeatureFlag.SQLiteStatementStatistics)) {
+            return cursor;
+        }
+
+        return new SQLiteTimedCursor(cursor, sql, queryNs);
+    }
+
+    /**
+     * The statements below approximate the SQL that SQLiteDatabase compiles for its structured calls,
+     * so they can be fingerprinted alongside raw statements. Values are always bound as parameters.
+     */
+    static String queryStatement(boolean distinct, String table, String[] columns, String selection, String groupBy, String having, String orderBy, String limit) {
+        final StringBuilder sql = new StringBuilder(distinct ? "SELECT DISTINCT " : "SELECT ");
+        if (columns == null || columns.length == 0) {
+            sql.append('*');
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                sql.append(i > 0 ? ", " : "").append(columns[i]);
+            }
+        }
+        sql.append(" FROM ").append(table);
+        appendClause(sql, " WHERE ", selection);
+        appendClause(sql, " GROUP BY ", groupBy);
+        appendClause(sql, " HAVING ", having);
+        appendClause(sql, " ORDER BY ", orderBy);
+        appendClause(sql, " LIMIT ", limit);
+
+        return sql.toString();
+    }
+
+    static String insertStatement(String table, ContentValues values, int conflictAlgorithm) {
+        final StringBuilder sql = new StringBuilder("INSERT").append(conflictClause(conflictAlgorithm)).append(" INTO ").append(table);
+        final StringBuilder params = new StringBuilder();
+
+        sql.append(" (");
+        if (values != null) {
+            // column order is not significant, so sort it for a stable fingerprint
+            for (String column : new TreeSet<String>(values.keySet())) {
+                sql.append(params.length() > 0 ? ", " : "").append(column);
+                params.append(params.length() > 0 ? ", ?" : "?");
+            }
+        }
+        sql.append(") VALUES (").append(params).append(')');
+
+        return sql.toString();
+    }
+
+    static String updateStatement(String table, ContentValues values, String whereClause, int conflictAlgorithm) {
+        final StringBuilder sql = new StringBuilder("UPDATE").append(conflictClause(conflictAlgorithm)).append(' ').append(table).append(" SET ");
+        if (values != null) {
+            boolean first = true;
+            for (String column : new TreeSet<String>(values.keySet())) {
+                sql.append(first ? "" : ", ").append(column).append(" = ?");
+                first = false;
+            }
+        }
+        appendClause(sql, " WHERE ", whereClause);
+
+        return sql.toString();
+    }
+
+    static String deleteStatement(String table, String whereClause) {
+        final StringBuilder sql = new StringBuilder("DELETE FROM ").append(table);
+        appendClause(sql, " WHERE ", whereClause);
+
+        return sql.toString();
+    }
+
+    private static String conflictClause(int conflictAlgorithm) {
+        return (conflictAlgorithm >= 0 && conflictAlgorithm < CONFLICT_CLAUSES.length) ? CONFLICT_CLAUSES[conflictAlgorithm] : "";
+    }
+
+    private static void appendClause(StringBuilder sql, String keyword, String clause) {
+        if (clause != null && !clause.isEmpty()) {
+            sql.append(keyword).append(clause);
+        }
     }
 }
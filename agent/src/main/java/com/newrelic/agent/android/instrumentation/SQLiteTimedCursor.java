@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.instrumentation;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import com.newrelic.agent.android.instrumentation.sqlite.SQLiteStatementStatistics;
+
+/**
+ * A cursor that records its statement's latency once the first cursor window has been filled,
+ * which is when a lazily compiled query actually executes. The latency is the time spent in the
+ * query call plus the first call that positions or counts the cursor. A cursor closed before it
+ * was read records only the query call.
+ */
+class SQLiteTimedCursor extends CursorWrapper {
+    private static final long NOT_TIMED = -1;
+
+    private final String sql;
+    private final long queryNs;
+    private boolean recorded = false;
+
+    SQLiteTimedCursor(Cursor cursor, String sql, long queryNs) {
+        super(cursor);
+        this.sql = sql;
+        this.queryNs = queryNs;
+    }
+
+    @Override
+    public int getCount() {
+        final long startNs = startFill();
+        try {
+            return super.getCount();
+        } finally {
+            endFill(startNs);
+        }
+    }
+
+    @Override
+    public boolean move(int offset) {
+        final long startNs = startFill();
+        try {
+            return super.move(offset);
+        } finally {
+            endFill(startNs);
+        }
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        final long startNs = startFill();
+        try {
+            return super.moveToPosition(position);
+        } finally {
+            endFill(startNs);
+        }
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        final long startNs = startFill();
+        try {
+            return super.moveToFirst();
+        } finally {
+            endFill(startNs);
+        }
+    }
+
+    @Override
+    public boolean moveToLast() {
+        final long startNs = startFill();
+        try {
+            return super.moveToLast();
+        } finally {
+            endFill(startNs);
+        }
+    }
+
+    @Override
+    public boolean moveToNext() {
+        final long startNs = startFill();
+        try {
+            return super.moveToNext();
+        } finally {
+            endFill(startNs);
+        }
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        final long startNs = startFill();
+        try {
+            return super.moveToPrevious();
+        } finally {
+            endFill(startNs);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!recorded) {
+            record(0);
+        }
+        super.close();
+    }
+
+    boolean isRecorded() {
+        return recorded;
+    }
+
+    private long startFill() {
+        return recorded ? NOT_TIMED : System.nanoTime();
+    }
+
+    private void endFill(long startNs) {
+        if (startNs != NOT_TIMED && !recorded) {
+            record(System.nanoTime() - startNs);
+        }
+    }
+
+    private void record(long fillNs) {
+        recorded = true;
+        SQLiteStatementStatistics.recordStatement(sql, queryNs + fillNs);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.sample;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Reads process memory and CPU ticks from the /proc file system without allocating.
+ * <p>
+ * Each file is opened once, then re-read from the start into a shared byte buffer and parsed in
+ * place. Readers are not thread safe, and are meant to be owned by the sampling thread.
+ * Read methods return -1 if the file could not be read or parsed.
+ */
+public class ProcReader implements Closeable {
+    static final String PROC_STAT = "/proc/stat";
+    static final String PROC_SELF_STAT = "/proc/self/stat";
+    static final String PROC_SELF_SMAPS_ROLLUP = "/proc/self/smaps_rollup";
+
+    // the aggregate cpu line of /proc/stat, all of /proc/self/stat, and the leading lines of smaps_rollup fit comfortably
+    static final int BUFFER_SIZE = 1024;
+
+    static final int CPU_TICK_FIELDS = 7;       // user, nice, system, idle, iowait, irq, softirq
+    static final int APP_STAT_FIELDS = 13;      // fields following the command name, through stime
+    static final int APP_UTIME_FIELD = 11;      // field 14 of /proc/[pid]/stat
+    static final int APP_STIME_FIELD = 12;      // field 15 of /proc/[pid]/stat
+    static final byte[] PSS_LABEL = {'P', 's', 's', ':'};
+
+    private final String procStatPath;
+    private final String appStatPath;
+    private final String smapsRollupPath;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final long[] fields = new long[APP_STAT_FIELDS];
+
+    private RandomAccessFile procStatFile;
+    private RandomAccessFile appStatFile;
+    private RandomAccessFile smapsRollupFile;
+
+    public ProcReader() {
+        this(PROC_STAT, PROC_SELF_STAT, PROC_SELF_SMAPS_ROLLUP);
+    }
+
+    ProcReader(String procStatPath, String appStatPath, String smapsRollupPath) {
+        this.procStatPath = procStatPath;
+        this.appStatPath = appStatPath;
+        this.smapsRollupPath = smapsRollupPath;
+    }
+
+    /**
+     * Returns the total CPU ticks consumed by the system, from /proc/stat.
+     */
+    public long readCpuTicks() {
+        try {
+            if (procStatFile == null) {
+                procStatFile = new RandomAccessFile(procStatPath, "r");
+            }
+            return parseCpuTicks(buffer, read(procStatFile, buffer), fields);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the user and kernel CPU ticks consumed by this process, from /proc/self/stat.
+     */
+    public long readAppCpuTicks() {
+        try {
+            if (appStatFile == null) {
+                appStatFile = new RandomAccessFile(appStatPath, "r");
+            }
+            return parseAppCpuTicks(buffer, read(appStatFile, buffer), fields);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the proportional set size (PSS) of this process in kB, from /proc/self/smaps_rollup.
+     * This is the same measure as {@code Debug.MemoryInfo.getTotalPss()}, which requires a binder call.
+     */
+    public long readPssKb() {
+        try {
+            if (smapsRollupFile == null) {
+                smapsRollupFile = new RandomAccessFile(smapsRollupPath, "r");
+            }
+            return parsePssKb(buffer, read(smapsRollupFile, buffer), fields);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        procStatFile = close(procStatFile);
+        appStatFile = close(appStatFile);
+        smapsRollupFile = close(smapsRollupFile);
+    }
+
+    static long parseCpuTicks(byte[] buffer, int length, long[] fields) {
+        // cpu  <user> <nice> <system> <idle> <iowait> <irq> <softirq> ...
+        final int offset = skipToken(buffer, 0, length);
+        if (parseFields(buffer, offset, length, fields, CPU_TICK_FIELDS) < CPU_TICK_FIELDS) {
+            return -1;
+        }
+
+        long ticks = 0;
+        for (int i = 0; i < CPU_TICK_FIELDS; i++) {
+            if (fields[i] < 0) {
+                return -1;
+            }
+            ticks += fields[i];
+        }
+
+        return ticks;
+    }
+
+    static long parseAppCpuTicks(byte[] buffer, int length, long[] fields) {
+        // <pid> (<comm>) <state> <ppid> ... The command name may contain spaces and parentheses,
+        // so fields are counted from the last closing parenthesis.
+        int offset = length - 1;
+        while (offset >= 0 && buffer[offset] != ')') {
+            offset--;
+        }
+        if (offset < 0) {
+            return -1;
+        }
+
+        if (parseFields(buffer, offset + 1, length, fields, APP_STAT_FIELDS) < APP_STAT_FIELDS) {
+            return -1;
+        }
+
+        final long utime = fields[APP_UTIME_FIELD];
+        final long stime = fields[APP_STIME_FIELD];
+
+        return (utime < 0 || stime < 0) ? -1 : utime + stime;
+    }
+
+    static long parsePssKb(byte[] buffer, int length, long[] fields) {
+        // <address range> [rollup]\nRss:  <kB> kB\nPss:  <kB> kB\nPss_Dirty: ...
+        int offset = 0;
+        while (offset < length) {
+            if (startsWith(buffer, offset, length, PSS_LABEL)) {
+                if (parseFields(buffer, offset + PSS_LABEL.length, length, fields, 1) < 1) {
+                    return -1;
+                }
+                return fields[0];
+            }
+            while (offset < length && buffer[offset] != '\n') {
+                offset++;
+            }
+            offset++;
+        }
+
+        return -1;
+    }
+
+    static boolean startsWith(byte[] buffer, int offset, int length, byte[] prefix) {
+        if (offset + prefix.length > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse up to {@code count} space delimited fields of the first line, starting at {@code offset}.
+     * Fields that are not unsigned decimal numbers are stored as -1.
+     *
+     * @return The number of fields parsed
+     */
+    static int parseFields(byte[] buffer, int offset, int length, long[] fields, int count) {
+        int parsed = 0;
+        int pos = offset;
+
+        while (parsed < count) {
+            while (pos < length && buffer[pos] == ' ') {
+                pos++;
+            }
+            if (pos >= length || buffer[pos] == '\n') {
+                break;
+            }
+
+            long value = 0;
+            boolean numeric = true;
+            while (pos < length && buffer[pos] != ' ' && buffer[pos] != '\n') {
+                final int digit = buffer[pos] - '0';
+                if (digit < 0 || digit > 9) {
+                    numeric = false;
+                } else {
+                    value = value * 10 + digit;
+                }
+                pos++;
+            }
+
+            fields[parsed++] = numeric ? value : -1;
+        }
+
+        return parsed;
+    }
+
+    static int skipToken(byte[] buffer, int offset, int length) {
+        int pos = offset;
+        while (pos < length && buffer[pos] != ' ' && buffer[pos] != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int read(RandomAccessFile file, byte[] buffer) throws IOException {
+        int length = 0;
+        int count;
+
+        file.seek(0);
+        while (length < buffer.length && (count = file.read(buffer, length, buffer.length - length)) > 0) {
+            length += count;
+        }
+
+        return length;
+    }
+
+    private static RandomAccessFile close(RandomAccessFile file) {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // nothing to recover
+            }
+        }
+        return null;
+    }
+}
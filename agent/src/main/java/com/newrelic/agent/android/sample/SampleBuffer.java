@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.sample;
+
+import com.newrelic.agent.android.tracing.Sample;
+import com.newrelic.agent.android.tracing.SampleValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A fixed-capacity ring of timestamped sample values, held in primitive arrays.
+ * <p>
+ * The buffer has a single writer (the sampling thread), which never blocks or allocates. Readers
+ * take snapshots without locking: the slots are copied, then any slot the writer may have overwritten
+ * during the copy is discarded. One spare slot absorbs a write in progress, so a snapshot taken
+ * while the writer is idle always holds every sample. Once full, the oldest samples are overwritten.
+ */
+public class SampleBuffer {
+    private final Sample.SampleType type;
+    private final int capacity;
+    private final long[] timestamps;
+    private final double[] values;
+
+    // total number of samples written, and the index of the next write (modulo capacity)
+    private volatile long count = 0;
+
+    public SampleBuffer(Sample.SampleType type, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.type = type;
+        this.capacity = capacity;
+        this.timestamps = new long[capacity + 1];
+        this.values = new double[capacity + 1];
+    }
+
+    public Sample.SampleType getType() {
+        return type;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of samples held, up to capacity.
+     */
+    public int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    /**
+     * Append a sample. Must only be called from the writing thread.
+     */
+    public void add(long timestamp, double value) {
+        final long next = count;
+        final int slot = (int) (next % timestamps.length);
+
+        timestamps[slot] = timestamp;
+        values[slot] = value;
+        count = next + 1;   // publishes the slot
+    }
+
+    /**
+     * Discard all samples. Must only be called from the writing thread, or while it is stopped.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Returns the samples held, oldest first, without blocking the writer.
+     */
+    public Collection<Sample> snapshot() {
+        final int slots = timestamps.length;
+        final long[] timestampCopy = new long[slots];
+        final double[] valueCopy = new double[slots];
+
+        final long end = count;
+        final long start = Math.max(0, end - capacity);
+        for (long i = start; i < end; i++) {
+            final int slot = (int) (i % slots);
+            timestampCopy[slot] = timestamps[slot];
+            valueCopy[slot] = values[slot];
+        }
+
+        // slots the writer reached while copying (including one in progress) may hold newer values, so drop them
+        final long written = count;
+        final long first = (written < end) ? end : Math.max(start, written - slots + 1);
+
+        final Collection<Sample> samples = new ArrayList<>((int) Math.max(0, end - first));
+        for (long i = first; i < end; i++) {
+            final int slot = (int) (i % slots);
+            final Sample sample = new Sample(timestampCopy[slot], new SampleValue(valueCopy[slot]));
+            sample.setSampleType(type);
+            samples.add(sample);
+        }
+
+        return samples;
+    }
+}
@@ -10,20 +10,19 @@ import android.content.Context;
 import android.os.Build;
 import android.os.Debug;
 
+import com.newrelic.agent.android.AgentConfiguration;
+import com.newrelic.agent.android.background.ApplicationStateEvent;
+import com.newrelic.agent.android.background.ApplicationStateListener;
+import com.newrelic.agent.android.background.ApplicationStateMonitor;
 import com.newrelic.agent.android.harvest.AgentHealth;
 import com.newrelic.agent.android.logging.AgentLog;
 import com.newrelic.agent.android.logging.AgentLogManager;
-import com.newrelic.agent.android.metric.Metric;
-import com.newrelic.agent.android.stats.TicToc;
 import com.newrelic.agent.android.tracing.ActivityTrace;
 import com.newrelic.agent.android.tracing.Sample;
 import com.newrelic.agent.android.tracing.TraceLifecycleAware;
 import com.newrelic.agent.android.tracing.TraceMachine;
 import com.newrelic.agent.android.util.NamedThreadFactory;
 
-import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
@@ -36,46 +35,93 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class Sampler implements TraceLifecycleAware, Runnable {
+public class Sampler implements TraceLifecycleAware, Runnable, SamplingController.SampleSource {
     protected static final long SAMPLE_FREQ_MS = 100;
-    protected static final long SAMPLE_FREQ_MS_MAX = 250;     // upper limit on sampling frequency
+    protected static final long SAMPLE_FREQ_MS_MAX = 250;     // upper limit on sampling frequency during traces
     private static final int[] PID = {android.os.Process.myPid()};
     private static final int KB_IN_MB = 1024;
+    protected static final int SAMPLE_BUFFER_CAPACITY = 1200;  // 2 minutes at the default sampling frequency
     private static final AgentLog log = AgentLogManager.getAgentLog();
     private static final ReentrantLock samplerLock = new ReentrantLock();
     protected static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Sampler"));
 
 
-    protected static Sampler sampler;
+    protected static volatile Sampler sampler;
     protected static boolean cpuSamplingDisabled = false;
+    private static final AtomicBoolean appStateMonitored = new AtomicBoolean(false);
+    private static volatile boolean inBackground = false;
+
+    /**
+     * Suspends sampling while the app is in the background, and resumes idle sampling when it returns.
+     * The listener is registered once and outlives the sampler instance, since the agent shuts down and
+     * re-initializes the sampler while the application state is changing.
+     */
+    static final ApplicationStateListener appStateListener = new ApplicationStateListener() {
+        @Override
+        public void applicationForegrounded(ApplicationStateEvent e) {
+            samplerLock.lock();
+            try {
+                inBackground = false;
+                if (sampler != null) {
+                    sampler.resume(sampler.updateState(SamplingController.State.IDLE));
+                }
+            } finally {
+                samplerLock.unlock();
+            }
+        }
+
+        @Override
+        public void applicationBackgrounded(ApplicationStateEvent e) {
+            samplerLock.lock();
+            try {
+                inBackground = true;
+                if (sampler != null) {
+                    sampler.applyInterval(sampler.updateState(SamplingController.State.BACKGROUND));
+                }
+            } finally {
+                samplerLock.unlock();
+            }
+        }
+    };
 
     private final ActivityManager activityManager;
-    private final EnumMap<Sample.SampleType, Collection<Sample>> samples = new EnumMap<Sample.SampleType, Collection<Sample>>(Sample.SampleType.class);
+    private final EnumMap<Sample.SampleType, SampleBuffer> samples = new EnumMap<Sample.SampleType, SampleBuffer>(Sample.SampleType.class);
+    private final ProcReader procReader = new ProcReader();
     protected final AtomicBoolean isRunning = new AtomicBoolean(false);
     protected long sampleFreqMs = SAMPLE_FREQ_MS;
+    protected SamplingController controller;
 
     protected ScheduledFuture sampleFuture;
 
-    private Long lastCpuTime;
-    private Long lastAppCpuTime;
-    private RandomAccessFile procStatFile;
-    private RandomAccessFile appStatFile;
-    private Metric samplerServiceMetric;
+    private long lastCpuTime = -1;
+    private long lastAppCpuTime = -1;
 
     protected Sampler(Context context) {
         activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        controller = new SamplingController(AgentConfiguration.DEFAULT_SAMPLER_OVERHEAD_BUDGET, SAMPLE_FREQ_MS, SAMPLE_FREQ_MS_MAX, 0);
 
-        samples.put(Sample.SampleType.MEMORY, new ArrayList<Sample>());
-        samples.put(Sample.SampleType.CPU, new ArrayList<Sample>());
+        samples.put(Sample.SampleType.MEMORY, new SampleBuffer(Sample.SampleType.MEMORY, SAMPLE_BUFFER_CAPACITY));
+        samples.put(Sample.SampleType.CPU, new SampleBuffer(Sample.SampleType.CPU, SAMPLE_BUFFER_CAPACITY));
     }
 
     public static void init(Context context) {
+        init(context, AgentConfiguration.getInstance());
+    }
+
+    public static void init(Context context, AgentConfiguration agentConfiguration) {
         samplerLock.lock();
         try {
             if (sampler == null) {
                 sampler = provideSampler(context);
                 sampler.sampleFreqMs = SAMPLE_FREQ_MS;
-                sampler.samplerServiceMetric = new Metric("samplerServiceTime");
+                sampler.controller = new SamplingController(agentConfiguration.getSamplerOverheadBudget(),
+                        SAMPLE_FREQ_MS, SAMPLE_FREQ_MS_MAX, agentConfiguration.getSamplerIdleInterval());
+
+                if (appStateMonitored.compareAndSet(false, true)) {
+                    inBackground = ApplicationStateMonitor.isAppInBackground();
+                    ApplicationStateMonitor.getInstance().addApplicationStateListener(appStateListener);
+                }
+                sampler.updateState(SamplingController.State.IDLE);
 
                 TraceMachine.addTraceListener(sampler);
 
@@ -103,8 +149,13 @@ public class Sampler implements TraceLifecycleAware, Runnable {
         samplerLock.lock();
         try {
             if (sampler != null) {
-                sampler.schedule();
-                log.debug("Sampler started");
+                final long interval = sampler.updateState(SamplingController.State.TRACE_ACTIVE);
+                if (interval == SamplingController.SUSPENDED) {
+                    log.debug("Sampler suspended in the background");
+                } else {
+                    sampler.resume(interval);
+                    log.debug("Sampler started");
+                }
             }
         } finally {
             samplerLock.unlock();
@@ -140,6 +191,7 @@ public class Sampler implements TraceLifecycleAware, Runnable {
         try {
             if (sampler != null) {
                 TraceMachine.removeTraceListener(sampler);
+                sampler.controller.setState(SamplingController.State.BACKGROUND);
                 stopNow();
                 sampler = null;
                 log.debug("Sampler shutdown");
@@ -152,7 +204,7 @@ public class Sampler implements TraceLifecycleAware, Runnable {
     public void run() {
         try {
             if (isRunning.get()) {
-                sample();
+                applyInterval(controller.sample(this));
             }
         } catch (Exception e) {
             log.error("Caught exception while running the sampler", e);
@@ -205,42 +257,82 @@ public class Sampler implements TraceLifecycleAware, Runnable {
     }
 
     /**
-     * Check that the avg sampler service time does not exceed the scheduling period. If does occur,
-     * increase the schedule period by 10%.
+     * Fold the duration of a sample run into the sampling controller, and apply the resulting interval.
      *
      * @param serviceTime Duration of last sampler run in ms
      */
     protected void monitorSamplerServiceTime(double serviceTime) {
-        samplerServiceMetric.sample(serviceTime);
-        Double serviceTimeAvg = samplerServiceMetric.getTotal() / samplerServiceMetric.getCount();
-        // log.debug(String.format("Sampler: Service time[%.3f] Avg[%.3f] Max[%.3f]", serviceTime, serviceTimeAvg, samplerServiceMetric.getMax()));
-        if (serviceTimeAvg > sampleFreqMs) {
-            log.debug("Sampler: sample service time has been exceeded. Increase by 10%");
-            sampleFreqMs = Math.min((long) (sampleFreqMs * 1.10f), SAMPLE_FREQ_MS_MAX);
-            if (sampleFuture != null) {
-                sampleFuture.cancel(true);
-            }
-            sampleFuture = scheduler.scheduleWithFixedDelay(this, 0, sampleFreqMs, TimeUnit.MILLISECONDS);
-            log.debug(String.format("Sampler scheduler restarted; sampling will now occur every %d ms.", sampleFreqMs));
-            samplerServiceMetric.clear();
+        applyInterval(controller.recordServiceTime(serviceTime));
+    }
+
+    /**
+     * Move the sampling controller to a new state, unless the app is in the background, where sampling
+     * remains suspended regardless of trace activity.
+     *
+     * @return The sampling interval in ms, or SUSPENDED
+     */
+    protected long updateState(SamplingController.State state) {
+        return controller.setState(inBackground ? SamplingController.State.BACKGROUND : state);
+    }
+
+    /**
+     * Apply the interval to a running sampler, or start the sampler at that interval.
+     */
+    protected void resume(long interval) {
+        if (isRunning.get()) {
+            applyInterval(interval);
+        } else if (interval != SamplingController.SUSPENDED) {
+            sampleFreqMs = interval;
+            schedule();
         }
     }
 
-    protected void sample() {
-        TicToc timer = new TicToc();
+    /**
+     * Reschedule the sampler if the controller has chosen a new interval, or stop it if sampling is suspended.
+     * Sample runs call this too, so the running state is checked under the lock that stop() takes, and a
+     * stopped sampler is never rescheduled.
+     */
+    protected void applyInterval(long interval) {
+        samplerLock.lock();
+        try {
+            if (interval == SamplingController.SUSPENDED) {
+                stop(false);
+                return;
+            }
+
+            if (interval != sampleFreqMs) {
+                sampleFreqMs = interval;
+                if (isRunning.get()) {
+                    if (sampleFuture != null) {
+                        sampleFuture.cancel(false);
+                    }
+                    sampleFuture = scheduler.scheduleWithFixedDelay(this, sampleFreqMs, sampleFreqMs, TimeUnit.MILLISECONDS);
+                    log.debug(String.format("Sampler scheduler restarted; sampling will now occur every %d ms (%s).", sampleFreqMs, controller.getReason()));
+                }
+            }
+        } finally {
+            samplerLock.unlock();
+        }
+    }
 
+    /**
+     * Sample memory and CPU into the sample buffers. Values are read from /proc and recorded as
+     * primitives, so sampling does not allocate (or make binder calls, unless /proc is unavailable).
+     */
+    @Override
+    public void sample() {
         samplerLock.lock();
         try {
-            timer.tic();
-            final Sample memorySample = sampleMemory();
+            final long timestamp = System.currentTimeMillis();
 
-            if (memorySample != null) {
-                getSampleCollection(Sample.SampleType.MEMORY).add(memorySample);
+            final double memoryUsage = sampleMemoryUsage();
+            if (memoryUsage >= 0) {
+                getSampleBuffer(Sample.SampleType.MEMORY).add(timestamp, memoryUsage);
             }
 
-            final Sample cpuSample = sampleCpu();
-            if (cpuSample != null) {
-                getSampleCollection(Sample.SampleType.CPU).add(cpuSample);
+            final double cpuUsage = sampleCpuUsage();
+            if (cpuUsage >= 0) {
+                getSampleBuffer(Sample.SampleType.CPU).add(timestamp, cpuUsage);
             }
         } catch (Exception e) {
             log.error("Sampling failed: " + e.getMessage());
@@ -248,17 +340,31 @@ public class Sampler implements TraceLifecycleAware, Runnable {
         } finally {
             samplerLock.unlock();
         }
-
-        // keep an eye on our sample service time
-        monitorSamplerServiceTime(timer.toc());
     }
 
     protected void clear() {
-        for (Collection<Sample> sampleCollection : samples.values()) {
-            sampleCollection.clear();
+        for (SampleBuffer sampleBuffer : samples.values()) {
+            sampleBuffer.clear();
         }
     }
 
+    /**
+     * Returns the proportional set size (PSS) of this process in MB, or -1 if it could not be sampled.
+     * Falls back to the (much slower) process memory info when /proc/self/smaps_rollup can't be read,
+     * which reports the same measure.
+     */
+    protected double sampleMemoryUsage() {
+        final long pssKb = procReader.readPssKb();
+
+        if (pssKb >= 0) {
+            return (double) pssKb / KB_IN_MB;
+        }
+
+        final Sample sample = sampleMemory(activityManager);
+
+        return sample == null ? -1 : sample.getSampleValue().asDouble();
+    }
+
     public static Sample sampleMemory() {
         if (sampler == null) {
             return null;
@@ -297,111 +403,77 @@ public class Sampler implements TraceLifecycleAware, Runnable {
     }
 
     public Sample sampleCpu() {
+        final double cpuUsage = sampleCpuUsage();
 
-        if (cpuSamplingDisabled) {
+        if (cpuUsage < 0) {
             return null;
         }
 
-        try {
-
-            if (procStatFile == null || appStatFile == null) {
-                // On our first cycle, open up the proc files.
-                // Starting with Android N (8), runtime apps no longer have access to teh /proc fs
-                // There is no workaround at the moment
-                appStatFile = new RandomAccessFile("/proc/" + PID[0] + "/stat", "r");
-                procStatFile = new RandomAccessFile("/proc/stat", "r");
-            } else {
-                // Now that the files are open, just seek back to the beginning to save a few cycles.
-                procStatFile.seek(0);
-                appStatFile.seek(0);
-            }
-
-            final String procStatString = procStatFile.readLine();
-            final String appStatString = appStatFile.readLine();
-
-            // String.split can be an expensive operation. Consider parsing manually, since token are delimited by ' '
-            final String[] procStats = procStatString.split(" ");
-            final String[] appStats = appStatString.split(" ");
+        final Sample sample = new Sample(Sample.SampleType.CPU);
+        sample.setSampleValue(cpuUsage);
 
-            // Same for Long.parseLong. This adds a second string parse. A better solution would be to
-            // combine the split/parse passes into a single pass that tokenizes to long as it encounters each field
-            final long cpuTime = Long.parseLong(procStats[2]) +   // user
-                    Long.parseLong(procStats[3]) +   // nice
-                    Long.parseLong(procStats[4]) +   // system
-                    Long.parseLong(procStats[5]) +   // idle
-                    Long.parseLong(procStats[6]) +   // iowait
-                    Long.parseLong(procStats[7]) +   // irq
-                    Long.parseLong(procStats[8]);    // softirq
-
-            final long appTime = Long.parseLong(appStats[13]) +   // user time
-                    Long.parseLong(appStats[14]);    // kernel time
+        return sample;
+    }
 
-            if (lastCpuTime == null && lastAppCpuTime == null) {
-                // First time through, just record the first values and bail
-                lastCpuTime = cpuTime;
-                lastAppCpuTime = appTime;
+    /**
+     * Returns the percentage of CPU time used by this process since the last sample, or -1 on the
+     * first sample or if CPU sampling is unavailable.
+     */
+    protected double sampleCpuUsage() {
+        if (cpuSamplingDisabled) {
+            return -1;
+        }
 
-                return null;
-            } else {
-                // All subsequent runs, compare this sample with the last
-                final Sample sample = new Sample(Sample.SampleType.CPU);
+        // Starting with Android N (8), runtime apps no longer have access to the /proc/stat
+        // There is no workaround at the moment
+        final long cpuTime = procReader.readCpuTicks();
+        final long appTime = procReader.readAppCpuTicks();
 
-                sample.setSampleValue((double) (appTime - lastAppCpuTime) / (cpuTime - lastCpuTime) * 100);
+        if (cpuTime < 0 || appTime < 0) {
+            cpuSamplingDisabled = true;
+            log.debug("CPU sampling disabled: unable to read /proc stats");
+            return -1;
+        }
 
-                lastCpuTime = cpuTime;
-                lastAppCpuTime = appTime;
+        double cpuUsage = -1;
 
-                return sample;
-            }
-        } catch (Exception e) {
-            cpuSamplingDisabled = true;
-            log.debug("Exception hit while CPU sampling: " + e.getMessage());
-            AgentHealth.noticeException(e);
+        // First time through, just record the first values
+        if (lastCpuTime >= 0 && cpuTime > lastCpuTime) {
+            cpuUsage = (double) (appTime - lastAppCpuTime) / (cpuTime - lastCpuTime) * 100;
         }
 
-        return null;
+        lastCpuTime = cpuTime;
+        lastAppCpuTime = appTime;
+
+        return cpuUsage;
     }
 
     private void resetCpuSampler() {
-        lastCpuTime = null;
-        lastAppCpuTime = null;
-
-        if (appStatFile != null && procStatFile != null) {
-            try {
-                appStatFile.close();
-                procStatFile.close();
-                appStatFile = null;
-                procStatFile = null;
-            } catch (IOException e) {
-                log.debug("Exception hit while resetting CPU sampler: " + e.getMessage());
-                AgentHealth.noticeException(e);
-            }
-        }
+        lastCpuTime = -1;
+        lastAppCpuTime = -1;
+        procReader.close();
     }
 
+    /**
+     * Returns a snapshot of the collected samples. Sample buffers are copied without locking,
+     * so the sampling thread is never blocked by the copy.
+     */
     public static Map<Sample.SampleType, Collection<Sample>> copySamples() {
-        EnumMap<Sample.SampleType, Collection<Sample>> copy;
+        final Sampler instance = sampler;
 
-        samplerLock.lock();
-        try {
-            if (sampler == null) {
-                samplerLock.unlock();
-                return new HashMap<Sample.SampleType, Collection<Sample>>();
-            }
-
-            copy = new EnumMap<Sample.SampleType, Collection<Sample>>(sampler.samples);
+        if (instance == null) {
+            return new HashMap<Sample.SampleType, Collection<Sample>>();
+        }
 
-            for (Sample.SampleType key : sampler.samples.keySet()) {
-                copy.put(key, new ArrayList<Sample>(sampler.samples.get(key)));
-            }
-        } finally {
-            samplerLock.unlock();
+        final EnumMap<Sample.SampleType, Collection<Sample>> copy = new EnumMap<Sample.SampleType, Collection<Sample>>(Sample.SampleType.class);
+        for (Map.Entry<Sample.SampleType, SampleBuffer> entry : instance.samples.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().snapshot());
         }
 
         return Collections.unmodifiableMap(copy);
     }
 
-    private Collection<Sample> getSampleCollection(Sample.SampleType type) {
+    private SampleBuffer getSampleBuffer(Sample.SampleType type) {
         return samples.get(type);
     }
 
@@ -435,9 +507,16 @@ public class Sampler implements TraceLifecycleAware, Runnable {
                 // stop the sample task immediately so as not to lag the interaction involved
                 // if stopped while processing a crash, the sampleLock may throw a sync exception.
                 try {
-                    stop(true);
+                    // sampling continues between traces only if the controller allows it
+                    final long interval = updateState(SamplingController.State.IDLE);
+                    if (interval == SamplingController.SUSPENDED) {
+                        stop(true);
+                    }
                     activityTrace.setVitals(copySamples());
                     clear();
+                    if (interval != SamplingController.SUSPENDED) {
+                        applyInterval(interval);
+                    }
                 } catch (RuntimeException e) {
                     log.error(e.toString());
                 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.sample;
+
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.stats.StatsEngine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the sampling interval from the trace state and a CPU overhead budget.
+ * <p>
+ * Samples are taken at the fastest interval while an activity trace is running, at the idle
+ * interval (or not at all) between traces, and never in the background. The measured cost of
+ * each sample is smoothed, and the interval is lengthened as needed to keep sampling within the
+ * budget: the fraction of one thread's time spent sampling. Each interval change is recorded as a
+ * supportability metric named for the reason it was chosen (a suspended sampler records 0).
+ */
+public class SamplingController {
+    public static final long SUSPENDED = -1;
+
+    static final double SERVICE_TIME_WEIGHT = 0.25;
+
+    public enum State {
+        TRACE_ACTIVE,
+        IDLE,
+        BACKGROUND
+    }
+
+    public enum Reason {
+        TraceActive,
+        Idle,
+        Background,
+        OverheadBudget
+    }
+
+    public interface SampleSource {
+        void sample();
+    }
+
+    public interface Clock {
+        long nanoTime();
+    }
+
+    private final Clock clock;
+    private final double overheadBudget;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final long idleIntervalMs;
+
+    private State state = State.IDLE;
+    private double serviceTimeMs = 0;
+    private long interval;
+    private Reason reason;
+
+    /**
+     * @param overheadBudget Fraction of time that may be spent sampling, in (0, 1]
+     * @param idleIntervalMs Interval between traces, or 0 to suspend sampling when idle
+     */
+    public SamplingController(Clock clock, double overheadBudget, long minIntervalMs, long maxIntervalMs, long idleIntervalMs) {
+        if (overheadBudget <= 0 || overheadBudget > 1) {
+            throw new IllegalArgumentException("Overhead budget must be in (0, 1]");
+        }
+        if (minIntervalMs <= 0 || maxIntervalMs < minIntervalMs) {
+            throw new IllegalArgumentException("Invalid sampling interval range");
+        }
+
+        this.clock = clock;
+        this.overheadBudget = overheadBudget;
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+        this.idleIntervalMs = idleIntervalMs;
+
+        update();
+    }
+
+    public SamplingController(double overheadBudget, long minIntervalMs, long maxIntervalMs, long idleIntervalMs) {
+        this(System::nanoTime, overheadBudget, minIntervalMs, maxIntervalMs, idleIntervalMs);
+    }
+
+    /**
+     * Take a sample from the source, measuring its cost.
+     *
+     * @return The interval until the next sample in ms, or {@link #SUSPENDED}
+     */
+    public synchronized long sample(SampleSource source) {
+        final long start = clock.nanoTime();
+
+        source.sample();
+
+        return recordServiceTime((double) (clock.nanoTime() - start) / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Fold the cost of a sample into the smoothed service time.
+     *
+     * @return The interval until the next sample in ms, or {@link #SUSPENDED}
+     */
+    public synchronized long recordServiceTime(double serviceTimeMs) {
+        if (serviceTimeMs >= 0) {
+            this.serviceTimeMs = (this.serviceTimeMs == 0) ? serviceTimeMs
+                    : (SERVICE_TIME_WEIGHT * serviceTimeMs) + ((1 - SERVICE_TIME_WEIGHT) * this.serviceTimeMs);
+        }
+
+        return update();
+    }
+
+    /**
+     * @return The interval until the next sample in ms, or {@link #SUSPENDED}
+     */
+    public synchronized long setState(State state) {
+        this.state = state;
+        return update();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getInterval() {
+        return interval;
+    }
+
+    public synchronized Reason getReason() {
+        return reason;
+    }
+
+    public synchronized double getServiceTimeMs() {
+        return serviceTimeMs;
+    }
+
+    public synchronized boolean isSuspended() {
+        return interval == SUSPENDED;
+    }
+
+    private long update() {
+        long nextInterval;
+        Reason nextReason;
+
+        switch (state) {
+            case TRACE_ACTIVE:
+                nextInterval = minIntervalMs;
+                nextReason = Reason.TraceActive;
+                break;
+            case IDLE:
+                nextInterval = idleIntervalMs > 0 ? Math.max(idleIntervalMs, minIntervalMs) : SUSPENDED;
+                nextReason = Reason.Idle;
+                break;
+            default:
+                nextInterval = SUSPENDED;
+                nextReason = Reason.Background;
+                break;
+        }
+
+        if (nextInterval != SUSPENDED) {
+            // the shortest interval that keeps sampling within budget
+            final long budgetInterval = Math.min((long) Math.ceil(serviceTimeMs / overheadBudget), maxIntervalMs);
+            if (budgetInterval > nextInterval) {
+                nextInterval = budgetInterval;
+                nextReason = Reason.OverheadBudget;
+            }
+        }
+
+        if (nextInterval != interval || nextReason != reason) {
+            interval = nextInterval;
+            reason = nextReason;
+            StatsEngine.SUPPORTABILITY.sample(MetricNames.SUPPORTABILITY_SAMPLER_INTERVAL + reason.name(), (float) Math.max(interval, 0));
+        }
+
+        return interval;
+    }
+}
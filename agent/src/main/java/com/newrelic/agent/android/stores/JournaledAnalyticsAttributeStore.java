@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.stores;
+
+import android.content.Context;
+
+import com.newrelic.agent.android.analytics.AnalyticsAttribute;
+import com.newrelic.agent.android.analytics.AnalyticsAttributeStore;
+import com.newrelic.agent.android.background.ApplicationStateEvent;
+import com.newrelic.agent.android.background.ApplicationStateListener;
+import com.newrelic.agent.android.harvest.HarvestAdapter;
+import com.newrelic.agent.android.logging.AgentLog;
+import com.newrelic.agent.android.logging.AgentLogManager;
+import com.newrelic.agent.android.util.NamedThreadFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A write-behind store for persistent analytics attributes.
+ * <p>
+ * Updates are journaled in memory and coalesced per attribute name, so repeatedly setting or
+ * incrementing the same attribute costs a map update rather than a file rewrite. The journal is
+ * committed to an atomically written {@link SnapshotFileStore} on a timer, on harvest, and when
+ * the app is backgrounded. Attributes persisted by {@link SharedPrefsAnalyticsAttributeStore}
+ * are migrated on first use.
+ */
+public class JournaledAnalyticsAttributeStore extends HarvestAdapter implements AnalyticsAttributeStore, ApplicationStateListener {
+    private static final AgentLog log = AgentLogManager.getAgentLog();
+
+    static final String STORE_FILE = "NRAnalyticsAttributeStore";
+    static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+    static final long FLUSH_INTERVAL_MS = TimeUnit.MILLISECONDS.convert(5, TimeUnit.SECONDS);
+
+    // journal entry for a deleted attribute
+    private static final Object TOMBSTONE = new Object();
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("AttributeJournal"));
+
+    private final SnapshotFileStore snapshotStore;
+    private final Map<String, Object> journal = new LinkedHashMap<>();
+    private boolean journalCleared = false;
+    private ScheduledFuture<?> scheduledFlush;
+
+    public JournaledAnalyticsAttributeStore(Context context) {
+        this(context, STORE_FILE);
+    }
+
+    public JournaledAnalyticsAttributeStore(final Context context, final String storeFilename) {
+        this(new File(context.getFilesDir(), storeFilename + SNAPSHOT_FILE_SUFFIX),
+                () -> context.getSharedPreferences(storeFilename, Context.MODE_PRIVATE).getAll());
+    }
+
+    JournaledAnalyticsAttributeStore(File snapshotFile, Callable<Map<String, ?>> legacyLoader) {
+        this.snapshotStore = new SnapshotFileStore(snapshotFile, legacyLoader);
+    }
+
+    @Override
+    public boolean store(AnalyticsAttribute attribute) {
+        if (!attribute.isPersistent()) {
+            return false;
+        }
+
+        final Object value;
+        switch (attribute.getAttributeDataType()) {
+            case STRING:
+                value = attribute.getStringValue();
+                break;
+            case DOUBLE:
+                // stored as long bits, as SharedPrefsAnalyticsAttributeStore did
+                value = Double.doubleToLongBits(attribute.getDoubleValue());
+                break;
+            case BOOLEAN:
+                value = attribute.getBooleanValue();
+                break;
+            default:
+                log.error("JournaledAnalyticsAttributeStore.store - unsupported analytic attribute data type" + attribute.getName());
+                return false;
+        }
+
+        log.audit("JournaledAnalyticsAttributeStore.store(" + attribute + ")");
+        synchronized (this) {
+            journal.put(attribute.getName(), value);
+            scheduleFlush();
+        }
+
+        return true;
+    }
+
+    @Override
+    public List<AnalyticsAttribute> fetchAll() {
+        final List<AnalyticsAttribute> attributes = new ArrayList<>();
+
+        for (Map.Entry<String, Object> entry : currentValues().entrySet()) {
+            final String name = entry.getKey();
+            final Object value = entry.getValue();
+
+            log.audit("JournaledAnalyticsAttributeStore contains attribute [" + name + "=" + value + "]");
+            if (value instanceof String) {
+                attributes.add(new AnalyticsAttribute(name, (String) value, true));
+            } else if (value instanceof Float) {
+                // float values may have been migrated from deprecated agent storage
+                attributes.add(new AnalyticsAttribute(name, Double.valueOf(value.toString()), true));
+            } else if (value instanceof Long) {
+                attributes.add(new AnalyticsAttribute(name, Double.longBitsToDouble((Long) value), true));
+            } else if (value instanceof Boolean) {
+                attributes.add(new AnalyticsAttribute(name, (Boolean) value, true));
+            } else {
+                log.error("JournaledAnalyticsAttributeStore.fetchAll(): unsupported attribute [" + name + "=" + value + "]");
+            }
+        }
+
+        return attributes;
+    }
+
+    @Override
+    public int count() {
+        return currentValues().size();
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            journal.clear();
+            journalCleared = true;
+            scheduleFlush();
+        }
+    }
+
+    @Override
+    public void delete(AnalyticsAttribute attribute) {
+        log.audit("JournaledAnalyticsAttributeStore.delete(" + attribute.getName() + ")");
+        synchronized (this) {
+            journal.put(attribute.getName(), TOMBSTONE);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Commit all journaled changes and wait for them to be written to storage.
+     */
+    public void flush() {
+        commitJournal();
+        snapshotStore.flush();
+    }
+
+    @Override
+    public void onHarvest() {
+        flush();
+    }
+
+    @Override
+    public void applicationForegrounded(ApplicationStateEvent e) {
+    }
+
+    @Override
+    public void applicationBackgrounded(ApplicationStateEvent e) {
+        flush();
+    }
+
+    /**
+     * Commit journaled changes to the snapshot store as a single transaction.
+     * The snapshot is then written to storage in the background.
+     */
+    void commitJournal() {
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+
+            if (journal.isEmpty() && !journalCleared) {
+                return;
+            }
+
+            final SnapshotFileStore.Transaction transaction = snapshotStore.edit();
+            if (journalCleared) {
+                transaction.clear();
+            }
+            for (Map.Entry<String, Object> entry : journal.entrySet()) {
+                final Object value = entry.getValue();
+                if (value == TOMBSTONE) {
+                    transaction.remove(entry.getKey());
+                } else if (value instanceof String) {
+                    transaction.putString(entry.getKey(), (String) value);
+                } else if (value instanceof Long) {
+                    transaction.putLong(entry.getKey(), (Long) value);
+                } else if (value instanceof Boolean) {
+                    transaction.putBoolean(entry.getKey(), (Boolean) value);
+                }
+            }
+            transaction.commit();
+
+            log.debug("JournaledAnalyticsAttributeStore: committed " + journal.size() + " attribute changes");
+            journal.clear();
+            journalCleared = false;
+        }
+    }
+
+    boolean hasPendingChanges() {
+        synchronized (this) {
+            return !journal.isEmpty() || journalCleared;
+        }
+    }
+
+    private Map<String, Object> currentValues() {
+        synchronized (this) {
+            final Map<String, Object> values = journalCleared ? new LinkedHashMap<String, Object>() : snapshotStore.getAll();
+
+            for (Map.Entry<String, Object> entry : journal.entrySet()) {
+                if (entry.getValue() == TOMBSTONE) {
+                    values.remove(entry.getKey());
+                } else {
+                    values.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            return values;
+        }
+    }
+
+    private void scheduleFlush() {
+        if (scheduledFlush == null) {
+            scheduledFlush = scheduler.schedule(() -> commitJournal(), FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.stores;
+
+import com.newrelic.agent.android.logging.AgentLog;
+import com.newrelic.agent.android.logging.AgentLogManager;
+import com.newrelic.agent.android.util.NamedThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A small typed key/value store persisted as a single binary snapshot file.
+ * <p>
+ * The snapshot is read on a background thread as soon as the store is created, and callers only
+ * block on that read the first time they access a value. Updates are applied to memory in batches
+ * through a {@link Transaction}, and the whole snapshot is then rewritten off the calling thread
+ * to a temporary file that is renamed over the original, so a crash mid-write never leaves a
+ * partial snapshot behind. Bursts of transactions are coalesced into a single file write.
+ * <p>
+ * If the snapshot can't be read in time, callers see an empty store, and transactions committed
+ * meanwhile are held and replayed once a later access completes the read. Nothing is written
+ * until then, so an incomplete read never overwrites the snapshot.
+ * <p>
+ * Supported value types are String, Boolean, Integer, Long and Float.
+ */
+public class SnapshotFileStore {
+    private static final AgentLog log = AgentLogManager.getAgentLog();
+
+    static final int SNAPSHOT_MAGIC = 0x4e52534e;   // "NRSN"
+    static final int SNAPSHOT_VERSION = 1;
+    static final int MAX_STRING_BYTES = 4 * 1024 * 1024;
+    static final long LOAD_TIMEOUT_MS = TimeUnit.MILLISECONDS.convert(5, TimeUnit.SECONDS);
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_FLOAT = 5;
+
+    // all snapshot file IO is serialized on a single thread
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("SnapshotStore", true));
+
+    private final File snapshotFile;
+    private final Callable<Map<String, ?>> legacyLoader;
+    private final long loadTimeoutMs;
+    private final AtomicBoolean writePending = new AtomicBoolean(false);
+    private final List<Transaction> deferred = new ArrayList<>();
+    private Future<Map<String, Object>> loader;
+    private Map<String, Object> unloaded;
+    private volatile Map<String, Object> values;
+
+    /**
+     * @param snapshotFile File the snapshot is read from and written to
+     * @param legacyLoader Optional source of initial values, called only when no snapshot file exists yet.
+     */
+    public SnapshotFileStore(final File snapshotFile, final Callable<Map<String, ?>> legacyLoader) {
+        this(snapshotFile, legacyLoader, LOAD_TIMEOUT_MS);
+    }
+
+    SnapshotFileStore(final File snapshotFile, final Callable<Map<String, ?>> legacyLoader, long loadTimeoutMs) {
+        this.snapshotFile = snapshotFile;
+        this.legacyLoader = legacyLoader;
+        this.loadTimeoutMs = loadTimeoutMs;
+        this.loader = executor.submit(() -> load(legacyLoader));
+    }
+
+    public SnapshotFileStore(final File snapshotFile) {
+        this(snapshotFile, null);
+    }
+
+    public File getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public boolean isLoaded() {
+        return values != null;
+    }
+
+    public boolean contains(String key) {
+        return awaitValues().containsKey(key);
+    }
+
+    public Object get(String key) {
+        return awaitValues().get(key);
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object value = get(key);
+        return (value instanceof String) ? (String) value : defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = get(key);
+        return (value instanceof Boolean) ? (Boolean) value : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = get(key);
+        return (value instanceof Number) ? ((Number) value).intValue() : defaultValue;
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Object value = get(key);
+        return (value instanceof Number) ? ((Number) value).longValue() : defaultValue;
+    }
+
+    public float getFloat(String key, float defaultValue) {
+        Object value = get(key);
+        return (value instanceof Number) ? ((Number) value).floatValue() : defaultValue;
+    }
+
+    public Map<String, Object> getAll() {
+        return new HashMap<>(awaitValues());
+    }
+
+    /**
+     * Start a batch of changes. Nothing is visible to readers or written to disk until
+     * {@link Transaction#commit()} is called.
+     */
+    public Transaction edit() {
+        return new Transaction();
+    }
+
+    /**
+     * Block until all committed changes have been written to the snapshot file.
+     */
+    public void flush() {
+        try {
+            executor.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("SnapshotFileStore: flush failed: " + e.getCause());
+        }
+    }
+
+    /**
+     * Returns the loaded values, or the values committed since a failed load if the
+     * snapshot still couldn't be read.
+     */
+    Map<String, Object> awaitValues() {
+        Map<String, Object> current = values;
+
+        if (current == null) {
+            synchronized (this) {
+                current = values;
+                if (current == null) {
+                    try {
+                        current = loader.get(loadTimeoutMs, TimeUnit.MILLISECONDS);
+                        onLoaded(current);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        log.error("SnapshotFileStore: interrupted while loading " + snapshotFile.getName());
+                    } catch (TimeoutException e) {
+                        log.error("SnapshotFileStore: timed out loading " + snapshotFile.getName() + ", will retry");
+                    } catch (ExecutionException e) {
+                        log.error("SnapshotFileStore: failed to load " + snapshotFile.getName() + ", will retry: " + e.getCause());
+                        loader = executor.submit(() -> load(legacyLoader));
+                    }
+
+                    if (current == null) {
+                        if (unloaded == null) {
+                            unloaded = new ConcurrentHashMap<>();
+                        }
+                        current = unloaded;
+                    }
+                }
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Replay any transactions committed before the load completed, and install the values.
+     */
+    private void onLoaded(Map<String, Object> loaded) {
+        if (!deferred.isEmpty()) {
+            for (Transaction transaction : deferred) {
+                transaction.applyTo(loaded);
+            }
+            deferred.clear();
+            scheduleWrite();
+        }
+        unloaded = null;
+        values = loaded;
+    }
+
+    private Map<String, Object> load(Callable<Map<String, ?>> legacyLoader) {
+        final Map<String, Object> loaded = new ConcurrentHashMap<>();
+
+        if (snapshotFile.exists()) {
+            try {
+                loaded.putAll(readSnapshot(snapshotFile));
+            } catch (IOException e) {
+                log.error("SnapshotFileStore: discarding unreadable snapshot " + snapshotFile.getName() + ": " + e);
+            }
+
+        } else if (legacyLoader != null) {
+            try {
+                Map<String, ?> legacyValues = legacyLoader.call();
+                if (legacyValues != null) {
+                    for (Map.Entry<String, ?> entry : legacyValues.entrySet()) {
+                        if (isSupportedType(entry.getValue())) {
+                            loaded.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+                if (!loaded.isEmpty()) {
+                    writeSnapshot(snapshotFile, loaded);
+                    log.debug("SnapshotFileStore: migrated " + loaded.size() + " values to " + snapshotFile.getName());
+                }
+            } catch (Exception e) {
+                log.error("SnapshotFileStore: failed to migrate legacy values: " + e);
+            }
+        }
+
+        return loaded;
+    }
+
+    private void scheduleWrite() {
+        // coalesce: only one write need be queued at a time, and it will capture all changes committed before it runs
+        if (writePending.compareAndSet(false, true)) {
+            executor.submit(() -> {
+                final Map<String, Object> snapshot;
+
+                writePending.set(false);
+                synchronized (SnapshotFileStore.this) {
+                    snapshot = new LinkedHashMap<>(values);
+                }
+
+                try {
+                    writeSnapshot(snapshotFile, snapshot);
+                } catch (IOException e) {
+                    log.error("SnapshotFileStore: failed to write " + snapshotFile.getName() + ": " + e);
+                }
+            });
+        }
+    }
+
+    static boolean isSupportedType(Object value) {
+        return value instanceof String
+                || value instanceof Boolean
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Float;
+    }
+
+    static Map<String, Object> readSnapshot(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Invalid snapshot header");
+            }
+
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+
+            int count = in.readInt();
+            final Map<String, Object> values = new HashMap<>(Math.max(count, 0) * 2);
+            for (int i = 0; i < count; i++) {
+                final String key = in.readUTF();
+                final byte type = in.readByte();
+                switch (type) {
+                    case TYPE_STRING:
+                        values.put(key, readString(in));
+                        break;
+                    case TYPE_BOOLEAN:
+                        values.put(key, in.readBoolean());
+                        break;
+                    case TYPE_INT:
+                        values.put(key, in.readInt());
+                        break;
+                    case TYPE_LONG:
+                        values.put(key, in.readLong());
+                        break;
+                    case TYPE_FLOAT:
+                        values.put(key, in.readFloat());
+                        break;
+                    default:
+                        throw new IOException("Unknown value type " + type + " for key " + key);
+                }
+            }
+
+            return values;
+        }
+    }
+
+    static void writeSnapshot(File file, Map<String, Object> values) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+
+        final File tmpFile = new File(parent, file.getName() + ".tmp");
+
+        try (FileOutputStream fos = new FileOutputStream(tmpFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(values.size());
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                final Object value = entry.getValue();
+                out.writeUTF(entry.getKey());
+                if (value instanceof String) {
+                    out.writeByte(TYPE_STRING);
+                    writeString(out, (String) value);
+                } else if (value instanceof Boolean) {
+                    out.writeByte(TYPE_BOOLEAN);
+                    out.writeBoolean((Boolean) value);
+                } else if (value instanceof Integer) {
+                    out.writeByte(TYPE_INT);
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Long) {
+                    out.writeByte(TYPE_LONG);
+                    out.writeLong((Long) value);
+                } else if (value instanceof Float) {
+                    out.writeByte(TYPE_FLOAT);
+                    out.writeFloat((Float) value);
+                } else {
+                    throw new IOException("Unsupported value type for key " + entry.getKey());
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Could not rename " + tmpFile.getName() + " to " + file.getName());
+        }
+    }
+
+    // DataOutput.writeUTF() is limited to 64k, which serialized remote configurations may exceed
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A batch of changes applied atomically to the store on {@link #commit()}.
+     * Removals (and {@link #clear()}) are applied before additions, as in SharedPreferences.
+     */
+    public class Transaction {
+        private final Map<String, Object> puts = new LinkedHashMap<>();
+        private final Map<String, Boolean> removals = new HashMap<>();
+        private boolean clear = false;
+
+        Transaction() {
+        }
+
+        public Transaction putString(String key, String value) {
+            return put(key, value);
+        }
+
+        public Transaction putBoolean(String key, boolean value) {
+            return put(key, value);
+        }
+
+        public Transaction putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        public Transaction putLong(String key, long value) {
+            return put(key, value);
+        }
+
+        public Transaction putFloat(String key, float value) {
+            return put(key, value);
+        }
+
+        public Transaction remove(String key) {
+            puts.remove(key);
+            removals.put(key, Boolean.TRUE);
+            return this;
+        }
+
+        public Transaction clear() {
+            clear = true;
+            return this;
+        }
+
+        private Transaction put(String key, Object value) {
+            if (value == null) {
+                return remove(key);
+            }
+            removals.remove(key);
+            puts.put(key, value);
+            return this;
+        }
+
+        /**
+         * Apply the changes to memory and queue a write of the snapshot. Returns immediately.
+         */
+        public void commit() {
+            final Map<String, Object> current = awaitValues();
+
+            synchronized (SnapshotFileStore.this) {
+                // the load may have completed since the values were read
+                applyTo(values != null ? values : current);
+                if (values == null) {
+                    // written once the snapshot has been read
+                    deferred.add(this);
+                    return;
+                }
+            }
+
+            scheduleWrite();
+        }
+
+        private void applyTo(Map<String, Object> current) {
+            if (clear) {
+                current.clear();
+            }
+            for (String key : removals.keySet()) {
+                current.remove(key);
+            }
+            current.putAll(puts);
+        }
+    }
+}
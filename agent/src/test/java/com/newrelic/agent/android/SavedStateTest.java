@@ -11,6 +11,8 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.Context;
+
 import com.newrelic.agent.android.harvest.ApplicationInformation;
 import com.newrelic.agent.android.harvest.ConnectInformation;
 import com.newrelic.agent.android.harvest.DeviceInformation;
@@ -26,6 +28,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
+import java.io.File;
+
 @RunWith(RobolectricTestRunner.class)
 public class SavedStateTest {
 
@@ -489,6 +493,35 @@ public class SavedStateTest {
         Assert.assertTrue(savedState.has("dataTokenExpiration"));
     }
 
+    @Test
+    public void testSnapshotPersistence() {
+        savedState.saveHarvestConfiguration(Providers.provideHarvestConfiguration());
+        savedState.saveConnectInformation(new ConnectInformation(Providers.provideApplicationInformation(), Providers.provideDeviceInformation()));
+        savedState.flush();
+
+        SavedState reloaded = new SavedState(spyContext.getContext());
+        Assert.assertEquals(savedState.getHarvestConfiguration(), reloaded.getHarvestConfiguration());
+        Assert.assertEquals("SpyContext", reloaded.getAppName());
+        Assert.assertEquals(555, reloaded.getMaxTransactionCount());
+    }
+
+    @Test
+    public void testLegacyPreferencesMigration() {
+        final Context context = spyContext.getContext();
+        final String preferencesName = "com.newrelic.android.agent.v1_" + context.getPackageName();
+
+        savedState.flush();
+        new File(context.getFilesDir(), preferencesName + ".snapshot").delete();
+        context.getSharedPreferences(preferencesName, 0).edit()
+                .putString("crossProcessId", "legacy-process-id")
+                .putLong("maxTransactionCount", 777)
+                .commit();
+
+        SavedState migrated = new SavedState(context);
+        Assert.assertEquals("legacy-process-id", migrated.getHarvestConfiguration().getCross_process_id());
+        Assert.assertEquals(777, migrated.getHarvestConfiguration().getReport_max_transaction_count());
+    }
+
     @Test
     public void testRequestHeadersMap() {
         savedState.saveHarvestConfiguration(Providers.provideHarvestConfiguration());
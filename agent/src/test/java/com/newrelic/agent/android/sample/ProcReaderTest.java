@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.sample;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+public class ProcReaderTest {
+
+    private ProcReader procReader;
+
+    @Before
+    public void setUp() throws Exception {
+        procReader = new ProcReader(fixture("stat"), fixture("self_stat"), fixture("smaps_rollup"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        procReader.close();
+    }
+
+    @Test
+    public void testReadCpuTicks() {
+        Assert.assertEquals(519674, procReader.readCpuTicks());
+        Assert.assertEquals("Should re-read from the start of the file", 519674, procReader.readCpuTicks());
+    }
+
+    @Test
+    public void testReadAppCpuTicks() {
+        // the command name contains spaces and parentheses
+        Assert.assertEquals(1530 + 424, procReader.readAppCpuTicks());
+    }
+
+    @Test
+    public void testReadPss() {
+        // Pss, not Rss or the Pss_* breakdown
+        Assert.assertEquals(88316, procReader.readPssKb());
+        Assert.assertEquals("Should re-read from the start of the file", 88316, procReader.readPssKb());
+    }
+
+    @Test
+    public void testMissingFiles() {
+        ProcReader missing = new ProcReader("/missing/stat", "/missing/self/stat", "/missing/self/smaps_rollup");
+
+        Assert.assertEquals(-1, missing.readCpuTicks());
+        Assert.assertEquals(-1, missing.readAppCpuTicks());
+        Assert.assertEquals(-1, missing.readPssKb());
+    }
+
+    @Test
+    public void testMalformedStats() throws Exception {
+        ProcReader malformed = new ProcReader(fixture("stat_truncated"), fixture("smaps_rollup"), fixture("stat_truncated"));
+
+        Assert.assertEquals(-1, malformed.readCpuTicks());
+        Assert.assertEquals("No command name", -1, malformed.readAppCpuTicks());
+        Assert.assertEquals("No Pss", -1, malformed.readPssKb());
+        malformed.close();
+    }
+
+    @Test
+    public void testParseFields() {
+        byte[] line = "12 x 34\n56".getBytes(StandardCharsets.US_ASCII);
+        long[] fields = new long[4];
+
+        Assert.assertEquals(3, ProcReader.parseFields(line, 0, line.length, fields, 4));
+        Assert.assertEquals(12, fields[0]);
+        Assert.assertEquals(-1, fields[1]);
+        Assert.assertEquals(34, fields[2]);
+    }
+
+    @Test
+    public void testReadProcFileSystem() {
+        Assume.assumeTrue(new File(ProcReader.PROC_SELF_SMAPS_ROLLUP).exists());
+
+        ProcReader reader = new ProcReader();
+        Assert.assertTrue(reader.readPssKb() > 0);
+        Assert.assertTrue(reader.readAppCpuTicks() >= 0);
+        reader.close();
+    }
+
+    private String fixture(String name) throws Exception {
+        return new File(getClass().getResource("/proc/" + name).toURI()).getAbsolutePath();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.sample;
+
+import com.newrelic.agent.android.tracing.Sample;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SampleBufferTest {
+
+    @Test
+    public void testSnapshot() {
+        SampleBuffer buffer = new SampleBuffer(Sample.SampleType.MEMORY, 10);
+
+        for (int i = 0; i < 5; i++) {
+            buffer.add(1000 + i, i);
+        }
+
+        List<Sample> samples = new ArrayList<>(buffer.snapshot());
+        Assert.assertEquals(5, buffer.size());
+        Assert.assertEquals(5, samples.size());
+        Assert.assertEquals(1000, samples.get(0).getTimestamp());
+        Assert.assertEquals(4.0, samples.get(4).getSampleValue().asDouble(), 0);
+        Assert.assertEquals(Sample.SampleType.MEMORY, samples.get(0).getSampleType());
+    }
+
+    @Test
+    public void testOverwritesOldestSamples() {
+        SampleBuffer buffer = new SampleBuffer(Sample.SampleType.CPU, 10);
+
+        for (int i = 0; i < 25; i++) {
+            buffer.add(i, i);
+        }
+
+        List<Sample> samples = new ArrayList<>(buffer.snapshot());
+        Assert.assertEquals(10, buffer.size());
+        Assert.assertEquals(10, samples.size());
+        Assert.assertEquals(15, samples.get(0).getTimestamp());
+        Assert.assertEquals(24, samples.get(9).getTimestamp());
+    }
+
+    @Test
+    public void testClear() {
+        SampleBuffer buffer = new SampleBuffer(Sample.SampleType.CPU, 10);
+
+        buffer.add(1, 1);
+        buffer.clear();
+
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertTrue(buffer.snapshot().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentSnapshots() throws Exception {
+        final SampleBuffer buffer = new SampleBuffer(Sample.SampleType.MEMORY, 16);
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        // the value always matches the timestamp, so a torn read is detectable
+        Thread writer = new Thread(() -> {
+            long i = 0;
+            while (running.get()) {
+                buffer.add(i, i);
+                i++;
+            }
+        });
+        writer.start();
+
+        try {
+            for (int i = 0; i < 10000; i++) {
+                Collection<Sample> samples = buffer.snapshot();
+                long previous = -1;
+                for (Sample sample : samples) {
+                    Assert.assertEquals(sample.getTimestamp(), sample.getSampleValue().asDouble(), 0);
+                    Assert.assertTrue(sample.getTimestamp() > previous);
+                    previous = sample.getTimestamp();
+                }
+                Assert.assertTrue(samples.size() <= buffer.capacity());
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new SampleBuffer(Sample.SampleType.MEMORY, 0);
+    }
+}
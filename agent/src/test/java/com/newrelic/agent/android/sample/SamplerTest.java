@@ -182,17 +182,30 @@ public class SamplerTest {
 
     @Test
     public void testMonitorSamplerServiceTime() throws Exception {
-        long startingFreq = TestSampler.sampler.sampleFreqMs;
+        TestSampler.start();
         ScheduledFuture scheduledFuture = TestSampler.getScheduledFuture();
+        Assert.assertEquals("Should sample at the fastest rate during a trace", TestSampler.SAMPLE_FREQ_MS, TestSampler.sampler.sampleFreqMs);
 
         TestSampler.sampler.monitorSamplerServiceTime(10000);
-        Assert.assertEquals("Should increase sampling period by 10%", (long) (startingFreq * 1.10f), TestSampler.sampler.sampleFreqMs);
+        Assert.assertEquals("Should cap sampling period", TestSampler.SAMPLE_FREQ_MS_MAX, TestSampler.sampler.sampleFreqMs);
+        Assert.assertEquals(SamplingController.Reason.OverheadBudget, TestSampler.sampler.controller.getReason());
         Assert.assertNotSame("Should create a new scheduled future", scheduledFuture, TestSampler.getScheduledFuture());
 
-        for (int i = 0; i < 10; i++) {
-            TestSampler.sampler.monitorSamplerServiceTime(10000);
+        for (int i = 0; i < 40; i++) {
+            TestSampler.sampler.monitorSamplerServiceTime(0.1);
         }
-        Assert.assertEquals("Should cap sampling period", TestSampler.SAMPLE_FREQ_MS_MAX, TestSampler.sampler.sampleFreqMs);
+        Assert.assertEquals("Should recover sampling period", TestSampler.SAMPLE_FREQ_MS, TestSampler.sampler.sampleFreqMs);
+    }
+
+    @Test
+    public void testSuspendWhenIdle() throws Exception {
+        TestSampler.start();
+        Assert.assertEquals(SamplingController.State.TRACE_ACTIVE, TestSampler.sampler.controller.getState());
+
+        TestSampler.sampler.onTraceComplete(provideActivityTrace());
+        Thread.sleep(1000);
+        Assert.assertTrue("Sampling is suspended between traces by default", TestSampler.sampler.controller.isSuspended());
+        Assert.assertFalse("Sampler should be stopped", TestSampler.isRunning());
     }
 
     @Test
@@ -226,6 +239,27 @@ public class SamplerTest {
         }
     }
 
+    @Test
+    public void testSamplingFollowsApplicationState() {
+        TestSampler.start();
+        Assert.assertTrue("Should be running in foreground", TestSampler.isRunning());
+
+        Sampler.appStateListener.applicationBackgrounded(new ApplicationStateEvent(this));
+        Assert.assertEquals(SamplingController.State.BACKGROUND, TestSampler.sampler.controller.getState());
+        Assert.assertFalse("Should not be running in background", TestSampler.isRunning());
+
+        // traces don't restart sampling in the background
+        TestSampler.start();
+        Assert.assertEquals(SamplingController.State.BACKGROUND, TestSampler.sampler.controller.getState());
+        Assert.assertFalse("Should not be running in background", TestSampler.isRunning());
+
+        Sampler.appStateListener.applicationForegrounded(new ApplicationStateEvent(this));
+        Assert.assertEquals(SamplingController.State.IDLE, TestSampler.sampler.controller.getState());
+
+        TestSampler.start();
+        Assert.assertTrue("Should be running in foreground", TestSampler.isRunning());
+    }
+
 
     private int getRunningThreadCnt(final String threadName) {
         Thread[] remainingThreads = {};
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.sample;
+
+import com.newrelic.agent.android.metric.Metric;
+import com.newrelic.agent.android.metric.MetricNames;
+import com.newrelic.agent.android.stats.StatsEngine;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class SamplingControllerTest {
+
+    private FakeClock clock;
+    private FakeSampleSource source;
+    private SamplingController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        StatsEngine.reset();
+        clock = new FakeClock();
+        source = new FakeSampleSource(clock);
+        controller = new SamplingController(clock, 0.02, 100, 250, 0);
+    }
+
+    @Test
+    public void testIntervalFollowsTraceState() {
+        Assert.assertEquals(SamplingController.State.IDLE, controller.getState());
+        Assert.assertTrue(controller.isSuspended());
+
+        Assert.assertEquals(100, controller.setState(SamplingController.State.TRACE_ACTIVE));
+        Assert.assertEquals(SamplingController.Reason.TraceActive, controller.getReason());
+
+        Assert.assertEquals(SamplingController.SUSPENDED, controller.setState(SamplingController.State.BACKGROUND));
+        Assert.assertEquals(SamplingController.Reason.Background, controller.getReason());
+    }
+
+    @Test
+    public void testIdleInterval() {
+        controller = new SamplingController(clock, 0.02, 100, 250, 2000);
+
+        Assert.assertEquals(2000, controller.setState(SamplingController.State.IDLE));
+        Assert.assertEquals(SamplingController.Reason.Idle, controller.getReason());
+
+        // an expensive sample never shortens the idle interval
+        source.costMs = 10;
+        Assert.assertEquals(2000, controller.sample(source));
+        Assert.assertEquals(SamplingController.Reason.Idle, controller.getReason());
+    }
+
+    @Test
+    public void testCheapSamplesStayFast() {
+        controller.setState(SamplingController.State.TRACE_ACTIVE);
+        source.costMs = 1;      // 1% of a 100 ms interval
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(100, controller.sample(source));
+        }
+        Assert.assertEquals(10, source.samples);
+        Assert.assertEquals(1.0, controller.getServiceTimeMs(), 0.001);
+    }
+
+    @Test
+    public void testOverheadBudget() {
+        controller.setState(SamplingController.State.TRACE_ACTIVE);
+        source.costMs = 3;      // 2% budget needs 150 ms
+
+        Assert.assertEquals(150, controller.sample(source));
+        Assert.assertEquals(SamplingController.Reason.OverheadBudget, controller.getReason());
+
+        // capped at the maximum interval
+        source.costMs = 100;
+        for (int i = 0; i < 5; i++) {
+            controller.sample(source);
+        }
+        Assert.assertEquals(250, controller.getInterval());
+
+        // recovers as samples get cheaper
+        source.costMs = 0.5;
+        for (int i = 0; i < 50; i++) {
+            controller.sample(source);
+        }
+        Assert.assertEquals(100, controller.getInterval());
+        Assert.assertEquals(SamplingController.Reason.TraceActive, controller.getReason());
+    }
+
+    @Test
+    public void testServiceTimeIsSmoothed() {
+        controller.setState(SamplingController.State.TRACE_ACTIVE);
+        controller.recordServiceTime(1);
+
+        // a single slow sample moves the average by a quarter of the difference
+        Assert.assertEquals(150, controller.recordServiceTime(9));
+        Assert.assertEquals(3.0, controller.getServiceTimeMs(), 0.001);
+    }
+
+    @Test
+    public void testRecordsIntervalMetrics() {
+        controller.setState(SamplingController.State.TRACE_ACTIVE);
+        source.costMs = 3;
+        controller.sample(source);
+        controller.sample(source);      // unchanged, not recorded
+        controller.setState(SamplingController.State.BACKGROUND);
+
+        Metric traceActive = StatsEngine.SUPPORTABILITY.getStatsMap().get(MetricNames.SUPPORTABILITY_SAMPLER_INTERVAL + "TraceActive");
+        Metric budget = StatsEngine.SUPPORTABILITY.getStatsMap().get(MetricNames.SUPPORTABILITY_SAMPLER_INTERVAL + "OverheadBudget");
+        Metric background = StatsEngine.SUPPORTABILITY.getStatsMap().get(MetricNames.SUPPORTABILITY_SAMPLER_INTERVAL + "Background");
+
+        Assert.assertEquals(1, traceActive.getCount());
+        Assert.assertEquals(100, traceActive.getTotal(), 0);
+        Assert.assertEquals(1, budget.getCount());
+        Assert.assertEquals(150, budget.getTotal(), 0);
+        Assert.assertEquals(0, background.getTotal(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBudget() {
+        new SamplingController(clock, 0, 100, 250, 0);
+    }
+
+    static class FakeClock implements SamplingController.Clock {
+        long nanos = 0;
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+    }
+
+    static class FakeSampleSource implements SamplingController.SampleSource {
+        final FakeClock clock;
+        double costMs = 0;
+        int samples = 0;
+
+        FakeSampleSource(FakeClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void sample() {
+            clock.nanos += (long) (costMs * TimeUnit.MILLISECONDS.toNanos(1));
+            samples++;
+        }
+    }
+}
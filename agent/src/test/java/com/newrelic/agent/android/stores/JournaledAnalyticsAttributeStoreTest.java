@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.stores;
+
+import com.newrelic.agent.android.analytics.AnalyticsAttribute;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JournaledAnalyticsAttributeStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File snapshotFile;
+    private JournaledAnalyticsAttributeStore attributeStore;
+
+    @Before
+    public void setUp() throws Exception {
+        snapshotFile = new File(folder.getRoot(), JournaledAnalyticsAttributeStore.STORE_FILE + JournaledAnalyticsAttributeStore.SNAPSHOT_FILE_SUFFIX);
+        attributeStore = new JournaledAnalyticsAttributeStore(snapshotFile, null);
+    }
+
+    @Test
+    public void testStore() {
+        Assert.assertTrue(attributeStore.store(new AnalyticsAttribute("string", "eenie", true)));
+        Assert.assertTrue(attributeStore.store(new AnalyticsAttribute("double", 1.5, true)));
+        Assert.assertTrue(attributeStore.store(new AnalyticsAttribute("boolean", false, true)));
+        Assert.assertFalse("Should not store transient attributes", attributeStore.store(new AnalyticsAttribute("transient", "meenie", false)));
+
+        Assert.assertEquals(3, attributeStore.count());
+        Assert.assertTrue("Should journal changes", attributeStore.hasPendingChanges());
+        Assert.assertFalse("Should not write until flushed", snapshotFile.exists());
+
+        Map<String, AnalyticsAttribute> attributes = asMap(attributeStore.fetchAll());
+        Assert.assertEquals("eenie", attributes.get("string").getStringValue());
+        Assert.assertEquals(1.5, attributes.get("double").getDoubleValue(), 0);
+        Assert.assertFalse(attributes.get("boolean").getBooleanValue());
+    }
+
+    @Test
+    public void testCoalescedUpdates() {
+        for (int i = 1; i <= 1000; i++) {
+            attributeStore.store(new AnalyticsAttribute("counter", (double) i, true));
+        }
+        Assert.assertEquals(1, attributeStore.count());
+
+        attributeStore.flush();
+        Assert.assertFalse(attributeStore.hasPendingChanges());
+        Assert.assertEquals(1000, asMap(attributeStore.fetchAll()).get("counter").getDoubleValue(), 0);
+    }
+
+    @Test
+    public void testLastValueSurvivesRestartAfterFlush() {
+        for (int i = 1; i <= 100; i++) {
+            attributeStore.store(new AnalyticsAttribute("counter", (double) i, true));
+            attributeStore.store(new AnalyticsAttribute("label", "value" + i, true));
+        }
+        attributeStore.store(new AnalyticsAttribute("deleted", true, true));
+        attributeStore.delete(new AnalyticsAttribute("deleted", true, true));
+        attributeStore.flush();
+
+        // a new instance reads only what was written to storage, as it would after the process was killed
+        JournaledAnalyticsAttributeStore restarted = new JournaledAnalyticsAttributeStore(snapshotFile, null);
+        Map<String, AnalyticsAttribute> attributes = asMap(restarted.fetchAll());
+        Assert.assertEquals(2, attributes.size());
+        Assert.assertEquals(100, attributes.get("counter").getDoubleValue(), 0);
+        Assert.assertEquals("value100", attributes.get("label").getStringValue());
+        Assert.assertFalse(attributes.containsKey("deleted"));
+    }
+
+    @Test
+    public void testDelete() {
+        attributeStore.store(new AnalyticsAttribute("string", "eenie", true));
+        attributeStore.flush();
+
+        attributeStore.delete(new AnalyticsAttribute("string", "eenie", true));
+        Assert.assertEquals("Should apply journaled deletes to reads", 0, attributeStore.count());
+
+        attributeStore.flush();
+        Assert.assertEquals(0, new JournaledAnalyticsAttributeStore(snapshotFile, null).count());
+    }
+
+    @Test
+    public void testClear() {
+        attributeStore.store(new AnalyticsAttribute("before", "eenie", true));
+        attributeStore.flush();
+
+        attributeStore.clear();
+        attributeStore.store(new AnalyticsAttribute("after", "meenie", true));
+        Assert.assertEquals(1, attributeStore.count());
+
+        attributeStore.onHarvest();
+        Map<String, AnalyticsAttribute> attributes = asMap(new JournaledAnalyticsAttributeStore(snapshotFile, null).fetchAll());
+        Assert.assertEquals(1, attributes.size());
+        Assert.assertTrue(attributes.containsKey("after"));
+    }
+
+    @Test
+    public void testFlushOnBackground() {
+        attributeStore.store(new AnalyticsAttribute("string", "eenie", true));
+        attributeStore.applicationBackgrounded(null);
+        Assert.assertFalse(attributeStore.hasPendingChanges());
+        Assert.assertEquals(1, new JournaledAnalyticsAttributeStore(snapshotFile, null).count());
+    }
+
+    @Test
+    public void testLegacyMigration() {
+        final Map<String, Object> legacy = new HashMap<>();
+        legacy.put("string", "eenie");
+        legacy.put("double", Double.doubleToLongBits(2.5));
+        legacy.put("float", 1.0f);
+        legacy.put("boolean", true);
+
+        JournaledAnalyticsAttributeStore migrated = new JournaledAnalyticsAttributeStore(new File(folder.getRoot(), "migrated"), () -> legacy);
+        Map<String, AnalyticsAttribute> attributes = asMap(migrated.fetchAll());
+        Assert.assertEquals(4, attributes.size());
+        Assert.assertEquals(2.5, attributes.get("double").getDoubleValue(), 0);
+        Assert.assertEquals(1.0, attributes.get("float").getDoubleValue(), 0);
+        Assert.assertTrue(attributes.get("boolean").getBooleanValue());
+    }
+
+    private Map<String, AnalyticsAttribute> asMap(List<AnalyticsAttribute> attributes) {
+        final Map<String, AnalyticsAttribute> map = new HashMap<>();
+        for (AnalyticsAttribute attribute : attributes) {
+            map.put(attribute.getName(), attribute);
+        }
+        return map;
+    }
+}
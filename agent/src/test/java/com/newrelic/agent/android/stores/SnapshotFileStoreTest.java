@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.stores;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class SnapshotFileStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File snapshotFile;
+
+    @Before
+    public void setUp() throws Exception {
+        snapshotFile = new File(folder.getRoot(), "savedState.snapshot");
+    }
+
+    @Test
+    public void testEmptyStore() {
+        SnapshotFileStore store = new SnapshotFileStore(snapshotFile);
+        Assert.assertFalse(store.contains("key"));
+        Assert.assertTrue(store.isLoaded());
+        Assert.assertEquals("default", store.getString("key", "default"));
+        Assert.assertEquals(42, store.getInt("key", 42));
+        Assert.assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void testTransaction() {
+        SnapshotFileStore store = new SnapshotFileStore(snapshotFile);
+        SnapshotFileStore.Transaction transaction = store.edit()
+                .putString("string", "value")
+                .putBoolean("boolean", true)
+                .putInt("int", 1)
+                .putLong("long", Long.MAX_VALUE)
+                .putFloat("float", 0.25f);
+
+        Assert.assertFalse("Should not apply changes until committed", store.contains("string"));
+
+        transaction.commit();
+        Assert.assertEquals("value", store.getString("string", null));
+        Assert.assertTrue(store.getBoolean("boolean", false));
+        Assert.assertEquals(1, store.getInt("int", 0));
+        Assert.assertEquals(Long.MAX_VALUE, store.getLong("long", 0));
+        Assert.assertEquals(0.25f, store.getFloat("float", 0f), 0f);
+    }
+
+    @Test
+    public void testTransactionOrdering() {
+        SnapshotFileStore store = new SnapshotFileStore(snapshotFile);
+        store.edit().putString("a", "a").putString("b", "b").commit();
+
+        store.edit().putString("c", "c").clear().commit();
+        Assert.assertFalse(store.contains("a"));
+        Assert.assertFalse(store.contains("b"));
+        Assert.assertTrue("Should apply puts after clear", store.contains("c"));
+
+        store.edit().putString("c", null).commit();
+        Assert.assertFalse("Should remove null values", store.contains("c"));
+    }
+
+    @Test
+    public void testPersistence() {
+        SnapshotFileStore store = new SnapshotFileStore(snapshotFile);
+        store.edit().putString("string", "value").putInt("int", 99).putLong("long", 99L).commit();
+        store.edit().remove("long").commit();
+        store.flush();
+
+        Assert.assertTrue(snapshotFile.exists());
+        Assert.assertFalse("Should not leave temp files", new File(folder.getRoot(), snapshotFile.getName() + ".tmp").exists());
+
+        SnapshotFileStore reloaded = new SnapshotFileStore(snapshotFile);
+        Assert.assertEquals("value", reloaded.getString("string", null));
+        Assert.assertEquals(Integer.valueOf(99), reloaded.get("int"));
+        Assert.assertFalse(reloaded.contains("long"));
+    }
+
+    @Test
+    public void testLargeStringValue() {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 0x10000 * 2) {
+            sb.append("\u00e9remoteConfiguration");
+        }
+
+        SnapshotFileStore store = new SnapshotFileStore(snapshotFile);
+        store.edit().putString("large", sb.toString()).commit();
+        store.flush();
+
+        Assert.assertEquals(sb.toString(), new SnapshotFileStore(snapshotFile).getString("large", null));
+    }
+
+    @Test
+    public void testLegacyMigration() {
+        final Map<String, Object> legacy = new HashMap<>();
+        legacy.put("string", "value");
+        legacy.put("float", 1.5f);
+        legacy.put("stringSet", new HashSet<String>());
+
+        SnapshotFileStore store = new SnapshotFileStore(snapshotFile, () -> legacy);
+        Assert.assertEquals("value", store.getString("string", null));
+        Assert.assertEquals(1.5f, store.getFloat("float", 0f), 0f);
+        Assert.assertFalse("Should ignore unsupported types", store.contains("stringSet"));
+        store.flush();
+        Assert.assertTrue("Should write migrated values", snapshotFile.exists());
+
+        legacy.put("string", "stale");
+        store = new SnapshotFileStore(snapshotFile, () -> legacy);
+        Assert.assertEquals("Should not migrate once snapshot exists", "value", store.getString("string", null));
+    }
+
+    @Test
+    public void testCorruptSnapshot() throws Exception {
+        try (FileOutputStream fos = new FileOutputStream(snapshotFile)) {
+            fos.write(new byte[]{1, 2, 3, 4, 5, 6, 7});
+        }
+
+        SnapshotFileStore store = new SnapshotFileStore(snapshotFile);
+        Assert.assertTrue(store.getAll().isEmpty());
+
+        store.edit().putString("key", "value").commit();
+        store.flush();
+        Assert.assertEquals("value", new SnapshotFileStore(snapshotFile).getString("key", null));
+    }
+
+    @Test
+    public void testLoadTimeoutNeverOverwritesSnapshot() throws Exception {
+        SnapshotFileStore store = new SnapshotFileStore(snapshotFile);
+        store.edit().putString("persisted", "value").commit();
+        store.flush();
+
+        // stall the store's IO thread, so the next load times out
+        final CountDownLatch stall = new CountDownLatch(1);
+        new SnapshotFileStore(new File(folder.getRoot(), "stalled.snapshot"), () -> {
+            stall.await();
+            return null;
+        });
+
+        try {
+            store = new SnapshotFileStore(snapshotFile, null, 50);
+            Assert.assertEquals("default", store.getString("persisted", "default"));
+            Assert.assertFalse(store.isLoaded());
+
+            store.edit().putString("added", "value").commit();
+            Assert.assertEquals("value", store.getString("added", null));
+            Assert.assertEquals(1, SnapshotFileStore.readSnapshot(snapshotFile).size());
+        } finally {
+            stall.countDown();
+        }
+
+        Assert.assertEquals("Should retry the load", "value", store.getString("persisted", null));
+        Assert.assertTrue(store.isLoaded());
+        Assert.assertEquals("Should replay deferred changes", "value", store.getString("added", null));
+
+        store.flush();
+        final Map<String, Object> snapshot = SnapshotFileStore.readSnapshot(snapshotFile);
+        Assert.assertEquals("value", snapshot.get("persisted"));
+        Assert.assertEquals("value", snapshot.get("added"));
+    }
+}
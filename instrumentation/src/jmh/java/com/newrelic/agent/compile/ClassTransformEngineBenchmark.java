@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Measures the time to instrument a synthetic corpus of classes into an in-memory archive,
+ * with a range of worker counts. A single worker approximates the previous serial transform.
+ * The cached variant transforms against a warm instrumentation cache, as in an incremental build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassTransformEngineBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    int workers;
+
+    @Param({"2000"})
+    int classCount;
+
+    @Param({"false", "true"})
+    boolean cached;
+
+    ClassTransformEngine engine;
+    List<ClassTransformEngine.Entry> entries;
+
+    File cacheDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Map<String, byte[]> classes = SyntheticClasses.generate("com.example.benchmark", classCount, 8);
+
+        entries = new ArrayList<>(classes.size());
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            final byte[] bytes = entry.getValue();
+            entries.add(new ClassTransformEngine.Entry(entry.getKey(), true, () -> new ByteArrayInputStream(bytes)));
+        }
+
+        if (cached) {
+            cacheDir = Files.createTempDirectory("newrelic-cache").toFile();
+            engine = new ClassTransformEngine(workers, new ClassTransformCache(cacheDir));
+            transformEntries();
+        } else {
+            engine = new ClassTransformEngine(workers);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        engine.close();
+        if (cacheDir != null) {
+            try (Stream<Path> paths = Files.walk(cacheDir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Benchmark
+    public int transformEntries() throws IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (JarOutputStream jarOutputStream = new JarOutputStream(byteArrayOutputStream)) {
+            return engine.transformEntries(entries.iterator(), jarOutputStream);
+        }
+    }
+}
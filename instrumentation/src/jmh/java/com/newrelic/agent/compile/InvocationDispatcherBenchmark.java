@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.newrelic.agent.InstrumentationAgent;
+import com.newrelic.agent.util.Streams;
+
+import org.objectweb.asm.ClassWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Measures class dispatch throughput (classes per second) with and without the constant pool
+ * prefilter, and the cost of rewriting with precomputed frames (the fallback when frames cannot
+ * be computed). The corpus is the bundled okhttp test jar, or the jars listed in the
+ * {@code newrelic.benchmark.jars} system property (separated by the path separator), such as
+ * the runtime classpath of a real application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvocationDispatcherBenchmark {
+
+    @Param({"false", "true"})
+    boolean prefilter;
+
+    InvocationDispatcher invocationDispatcher;
+    List<byte[]> classes;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        invocationDispatcher = new InvocationDispatcher(InstrumentationAgent.LOGGER, true);
+        invocationDispatcher.setPrefilterEnabled(prefilter);
+        classes = new ArrayList<>();
+
+        final String jars = System.getProperty("newrelic.benchmark.jars");
+        if (jars == null || jars.isEmpty()) {
+            loadClasses(new File(getClass().getResource("/jetified-okhttp-3.10.0.jar").toURI()));
+        } else {
+            for (String jar : jars.split(File.pathSeparator)) {
+                loadClasses(new File(jar));
+            }
+        }
+    }
+
+    @Benchmark
+    public void visitClassBytes(Blackhole blackhole) {
+        blackhole.consume(invocationDispatcher.visitClassBytes(classes.get(next)));
+        next = (next + 1) % classes.size();
+    }
+
+    @Benchmark
+    public void visitClassBytesComputeMaxs(Blackhole blackhole) {
+        blackhole.consume(invocationDispatcher.visitClassBytesWithOptions(classes.get(next), ClassWriter.COMPUTE_MAXS));
+        next = (next + 1) % classes.size();
+    }
+
+    private void loadClasses(File file) throws Exception {
+        try (JarFile jar = new JarFile(file)) {
+            for (JarEntry jarEntry : Collections.list(jar.entries())) {
+                if (jarEntry.getName().endsWith(".class")) {
+                    try (InputStream inputStream = jar.getInputStream(jarEntry)) {
+                        classes.add(Streams.slurpBytes(inputStream));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -5,9 +5,13 @@
 
 package com.newrelic.agent.compile;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class ClassData {
     private final byte[] classBytes;
     private final boolean modified;
+    private Map<String, String> superClassLookups = Collections.emptyMap();
 
     public ClassData(final byte[] classBytes, final boolean modified) {
         this.classBytes = classBytes;
@@ -21,4 +25,18 @@ public class ClassData {
     public boolean isModified() {
         return modified;
     }
+
+    /**
+     * Returns the common super classes resolved while computing the frames of the class bytes, keyed
+     * by the two type names separated by ';'. The class bytes are only valid for a type hierarchy
+     * that resolves them the same way.
+     */
+    public Map<String, String> getSuperClassLookups() {
+        return superClassLookups;
+    }
+
+    public ClassData withSuperClassLookups(Map<String, String> superClassLookups) {
+        this.superClassLookups = superClassLookups;
+        return this;
+    }
 }
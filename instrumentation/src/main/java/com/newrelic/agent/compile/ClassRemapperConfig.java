@@ -23,10 +23,12 @@ public class ClassRemapperConfig {
     public static final String WRAP_METHOD_IDENTIFIER = "WRAP_METHOD:";
     public static final String REPLACE_CALL_SITE_IDENTIFIER = "REPLACE_CALL_SITE:";
     public static final String SHADOW_METHOD_IDENTIFIER = "SHADOW_METHOD:";
+    public static final String TYPE_MAP_RESOURCE = "/type_map.properties";
 
     private final Map<ClassMethod, ClassMethod> methodWrappers;
     private final Map<String, Collection<ClassMethod>> callSiteReplacements;
     private final Map<String, Collection<ClassMethod>> shadowMethods;
+    private final Set<String> instrumentedMethodNames;
     private boolean logInstrumentationEnabled = true;
 
     public ClassRemapperConfig(final Logger log,boolean logInstrumentationEnabled) throws ClassNotFoundException {
@@ -37,6 +39,7 @@ public class ClassRemapperConfig {
         methodWrappers = getMethodWrappers(remappings, log);
         callSiteReplacements = getCallSiteReplacements(remappings, log);
         shadowMethods = getShadowMethods(remappings, log);
+        instrumentedMethodNames = getInstrumentedMethodNames(methodWrappers, callSiteReplacements, shadowMethods);
 
         log.info("[ClassRemapperConfig] Initialized with logInstrumentationEnabled[{}]", logInstrumentationEnabled);
     }
@@ -47,6 +50,27 @@ public class ClassRemapperConfig {
         }
     }
 
+    /*
+     * Returns the names of all methods whose call sites may be wrapped, replaced or shadowed.
+     */
+    public Set<String> getInstrumentedMethodNames() {
+        return instrumentedMethodNames;
+    }
+
+    /*
+     * Returns true if calls to the method would be wrapped, replaced or shadowed. This is the
+     * same match made by getMethodWrapper(), getCallSiteReplacements() and getShadowMethods(),
+     * without collecting the results.
+     */
+    public boolean isInstrumentedMethod(final String className, final String methodName, final String methodDesc) {
+        final String key = methodName + ":" + methodDesc;
+        final String scopedKey = className + "." + key;
+
+        return callSiteReplacements.containsKey(key) || callSiteReplacements.containsKey(scopedKey) ||
+                shadowMethods.containsKey(key) || shadowMethods.containsKey(scopedKey) ||
+                methodWrappers.containsKey(new ClassMethod(className, methodName, methodDesc));
+    }
+
     public ClassMethod getMethodWrapper(final ClassMethod method) {
         return methodWrappers.get(method);
     }
@@ -261,13 +285,33 @@ public class ClassRemapperConfig {
         return callSiteReplacements;
     }
 
+    private static Set<String> getInstrumentedMethodNames(Map<ClassMethod, ClassMethod> methodWrappers,
+                                                          Map<String, Collection<ClassMethod>> callSiteReplacements,
+                                                          Map<String, Collection<ClassMethod>> shadowMethods) {
+        final Set<String> methodNames = new HashSet<String>();
+
+        for (ClassMethod method : methodWrappers.keySet()) {
+            methodNames.add(method.getMethodName());
+        }
+
+        // keys are either "name:desc" or "class.name:desc"
+        final Set<String> keys = new HashSet<String>(callSiteReplacements.keySet());
+        keys.addAll(shadowMethods.keySet());
+        for (String key : keys) {
+            final int colon = key.indexOf(':');
+            methodNames.add(key.substring(key.lastIndexOf('.', colon) + 1, colon));
+        }
+
+        return methodNames;
+    }
+
     /*
      * Return the map of class/method modifications from the type_map.properties file.
      */
     @SuppressWarnings("rawtypes")
     private static Map getRemappings(final Logger log) {
         Properties props = new Properties();
-        URL resource = ClassRemapperConfig.class.getResource("/type_map.properties");
+        URL resource = ClassRemapperConfig.class.getResource(TYPE_MAP_RESOURCE);
 
         if (resource == null) {
             log.error("Unable to find the type map");
@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+import com.newrelic.agent.Constants;
+import com.newrelic.agent.InstrumentationAgent;
+import com.newrelic.agent.util.Streams;
+
+import org.objectweb.asm.ClassReader;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent, content-addressed cache of instrumented class bytes.
+ * <p>
+ * Entries are keyed by the SHA-256 of the input class bytes, and stored beneath a directory
+ * named for the instrumentation configuration (agent version, type map and agent options), so
+ * a configuration change never reads stale output. Classes the instrumentation leaves unmodified
+ * are recorded with an empty entry, which lets the transform skip them without parsing.
+ * Rewritten archives are cached the same way, keyed by the hash of the input archive.
+ * <p>
+ * Computed frames also depend on the class hierarchy, which changes with the class path. Each
+ * entry therefore records the common super classes resolved for its frames, and is only used
+ * if the current hierarchy resolves them the same way. Archives holding agent classes are never
+ * cached, since agent classes are rewritten with per-build values.
+ * <p>
+ * Entries are written to a temporary file and moved into place, so concurrent transforms (and
+ * concurrent builds) sharing the cache never observe a partial entry. Cache failures are logged
+ * and treated as misses.
+ */
+public final class ClassTransformCache {
+    // bump when the entry layout or frame computation changes
+    static final String CACHE_VERSION = "3";
+
+    // archives with classes in this package are agent archives, which are never cached
+    static final String AGENT_PACKAGE_PREFIX = "com/newrelic/agent/";
+
+    private static final byte[] UNMODIFIED = new byte[0];
+
+    private final Logger log;
+    private final File cacheDir;
+    private final AtomicLong classHits = new AtomicLong(0);
+    private final AtomicLong classMisses = new AtomicLong(0);
+    private final AtomicLong archiveHits = new AtomicLong(0);
+    private final AtomicLong archiveMisses = new AtomicLong(0);
+
+    /**
+     * Resolves common super classes the way the transform computes frames.
+     */
+    public interface SuperClassResolver {
+        String getCommonSuperClass(String type1, String type2);
+    }
+
+    public ClassTransformCache(File cacheRoot) {
+        this(cacheRoot, configKey(InstrumentationAgent.getAgentOptions()));
+    }
+
+    ClassTransformCache(File cacheRoot, String configKey) {
+        this.log = InstrumentationAgent.LOGGER;
+        this.cacheDir = new File(cacheRoot, configKey);
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Returns the cached transform of the passed class bytes, or null if the class has not been cached.
+     * The returned data is unmodified (and holds the passed bytes) if the instrumentation did not change the class.
+     */
+    public ClassData get(byte[] bytes) {
+        return get(bytes, null);
+    }
+
+    /**
+     * Returns the cached transform of the passed class bytes, or null if the class has not been cached,
+     * or its cached frames were computed from super classes the resolver no longer agrees with.
+     * Without a resolver, only entries that needed no super class lookups are returned.
+     */
+    public ClassData get(byte[] bytes, SuperClassResolver resolver) {
+        final File classFile = classFile(keyOf(bytes));
+        final byte[] cachedBytes = read(classFile);
+        ClassData classData = null;
+
+        if (cachedBytes != null) {
+            if (cachedBytes.length == 0) {
+                classData = new ClassData(bytes, false);
+            } else {
+                try (DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(cachedBytes))) {
+                    final Map<String, String> superClassLookups = readSuperClassLookups(dataInputStream);
+                    if (isValid(superClassLookups, resolver)) {
+                        final byte[] transformedBytes = new byte[dataInputStream.available()];
+                        dataInputStream.readFully(transformedBytes);
+                        classData = new ClassData(transformedBytes, true).withSuperClassLookups(superClassLookups);
+                    }
+                } catch (IOException e) {
+                    log.warn("[ClassTransformCache] Unable to read cache entry [" + classFile.getName() + "]: " + e.getLocalizedMessage());
+                }
+            }
+        }
+
+        (classData == null ? classMisses : classHits).incrementAndGet();
+
+        return classData;
+    }
+
+    /**
+     * Cache the transform of the passed class bytes. Agent classes are not cached, since they are
+     * rewritten with per-build values.
+     */
+    public void put(byte[] bytes, ClassData classData) {
+        if (classData == null || !isCacheable(bytes)) {
+            return;
+        }
+
+        if (!classData.isModified()) {
+            write(classFile(keyOf(bytes)), ByteSource.wrap(UNMODIFIED));
+
+        } else if (classData.getClassBytes() != null) {
+            try (ByteArrayOutputStream entry = new ByteArrayOutputStream(classData.getClassBytes().length + 256);
+                 DataOutputStream dataOutputStream = new DataOutputStream(entry)) {
+                writeSuperClassLookups(dataOutputStream, classData.getSuperClassLookups());
+                dataOutputStream.write(classData.getClassBytes());
+                dataOutputStream.flush();
+                write(classFile(keyOf(bytes)), ByteSource.wrap(entry.toByteArray()));
+
+            } catch (IOException e) {
+                log.debug("[ClassTransformCache] Unable to write cache entry: " + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Copy the cached rewrite of an archive to the passed output file.
+     *
+     * @return True if the archive was cached and written to output
+     */
+    public boolean getArchive(String archiveKey, File outputFile, SuperClassResolver resolver) {
+        final File cachedArchive = getArchive(archiveKey, resolver);
+
+        if (cachedArchive != null) {
+            try {
+                outputFile.getAbsoluteFile().getParentFile().mkdirs();
+                Files.copy(cachedArchive, outputFile);
+                return true;
+
+            } catch (IOException e) {
+                log.warn("[ClassTransformCache] Unable to read cached archive: " + e.getLocalizedMessage());
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the cached rewrite of an archive, or null if the archive has not been cached, or its
+     * cached frames were computed from super classes the resolver no longer agrees with.
+     * The returned file is shared, and must not be modified.
+     */
+    public File getArchive(String archiveKey, SuperClassResolver resolver) {
+        final File cachedArchive = archiveFile(archiveKey);
+        final byte[] lookupBytes = read(archiveLookupsFile(archiveKey));
+
+        if (cachedArchive.isFile() && lookupBytes != null) {
+            try (DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(lookupBytes))) {
+                if (isValid(readSuperClassLookups(dataInputStream), resolver)) {
+                    archiveHits.incrementAndGet();
+                    return cachedArchive;
+                }
+            } catch (IOException e) {
+                log.warn("[ClassTransformCache] Unable to read cached archive: " + e.getLocalizedMessage());
+            }
+        }
+
+        archiveMisses.incrementAndGet();
+
+        return null;
+    }
+
+    /**
+     * Cache a rewritten archive, with the super classes resolved for the frames of all its classes.
+     * The archive is copied into the cache, rather than read into memory. Archives that contain
+     * agent classes are not cached.
+     */
+    public void putArchive(String archiveKey, File rewrittenArchive, Map<String, String> superClassLookups) {
+        if (!isCacheable(rewrittenArchive)) {
+            log.debug("[ClassTransformCache] Archive [" + rewrittenArchive.getName() + "] contains agent classes, and is not cached");
+            return;
+        }
+
+        try (ByteArrayOutputStream lookups = new ByteArrayOutputStream();
+             DataOutputStream dataOutputStream = new DataOutputStream(lookups)) {
+            writeSuperClassLookups(dataOutputStream, superClassLookups);
+            dataOutputStream.flush();
+
+            // the archive is only read once its lookups are in place
+            write(archiveLookupsFile(archiveKey), ByteSource.wrap(lookups.toByteArray()));
+            write(archiveFile(archiveKey), Files.asByteSource(rewrittenArchive));
+
+        } catch (IOException e) {
+            log.debug("[ClassTransformCache] Unable to write cached archive: " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Returns the cache key of an archive, or null if the archive could not be read.
+     */
+    public String archiveKeyOf(File archiveFile) {
+        try {
+            return Files.asByteSource(archiveFile).hash(Hashing.sha256()).toString();
+        } catch (IOException e) {
+            log.warn("[ClassTransformCache] Unable to hash archive [" + archiveFile.getPath() + "]: " + e.getLocalizedMessage());
+        }
+
+        return null;
+    }
+
+    public long getClassHits() {
+        return classHits.get();
+    }
+
+    public long getClassMisses() {
+        return classMisses.get();
+    }
+
+    public long getArchiveHits() {
+        return archiveHits.get();
+    }
+
+    public long getArchiveMisses() {
+        return archiveMisses.get();
+    }
+
+    /**
+     * Log and reset the cache hit rates.
+     */
+    public void logStatistics() {
+        final long hits = classHits.getAndSet(0);
+        final long misses = classMisses.getAndSet(0);
+        final long jarHits = archiveHits.getAndSet(0);
+        final long jarMisses = archiveMisses.getAndSet(0);
+
+        if (hits + misses + jarHits + jarMisses > 0) {
+            log.info("[ClassTransformCache] Classes: hits[" + hits + "] misses[" + misses + "] hit rate[" + hitRate(hits, misses) + "%]"
+                    + " Archives: hits[" + jarHits + "] misses[" + jarMisses + "] hit rate[" + hitRate(jarHits, jarMisses) + "%]");
+        }
+    }
+
+    /**
+     * Returns a key identifying everything other than the input bytes that affects the transform output.
+     */
+    static String configKey(Map<String, String> agentOptions) {
+        final Hasher hasher = Hashing.sha256().newHasher();
+
+        hasher.putString(CACHE_VERSION, StandardCharsets.UTF_8);
+        hasher.putString(InstrumentationAgent.getVersion(), StandardCharsets.UTF_8);
+
+        try (InputStream typeMap = ClassRemapperConfig.class.getResourceAsStream(ClassRemapperConfig.TYPE_MAP_RESOURCE)) {
+            if (typeMap != null) {
+                hasher.putBytes(Streams.slurpBytes(typeMap));
+            }
+        } catch (IOException e) {
+            // the version still distinguishes configurations
+        }
+
+        // only the options that change instrumentation output
+        final Map<String, String> options = new TreeMap<>();
+        options.put(InstrumentationAgent.LOG_INSTRUMENTATION_ENABLED,
+                String.valueOf(Boolean.parseBoolean(agentOptions.get(InstrumentationAgent.LOG_INSTRUMENTATION_ENABLED))));
+        hasher.putString(options.toString(), StandardCharsets.UTF_8);
+
+        return hasher.hash().toString();
+    }
+
+    static String keyOf(byte[] bytes) {
+        return Hashing.sha256().hashBytes(bytes).toString();
+    }
+
+    static boolean isCacheable(byte[] bytes) {
+        try {
+            return !new ClassReader(bytes).getClassName().startsWith(Constants.NR_PACKAGE_NAME);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    static boolean isCacheable(File archive) {
+        try (JarFile jarFile = new JarFile(archive, false)) {
+            for (JarEntry jarEntry : Collections.list(jarFile.entries())) {
+                if (jarEntry.getName().startsWith(AGENT_PACKAGE_PREFIX)) {
+                    return false;
+                }
+            }
+            return true;
+
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static boolean isValid(Map<String, String> superClassLookups, SuperClassResolver resolver) {
+        if (superClassLookups.isEmpty()) {
+            return true;
+        }
+        if (resolver == null) {
+            return false;
+        }
+
+        for (Map.Entry<String, String> lookup : superClassLookups.entrySet()) {
+            final String[] types = lookup.getKey().split(";", 2);
+            if (types.length != 2 || !lookup.getValue().equals(resolver.getCommonSuperClass(types[0], types[1]))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static Map<String, String> readSuperClassLookups(DataInputStream dataInputStream) throws IOException {
+        final int count = dataInputStream.readInt();
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, String> superClassLookups = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            superClassLookups.put(dataInputStream.readUTF(), dataInputStream.readUTF());
+        }
+
+        return superClassLookups;
+    }
+
+    private static void writeSuperClassLookups(DataOutputStream dataOutputStream, Map<String, String> superClassLookups) throws IOException {
+        dataOutputStream.writeInt(superClassLookups.size());
+        for (Map.Entry<String, String> lookup : superClassLookups.entrySet()) {
+            dataOutputStream.writeUTF(lookup.getKey());
+            dataOutputStream.writeUTF(lookup.getValue());
+        }
+    }
+
+    private File classFile(String key) {
+        return new File(cacheDir, "classes/" + key.substring(0, 2) + "/" + key);
+    }
+
+    private File archiveFile(String key) {
+        return new File(cacheDir, "archives/" + key.substring(0, 2) + "/" + key + ".jar");
+    }
+
+    private File archiveLookupsFile(String key) {
+        return new File(cacheDir, "archives/" + key.substring(0, 2) + "/" + key + ".frames");
+    }
+
+    private byte[] read(File file) {
+        if (file.isFile()) {
+            try {
+                return Files.toByteArray(file);
+            } catch (IOException e) {
+                log.warn("[ClassTransformCache] Unable to read cache entry [" + file.getName() + "]: " + e.getLocalizedMessage());
+            }
+        }
+
+        return null;
+    }
+
+    private void write(File file, ByteSource source) {
+        if (file.isFile()) {
+            return;
+        }
+
+        try {
+            file.getParentFile().mkdirs();
+            final File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try {
+                source.copyTo(Files.asByteSink(tmpFile));
+                java.nio.file.Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                tmpFile.delete();
+            }
+
+        } catch (IOException e) {
+            // another writer may have won the race, which is fine
+            log.debug("[ClassTransformCache] Unable to write cache entry [" + file.getName() + "]: " + e.getLocalizedMessage());
+        }
+    }
+
+    private static long hitRate(long hits, long misses) {
+        return (hits + misses) == 0 ? 0 : (100 * hits) / (hits + misses);
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.newrelic.agent.InstrumentationAgent;
+import com.newrelic.agent.util.Streams;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Transforms class entries concurrently on a fork-join pool, and writes them to a
+ * {@link JarOutputStream} in the order they were supplied.
+ * <p>
+ * {@link ClassTransformer} and its {@link InvocationDispatcher} keep per-class state, so each
+ * worker thread is given its own transformer (and {@link InstrumentationContext}). The number
+ * of entries in flight is bounded, so only a small window of class bytes is held in memory
+ * regardless of the number of entries.
+ * <p>
+ * When caching, the transformed entries of each archive are also recorded as an archive in the
+ * cache, and later builds copy them from there without reading or transforming the input classes.
+ */
+public final class ClassTransformEngine implements Closeable {
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    // entries read and transformed ahead of the writer, per worker
+    static final int IN_FLIGHT_PER_WORKER = 8;
+
+    private final Logger log;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<ClassTransformer> transformers;
+    private final ClassTransformCache cache;
+    private final TransformStatistics statistics;
+
+    public interface EntrySource {
+        InputStream open() throws IOException;
+    }
+
+    public static final class Entry {
+        final String name;
+        final boolean instrument;
+        final EntrySource source;
+
+        /**
+         * @param name       Name of the entry in the output archive
+         * @param instrument True if the entry should be instrumented, otherwise it is copied unmodified
+         * @param source     Opens the entry content, or null for directory entries
+         */
+        public Entry(String name, boolean instrument, EntrySource source) {
+            this.name = name;
+            this.instrument = instrument;
+            this.source = source;
+        }
+
+        boolean isDirectory() {
+            return source == null || name.endsWith("/");
+        }
+    }
+
+    public ClassTransformEngine() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    public ClassTransformEngine(int parallelism) {
+        this(parallelism, null);
+    }
+
+    public ClassTransformEngine(int parallelism, ClassTransformCache cache) {
+        this(parallelism, cache, null);
+    }
+
+    /**
+     * @param parallelism   Number of worker threads
+     * @param cache         Cache shared by all workers, or null to always transform
+     * @param typeHierarchy Index used by all workers to compute frames, or null to load classes
+     */
+    public ClassTransformEngine(int parallelism, ClassTransformCache cache, TypeHierarchy typeHierarchy) {
+        this(parallelism, cache, typeHierarchy, new TransformStatistics());
+    }
+
+    /**
+     * @param parallelism   Number of worker threads
+     * @param cache         Cache shared by all workers, or null to always transform
+     * @param typeHierarchy Index used by all workers to compute frames, or null to load classes
+     * @param statistics    Counters and timings shared by all workers
+     */
+    public ClassTransformEngine(int parallelism, ClassTransformCache cache, TypeHierarchy typeHierarchy, TransformStatistics statistics) {
+        this.log = InstrumentationAgent.LOGGER;
+        this.parallelism = Math.max(1, parallelism);
+        this.pool = new ForkJoinPool(this.parallelism);
+        this.cache = cache;
+        this.statistics = statistics;
+        this.transformers = ThreadLocal.withInitial(() -> new ClassTransformer()
+                .withCache(cache)
+                .withTypeHierarchy(typeHierarchy)
+                .withStatistics(statistics));
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public ClassTransformCache getCache() {
+        return cache;
+    }
+
+    public TransformStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Transform class bytes using the calling thread's transformer.
+     *
+     * @return The transformed bytes, or the original bytes if the class was not modified
+     */
+    public byte[] transform(String name, byte[] bytes, boolean instrument) {
+        final ClassTransformer transformer = transformers.get();
+        final byte[] transformedBytes = transformer.asMutableTransform(instrument).transformClassBytes(name, bytes);
+
+        return transformedBytes == null ? bytes : transformedBytes;
+    }
+
+    /**
+     * Transform entries as {@link #transformEntries(Iterator, JarOutputStream)} does, recording the
+     * time spent on them as a single archive (or class directory) in the statistics.
+     *
+     * @return The number of entries written
+     */
+    public int transformEntries(String archiveName, Iterator<Entry> entries, JarOutputStream jarOutputStream) throws IOException {
+        return transformEntries(archiveName, entries, jarOutputStream, null);
+    }
+
+    /**
+     * Transform the entries of an archive as {@link #transformEntries(String, Iterator, JarOutputStream)} does.
+     * When caching, the written entries are served from the cache if the archive and the entries
+     * chosen for instrumentation are unchanged, and recorded in the cache otherwise.
+     *
+     * @param archiveFile The archive the entries were read from
+     * @param entries     All entries of the archive
+     * @return The number of entries written
+     */
+    public int transformArchive(File archiveFile, List<Entry> entries, JarOutputStream jarOutputStream) throws IOException {
+        final String archiveKey = (cache == null) ? null : archiveKeyOf(archiveFile, entries);
+
+        if (archiveKey == null) {
+            return transformEntries(archiveFile.getName(), entries.iterator(), jarOutputStream);
+        }
+
+        final long tStart = System.nanoTime();
+        final File cachedArchive = cache.getArchive(archiveKey, transformers.get().getSuperClassResolver());
+        if (cachedArchive != null) {
+            try {
+                final int written = copyEntries(cachedArchive, jarOutputStream);
+                statistics.recordArchiveCacheHit(true);
+                statistics.recordArchive(archiveFile.getName(), written, 0, System.nanoTime() - tStart);
+                return written;
+            } catch (IOException e) {
+                // transform the archive instead; entries already copied are skipped as duplicates
+                log.warn("[ClassTransform] Unable to read cached archive for [" + archiveFile.getName() + "]: " + e.getLocalizedMessage());
+            }
+        }
+
+        statistics.recordArchiveCacheHit(false);
+
+        final File recordedArchive = File.createTempFile(archiveFile.getName(), ".tmp");
+        try {
+            final ArchiveRecorder recorder;
+            final int written;
+
+            try (JarOutputStream recorderOutputStream = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(recordedArchive)))) {
+                recorder = new ArchiveRecorder(recorderOutputStream);
+                written = transformEntries(archiveFile.getName(), entries.iterator(), jarOutputStream, recorder);
+            }
+
+            if (recorder.complete) {
+                cache.putArchive(archiveKey, recordedArchive, recorder.superClassLookups);
+            }
+
+            return written;
+
+        } finally {
+            recordedArchive.delete();
+        }
+    }
+
+    /**
+     * Read and transform entries concurrently, and write them to the archive in the order supplied.
+     * Entries that cannot be read are logged and skipped.
+     *
+     * @return The number of entries written
+     */
+    public int transformEntries(Iterator<Entry> entries, JarOutputStream jarOutputStream) throws IOException {
+        return transformEntries(entries, jarOutputStream, null);
+    }
+
+    private int transformEntries(String archiveName, Iterator<Entry> entries, JarOutputStream jarOutputStream, ArchiveRecorder recorder) throws IOException {
+        final long tStart = System.nanoTime();
+        final long modified = statistics.getOutcome(TransformStatistics.Outcome.modified);
+        final int written = transformEntries(entries, jarOutputStream, recorder);
+
+        statistics.recordArchive(archiveName, written,
+                statistics.getOutcome(TransformStatistics.Outcome.modified) - modified, System.nanoTime() - tStart);
+
+        return written;
+    }
+
+    private int transformEntries(Iterator<Entry> entries, JarOutputStream jarOutputStream, ArchiveRecorder recorder) throws IOException {
+        final Deque<Future<Result>> inFlight = new ArrayDeque<>();
+        final int window = parallelism * IN_FLIGHT_PER_WORKER;
+        int written = 0;
+
+        try {
+            while (entries.hasNext()) {
+                final Entry entry = entries.next();
+                inFlight.add(pool.submit(() -> process(entry)));
+                if (inFlight.size() >= window) {
+                    written += write(inFlight.poll(), jarOutputStream, recorder);
+                }
+            }
+
+            while (!inFlight.isEmpty()) {
+                written += write(inFlight.poll(), jarOutputStream, recorder);
+            }
+
+        } finally {
+            for (Future<Result> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+
+        return written;
+    }
+
+    Result process(Entry entry) {
+        if (entry.isDirectory()) {
+            return new Result(entry, null, null);
+        }
+
+        final byte[] bytes;
+        try (InputStream inputStream = entry.source.open()) {
+            bytes = Streams.slurpBytes(inputStream);
+        } catch (IOException e) {
+            return new Result(entry, null, e);
+        }
+
+        try {
+            final ClassTransformer transformer = transformers.get();
+            final byte[] transformedBytes = transformer.asMutableTransform(entry.instrument).transformClassBytes(entry.name, bytes);
+            if (transformedBytes == null) {
+                return new Result(entry, bytes, null);
+            }
+            return new Result(entry, transformedBytes, null, transformer.getClassData().getSuperClassLookups());
+        } catch (RuntimeException e) {
+            log.warn("[ClassTransform] Instrumentation is disabled for [" + entry.name + "] with exception: " + e.getLocalizedMessage());
+            return new Result(entry, bytes, null);
+        }
+    }
+
+    private int write(Future<Result> future, JarOutputStream jarOutputStream, ArchiveRecorder recorder) throws IOException {
+        final Result result;
+
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Class transformation was interrupted", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+
+        if (result.error != null) {
+            log.error("[ClassTransform] [" + result.entry.name + "] " + result.error.getMessage());
+            if (recorder != null) {
+                recorder.complete = false;
+            }
+            return 0;
+        }
+
+        if (recorder != null) {
+            recorder.record(result);
+        }
+
+        return writeEntry(result.entry.name, result.entry.isDirectory(), result.bytes, jarOutputStream) ? 1 : 0;
+    }
+
+    private boolean writeEntry(String name, boolean isDirectory, byte[] bytes, JarOutputStream jarOutputStream) throws IOException {
+        try {
+            jarOutputStream.putNextEntry(new JarEntry(name));
+        } catch (ZipException e) {
+            // ignore the duplicate file structure entry
+            if (!(isDirectory || name.startsWith("META-INF/"))) {
+                log.error("[ClassTransform] [" + name + "] " + e.getMessage());
+            }
+            return false;
+        }
+
+        if (bytes != null) {
+            jarOutputStream.write(bytes);
+        }
+        jarOutputStream.closeEntry();
+
+        return true;
+    }
+
+    /**
+     * Copy the entries of a cached archive, which have already been transformed.
+     */
+    private int copyEntries(File cachedArchive, JarOutputStream jarOutputStream) throws IOException {
+        int written = 0;
+
+        try (JarFile jarFile = new JarFile(cachedArchive, false)) {
+            for (JarEntry jarEntry : Collections.list(jarFile.entries())) {
+                byte[] bytes = null;
+                if (!jarEntry.isDirectory()) {
+                    try (InputStream inputStream = jarFile.getInputStream(jarEntry)) {
+                        bytes = Streams.slurpBytes(inputStream);
+                    }
+                }
+                if (writeEntry(jarEntry.getName(), jarEntry.isDirectory(), bytes, jarOutputStream)) {
+                    written++;
+                }
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Returns the cache key of an archive's transformed entries: the archive content, and the
+     * entries chosen for instrumentation (which depend on the configured exclusions).
+     */
+    String archiveKeyOf(File archiveFile, List<Entry> entries) {
+        final String contentKey = cache.archiveKeyOf(archiveFile);
+        if (contentKey == null) {
+            return null;
+        }
+
+        final Hasher hasher = Hashing.sha256().newHasher();
+        for (Entry entry : entries) {
+            if (entry.instrument) {
+                hasher.putString(entry.name, StandardCharsets.UTF_8).putByte((byte) 0);
+            }
+        }
+
+        return contentKey + "-entries-" + hasher.hash().toString().substring(0, 16);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        if (cache != null) {
+            cache.logStatistics();
+        }
+    }
+
+    static final class Result {
+        final Entry entry;
+        final byte[] bytes;
+        final IOException error;
+        final Map<String, String> superClassLookups;
+
+        Result(Entry entry, byte[] bytes, IOException error) {
+            this(entry, bytes, error, Collections.emptyMap());
+        }
+
+        Result(Entry entry, byte[] bytes, IOException error, Map<String, String> superClassLookups) {
+            this.entry = entry;
+            this.bytes = bytes;
+            this.error = error;
+            this.superClassLookups = superClassLookups;
+        }
+    }
+
+    /**
+     * Records the transformed entries of one archive, and the super classes their frames were computed from.
+     */
+    private final class ArchiveRecorder {
+        final JarOutputStream jarOutputStream;
+        final Map<String, String> superClassLookups = new TreeMap<>();
+        boolean complete = true;
+
+        ArchiveRecorder(JarOutputStream jarOutputStream) {
+            this.jarOutputStream = jarOutputStream;
+        }
+
+        void record(Result result) throws IOException {
+            superClassLookups.putAll(result.superClassLookups);
+            writeEntry(result.entry.name, result.entry.isDirectory(), result.bytes, jarOutputStream);
+        }
+    }
+}
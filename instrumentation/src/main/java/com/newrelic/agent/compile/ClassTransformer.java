@@ -12,8 +12,8 @@ import com.newrelic.agent.util.Streams;
 
 import org.slf4j.Logger;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -24,16 +24,21 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
 
 public final class ClassTransformer {
     public static final String MANIFEST_TRANSFORMED_BY_KEY = "Transformed-By";
@@ -47,6 +52,8 @@ public final class ClassTransformer {
     private boolean identityTransform;
     private WriteMode writeMode;
     private Map<String, String> agentOptions = new HashMap<String, String>();
+    private ClassTransformCache cache;
+    private ClassTransformCache.SuperClassResolver superClassResolver;
     final InvocationDispatcher invocationDispatcher;
 
     public enum WriteMode {
@@ -74,6 +81,7 @@ public final class ClassTransformer {
         this.classData = null;
         this.identityTransform = false;
         this.writeMode = WriteMode.modified;
+        this.cache = null;
         this.invocationDispatcher = initDispatcher();
     }
 
@@ -112,7 +120,17 @@ public final class ClassTransformer {
         if (FileUtils.isClass(classPathname) && !identityTransform) {
             try {
                 if (bytes != null) {
-                    classData = invocationDispatcher.visitClassBytes(bytes);
+                    classData = isCaching() ? cache.get(bytes, getSuperClassResolver()) : null;
+                    if (isCaching()) {
+                        invocationDispatcher.getStatistics().recordCacheHit(classData != null);
+                    }
+                    if (classData == null) {
+                        classData = invocationDispatcher.visitClassBytes(bytes);
+                        if (isCaching()) {
+                            // excluded classes are returned as null, and are also unmodified
+                            cache.put(bytes, classData == null ? new ClassData(bytes, false) : classData);
+                        }
+                    }
                     if (classData != null && classData.getClassBytes() != null && classData.isModified()) {
                         return classData.getClassBytes();
                     }
@@ -240,14 +258,16 @@ public final class ClassTransformer {
      * class transformer's output location. If expodeJar is true, each class is written to
      * output instead of the archive.
      *
+     * A rewritten archive is streamed to a temporary file alongside the output, which is then
+     * moved into place, so neither archive is held in memory and a failed transform never leaves
+     * a partial archive behind. Only class entries are read into memory, one at a time.
+     *
      * @param archiveFile Name of file containing archive
      * @param explodeJar  If true, write each class encountered to output.
      *                    Otherwise, rewrite the archive itself.
      * @return True if archive or any of its members was written to output.
      */
     boolean transformArchive(File archiveFile, boolean explodeJar) throws IOException {
-        boolean didProcessArchive = false;      // true is any member of the archive was written
-
         if (FileUtils.isSupportJar(archiveFile)) {
             log.debug("[ClassTransformer] Skipping support jar [" + archiveFile.getPath() + "]");
             return false;
@@ -255,104 +275,171 @@ public final class ClassTransformer {
 
         log.debug("[ClassTransformer] Transforming archive[" + archiveFile.getCanonicalPath() + "]");
 
-        InputStream archiveFileInputStream = null;
-        ByteArrayOutputStream byteArrayOutputStream = null;
-        JarInputStream jarInputStream = null;
-        JarOutputStream jarOutputStream = null;
-        JarFile jarFile = null;
-
-        try {
-            jarFile = new JarFile(archiveFile);
-            byteArrayOutputStream = new ByteArrayOutputStream();
-            archiveFileInputStream = new FileInputStream(archiveFile);
-            jarInputStream = new JarInputStream(archiveFileInputStream);
-            jarOutputStream = new JarOutputStream(byteArrayOutputStream);
+        if (explodeJar) {
+            return explodeArchive(archiveFile);
+        }
 
-            boolean doTransform = verifyAndWriteManifest(jarFile, jarOutputStream);
+        final File rewrittenJar = outputFile.getAbsoluteFile();
+        if (archiveFile.getCanonicalFile().equals(rewrittenJar.getCanonicalFile())) {
+            log.error("[ClassTransformer] Refusing to overwrite archive [" + rewrittenJar.getAbsolutePath() + "]");
+            return false;
+        }
 
-            if (!doTransform) {
-                log.info("[ClassTransformer] Skipping instrumentation of signed jar [" + archiveFile.getPath() + "]");
-                return Streams.copy(new FileInputStream(archiveFile), new FileOutputStream(outputFile)) > 0;
+        // a rewritten archive depends only on its content and the write mode
+        String archiveKey = null;
+        if (isCaching()) {
+            archiveKey = cache.archiveKeyOf(archiveFile);
+            if (archiveKey != null) {
+                archiveKey += "-" + writeMode.name();
+                if (cache.getArchive(archiveKey, rewrittenJar, getSuperClassResolver())) {
+                    log.debug("[ClassTransformer] Archive [" + archiveFile.getPath() + "] is unchanged, using cached rewrite");
+                    return true;
+                }
             }
+        }
 
-            for (JarEntry entry = jarInputStream.getNextJarEntry(); entry != null; entry = jarInputStream.getNextJarEntry()) {
-                String jarEntryPath = entry.getName();
+        rewrittenJar.getParentFile().mkdirs();
+        final File tmpJar = File.createTempFile(rewrittenJar.getName(), ".tmp", rewrittenJar.getParentFile());
 
-                if (!entry.isDirectory()) {
-                    JarEntry jarEntry = new JarEntry(jarEntryPath);
-                    File archiveClassFile = new File(outputFile, jarEntryPath);
-                    InputStream classBytesInputStream = null;
-                    InputStream classBytesOutputStream = null;
+        try {
+            boolean didModifyArchive = false;   // true if any class in the archive was rewritten
+            final Map<String, String> superClassLookups = new TreeMap<>();
 
-                    try {
-                        jarEntry.setTime(entry.getTime());
-                        jarOutputStream.putNextEntry(jarEntry);
-                        classBytesInputStream = jarFile.getInputStream(entry);
-                        classBytesOutputStream = transformClassByteStream(archiveClassFile.getPath(), classBytesInputStream);
-
-                        if (explodeJar) {
-                            didProcessArchive |= writeClassFile(classBytesOutputStream, archiveClassFile);
-                        } else {
-                            writeClassStream(classBytesOutputStream, jarOutputStream);
-                            didProcessArchive = true;
-                        }
+            try (JarFile jarFile = new JarFile(archiveFile, false);
+                 JarOutputStream jarOutputStream = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(tmpJar)))) {
 
-                        jarOutputStream.flush();
-                        jarOutputStream.closeEntry();
+                if (!verifyAndWriteManifest(jarFile, jarOutputStream)) {
+                    log.info("[ClassTransformer] Skipping instrumentation of signed jar [" + archiveFile.getPath() + "]");
+                    jarOutputStream.close();
+                    Files.copy(archiveFile.toPath(), tmpJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    return moveArchive(tmpJar, rewrittenJar);
+                }
 
-                    } catch (Exception e) {
-                        log.warn("[ClassTransformer] transformArchive: " + e);
-                        if (explodeJar) {
-                            didProcessArchive |= writeClassFile(classBytesInputStream, archiveClassFile);
-                        } else {
-                            writeClassStream(classBytesInputStream, jarOutputStream);
-                            didProcessArchive = true;
+                for (JarEntry entry : Collections.list(jarFile.entries())) {
+                    if (entry.isDirectory() || JarFile.MANIFEST_NAME.equalsIgnoreCase(entry.getName())) {
+                        continue;
+                    }
+
+                    byte[] transformedClassBytes = null;
+                    if (FileUtils.isClass(entry.getName())) {
+                        try (InputStream classBytesInputStream = jarFile.getInputStream(entry)) {
+                            transformedClassBytes = transformClassBytes(entry.getName(), Streams.slurpBytes(classBytesInputStream));
                         }
+                    }
 
-                    } finally {
-                        closeQuietly(classBytesInputStream);
-                        closeQuietly(classBytesOutputStream);
+                    if (transformedClassBytes != null) {
+                        final JarEntry jarEntry = new JarEntry(entry.getName());
+                        jarEntry.setTime(entry.getTime());
+                        jarOutputStream.putNextEntry(jarEntry);
+                        jarOutputStream.write(transformedClassBytes);
+                        superClassLookups.putAll(classData.getSuperClassLookups());
+                        didModifyArchive = true;
+                    } else {
+                        jarOutputStream.putNextEntry(copyOf(entry));
+                        try (InputStream entryInputStream = jarFile.getInputStream(entry)) {
+                            Streams.copy(entryInputStream, jarOutputStream);
+                        }
                     }
+
+                    jarOutputStream.closeEntry();
                 }
             }
 
-            if (didProcessArchive) {
-                //
-                // write JAR back to transforms location
-                //
-                File rewrittenJar = new File(outputFile.getAbsolutePath());
-                if (archiveFile.getAbsolutePath() != rewrittenJar.getAbsolutePath()) {
-                    log.debug("[ClassTransformer] Rewriting archive to [" + rewrittenJar.getAbsolutePath() + "]");
-                    closeQuietly(jarOutputStream);
-                    try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(byteArrayOutputStream.toByteArray())) {
-                        writeClassFile(byteArrayInputStream, rewrittenJar);
-                    } catch (Exception e) {
-                        log.error("[ClassTransformer] transformArchive: " + e);
+            if (writeMode == WriteMode.always || didModifyArchive) {
+                log.debug("[ClassTransformer] Rewriting archive to [" + rewrittenJar.getAbsolutePath() + "]");
+                if (moveArchive(tmpJar, rewrittenJar)) {
+                    if (archiveKey != null) {
+                        cache.putArchive(archiveKey, rewrittenJar, superClassLookups);
                     }
-                } else {
-                    log.error("[ClassTransformer] Refusing to overwrite archive [" + rewrittenJar.getAbsolutePath() + "]");
+                    return true;
                 }
             }
 
+            return false;
+
         } catch (Exception e) {
             log.warn("[ClassTransformer] transformArchive: Original library file is unmodified due to exception: " + e.getLocalizedMessage());
             try (StringWriter sw = new StringWriter(); PrintWriter pw = new PrintWriter(sw)) {
                 e.printStackTrace(pw);
                 log.debug("[ClassTransformer] transformArchive: " + sw);
             }
-            return Streams.copy(new FileInputStream(archiveFile), new FileOutputStream(outputFile)) > 0;
+            Files.copy(archiveFile.toPath(), tmpJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return moveArchive(tmpJar, rewrittenJar);
+
         } finally {
-            // close all the streams that may or may npt have already been closed
-            closeQuietly(jarFile);
-            closeQuietly(archiveFileInputStream);
-            closeQuietly(byteArrayOutputStream);
-            closeQuietly(jarInputStream);
-            closeQuietly(jarOutputStream);
+            tmpJar.delete();
+        }
+    }
+
+    /*
+     * Write each member of an archive to the class transformer's output location.
+     *
+     * @return True if any member of the archive was written to output.
+     */
+    private boolean explodeArchive(File archiveFile) throws IOException {
+        boolean didProcessArchive = false;
+
+        try (JarFile jarFile = new JarFile(archiveFile, false)) {
+            if (!verifyManifest(jarFile)) {
+                log.info("[ClassTransformer] Skipping instrumentation of signed jar [" + archiveFile.getPath() + "]");
+                Files.copy(archiveFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return outputFile.length() > 0;
+            }
+
+            for (JarEntry entry : Collections.list(jarFile.entries())) {
+                if (entry.isDirectory() || JarFile.MANIFEST_NAME.equalsIgnoreCase(entry.getName())) {
+                    continue;
+                }
+
+                final File archiveClassFile = new File(outputFile, entry.getName());
+
+                try (InputStream classBytesInputStream = jarFile.getInputStream(entry);
+                     InputStream classBytesOutputStream = transformClassByteStream(archiveClassFile.getPath(), classBytesInputStream)) {
+                    didProcessArchive |= writeClassFile(classBytesOutputStream, archiveClassFile);
+
+                } catch (Exception e) {
+                    log.warn("[ClassTransformer] transformArchive: " + e);
+                    try (InputStream entryInputStream = jarFile.getInputStream(entry)) {
+                        didProcessArchive |= writeClassFile(entryInputStream, archiveClassFile);
+                    }
+                }
+            }
         }
 
         return didProcessArchive;
     }
 
+    /**
+     * Returns an entry to copy an unmodified member into a rewritten archive. Stored (uncompressed)
+     * members remain stored, so their bytes are copied as is, without compressing them.
+     */
+    private static JarEntry copyOf(JarEntry entry) {
+        final JarEntry jarEntry = new JarEntry(entry.getName());
+
+        jarEntry.setTime(entry.getTime());
+        if (entry.getMethod() == ZipEntry.STORED && entry.getSize() >= 0 && entry.getCrc() >= 0) {
+            jarEntry.setMethod(ZipEntry.STORED);
+            jarEntry.setSize(entry.getSize());
+            jarEntry.setCompressedSize(entry.getSize());
+            jarEntry.setCrc(entry.getCrc());
+        }
+
+        return jarEntry;
+    }
+
+    /**
+     * Replace the destination with a completed archive, atomically where the file system allows it.
+     */
+    private boolean moveArchive(File completedJar, File rewrittenJar) throws IOException {
+        try {
+            Files.move(completedJar.toPath(), rewrittenJar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(completedJar.toPath(), rewrittenJar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return rewrittenJar.length() > 0;
+    }
+
     public boolean verifyManifest(JarFile jarFile) throws IOException {
         Manifest realManifest = jarFile.getManifest();
 
@@ -408,6 +495,64 @@ public final class ClassTransformer {
         return this;
     }
 
+    /**
+     * Consult the passed cache before transforming classes and archives, and record the results.
+     * Pass null to disable caching.
+     */
+    public ClassTransformer withCache(ClassTransformCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Compute stack map frames from the passed type hierarchy index. Pass null to load classes instead.
+     */
+    public ClassTransformer withTypeHierarchy(TypeHierarchy typeHierarchy) {
+        invocationDispatcher.setTypeHierarchy(typeHierarchy);
+        superClassResolver = null;
+        return this;
+    }
+
+    /**
+     * Record class counts, phase timings and cache hits in the passed statistics.
+     */
+    public ClassTransformer withStatistics(TransformStatistics statistics) {
+        invocationDispatcher.setStatistics(statistics);
+        return this;
+    }
+
+    public TransformStatistics getStatistics() {
+        return invocationDispatcher.getStatistics();
+    }
+
+    public ClassTransformCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the data of the last class transformed, or null if no class has been transformed.
+     */
+    ClassData getClassData() {
+        return classData;
+    }
+
+    /**
+     * Resolves common super classes as this transformer's frames are computed, to check cached output.
+     */
+    ClassTransformCache.SuperClassResolver getSuperClassResolver() {
+        if (superClassResolver == null) {
+            final ClassWriterSafe classWriter = new ClassWriterSafe(0, invocationDispatcher.getTypeHierarchy());
+            superClassResolver = classWriter::resolveCommonSuperClass;
+        }
+
+        return superClassResolver;
+    }
+
+    boolean isCaching() {
+        // an identity transform would cache unmodified archives
+        return cache != null && !identityTransform && !invocationDispatcher.isInstrumentationDisabled();
+    }
+
     public ClassTransformer usingVariant(String variantName) {
         if (!(variantName == null || variantName.isEmpty())) {
             invocationDispatcher.getInstrumentationContext().setVariantName(variantName);
@@ -8,21 +8,78 @@ package com.newrelic.agent.compile;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
- * If the ClassLoader cannot find teh requested type in the current hierarchy, return
+ * Resolve common super classes from the type hierarchy index when one is provided, which avoids
+ * loading classes. Otherwise, or if the index cannot resolve the types, fall back to the ClassLoader.
+ * If the ClassLoader cannot find the requested type in the current hierarchy, return
  * the common ancestor of all classes: java.lang.Object
+ * <p>
+ * Each common super class resolved for the frames is recorded, so cached output can be checked
+ * against a later (possibly changed) type hierarchy.
  */
 public class ClassWriterSafe extends ClassWriter {
+    private final TypeHierarchy typeHierarchy;
+    private final TransformStatistics statistics;
+    private final Map<String, String> superClassLookups = new TreeMap<>();
+
     public ClassWriterSafe(ClassReader cr, int classWriterFlags) {
+        this(cr, classWriterFlags, null);
+    }
+
+    public ClassWriterSafe(ClassReader cr, int classWriterFlags, TypeHierarchy typeHierarchy) {
+        this(cr, classWriterFlags, typeHierarchy, null);
+    }
+
+    /**
+     * @param statistics If not null, records the time spent resolving common super classes
+     */
+    public ClassWriterSafe(ClassReader cr, int classWriterFlags, TypeHierarchy typeHierarchy, TransformStatistics statistics) {
         super(cr, classWriterFlags);
+        this.typeHierarchy = typeHierarchy;
+        this.statistics = statistics;
     }
 
     public ClassWriterSafe(int flags) {
+        this(flags, null);
+    }
+
+    public ClassWriterSafe(int flags, TypeHierarchy typeHierarchy) {
         super(flags);
+        this.typeHierarchy = typeHierarchy;
+        this.statistics = null;
     }
 
     @Override
     protected String getCommonSuperClass(String type1, String type2) {
+        final long tStart = System.nanoTime();
+        final String commonSuperClass = resolveCommonSuperClass(type1, type2);
+
+        superClassLookups.put(type1 + ";" + type2, commonSuperClass);
+        if (statistics != null) {
+            statistics.recordPhase(TransformStatistics.Phase.frames, System.nanoTime() - tStart);
+        }
+
+        return commonSuperClass;
+    }
+
+    /**
+     * Returns the common super classes resolved so far, keyed by the two type names separated by ';'
+     */
+    Map<String, String> getSuperClassLookups() {
+        return superClassLookups;
+    }
+
+    String resolveCommonSuperClass(String type1, String type2) {
+        if (typeHierarchy != null) {
+            final String commonSuperClass = typeHierarchy.getCommonSuperClass(type1, type2);
+            if (commonSuperClass != null) {
+                return commonSuperClass;
+            }
+        }
+
         try {
             return super.getCommonSuperClass(type1, type2);
         } catch (Exception e) {
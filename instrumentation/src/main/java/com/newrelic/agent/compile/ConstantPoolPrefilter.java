@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.newrelic.agent.Constants;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Decides from the class file constant pool alone whether a class could be modified by the
+ * instrumentation, so the (much more expensive) ASM read and write can be skipped for most classes.
+ * <p>
+ * Everything the class visitors act on is referenced from the constant pool: the super class
+ * (Activity, Fragment and AsyncTask instrumentation), New Relic annotation descriptors
+ * (@Trace, @SkipTrace, @Instrumented) and the method references of call sites that are wrapped,
+ * replaced or shadowed. If none of these are present, the class cannot be modified. The filter is
+ * conservative: malformed or unrecognized class files are passed through to the visitors.
+ */
+final class ConstantPoolPrefilter {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final byte[] ANNOTATION_PREFIX = "Lcom/newrelic/agent/android/instrumentation/".getBytes(StandardCharsets.US_ASCII);
+    private static final String[] INSTRUMENTED_SUPER_PACKAGES = {"android/", "androidx/"};
+
+    private final ClassRemapperConfig config;
+    private final Set<String> instrumentedMethodNames;
+
+    ConstantPoolPrefilter(ClassRemapperConfig config) {
+        this.config = config;
+        this.instrumentedMethodNames = config.getInstrumentedMethodNames();
+    }
+
+    /**
+     * @return False if the class cannot be modified by the instrumentation, otherwise true
+     */
+    boolean mayInstrument(byte[] bytes) {
+        try {
+            return scan(bytes);
+        } catch (RuntimeException e) {
+            // truncated or malformed: let the class reader decide
+            return true;
+        }
+    }
+
+    private boolean scan(byte[] b) {
+        if (b.length < 10 || readInt(b, 0) != MAGIC) {
+            return true;
+        }
+
+        final int count = readUnsignedShort(b, 8);
+        final int[] offsets = new int[count];
+        int offset = 10;
+
+        for (int i = 1; i < count; i++) {
+            offsets[i] = offset + 1;
+            switch (b[offset] & 0xff) {
+                case CONSTANT_UTF8:
+                    final int length = readUnsignedShort(b, offset + 1);
+                    if (startsWith(b, offset + 3, length, ANNOTATION_PREFIX)) {
+                        return true;
+                    }
+                    offset += 3 + length;
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    offset += 5;
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    // occupies two slots
+                    offset += 9;
+                    i++;
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    offset += 3;
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    offset += 4;
+                    break;
+                default:
+                    // a newer class file format
+                    return true;
+            }
+        }
+
+        // access_flags, this_class, super_class follow the constant pool
+        final String className = readClassName(b, offsets, readUnsignedShort(b, offset + 2));
+        final int superIndex = readUnsignedShort(b, offset + 4);
+        final String superName = superIndex == 0 ? null : readClassName(b, offsets, superIndex);
+
+        if (className.startsWith(Constants.NR_PACKAGE_NAME)) {
+            return true;
+        }
+
+        if (superName != null) {
+            for (String superPackage : INSTRUMENTED_SUPER_PACKAGES) {
+                if (superName.startsWith(superPackage)) {
+                    return true;
+                }
+            }
+        }
+
+        for (int i = 1; i < count; i++) {
+            final int tag = offsets[i] == 0 ? 0 : b[offsets[i] - 1] & 0xff;
+            if (tag == CONSTANT_METHODREF || tag == CONSTANT_INTERFACE_METHODREF) {
+                final int nameAndType = offsets[readUnsignedShort(b, offsets[i] + 2)];
+                final String methodName = readUtf8(b, offsets[readUnsignedShort(b, nameAndType)]);
+
+                if (instrumentedMethodNames.contains(methodName)) {
+                    final String owner = readClassName(b, offsets, readUnsignedShort(b, offsets[i]));
+                    final String methodDesc = readUtf8(b, offsets[readUnsignedShort(b, nameAndType + 2)]);
+
+                    if (config.isInstrumentedMethod(owner, methodName, methodDesc)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static String readClassName(byte[] b, int[] offsets, int classIndex) {
+        return readUtf8(b, offsets[readUnsignedShort(b, offsets[classIndex])]);
+    }
+
+    /**
+     * Decode a CONSTANT_Utf8 entry (modified UTF-8) at offset, which points past the tag.
+     */
+    private static String readUtf8(byte[] b, int offset) {
+        final int length = readUnsignedShort(b, offset);
+        final char[] chars = new char[length];
+        int index = offset + 2;
+        final int end = index + length;
+        int n = 0;
+
+        while (index < end) {
+            final int c = b[index++] & 0xff;
+            if ((c & 0x80) == 0) {
+                chars[n++] = (char) c;
+            } else if ((c & 0xe0) == 0xc0) {
+                chars[n++] = (char) (((c & 0x1f) << 6) + (b[index++] & 0x3f));
+            } else {
+                chars[n++] = (char) (((c & 0x0f) << 12) + ((b[index++] & 0x3f) << 6) + (b[index++] & 0x3f));
+            }
+        }
+
+        return new String(chars, 0, n);
+    }
+
+    private static boolean startsWith(byte[] b, int offset, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (b[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readUnsignedShort(byte[] b, int offset) {
+        return ((b[offset] & 0xff) << 8) | (b[offset + 1] & 0xff);
+    }
+
+    private static int readInt(byte[] b, int offset) {
+        return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16) | ((b[offset + 2] & 0xff) << 8) | (b[offset + 3] & 0xff);
+    }
+}
@@ -12,6 +12,7 @@ import org.slf4j.Logger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +25,7 @@ public class InstrumentationContext {
     private String className;
     private String superClassName;
     private final ArrayList<String> tags = new ArrayList<>();
+    private final LinkedHashSet<String> modifiedBy = new LinkedHashSet<>();
     private final HashMap<String, String> tracedMethods;
     private final HashMap<String, String> skippedMethods;
     private final HashMap<String, ArrayList<String>> tracedMethodParameters = new HashMap<>();
@@ -48,6 +50,7 @@ public class InstrumentationContext {
         className = "";
         superClassName = "";
         tags.clear();
+        modifiedBy.clear();
         computeFlags = 0;
     }
 
@@ -55,6 +58,21 @@ public class InstrumentationContext {
         classModified = true;
     }
 
+    /**
+     * Mark the class modified, recording the visitor that modified it
+     */
+    public void markModified(Class<?> visitor) {
+        markModified();
+        modifiedBy.add(visitor.getSimpleName());
+    }
+
+    /**
+     * Returns the simple names of the visitors that modified the current class
+     */
+    public Collection<String> getModifiedBy() {
+        return modifiedBy;
+    }
+
     public boolean isClassModified() {
         return classModified;
     }
@@ -41,6 +41,11 @@ public class InvocationDispatcher {
 
     private final Logger log;
     private final InstrumentationContext instrumentationContext;
+    private final ConstantPoolPrefilter prefilter;
+    private boolean prefilterEnabled = true;
+    private TypeHierarchy typeHierarchy;
+    private TransformStatistics statistics = new TransformStatistics();
+    private TransformStatistics.Outcome outcome;
     private final Pattern androidPackagePattern = Pattern.compile(Constants.ANDROID_PACKAGE_RE);
     private final Pattern kotlinPackagePattern = Pattern.compile(Constants.ANDROID_KOTLIN_PACKAGE_RE);
 
@@ -51,10 +56,37 @@ public class InvocationDispatcher {
 
         this.log = log;
         this.instrumentationContext = new InstrumentationContext(config, log);
+        this.prefilter = new ConstantPoolPrefilter(config);
         this.invocationHandlers = ImmutableMap.of();
         log.debug("[InvocationDispatcher] Initialized with logInstrumentationEnabled[{}]", logInstrumentationEnabled);
     }
 
+    /**
+     * Resolve common super classes from the passed index when computing frames, rather than loading classes.
+     */
+    public void setTypeHierarchy(TypeHierarchy typeHierarchy) {
+        this.typeHierarchy = typeHierarchy;
+    }
+
+    public TypeHierarchy getTypeHierarchy() {
+        return typeHierarchy;
+    }
+
+    /**
+     * Record class counts and phase timings in the passed statistics, which may be shared by other dispatchers.
+     */
+    public void setStatistics(TransformStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public TransformStatistics getStatistics() {
+        return statistics;
+    }
+
+    void setPrefilterEnabled(boolean enabled) {
+        prefilterEnabled = enabled;
+    }
+
     boolean isInstrumentationDisabled() {
         return System.getProperty(Constants.NR_DISABLE_INSTRUMENTATION_KEY) != null;
     }
@@ -105,7 +137,32 @@ public class InvocationDispatcher {
      * Process the given class bytes, modifying them if necessary.
      */
     public ClassData visitClassBytes(byte[] bytes) {
-        return visitClassBytesWithOptions(bytes, ClassWriter.COMPUTE_FRAMES);
+        if (isInstrumentationDisabled()) {
+            return new ClassData(bytes, false);
+        }
+
+        final long tStart = System.nanoTime();
+        outcome = null;
+
+        final ClassData classData = visitClassBytesWithOptions(bytes, ClassWriter.COMPUTE_FRAMES);
+
+        if (outcome == null) {
+            if (classData == null) {
+                outcome = TransformStatistics.Outcome.excluded;
+            } else if (classData.isModified()) {
+                outcome = TransformStatistics.Outcome.modified;
+                statistics.recordModifiedBy(instrumentationContext.getModifiedBy());
+            } else {
+                outcome = TransformStatistics.Outcome.unmodified;
+            }
+        }
+
+        statistics.recordOutcome(outcome);
+        if (outcome != TransformStatistics.Outcome.prefiltered) {
+            statistics.recordClass(instrumentationContext.getClassName(), System.nanoTime() - tStart);
+        }
+
+        return classData;
     }
 
     ClassData visitClassBytesWithOptions(byte[] bytes, int classWriterFlags) {
@@ -115,9 +172,23 @@ public class InvocationDispatcher {
             return new ClassData(bytes, false);
         }
 
+        // most classes reference nothing we instrument, so don't parse them
+        if (prefilterEnabled) {
+            final long tStart = System.nanoTime();
+            final boolean mayInstrument = prefilter.mayInstrument(bytes);
+            statistics.recordPhase(TransformStatistics.Phase.prefilter, System.nanoTime() - tStart);
+
+            if (!mayInstrument) {
+                instrumentationContext.reset();
+                outcome = TransformStatistics.Outcome.prefiltered;
+                return new ClassData(bytes, false);
+            }
+        }
+
         try {
+            long tStart = System.nanoTime();
             ClassReader cr = new ClassReader(bytes);
-            ClassWriter cw = new ClassWriterSafe(cr, classWriterFlags);
+            ClassWriterSafe cw = new ClassWriterSafe(cr, classWriterFlags, typeHierarchy, statistics);
 
             instrumentationContext.reset();
             instrumentationContext.setComputeFlags(classWriterFlags);
@@ -146,6 +217,7 @@ public class InvocationDispatcher {
                     cv = new ActivityClassVisitor(cv, instrumentationContext, log);
                 } else if (isExcludedPackage(className)) {
                     // log.debug("[InvocationDispatcher] Excluding class [" + className + "]");
+                    statistics.recordPhase(TransformStatistics.Phase.visit, System.nanoTime() - tStart);
                     return null;
                 } else {
                     cv = new AnnotatingClassVisitor(cv, instrumentationContext, log);
@@ -173,21 +245,30 @@ public class InvocationDispatcher {
                     if (classWriterFlags != ClassWriter.COMPUTE_MAXS) {
                         log.debug("[InvocationDispatcher] [" + className + "] " + e);
                         log.debug("[InvocationDispatcher] Retry with ClassWriter.COMPUTE_MAXS");
+                        statistics.recordPhase(TransformStatistics.Phase.visit, System.nanoTime() - tStart);
+                        statistics.recordRetry();
                         return visitClassBytesWithOptions(bytes, ClassWriter.COMPUTE_MAXS);
                     }
                     log.warn("[InvocationDispatcher] [" + className + "] instrumentation failed: " + e.getLocalizedMessage());
+                    outcome = TransformStatistics.Outcome.failed;
                     return new ClassData(bytes, false);
                 }
 
-                if (instrumentationContext.isClassModified() && (bytes.length != cw.toByteArray().length)) {
-                    log.debug("[InvocationDispatcher] class[" + className + "] bytes[" + bytes.length + "] transformed[" + cw.toByteArray().length + "]");
-                }
-
             } else {
                 log.debug(MessageFormat.format("[{0}] class is already instrumented! skipping ...", instrumentationContext.getFriendlyClassName()));
             }
 
-            return instrumentationContext.newClassData(cw.toByteArray());
+            statistics.recordPhase(TransformStatistics.Phase.visit, System.nanoTime() - tStart);
+
+            tStart = System.nanoTime();
+            final byte[] classBytes = cw.toByteArray();
+            statistics.recordPhase(TransformStatistics.Phase.write, System.nanoTime() - tStart);
+
+            if (instrumentationContext.isClassModified() && (bytes.length != classBytes.length)) {
+                log.debug("[InvocationDispatcher] class[" + className + "] bytes[" + bytes.length + "] transformed[" + classBytes.length + "]");
+            }
+
+            return instrumentationContext.newClassData(classBytes).withSuperClassLookups(cw.getSuperClassLookups());
 
         } catch (SkipException e) {
             log.debug("[InvocationDispatcher] " + e);
@@ -195,6 +276,7 @@ public class InvocationDispatcher {
 
         } catch (IllegalArgumentException e) {
             log.warn("[InvocationDispatcher] Class[" + className + "] ignored: JDK not supported");
+            outcome = TransformStatistics.Outcome.failed;
             return new ClassData(bytes, false);
 
         } catch (HaltBuildException e) {
@@ -205,6 +287,7 @@ public class InvocationDispatcher {
             log.warn("Unfortunately, an error has occurred while processing class [" + className + "].\n"
                     + "The file is unable to be parsed. Please copy your build logs and the jar containing "
                     + "this class and visit http://support.newrelic.com, thanks!\n" + e.getLocalizedMessage());
+            outcome = TransformStatistics.Outcome.failed;
             return new ClassData(bytes, false);
 
         } catch (Throwable t) {
@@ -224,6 +307,7 @@ public class InvocationDispatcher {
                 log.debug("  cause[" + t.getCause() + "].\n");
             }
 
+            outcome = TransformStatistics.Outcome.failed;
             return new ClassData(bytes, false);
         }
     }
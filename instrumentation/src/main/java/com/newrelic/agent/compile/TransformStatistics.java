@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.newrelic.agent.InstrumentationAgent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and phase timings collected while transforming classes, reported as a map of plain
+ * values that serializes directly to JSON.
+ * <p>
+ * Class timings are aggregated per phase:
+ * <ul>
+ *     <li>prefilter: scanning the constant pool of every class</li>
+ *     <li>visit: reading, visiting and computing frames of classes that were not prefiltered</li>
+ *     <li>frames: resolving common super classes while computing frames (part of visit)</li>
+ *     <li>write: serializing visited classes</li>
+ * </ul>
+ * The slowest classes and each archive are also reported individually. All methods are thread safe,
+ * so a single instance can be shared by all transform workers.
+ */
+public final class TransformStatistics {
+    public static final int REPORT_VERSION = 1;
+
+    static final int SLOWEST_CLASSES = 20;
+
+    public enum Phase {
+        prefilter,
+        visit,
+        frames,
+        write
+    }
+
+    public enum Outcome {
+        modified,
+        unmodified,
+        prefiltered,    // skipped by the constant pool prefilter
+        excluded,       // excluded package
+        failed          // not instrumented due to an error
+    }
+
+    private final Map<Phase, LongAdder> phaseNanos = new ConcurrentHashMap<>();
+    private final Map<Outcome, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> modifiedByVisitor = new ConcurrentHashMap<>();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder archiveCacheHits = new LongAdder();
+    private final LongAdder archiveCacheMisses = new LongAdder();
+    private final Collection<ArchiveTiming> archives = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<ClassTiming> slowestClasses = new PriorityQueue<>(Comparator.comparingLong(timing -> timing.nanos));
+    private volatile long slowestClassThreshold = 0;
+
+    static final class ClassTiming {
+        final String className;
+        final long nanos;
+
+        ClassTiming(String className, long nanos) {
+            this.className = className;
+            this.nanos = nanos;
+        }
+    }
+
+    static final class ArchiveTiming {
+        final String name;
+        final int entries;
+        final long modified;
+        final long nanos;
+
+        ArchiveTiming(String name, int entries, long modified, long nanos) {
+            this.name = name;
+            this.entries = entries;
+            this.modified = modified;
+            this.nanos = nanos;
+        }
+    }
+
+    public TransformStatistics() {
+        for (Phase phase : Phase.values()) {
+            phaseNanos.put(phase, new LongAdder());
+        }
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    public void recordPhase(Phase phase, long nanos) {
+        phaseNanos.get(phase).add(nanos);
+    }
+
+    public void recordOutcome(Outcome outcome) {
+        outcomes.get(outcome).increment();
+    }
+
+    public void recordModifiedBy(Collection<String> visitors) {
+        for (String visitor : visitors) {
+            modifiedByVisitor.computeIfAbsent(visitor, k -> new LongAdder()).increment();
+        }
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public void recordCacheHit(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    /**
+     * Record whether an archive's transformed entries were copied from the archive cache. The classes
+     * of a cached archive are not transformed, so they are not counted in the class outcomes.
+     */
+    public void recordArchiveCacheHit(boolean hit) {
+        (hit ? archiveCacheHits : archiveCacheMisses).increment();
+    }
+
+    /**
+     * Record the total time spent instrumenting a class, retaining only the slowest classes.
+     */
+    public void recordClass(String className, long nanos) {
+        if (nanos <= slowestClassThreshold) {
+            return;
+        }
+
+        synchronized (slowestClasses) {
+            slowestClasses.offer(new ClassTiming(className, nanos));
+            if (slowestClasses.size() > SLOWEST_CLASSES) {
+                slowestClasses.poll();
+                slowestClassThreshold = slowestClasses.peek().nanos;
+            }
+        }
+    }
+
+    /**
+     * Record the time spent transforming all entries of an archive (or a class directory).
+     */
+    public void recordArchive(String name, int entries, long modified, long nanos) {
+        archives.add(new ArchiveTiming(name, entries, modified, nanos));
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos.get(phase).sum();
+    }
+
+    public long getOutcome(Outcome outcome) {
+        return outcomes.get(outcome).sum();
+    }
+
+    public long getModifiedBy(String visitor) {
+        final LongAdder count = modifiedByVisitor.get(visitor);
+        return count == null ? 0 : count.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public long getArchiveCacheHits() {
+        return archiveCacheHits.sum();
+    }
+
+    public long getArchiveCacheMisses() {
+        return archiveCacheMisses.sum();
+    }
+
+    public long getClasses() {
+        long classes = 0;
+        for (LongAdder count : outcomes.values()) {
+            classes += count.sum();
+        }
+        return classes;
+    }
+
+    /**
+     * Returns the report as nested maps and lists of strings and numbers. Durations are in milliseconds.
+     */
+    public Map<String, Object> toReport() {
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("reportVersion", REPORT_VERSION);
+        report.put("agentVersion", InstrumentationAgent.getVersion());
+
+        final Map<String, Object> classes = new LinkedHashMap<>();
+        classes.put("total", getClasses());
+        for (Outcome outcome : Outcome.values()) {
+            classes.put(outcome.name(), getOutcome(outcome));
+        }
+        classes.put("retries", getRetries());
+        report.put("classes", classes);
+
+        report.put("modifiedByVisitor", toSortedMap(modifiedByVisitor));
+
+        final Map<String, Object> phases = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            phases.put(phase.name(), toMillis(getPhaseNanos(phase)));
+        }
+        report.put("phaseMillis", phases);
+
+        final Map<String, Object> cache = new LinkedHashMap<>();
+        final long hits = getCacheHits();
+        final long misses = getCacheMisses();
+        cache.put("hits", hits);
+        cache.put("misses", misses);
+        cache.put("hitRate", (hits + misses) == 0 ? 0.0 : (double) hits / (hits + misses));
+        final long archiveHits = getArchiveCacheHits();
+        final long archiveMisses = getArchiveCacheMisses();
+        cache.put("archiveHits", archiveHits);
+        cache.put("archiveMisses", archiveMisses);
+        cache.put("archiveHitRate", (archiveHits + archiveMisses) == 0 ? 0.0 : (double) archiveHits / (archiveHits + archiveMisses));
+        report.put("cache", cache);
+
+        final List<ClassTiming> slowest;
+        synchronized (slowestClasses) {
+            slowest = new ArrayList<>(slowestClasses);
+        }
+        slowest.sort(Comparator.comparingLong((ClassTiming timing) -> timing.nanos).reversed());
+
+        final List<Map<String, Object>> slowestReport = new ArrayList<>();
+        for (ClassTiming timing : slowest) {
+            final Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("class", timing.className);
+            entry.put("millis", toMillis(timing.nanos));
+            slowestReport.add(entry);
+        }
+        report.put("slowestClasses", slowestReport);
+
+        final List<Map<String, Object>> archiveReport = new ArrayList<>();
+        for (ArchiveTiming timing : archives) {
+            final Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", timing.name);
+            entry.put("entries", timing.entries);
+            entry.put("modified", timing.modified);
+            entry.put("millis", toMillis(timing.nanos));
+            archiveReport.add(entry);
+        }
+        report.put("archives", archiveReport);
+
+        return report;
+    }
+
+    /**
+     * Returns a one line summary, suitable for the build log.
+     */
+    public String summary() {
+        return "classes[" + getClasses() + "] modified[" + getOutcome(Outcome.modified) + "] prefiltered[" + getOutcome(Outcome.prefiltered)
+                + "] failed[" + getOutcome(Outcome.failed) + "] prefilter[" + toMillis(getPhaseNanos(Phase.prefilter))
+                + " ms] visit[" + toMillis(getPhaseNanos(Phase.visit)) + " ms] frames[" + toMillis(getPhaseNanos(Phase.frames))
+                + " ms] write[" + toMillis(getPhaseNanos(Phase.write)) + " ms] cache hits[" + getCacheHits() + "] misses[" + getCacheMisses()
+                + "] archive cache hits[" + getArchiveCacheHits() + "] misses[" + getArchiveCacheMisses() + "]";
+    }
+
+    private static Map<String, Long> toSortedMap(Map<String, LongAdder> counts) {
+        final Map<String, Long> sorted = new TreeMap<>();
+        counts.forEach((key, count) -> sorted.put(key, count.sum()));
+        return sorted;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / (double) TimeUnit.MICROSECONDS.toNanos(1)) / 1000.0;
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.newrelic.agent.InstrumentationAgent;
+import com.newrelic.agent.util.FileUtils;
+import com.newrelic.agent.util.Streams;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * An index of super classes and interfaces, used to compute stack map frames without loading
+ * classes.
+ * <p>
+ * The index is built from the class headers of the classes being transformed, their dependencies
+ * and the android.jar stubs. Types that were not indexed are read (not loaded) from the
+ * platform class path, so JDK types resolve as well. A type that cannot be found anywhere is
+ * unresolved, and {@link #getCommonSuperClass(String, String)} returns null rather than guessing.
+ * <p>
+ * Classes can be indexed up front, or their directories and archives registered as sources that
+ * are only read as their types are resolved. The index is thread safe, and can be shared by all
+ * transform workers.
+ */
+public final class TypeHierarchy implements Closeable {
+    public static final String OBJECT = "java/lang/Object";
+
+    private static final TypeInfo UNRESOLVED = new TypeInfo(null, null, false);
+
+    private final Logger log;
+    private final Map<String, TypeInfo> types = new ConcurrentHashMap<>();
+    private final ClassLoader platformClassLoader;
+
+    // sources read on demand, in the order registered
+    private final List<File> sourceDirectories = new CopyOnWriteArrayList<>();
+    private final List<File> sourceArchives = new ArrayList<>();
+    private final Map<String, JarFile> archiveEntries = new ConcurrentHashMap<>();
+    private final List<JarFile> openArchives = new ArrayList<>();
+    private volatile boolean archivesListed = false;
+
+    static final class TypeInfo {
+        final String superName;
+        final String[] interfaces;
+        final boolean isInterface;
+
+        TypeInfo(String superName, String[] interfaces, boolean isInterface) {
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.isInterface = isInterface;
+        }
+    }
+
+    public TypeHierarchy() {
+        this(ClassLoader.getSystemClassLoader());
+    }
+
+    public TypeHierarchy(ClassLoader platformClassLoader) {
+        this.log = InstrumentationAgent.LOGGER;
+        this.platformClassLoader = platformClassLoader;
+    }
+
+    /**
+     * Index a class or interface from its class file bytes. Only the header is read.
+     */
+    public void addClass(byte[] bytes) {
+        try {
+            final ClassReader cr = new ClassReader(bytes);
+            types.put(cr.getClassName(), new TypeInfo(cr.getSuperName(), cr.getInterfaces(),
+                    (cr.getAccess() & Opcodes.ACC_INTERFACE) != 0));
+        } catch (RuntimeException e) {
+            // not a class file we can read, so it can't be part of a frame either
+        }
+    }
+
+    /**
+     * Index the class files in a directory, an archive, or a single class file.
+     */
+    public void add(File file) {
+        try {
+            if (file.isDirectory()) {
+                addDirectory(file);
+            } else if (FileUtils.isArchive(file)) {
+                addArchive(file);
+            } else if (FileUtils.isClass(file)) {
+                try (InputStream inputStream = new FileInputStream(file)) {
+                    addClass(Streams.slurpBytes(inputStream));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("[TypeHierarchy] Unable to index [" + file.getPath() + "]: " + e.getLocalizedMessage());
+        }
+    }
+
+    public void addAll(Iterable<File> files) {
+        for (File file : files) {
+            add(file);
+        }
+    }
+
+    /**
+     * Register a directory or an archive as a source of types that is only read when one of its
+     * types is first resolved. Archives are not opened until a type is missing from the index and
+     * the directories, so a build that resolves no types reads none of them. A type found in more
+     * than one source is read from the first one registered.
+     */
+    public void addSource(File file) {
+        if (file.isDirectory()) {
+            sourceDirectories.add(file);
+        } else if (FileUtils.isArchive(file)) {
+            synchronized (sourceArchives) {
+                sourceArchives.add(file);
+                if (archivesListed) {
+                    listArchive(file);
+                }
+            }
+        } else {
+            add(file);
+        }
+    }
+
+    public void addSources(Iterable<File> files) {
+        for (File file : files) {
+            addSource(file);
+        }
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    /**
+     * Returns the internal name of the nearest common super class of two types, following the
+     * same rules as {@link org.objectweb.asm.ClassWriter#getCommonSuperClass(String, String)},
+     * or null if either type (or one of its super types) could not be resolved.
+     */
+    public String getCommonSuperClass(String type1, String type2) {
+        final TypeInfo info1 = resolve(type1);
+        final TypeInfo info2 = resolve(type2);
+
+        if (info1 == UNRESOLVED || info2 == UNRESOLVED) {
+            return null;
+        }
+
+        try {
+            if (isAssignableFrom(type1, type2)) {
+                return type1;
+            }
+            if (isAssignableFrom(type2, type1)) {
+                return type2;
+            }
+            if (info1.isInterface || info2.isInterface) {
+                return OBJECT;
+            }
+
+            String superName = type1;
+            do {
+                superName = resolve(superName).superName;
+                if (superName == null) {
+                    return OBJECT;
+                }
+            } while (!isAssignableFrom(superName, type2));
+
+            return superName;
+
+        } catch (UnresolvedTypeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if a value of {@code type} can be assigned to {@code target}, i.e. target is
+     * type itself, one of its super classes or one of its interfaces.
+     */
+    boolean isAssignableFrom(String target, String type) {
+        if (target.equals(type) || OBJECT.equals(target)) {
+            return true;
+        }
+
+        final Deque<String> pending = new ArrayDeque<>();
+        final Set<String> visited = new HashSet<>();
+        pending.push(type);
+
+        while (!pending.isEmpty()) {
+            final String name = pending.pop();
+            if (!visited.add(name)) {
+                continue;
+            }
+            if (name.equals(target)) {
+                return true;
+            }
+
+            final TypeInfo info = resolve(name);
+            if (info == UNRESOLVED) {
+                throw new UnresolvedTypeException(name);
+            }
+            if (info.superName != null) {
+                pending.push(info.superName);
+            }
+            if (info.interfaces != null) {
+                Collections.addAll(pending, info.interfaces);
+            }
+        }
+
+        return false;
+    }
+
+    TypeInfo resolve(String type) {
+        Objects.requireNonNull(type);
+
+        TypeInfo info = types.get(type);
+        if (info == null) {
+            info = readSourceType(type);
+            if (info == UNRESOLVED) {
+                info = readPlatformType(type);
+            }
+            types.putIfAbsent(type, info);
+        }
+
+        return info;
+    }
+
+    /**
+     * Close the archives opened to read source types.
+     */
+    @Override
+    public void close() {
+        synchronized (sourceArchives) {
+            for (JarFile jarFile : openArchives) {
+                try {
+                    jarFile.close();
+                } catch (IOException e) {
+                    // ignored
+                }
+            }
+            openArchives.clear();
+            archiveEntries.clear();
+            archivesListed = false;
+        }
+    }
+
+    private TypeInfo readSourceType(String type) {
+        final String entryName = type + ".class";
+
+        for (File directory : sourceDirectories) {
+            final File classFile = new File(directory, entryName);
+            if (classFile.isFile()) {
+                try (InputStream inputStream = new FileInputStream(classFile)) {
+                    return readTypeInfo(Streams.slurpBytes(inputStream));
+                } catch (IOException | RuntimeException e) {
+                    log.debug("[TypeHierarchy] Unable to read [" + classFile.getPath() + "]: " + e.getLocalizedMessage());
+                }
+            }
+        }
+
+        final JarFile jarFile = listArchives().get(entryName);
+        if (jarFile != null) {
+            try (InputStream inputStream = jarFile.getInputStream(jarFile.getJarEntry(entryName))) {
+                return readTypeInfo(Streams.slurpBytes(inputStream));
+            } catch (IOException | RuntimeException e) {
+                log.debug("[TypeHierarchy] Unable to read [" + type + "] from [" + jarFile.getName() + "]: " + e.getLocalizedMessage());
+            }
+        }
+
+        return UNRESOLVED;
+    }
+
+    /**
+     * Returns the archive containing each class entry of the source archives. Only the archives'
+     * entry names are read, once, when a type is first looked up in them.
+     */
+    private Map<String, JarFile> listArchives() {
+        if (!archivesListed) {
+            synchronized (sourceArchives) {
+                if (!archivesListed) {
+                    for (File archive : sourceArchives) {
+                        listArchive(archive);
+                    }
+                    archivesListed = true;
+                }
+            }
+        }
+
+        return archiveEntries;
+    }
+
+    private void listArchive(File archive) {
+        try {
+            final JarFile jarFile = new JarFile(archive, false);
+            openArchives.add(jarFile);
+            for (JarEntry jarEntry : Collections.list(jarFile.entries())) {
+                if (!jarEntry.isDirectory() && FileUtils.isClass(jarEntry.getName())) {
+                    archiveEntries.putIfAbsent(jarEntry.getName(), jarFile);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("[TypeHierarchy] Unable to index [" + archive.getPath() + "]: " + e.getLocalizedMessage());
+        }
+    }
+
+    private static TypeInfo readTypeInfo(byte[] bytes) {
+        final ClassReader cr = new ClassReader(bytes);
+        return new TypeInfo(cr.getSuperName(), cr.getInterfaces(), (cr.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+    }
+
+    private TypeInfo readPlatformType(String type) {
+        if (platformClassLoader != null) {
+            try (InputStream inputStream = platformClassLoader.getResourceAsStream(type + ".class")) {
+                if (inputStream != null) {
+                    return readTypeInfo(Streams.slurpBytes(inputStream));
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("[TypeHierarchy] Unable to read [" + type + "]: " + e.getLocalizedMessage());
+            }
+        }
+
+        return UNRESOLVED;
+    }
+
+    private void addDirectory(File directory) throws IOException {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    addDirectory(file);
+                } else if (FileUtils.isClass(file)) {
+                    try (InputStream inputStream = new FileInputStream(file)) {
+                        addClass(Streams.slurpBytes(inputStream));
+                    }
+                }
+            }
+        }
+    }
+
+    private void addArchive(File archive) throws IOException {
+        try (JarFile jarFile = new JarFile(archive, false)) {
+            for (JarEntry jarEntry : Collections.list(jarFile.entries())) {
+                if (!jarEntry.isDirectory() && FileUtils.isClass(jarEntry.getName())) {
+                    try (InputStream inputStream = jarFile.getInputStream(jarEntry)) {
+                        addClass(Streams.slurpBytes(inputStream));
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class UnresolvedTypeException extends RuntimeException {
+        UnresolvedTypeException(String type) {
+            super(type, null, false, false);
+        }
+    }
+}
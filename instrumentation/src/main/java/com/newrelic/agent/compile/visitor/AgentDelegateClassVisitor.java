@@ -97,7 +97,7 @@ public abstract class AgentDelegateClassVisitor extends ClassVisitor {
             return;
         }
 
-        context.markModified();
+        context.markModified(getClass());
 
         // The unimplemented methods remain.  Add them, and be sure to call the super implementation
         // and return the correct result for type
@@ -113,7 +113,7 @@ public class AgentMethodDelegateClassVisitor extends ClassVisitor {
                 log.debug(MessageFormat.format("[{0}] wrapping call to {1} with {2}", context.getClassName().replaceAll("/", "."), method.toString(), wrappingMethod.toString()));
                 super.visitMethodInsn(opcode, owner, name, desc, (opcode == Opcodes.INVOKEINTERFACE));
                 super.visitMethodInsn(Opcodes.INVOKESTATIC, wrappingMethod.getClassName(), wrappingMethod.getMethodName(), wrappingMethod.getMethodDesc(), false);
-                context.markModified();
+                context.markModified(AgentMethodDelegateClassVisitor.class);
                 return true;
             }
 
@@ -264,7 +264,7 @@ public class AgentMethodDelegateClassVisitor extends ClassVisitor {
                     visitLabel(end);
                 }
 
-                context.markModified();
+                context.markModified(AgentMethodDelegateClassVisitor.class);
                 return true;
             }
 
@@ -412,7 +412,7 @@ public class AgentMethodDelegateClassVisitor extends ClassVisitor {
                     visitLabel(end);
                 }
 
-                context.markModified();
+                context.markModified(AgentMethodDelegateClassVisitor.class);
                 return true;
             }
 
@@ -59,7 +59,7 @@ public class AsyncTaskClassVisitor extends ClassVisitor {
 
             instrument = true;
             log.debug("[AsyncTaskClassVisitor] Rewriting [" + context.getClassName() + "]");
-            context.markModified();
+            context.markModified(AsyncTaskClassVisitor.class);
         } else {
             super.visit(version, access, name, signature, superName, interfaces);
         }
@@ -70,7 +70,7 @@ public class NewRelicClassVisitor extends ClassVisitor {
             super.visitInsn(Opcodes.ARETURN);
 
             log.info("[NewRelicMethodVisitor] Setting build identifier to [" + buildId + "]");
-            context.markModified();
+            context.markModified(NewRelicClassVisitor.class);
         }
     }
 
@@ -91,7 +91,7 @@ public class NewRelicClassVisitor extends ClassVisitor {
             super.visitInsn(Opcodes.IRETURN);   // return
 
             log.info("[NewRelicMethodVisitor] Marking NewRelic agent as instrumented");
-            context.markModified();
+            context.markModified(NewRelicClassVisitor.class);
         }
     }
 }
@@ -25,7 +25,7 @@ public class TraceAnnotationClassVisitor extends ClassVisitor {
         MethodVisitor methodVisitor = super.visitMethod(access, name, desc, signature, exceptions);
 
         if (context.isTracedMethod(name, desc) & !context.isSkippedMethod(name, desc)) {
-            context.markModified();
+            context.markModified(TraceAnnotationClassVisitor.class);
             return new TraceMethodVisitor(methodVisitor, access, name, desc, context);
         }
 
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.newrelic.agent.InstrumentationAgent;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class ClassTransformCacheTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    ClassTransformCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new ClassTransformCache(tmpFolder.newFolder("cache"));
+    }
+
+    @Test
+    public void cachesTransformedClass() {
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/synthetic/Cached", 2);
+        ClassTransformer transformer = new ClassTransformer().withCache(cache);
+
+        byte[] transformed = transformer.transformClassBytes("com/example/synthetic/Cached.class", classBytes);
+        Assert.assertNotNull(transformed);
+        Assert.assertEquals(0, cache.getClassHits());
+        Assert.assertEquals(1, cache.getClassMisses());
+
+        // a new transformer (as in a later build) is served from the cache
+        transformer = new ClassTransformer().withCache(cache);
+        Assert.assertArrayEquals(transformed, transformer.transformClassBytes("com/example/synthetic/Cached.class", classBytes));
+        Assert.assertEquals(1, cache.getClassHits());
+    }
+
+    @Test
+    public void cachesUnmodifiedClass() {
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/synthetic/Unmodified", 0);
+
+        Assert.assertNull(cache.get(classBytes));
+        cache.put(classBytes, new ClassData(classBytes, false));
+
+        ClassData classData = cache.get(classBytes);
+        Assert.assertNotNull(classData);
+        Assert.assertFalse(classData.isModified());
+        Assert.assertSame(classBytes, classData.getClassBytes());
+
+        Assert.assertNull(new ClassTransformer().withCache(cache).transformClassBytes("com/example/synthetic/Unmodified.class", classBytes));
+    }
+
+    @Test
+    public void doesNotCacheAgentClasses() {
+        byte[] classBytes = SyntheticClasses.generateClass("com/newrelic/agent/android/crash/Crash", 0);
+
+        Assert.assertFalse(ClassTransformCache.isCacheable(classBytes));
+        cache.put(classBytes, new ClassData(classBytes, true));
+        Assert.assertNull(cache.get(classBytes));
+    }
+
+    @Test
+    public void hierarchyChangeInvalidatesClass() {
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/synthetic/Frames", 1);
+        Map<String, String> superClassLookups = new HashMap<>();
+        superClassLookups.put("com/example/Left;com/example/Right", "com/example/Base");
+
+        cache.put(classBytes, new ClassData(classBytes, true).withSuperClassLookups(superClassLookups));
+
+        ClassData classData = cache.get(classBytes, (type1, type2) -> "com/example/Base");
+        Assert.assertNotNull(classData);
+        Assert.assertArrayEquals(classBytes, classData.getClassBytes());
+        Assert.assertEquals(superClassLookups, classData.getSuperClassLookups());
+
+        // the class path changed, so the cached frames may no longer verify
+        Assert.assertNull(cache.get(classBytes, (type1, type2) -> TypeHierarchy.OBJECT));
+        Assert.assertNull(cache.get(classBytes));
+        Assert.assertEquals(1, cache.getClassHits());
+        Assert.assertEquals(2, cache.getClassMisses());
+    }
+
+    @Test
+    public void doesNotCacheAgentArchives() throws Exception {
+        File archive = new File(tmpFolder.getRoot(), "agent.jar");
+        try (JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(archive))) {
+            jarOutputStream.putNextEntry(new JarEntry("com/newrelic/agent/android/NewRelic.class"));
+            jarOutputStream.write(SyntheticClasses.generateClass("com/newrelic/agent/android/NewRelic", 0));
+            jarOutputStream.closeEntry();
+        }
+
+        cache.putArchive("agent", archive, new HashMap<>());
+        Assert.assertNull(cache.getArchive("agent", null));
+    }
+
+    @Test
+    public void configKeyTracksAgentOptions() {
+        Map<String, String> options = new HashMap<>();
+
+        String defaultKey = ClassTransformCache.configKey(options);
+        Assert.assertEquals(defaultKey, ClassTransformCache.configKey(options));
+
+        options.put("loglevel", "DEBUG");
+        Assert.assertEquals(defaultKey, ClassTransformCache.configKey(options));
+
+        options.put(InstrumentationAgent.LOG_INSTRUMENTATION_ENABLED, "true");
+        Assert.assertNotEquals(defaultKey, ClassTransformCache.configKey(options));
+    }
+
+    @Test
+    public void configChangeInvalidatesCache() throws Exception {
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/synthetic/Config", 1);
+        File cacheRoot = tmpFolder.newFolder("config");
+
+        new ClassTransformCache(cacheRoot, "config1").put(classBytes, new ClassData(classBytes, false));
+        Assert.assertNotNull(new ClassTransformCache(cacheRoot, "config1").get(classBytes));
+        Assert.assertNull(new ClassTransformCache(cacheRoot, "config2").get(classBytes));
+    }
+
+    @Test
+    public void cachesRewrittenArchive() throws Exception {
+        File input = new File(getClass().getResource("/jetified-okhttp-3.10.0.jar").toURI());
+        File output = new File(tmpFolder.getRoot(), "okhttp.transformed.jar");
+
+        ClassTransformer transformer = new ClassTransformer(input, output).withCache(cache);
+        transformer.withWriteMode(ClassTransformer.WriteMode.always);
+        Assert.assertTrue(transformer.transformArchive(input));
+        Assert.assertEquals(1, cache.getArchiveMisses());
+        byte[] transformed = Files.readAllBytes(output.toPath());
+        Assert.assertTrue(output.delete());
+
+        transformer = new ClassTransformer(input, output).withCache(cache);
+        transformer.withWriteMode(ClassTransformer.WriteMode.always);
+        Assert.assertTrue(transformer.transformArchive(input));
+        Assert.assertEquals(1, cache.getArchiveHits());
+        Assert.assertArrayEquals(transformed, Files.readAllBytes(output.toPath()));
+
+        // the write mode is part of the archive key
+        transformer = new ClassTransformer(input, output).withCache(cache);
+        transformer.transformArchive(input);
+        Assert.assertEquals(2, cache.getArchiveMisses());
+    }
+
+    @Test
+    public void logStatisticsResetsCounters() {
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/synthetic/Stats", 0);
+
+        cache.get(classBytes);
+        Assert.assertEquals(1, cache.getClassMisses());
+        cache.logStatistics();
+        Assert.assertEquals(0, cache.getClassMisses());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.newrelic.agent.util.Streams;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class ClassTransformEngineTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void transformIsDeterministic() throws Exception {
+        File input = new File(getClass().getResource("/jetified-okhttp-3.10.0.jar").toURI());
+
+        Map<String, byte[]> serial = transformArchive(input, 1);
+        Map<String, byte[]> concurrent = transformArchive(input, 4);
+
+        Assert.assertFalse(serial.isEmpty());
+        Assert.assertEquals(new ArrayList<>(serial.keySet()), new ArrayList<>(concurrent.keySet()));
+        for (Map.Entry<String, byte[]> entry : serial.entrySet()) {
+            Assert.assertArrayEquals(entry.getKey(), entry.getValue(), concurrent.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void transformPreservesEntryOrder() throws Exception {
+        Map<String, byte[]> classes = SyntheticClasses.generate("com.example.synthetic", 100, 2);
+        List<ClassTransformEngine.Entry> entries = new ArrayList<>();
+
+        entries.add(new ClassTransformEngine.Entry("com/example/synthetic/", false, null));
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            entries.add(new ClassTransformEngine.Entry(entry.getKey(), true, () -> new ByteArrayInputStream(entry.getValue())));
+        }
+
+        try (ClassTransformEngine engine = new ClassTransformEngine(4)) {
+            Map<String, byte[]> output = writeEntries(engine, entries);
+
+            Assert.assertEquals(entries.size(), output.size());
+            List<String> expected = new ArrayList<>();
+            for (ClassTransformEngine.Entry entry : entries) {
+                expected.add(entry.name);
+            }
+            Assert.assertEquals(expected, new ArrayList<>(output.keySet()));
+
+            // the JSON call sites were rewritten
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                Assert.assertFalse(entry.getKey(), Arrays.equals(entry.getValue(), output.get(entry.getKey())));
+            }
+        }
+    }
+
+    @Test
+    public void transformSkipsDuplicateAndUnreadableEntries() throws Exception {
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/synthetic/Duplicate", 1);
+        List<ClassTransformEngine.Entry> entries = new ArrayList<>();
+
+        entries.add(new ClassTransformEngine.Entry("META-INF/", false, null));
+        entries.add(new ClassTransformEngine.Entry("META-INF/", false, null));
+        entries.add(new ClassTransformEngine.Entry("com/example/synthetic/Duplicate.class", false, () -> new ByteArrayInputStream(classBytes)));
+        entries.add(new ClassTransformEngine.Entry("com/example/synthetic/Duplicate.class", false, () -> new ByteArrayInputStream(classBytes)));
+        entries.add(new ClassTransformEngine.Entry("com/example/synthetic/Unreadable.class", true, () -> {
+            throw new IOException("unreadable");
+        }));
+
+        try (ClassTransformEngine engine = new ClassTransformEngine(2)) {
+            Map<String, byte[]> output = writeEntries(engine, entries);
+
+            Assert.assertEquals(2, output.size());
+            Assert.assertTrue(output.containsKey("META-INF/"));
+            Assert.assertArrayEquals(classBytes, output.get("com/example/synthetic/Duplicate.class"));
+        }
+    }
+
+    @Test
+    public void transformArchiveUsesCache() throws Exception {
+        File input = new File(getClass().getResource("/jetified-okhttp-3.10.0.jar").toURI());
+        File cacheRoot = tmpFolder.newFolder("cache");
+
+        Map<String, byte[]> transformed;
+        ClassTransformCache cache = new ClassTransformCache(cacheRoot, "config");
+        try (ClassTransformEngine engine = new ClassTransformEngine(2, cache)) {
+            transformed = transformCachedArchive(engine, input, null);
+            Assert.assertEquals(1, cache.getArchiveMisses());
+        }
+
+        // a later build copies the archive entries from the cache
+        cache = new ClassTransformCache(cacheRoot, "config");
+        try (ClassTransformEngine engine = new ClassTransformEngine(2, cache)) {
+            Map<String, byte[]> cached = transformCachedArchive(engine, input, null);
+            Assert.assertEquals(1, cache.getArchiveHits());
+            Assert.assertEquals(1, engine.getStatistics().getArchiveCacheHits());
+            Assert.assertEquals(0, engine.getStatistics().getArchiveCacheMisses());
+            Assert.assertEquals(1L, ((Map<?, ?>) engine.getStatistics().toReport().get("cache")).get("archiveHits"));
+            Assert.assertEquals(0, cache.getClassHits() + cache.getClassMisses());
+            Assert.assertEquals(new ArrayList<>(transformed.keySet()), new ArrayList<>(cached.keySet()));
+            for (Map.Entry<String, byte[]> entry : transformed.entrySet()) {
+                Assert.assertArrayEquals(entry.getKey(), entry.getValue(), cached.get(entry.getKey()));
+            }
+
+            // excluding an entry from instrumentation changes the archive key
+            transformCachedArchive(engine, input, "okhttp3/OkHttpClient.class");
+            Assert.assertEquals(1, cache.getArchiveMisses());
+            Assert.assertEquals(1, engine.getStatistics().getArchiveCacheMisses());
+        }
+    }
+
+    @Test
+    public void transformReturnsOriginalBytes() {
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/synthetic/Unmodified", 1);
+
+        try (ClassTransformEngine engine = new ClassTransformEngine(1)) {
+            Assert.assertSame(classBytes, engine.transform("com/example/synthetic/Unmodified.class", classBytes, false));
+            Assert.assertNotSame(classBytes, engine.transform("com/example/synthetic/Unmodified.class", classBytes, true));
+        }
+    }
+
+    private Map<String, byte[]> transformArchive(File input, int workers) throws IOException {
+        try (JarFile jar = new JarFile(input); ClassTransformEngine engine = new ClassTransformEngine(workers)) {
+            List<ClassTransformEngine.Entry> entries = new ArrayList<>();
+            for (JarEntry jarEntry : Collections.list(jar.entries())) {
+                entries.add(new ClassTransformEngine.Entry(jarEntry.getName(), true,
+                        jarEntry.isDirectory() ? null : () -> jar.getInputStream(jarEntry)));
+            }
+            return writeEntries(engine, entries);
+        }
+    }
+
+    private Map<String, byte[]> transformCachedArchive(ClassTransformEngine engine, File input, String excluded) throws IOException {
+        try (JarFile jar = new JarFile(input)) {
+            List<ClassTransformEngine.Entry> entries = new ArrayList<>();
+            for (JarEntry jarEntry : Collections.list(jar.entries())) {
+                entries.add(new ClassTransformEngine.Entry(jarEntry.getName(), !jarEntry.getName().equals(excluded),
+                        jarEntry.isDirectory() ? null : () -> jar.getInputStream(jarEntry)));
+            }
+
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            try (JarOutputStream jarOutputStream = new JarOutputStream(byteArrayOutputStream)) {
+                engine.transformArchive(input, entries, jarOutputStream);
+            }
+            return readEntries(byteArrayOutputStream);
+        }
+    }
+
+    private Map<String, byte[]> writeEntries(ClassTransformEngine engine, List<ClassTransformEngine.Entry> entries) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (JarOutputStream jarOutputStream = new JarOutputStream(byteArrayOutputStream)) {
+            engine.transformEntries(entries.iterator(), jarOutputStream);
+        }
+
+        return readEntries(byteArrayOutputStream);
+    }
+
+    private Map<String, byte[]> readEntries(ByteArrayOutputStream byteArrayOutputStream) throws IOException {
+        Map<String, byte[]> output = new LinkedHashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                output.put(zipEntry.getName(), Streams.slurpBytes(zipInputStream));
+            }
+        }
+
+        return output;
+    }
+}
@@ -8,12 +8,15 @@ package com.newrelic.agent.compile;
 import com.newrelic.agent.util.Streams;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
@@ -21,13 +24,21 @@ import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 
 public class ClassTransformerTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Test
     public void isTransformerJarSame() {
         try {
@@ -154,6 +165,86 @@ public class ClassTransformerTest {
         }
     }
 
+    @Test
+    public void shouldStreamRewrittenArchive() throws IOException {
+        byte[] resourceBytes = "stored resource".getBytes();
+        File input = writeJar(tmpFolder.newFile("input.jar"), SyntheticClasses.generate("com.example.streamed", 4, 2), resourceBytes);
+        File output = new File(tmpFolder.newFolder("output"), "input.transformed.jar");
+
+        ClassTransformer transformer = new ClassTransformer(input, output);
+        Assert.assertTrue(transformer.transformArchive(input));
+
+        // only the rewritten archive remains in the output directory
+        Assert.assertArrayEquals(new String[]{output.getName()}, output.getParentFile().list());
+
+        try (JarFile sourceJar = new JarFile(input); JarFile targetJar = new JarFile(output)) {
+            Assert.assertEquals(sourceJar.size(), targetJar.size());
+            Assert.assertTrue(targetJar.getManifest().getMainAttributes().containsKey(new Attributes.Name(ClassTransformer.MANIFEST_TRANSFORMED_BY_KEY)));
+
+            JarEntry resource = targetJar.getJarEntry("stored.txt");
+            Assert.assertEquals(ZipEntry.STORED, resource.getMethod());
+            Assert.assertEquals(sourceJar.getJarEntry("stored.txt").getCrc(), resource.getCrc());
+            try (InputStream inputStream = targetJar.getInputStream(resource)) {
+                Assert.assertArrayEquals(resourceBytes, Streams.slurpBytes(inputStream));
+            }
+
+            JarEntry instrumented = targetJar.getJarEntry("com/example/streamed/Synthetic0.class");
+            Assert.assertNotEquals(sourceJar.getJarEntry(instrumented.getName()).getCrc(), instrumented.getCrc());
+        }
+    }
+
+    @Test
+    public void shouldNotWriteUnmodifiedArchive() throws IOException {
+        File input = writeJar(tmpFolder.newFile("input.jar"), SyntheticClasses.generate("com.example.plain", 2, 0), null);
+        File output = new File(tmpFolder.newFolder("output"), "input.transformed.jar");
+
+        ClassTransformer transformer = new ClassTransformer(input, output);
+        Assert.assertFalse(transformer.transformArchive(input));
+        Assert.assertEquals(0, output.getParentFile().list().length);
+
+        transformer.withWriteMode(ClassTransformer.WriteMode.always);
+        Assert.assertTrue(transformer.transformArchive(input));
+        Assert.assertTrue(output.isFile());
+    }
+
+    @Test
+    public void shouldRefuseToOverwriteArchive() throws IOException {
+        File input = writeJar(tmpFolder.newFile("input.jar"), SyntheticClasses.generate("com.example.streamed", 1, 1), null);
+        long length = input.length();
+
+        ClassTransformer transformer = new ClassTransformer(input, input);
+        Assert.assertFalse(transformer.transformArchive(input));
+        Assert.assertEquals(length, input.length());
+    }
+
+    private static File writeJar(File jar, Map<String, byte[]> classes, byte[] storedResource) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+        try (JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                jarOutputStream.putNextEntry(new JarEntry(entry.getKey()));
+                jarOutputStream.write(entry.getValue());
+                jarOutputStream.closeEntry();
+            }
+
+            if (storedResource != null) {
+                CRC32 crc = new CRC32();
+                crc.update(storedResource);
+
+                JarEntry jarEntry = new JarEntry("stored.txt");
+                jarEntry.setMethod(ZipEntry.STORED);
+                jarEntry.setSize(storedResource.length);
+                jarEntry.setCrc(crc.getValue());
+                jarOutputStream.putNextEntry(jarEntry);
+                jarOutputStream.write(storedResource);
+                jarOutputStream.closeEntry();
+            }
+        }
+
+        return jar;
+    }
+
     /**
      * Compare two JARs for equivalency. Identical jars should:
      * . have same number of entries
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.newrelic.agent.Constants;
+import com.newrelic.agent.InstrumentationAgent;
+import com.newrelic.agent.TestContext;
+import com.newrelic.agent.util.Streams;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+public class ConstantPoolPrefilterTest {
+
+    InvocationDispatcher invocationDispatcher;
+    ConstantPoolPrefilter prefilter;
+
+    @Before
+    public void setUp() throws Exception {
+        ClassRemapperConfig config = new ClassRemapperConfig(InstrumentationAgent.LOGGER, true);
+        invocationDispatcher = new InvocationDispatcher(InstrumentationAgent.LOGGER, true);
+        prefilter = new ConstantPoolPrefilter(config);
+    }
+
+    @Test
+    public void skipsUninstrumentedClass() {
+        Assert.assertFalse(prefilter.mayInstrument(SyntheticClasses.generateClass("com/example/Plain", 0)));
+        Assert.assertFalse(prefilter.mayInstrument(generateClass("com/example/Plain", "java/lang/Object", null, "java/lang/String", "toString")));
+    }
+
+    @Test
+    public void matchesInstrumentedCallSite() {
+        Assert.assertTrue(prefilter.mayInstrument(SyntheticClasses.generateClass("com/example/Json", 1)));
+    }
+
+    @Test
+    public void matchesInstrumentedSuperClass() {
+        Assert.assertTrue(prefilter.mayInstrument(generateClass("com/example/MainActivity", "android/app/Activity", null, null, null)));
+        Assert.assertTrue(prefilter.mayInstrument(generateClass("com/example/MainFragment", "androidx/fragment/app/Fragment", null, null, null)));
+        Assert.assertTrue(prefilter.mayInstrument(generateClass("com/example/Task", "android/os/AsyncTask", null, null, null)));
+    }
+
+    @Test
+    public void matchesNewRelicAnnotations() {
+        Assert.assertTrue(prefilter.mayInstrument(generateClass("com/example/Traced", "java/lang/Object", Constants.TRACE_ANNOTATION_CLASS_NAME, null, null)));
+        Assert.assertTrue(prefilter.mayInstrument(generateClass("com/example/Instrumented", "java/lang/Object", Constants.INSTRUMENTED_CLASS_NAME, null, null)));
+    }
+
+    @Test
+    public void matchesAgentClasses() {
+        Assert.assertTrue(prefilter.mayInstrument(generateClass(Constants.NEWRELIC_CLASS_NAME, "java/lang/Object", null, null, null)));
+    }
+
+    @Test
+    public void passesMalformedClasses() {
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/Plain", 1);
+
+        Assert.assertTrue(prefilter.mayInstrument(new byte[0]));
+        Assert.assertTrue(prefilter.mayInstrument(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}));
+        Assert.assertTrue(prefilter.mayInstrument(Arrays.copyOf(classBytes, classBytes.length / 2)));
+    }
+
+    @Test
+    public void neverSkipsModifiedClasses() throws Exception {
+        File input = new File(getClass().getResource("/jetified-okhttp-3.10.0.jar").toURI());
+        int classes = 0;
+        int skipped = 0;
+
+        invocationDispatcher.setPrefilterEnabled(false);
+
+        try (JarFile jar = new JarFile(input)) {
+            for (JarEntry jarEntry : Collections.list(jar.entries())) {
+                if (!jarEntry.getName().endsWith(".class")) {
+                    continue;
+                }
+
+                byte[] classBytes;
+                try (InputStream inputStream = jar.getInputStream(jarEntry)) {
+                    classBytes = Streams.slurpBytes(inputStream);
+                }
+
+                ClassData classData = invocationDispatcher.visitClassBytes(classBytes);
+                boolean modified = classData != null && classData.isModified();
+
+                classes++;
+                if (!prefilter.mayInstrument(classBytes)) {
+                    skipped++;
+                    Assert.assertFalse(jarEntry.getName(), modified);
+                }
+            }
+        }
+
+        Assert.assertTrue(classes > 0);
+        Assert.assertTrue(skipped > 0);
+    }
+
+    @Test
+    public void visitClassBytesSkipsUnmodifiedClass() throws Exception {
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/Plain", 0);
+
+        ClassData classData = invocationDispatcher.visitClassBytes(classBytes);
+        Assert.assertFalse(classData.isModified());
+        Assert.assertSame(classBytes, classData.getClassBytes());
+
+        classBytes = new TestContext().classBytesFromResource("/MainActivity.class");
+        Assert.assertTrue(prefilter.mayInstrument(classBytes));
+        Assert.assertTrue(invocationDispatcher.visitClassBytes(classBytes).isModified());
+    }
+
+    private static byte[] generateClass(String className, String superName, String annotation, String callOwner, String callName) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, superName, null);
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "run", "()Ljava/lang/String;", null, null);
+        if (annotation != null) {
+            mv.visitAnnotation(annotation, false).visitEnd();
+        }
+        mv.visitCode();
+        if (callOwner != null) {
+            mv.visitLdcInsn("");
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, callOwner, callName, "()Ljava/lang/String;", false);
+        } else {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        }
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        return cw.toByteArray();
+    }
+}
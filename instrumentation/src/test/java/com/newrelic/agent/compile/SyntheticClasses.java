@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates class files with call sites the instrumentation rewrites, so transform tests and
+ * benchmarks don't depend on a prebuilt corpus.
+ */
+public class SyntheticClasses {
+
+    /**
+     * @return Class bytes keyed by class file name (e.g. {@code com/example/Synthetic0.class}), in generation order
+     */
+    public static Map<String, byte[]> generate(String packageName, int classCount, int methodsPerClass) {
+        final Map<String, byte[]> classes = new LinkedHashMap<>();
+        final String packagePath = packageName.replace('.', '/');
+
+        for (int i = 0; i < classCount; i++) {
+            final String className = packagePath + "/Synthetic" + i;
+            classes.put(className + ".class", generateClass(className, methodsPerClass));
+        }
+
+        return classes;
+    }
+
+    public static byte[] generateClass(String className, int methodCount) {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, "java/lang/Object", null);
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (int i = 0; i < methodCount; i++) {
+            // a JSON call site, which is replaced with a call to the agent's JSONObject delegate
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "json" + i, "(Lorg/json/JSONObject;)Ljava/lang/String;", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "org/json/JSONObject", "toString", "()Ljava/lang/String;", false);
+            mv.visitInsn(Opcodes.ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            // a plain method, copied as-is
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "sum" + i, "(II)I", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ILOAD, 1);
+            mv.visitVarInsn(Opcodes.ILOAD, 2);
+            mv.visitInsn(Opcodes.IADD);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(Opcodes.IMUL);
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+
+        return cw.toByteArray();
+    }
+}
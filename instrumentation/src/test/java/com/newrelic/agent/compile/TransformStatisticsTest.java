@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import com.newrelic.agent.InstrumentationAgent;
+import com.newrelic.agent.compile.visitor.AgentMethodDelegateClassVisitor;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+
+public class TransformStatisticsTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    TransformStatistics statistics;
+    InvocationDispatcher invocationDispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        statistics = new TransformStatistics();
+        invocationDispatcher = new InvocationDispatcher(InstrumentationAgent.LOGGER, true);
+        invocationDispatcher.setStatistics(statistics);
+    }
+
+    @Test
+    public void recordsOutcomes() {
+        Assert.assertFalse(invocationDispatcher.visitClassBytes(SyntheticClasses.generateClass("com/example/Plain", 0)).isModified());
+        Assert.assertTrue(invocationDispatcher.visitClassBytes(SyntheticClasses.generateClass("com/example/Json", 2)).isModified());
+        Assert.assertEquals(1, statistics.getOutcome(TransformStatistics.Outcome.prefiltered));
+        Assert.assertEquals(1, statistics.getOutcome(TransformStatistics.Outcome.modified));
+
+        invocationDispatcher.setPrefilterEnabled(false);
+        Assert.assertFalse(invocationDispatcher.visitClassBytes(SyntheticClasses.generateClass("com/example/Plain", 0)).isModified());
+        Assert.assertEquals(1, statistics.getOutcome(TransformStatistics.Outcome.unmodified));
+
+        invocationDispatcher.visitClassBytes(new byte[]{1, 2, 3, 4});
+        Assert.assertEquals(1, statistics.getOutcome(TransformStatistics.Outcome.failed));
+
+        Assert.assertEquals(4, statistics.getClasses());
+    }
+
+    @Test
+    public void recordsModifyingVisitors() {
+        invocationDispatcher.visitClassBytes(SyntheticClasses.generateClass("com/example/Json", 2));
+        invocationDispatcher.visitClassBytes(SyntheticClasses.generateClass("com/example/Plain", 0));
+
+        Assert.assertEquals(1, statistics.getModifiedBy(AgentMethodDelegateClassVisitor.class.getSimpleName()));
+        Assert.assertEquals(0, statistics.getModifiedBy("ActivityClassVisitor"));
+    }
+
+    @Test
+    public void recordsPhases() {
+        invocationDispatcher.visitClassBytes(SyntheticClasses.generateClass("com/example/Json", 2));
+
+        Assert.assertTrue(statistics.getPhaseNanos(TransformStatistics.Phase.prefilter) > 0);
+        Assert.assertTrue(statistics.getPhaseNanos(TransformStatistics.Phase.visit) > 0);
+        Assert.assertTrue(statistics.getPhaseNanos(TransformStatistics.Phase.write) > 0);
+    }
+
+    @Test
+    public void retainsSlowestClasses() {
+        for (int i = 1; i <= TransformStatistics.SLOWEST_CLASSES * 2; i++) {
+            statistics.recordClass("com/example/Class" + i, i);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> slowest = (List<Map<String, Object>>) statistics.toReport().get("slowestClasses");
+
+        Assert.assertEquals(TransformStatistics.SLOWEST_CLASSES, slowest.size());
+        Assert.assertEquals("com/example/Class" + TransformStatistics.SLOWEST_CLASSES * 2, slowest.get(0).get("class"));
+        Assert.assertEquals("com/example/Class" + (TransformStatistics.SLOWEST_CLASSES + 1), slowest.get(slowest.size() - 1).get("class"));
+    }
+
+    @Test
+    public void recordsCacheHits() throws Exception {
+        ClassTransformCache cache = new ClassTransformCache(tmpFolder.newFolder("cache"), "config");
+        ClassTransformer transformer = new ClassTransformer().withCache(cache).withStatistics(statistics);
+        byte[] classBytes = SyntheticClasses.generateClass("com/example/Json", 1);
+
+        transformer.transformClassBytes("com/example/Json.class", classBytes);
+        transformer.transformClassBytes("com/example/Json.class", classBytes);
+
+        Assert.assertEquals(1, statistics.getCacheMisses());
+        Assert.assertEquals(1, statistics.getCacheHits());
+    }
+
+    @Test
+    public void recordsArchives() throws Exception {
+        List<ClassTransformEngine.Entry> entries = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : SyntheticClasses.generate("com.example.synthetic", 10, 1).entrySet()) {
+            entries.add(new ClassTransformEngine.Entry(entry.getKey(), true, () -> new ByteArrayInputStream(entry.getValue())));
+        }
+
+        try (ClassTransformEngine engine = new ClassTransformEngine(2, null, null, statistics);
+             JarOutputStream jarOutputStream = new JarOutputStream(new ByteArrayOutputStream())) {
+            engine.transformEntries("synthetic.jar", entries.iterator(), jarOutputStream);
+        }
+
+        Map<String, Object> report = statistics.toReport();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> archives = (List<Map<String, Object>>) report.get("archives");
+
+        Assert.assertEquals(TransformStatistics.REPORT_VERSION, report.get("reportVersion"));
+        Assert.assertEquals(1, archives.size());
+        Assert.assertEquals("synthetic.jar", archives.get(0).get("name"));
+        Assert.assertEquals(10, archives.get(0).get("entries"));
+        Assert.assertEquals(10L, archives.get(0).get("modified"));
+        Assert.assertEquals(10L, ((Map<?, ?>) report.get("classes")).get("modified"));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2024 - present. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.compile;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.nio.file.Files;
+
+public class TypeHierarchyTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    TypeHierarchy typeHierarchy;
+
+    @Before
+    public void setUp() {
+        typeHierarchy = new TypeHierarchy();
+        typeHierarchy.addClass(generateClass("com/example/Animal", "java/lang/Object", false));
+        typeHierarchy.addClass(generateClass("com/example/Dog", "com/example/Animal", false, "com/example/Pet"));
+        typeHierarchy.addClass(generateClass("com/example/Cat", "com/example/Animal", false, "com/example/Pet"));
+        typeHierarchy.addClass(generateClass("com/example/Puppy", "com/example/Dog", false));
+        typeHierarchy.addClass(generateClass("com/example/Pet", "java/lang/Object", true));
+        typeHierarchy.addClass(generateClass("com/example/Orphan", "com/example/Missing", false));
+    }
+
+    @Test
+    public void getCommonSuperClass() {
+        Assert.assertEquals("com/example/Animal", typeHierarchy.getCommonSuperClass("com/example/Dog", "com/example/Cat"));
+        Assert.assertEquals("com/example/Animal", typeHierarchy.getCommonSuperClass("com/example/Puppy", "com/example/Cat"));
+        Assert.assertEquals("com/example/Dog", typeHierarchy.getCommonSuperClass("com/example/Puppy", "com/example/Dog"));
+        Assert.assertEquals("com/example/Dog", typeHierarchy.getCommonSuperClass("com/example/Dog", "com/example/Puppy"));
+        Assert.assertEquals("java/lang/Object", typeHierarchy.getCommonSuperClass("com/example/Dog", "java/lang/String"));
+    }
+
+    @Test
+    public void getCommonSuperClassOfInterfaces() {
+        Assert.assertEquals("com/example/Pet", typeHierarchy.getCommonSuperClass("com/example/Pet", "com/example/Puppy"));
+        Assert.assertEquals("java/lang/Object", typeHierarchy.getCommonSuperClass("com/example/Pet", "com/example/Animal"));
+    }
+
+    @Test
+    public void resolvesPlatformTypes() {
+        Assert.assertEquals("java/lang/Number", typeHierarchy.getCommonSuperClass("java/lang/Integer", "java/lang/Long"));
+        Assert.assertEquals("java/lang/Exception", typeHierarchy.getCommonSuperClass("java/io/IOException", "java/lang/RuntimeException"));
+        Assert.assertEquals("java/lang/CharSequence", typeHierarchy.getCommonSuperClass("java/lang/CharSequence", "java/lang/String"));
+    }
+
+    @Test
+    public void unresolvedTypes() {
+        Assert.assertNull(typeHierarchy.getCommonSuperClass("com/example/Dog", "com/example/Unknown"));
+        Assert.assertNull(typeHierarchy.getCommonSuperClass("com/example/Orphan", "com/example/Dog"));
+        Assert.assertNull(new TypeHierarchy(null).getCommonSuperClass("java/lang/Integer", "java/lang/Long"));
+    }
+
+    @Test
+    public void indexArchive() throws Exception {
+        TypeHierarchy okhttp = new TypeHierarchy(null);
+
+        okhttp.add(new File(getClass().getResource("/jetified-okhttp-3.10.0.jar").toURI()));
+        Assert.assertTrue(okhttp.size() > 0);
+        Assert.assertNotNull(okhttp.resolve("okhttp3/OkHttpClient").superName);
+    }
+
+    @Test
+    public void readsSourcesOnDemand() throws Exception {
+        File classes = tmpFolder.newFolder("classes");
+        File dogClass = new File(classes, "com/example/Dog.class");
+        dogClass.getParentFile().mkdirs();
+        Files.write(dogClass.toPath(), generateClass("com/example/Dog", "okhttp3/OkHttpClient", false));
+
+        try (TypeHierarchy sources = new TypeHierarchy(null)) {
+            sources.addSource(classes);
+            sources.addSource(new File(getClass().getResource("/jetified-okhttp-3.10.0.jar").toURI()));
+            Assert.assertEquals(0, sources.size());
+
+            Assert.assertEquals("okhttp3/OkHttpClient", sources.getCommonSuperClass("okhttp3/OkHttpClient", "com/example/Dog"));
+            Assert.assertEquals("Only the types resolved are read", 2, sources.size());
+            Assert.assertNull(sources.getCommonSuperClass("com/example/Dog", "com/example/Unknown"));
+        }
+    }
+
+    @Test
+    public void classWriterUsesTypeHierarchy() {
+        ClassReader cr = new ClassReader(generateClass("com/example/Dog", "com/example/Animal", false));
+
+        Assert.assertEquals("com/example/Animal", new TestClassWriter(cr, typeHierarchy).commonSuperClass("com/example/Dog", "com/example/Cat"));
+        Assert.assertEquals("java/lang/Object", new TestClassWriter(cr, null).commonSuperClass("com/example/Dog", "com/example/Cat"));
+    }
+
+    static class TestClassWriter extends ClassWriterSafe {
+        TestClassWriter(ClassReader cr, TypeHierarchy typeHierarchy) {
+            super(cr, ClassWriter.COMPUTE_FRAMES, typeHierarchy);
+        }
+
+        String commonSuperClass(String type1, String type2) {
+            return getCommonSuperClass(type1, type2);
+        }
+    }
+
+    private static byte[] generateClass(String className, String superName, boolean isInterface, String... interfaces) {
+        ClassWriter cw = new ClassWriter(0);
+        int access = Opcodes.ACC_PUBLIC | (isInterface ? Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT : Opcodes.ACC_SUPER);
+
+        cw.visit(Opcodes.V1_8, access, className, null, superName, interfaces);
+        cw.visitEnd();
+
+        return cw.toByteArray();
+    }
+}
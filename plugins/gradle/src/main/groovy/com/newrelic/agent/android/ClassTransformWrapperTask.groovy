@@ -5,9 +5,14 @@
 
 package com.newrelic.agent.android
 
+import com.newrelic.agent.compile.ClassTransformCache
+import com.newrelic.agent.compile.ClassTransformEngine
 import com.newrelic.agent.compile.ClassTransformer
+import com.newrelic.agent.compile.TransformStatistics
+import com.newrelic.agent.compile.TypeHierarchy
 import com.newrelic.agent.util.FileUtils
 import groovy.io.FileType
+import groovy.json.JsonOutput
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.Directory
 import org.gradle.api.file.DirectoryProperty
@@ -24,12 +29,17 @@ import java.util.zip.ZipFile
 
 abstract class ClassTransformWrapperTask extends DefaultTask {
     final static String NAME = "newrelicTransformClassesFor"
+    final static String CACHE_DIR = "caches/newrelic/instrumentation"
+    final static String REPORT_DIR = "reports/newrelic/instrumentation"
 
     @Internal
     NewRelicExtension ext
 
     ClassTransformWrapperTask() {
         this.ext = NewRelicExtension.register(project)
+        this.maxWorkers = project.gradle.startParameter.maxWorkerCount
+        this.cacheDir = new File(project.gradle.gradleUserHomeDir, CACHE_DIR)
+        this.reportFile = project.layout.buildDirectory.file("${REPORT_DIR}/${getName()}.json").get().asFile
     }
 
     @InputFiles
@@ -38,6 +48,10 @@ abstract class ClassTransformWrapperTask extends DefaultTask {
     @InputFiles
     abstract ListProperty<RegularFile> getClassJars();
 
+    @Classpath
+    @Optional
+    abstract ListProperty<RegularFile> getBootClasspath();
+
     @OutputDirectory
     @Optional
     abstract DirectoryProperty getOutputDirectory();
@@ -45,121 +59,148 @@ abstract class ClassTransformWrapperTask extends DefaultTask {
     @OutputFile
     abstract RegularFileProperty getOutputJar();
 
+    @Internal
+    int maxWorkers = ClassTransformEngine.DEFAULT_PARALLELISM
+
+    // instrumented classes are shared across builds and projects, keyed by content
+    @Internal
+    File cacheDir
+
+    // transform statistics, tracked across agent upgrades
+    @Internal
+    File reportFile
+
     @TaskAction
     void transformClasses() {
         long tStart = System.currentTimeMillis()
-        def transformer = new ClassTransformer()
         File outputJarFile = outputJar.asFile.get()
 
         logger.debug("[ClassTransform] Task[${getName()}] starting: Output JAR[${outputJarFile.getAbsolutePath()}]")
         outputJarFile.parentFile.mkdirs()
 
-        try (def outputFileStream = new FileOutputStream(outputJarFile)
-             def bufferedOutputStream = new BufferedOutputStream(outputFileStream)) {
+        ClassTransformCache cache = ext.instrumentationCacheEnabled.get() ? new ClassTransformCache(cacheDir) : null
 
-            new JarOutputStream(bufferedOutputStream).withCloseable { jarOutputStream ->
+        TypeHierarchy typeHierarchy = buildTypeHierarchy()
+        TransformStatistics statistics = new TransformStatistics()
 
-                classDirectories.get().forEach { directory ->
-                    directory.asFile.traverse(type: FileType.DIRECTORIES) { classFileDir ->
-                        String relativePath = directory.asFile.toURI().relativize(classFileDir.toURI()).getPath()
-                        String normalizedPath = relativePath?.replace(File.separatorChar, '/' as char)
+        typeHierarchy.withCloseable {
+            transformInputs(outputJarFile, cache, typeHierarchy, statistics)
+        }
 
-                        if (ext.shouldExcludePackageInstrumentation(normalizedPath)) {
-                            logger.debug("[ClassTransform] Excluding package [${relativePath}] from instrumentation")
-                        }
-                    }
+        writeReport(statistics, [
+                task         : getName(),
+                workers      : maxWorkers,
+                cacheEnabled : cache != null,
+                typeHierarchy: [types: typeHierarchy.size()],
+                totalMillis  : System.currentTimeMillis() - tStart,
+        ])
+    }
 
-                    directory.asFile.traverse(type: FileType.FILES) { classFile ->
-                        String relativePath = directory.asFile.toURI().relativize(classFile.toURI()).getPath()
-                        String normalizedPath = relativePath?.replace(File.separatorChar, '/' as char)
-
-                        try {
-                            new FileInputStream(classFile).withCloseable { fileInputStream ->
-                                def jarEntry = new JarEntry(normalizedPath)
-                                try {
-                                    jarOutputStream.putNextEntry(jarEntry)
-                                    try {
-                                        transformer.asMutableTransform(shouldInstrumentClassFile(jarEntry.name))
-                                        transformer.transformClassByteStream(classFile.path, fileInputStream).withCloseable {
-                                            jarOutputStream << it
-                                        }
-                                    } catch (RuntimeException | IOException re) {
-                                        logger.error("[ClassTransform] Instrumentation is disabled for [${classFile.name}] with exception: " + re.gcalizedMessage())
-                                        try (StringWriter sw = new StringWriter(); PrintWriter pw = new PrintWriter(sw)) {
-                                            re.printStackTrace(pw)
-                                            logger.debug("[ClassTransform] Instrumentation is disabled for [${classFile.name}]: " + sw.toString())
-                                        }
-                                        jarOutputStream << fileInputStream
-                                    }
-                                    jarOutputStream.closeEntry()
-                                } catch (IOException ioE) {
-                                    // ignore the duplicate file structure entry
-                                    if (!(jarEntry.directory || jarEntry.name.startsWith("META-INF/"))) {
-                                        throw ioE
-                                    }
-                                }
+    void transformInputs(File outputJarFile, ClassTransformCache cache, TypeHierarchy typeHierarchy, TransformStatistics statistics) {
+        long tStart = System.currentTimeMillis()
+
+        new ClassTransformEngine(maxWorkers, cache, typeHierarchy, statistics).withCloseable { engine ->
+            logger.debug("[ClassTransform] Transforming classes with [${engine.parallelism}] workers")
+            if (cache != null) {
+                logger.debug("[ClassTransform] Using instrumentation cache [${cache.cacheDir.absolutePath}]")
+            }
+
+            try (def outputFileStream = new FileOutputStream(outputJarFile)
+                 def bufferedOutputStream = new BufferedOutputStream(outputFileStream)) {
+
+                new JarOutputStream(bufferedOutputStream).withCloseable { jarOutputStream ->
+
+                    // entries are transformed concurrently, but written in the order collected here
+                    def directoryEntries = []
+
+                    classDirectories.get().forEach { directory ->
+                        directory.asFile.traverse(type: FileType.DIRECTORIES, sort: { a, b -> a.name <=> b.name }) { classFileDir ->
+                            String relativePath = directory.asFile.toURI().relativize(classFileDir.toURI()).getPath()
+                            String normalizedPath = relativePath?.replace(File.separatorChar, '/' as char)
+
+                            if (ext.shouldExcludePackageInstrumentation(normalizedPath)) {
+                                logger.debug("[ClassTransform] Excluding package [${relativePath}] from instrumentation")
                             }
-                        } catch (IOException fileException) {
-                            logger.error("[ClassTransform] [${classFile.path}] ${fileException.message}")
+                        }
+
+                        directory.asFile.traverse(type: FileType.FILES, sort: { a, b -> a.name <=> b.name }) { classFile ->
+                            String relativePath = directory.asFile.toURI().relativize(classFile.toURI()).getPath()
+                            String normalizedPath = relativePath?.replace(File.separatorChar, '/' as char)
+
+                            directoryEntries << new ClassTransformEngine.Entry(normalizedPath,
+                                    shouldInstrumentClassFile(normalizedPath),
+                                    { -> new FileInputStream(classFile) } as ClassTransformEngine.EntrySource)
                         }
                     }
-                }
 
-                classJars.get().forEach { classJar ->
-                    try (JarFile jar = new JarFile(classJar.asFile, false, ZipFile.OPEN_READ)) {
-                        boolean instrumentable = shouldInstrumentArtifact(transformer, jar)
-
-                        try {
-                            for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements();) {
-                                try {
-                                    JarEntry jarEntry = e.nextElement()
-                                    try {
-                                        jarOutputStream.putNextEntry(new JarEntry(jarEntry.name))
-
-                                        if (jarEntry.directory) {
-                                            if (ext.shouldExcludePackageInstrumentation(jarEntry.name)) {
-                                                logger.info("[ClassTransform] Excluding package [${jarEntry.name}] from instrumentation")
-                                            }
-                                        }
+                    engine.transformEntries("classDirectories", directoryEntries.iterator(), jarOutputStream)
 
-                                        jar.getInputStream(jarEntry).withCloseable { jarEntryInputStream ->
-                                            try {
-                                                transformer.asMutableTransform(shouldInstrumentClassFile(jarEntry.name))
-                                                transformer.transformClassByteStream(jarEntry.name, jarEntryInputStream).withCloseable {
-                                                    jarOutputStream << it
-                                                }
-                                            } catch (RuntimeException | IOException re) {
-                                                logger.warn("[ClassTransform] Instrumentation is disabled for [${jarEntry.name}] with exception: " + re.getLocalizedMessage())
-                                                try (StringWriter sw = new StringWriter(); PrintWriter pw = new PrintWriter(sw)) {
-                                                    re.printStackTrace(pw)
-                                                    logger.debug("[ClassTransform] Instrumentation is disabled for [${classFile.name}]: " + sw.toString())
-                                                }
-                                                jarOutputStream << jarEntryInputStream
-                                            }
-                                        }
-                                        jarOutputStream.closeEntry()
-                                    } catch (IOException ioE) {
-                                        // ignore the duplicate file structure entry
-                                        if (!(jarEntry.directory || jarEntry.name.startsWith("META-INF/"))) {
-                                            throw ioE
+                    def manifestVerifier = new ClassTransformer()
+
+                    classJars.get().forEach { classJar ->
+                        try (JarFile jar = new JarFile(classJar.asFile, false, ZipFile.OPEN_READ)) {
+                            boolean instrumentable = shouldInstrumentArtifact(manifestVerifier, jar)
+
+                            try {
+                                def jarEntries = Collections.list(jar.entries()).collect { JarEntry jarEntry ->
+                                    if (jarEntry.directory) {
+                                        if (ext.shouldExcludePackageInstrumentation(jarEntry.name)) {
+                                            logger.info("[ClassTransform] Excluding package [${jarEntry.name}] from instrumentation")
                                         }
+                                        return new ClassTransformEngine.Entry(jarEntry.name, false, null)
                                     }
-                                } catch (IOException jarEntryException) {
-                                    logger.error("[ClassTransform] [${classJar.asFile.path}] ${jarEntryException.message}")
+
+                                    new ClassTransformEngine.Entry(jarEntry.name,
+                                            instrumentable && shouldInstrumentClassFile(jarEntry.name),
+                                            { -> jar.getInputStream(jarEntry) } as ClassTransformEngine.EntrySource)
                                 }
-                            }
 
-                        } catch (IOException jarException) {
-                            logger.error(("[ClassTransform] [${classJar.asFile.path}] ${jarException.message}"))
+                                // unchanged jars are copied from the cache, without reading their classes
+                                engine.transformArchive(classJar.asFile, jarEntries, jarOutputStream)
+
+                            } catch (IOException jarException) {
+                                logger.error(("[ClassTransform] [${classJar.asFile.path}] ${jarException.message}"))
+                            }
                         }
                     }
-                }
 
-                logger.info("[ClassTransform] Finished in " + Double.valueOf((double) (
-                        System.currentTimeMillis() - tStart) / 1000f).toString() + " sec.")
+                    logger.info("[ClassTransform] Finished in " + Double.valueOf((double) (
+                            System.currentTimeMillis() - tStart) / 1000f).toString() + " sec.")
+                }
             }
         }
+    }
+
+    /**
+     * Write the transform statistics as JSON to the report file
+     */
+    void writeReport(TransformStatistics statistics, Map<String, Object> buildValues) {
+        logger.info("[ClassTransform] ${statistics.summary()}")
+
+        try {
+            def report = [:] << buildValues << statistics.toReport()
+
+            reportFile.parentFile.mkdirs()
+            reportFile.text = JsonOutput.prettyPrint(JsonOutput.toJson(report))
+            logger.debug("[ClassTransform] Transform report written to [${reportFile.absolutePath}]")
+
+        } catch (Exception e) {
+            logger.warn("[ClassTransform] Unable to write transform report: ${e.message}")
+        }
+    }
+
+    /**
+     * Index the super types of the input classes, so frames are computed without loading classes.
+     * The inputs are read on demand, so jars copied from the archive cache are not read at all.
+     */
+    TypeHierarchy buildTypeHierarchy() {
+        TypeHierarchy typeHierarchy = new TypeHierarchy()
+
+        typeHierarchy.addSources(classDirectories.get().collect { it.asFile })
+        typeHierarchy.addSources(classJars.get().collect { it.asFile })
+        typeHierarchy.addSources(bootClasspath.getOrElse([]).collect { it.asFile })
 
+        return typeHierarchy
     }
 
     boolean shouldInstrumentClassFile(String classFile) {
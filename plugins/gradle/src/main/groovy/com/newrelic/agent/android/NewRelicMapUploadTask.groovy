@@ -9,6 +9,7 @@ import com.google.common.io.BaseEncoding
 import com.newrelic.agent.InstrumentationAgent
 import com.newrelic.agent.android.obfuscation.Proguard
 import com.newrelic.agent.util.BuildId
+import org.apache.commons.io.input.ReversedLinesFileReader
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.ConfigurableFileCollection
 import org.gradle.api.file.DirectoryProperty
@@ -22,6 +23,11 @@ import org.gradle.api.tasks.TaskAction
 
 abstract class NewRelicMapUploadTask extends DefaultTask {
     final static String NAME = "newrelicMapUpload"
+    final static String UPLOAD_STATE_FILE = "caches/newrelic/mapping-uploads.txt"
+
+    NewRelicMapUploadTask() {
+        this.uploadStateFile = new File(project.gradle.gradleUserHomeDir, UPLOAD_STATE_FILE)
+    }
 
     @InputFile
     abstract RegularFileProperty getMappingFile()
@@ -41,6 +47,10 @@ abstract class NewRelicMapUploadTask extends DefaultTask {
     @Internal
     abstract Property<ConfigurableFileCollection> getTaggedMappingFiles()
 
+    // maps already uploaded are shared across builds and projects, keyed by content and build ID
+    @Internal
+    File uploadStateFile
+
     @TaskAction
     def newRelicMapUploadTask() {
         try {
@@ -79,12 +89,13 @@ abstract class NewRelicMapUploadTask extends DefaultTask {
                     agentOptions.put(Proguard.MAPPING_PROVIDER_KEY, mapProvider.get())
                     agentOptions.put(Proguard.VARIANT_KEY, variantName.get())
                     agentOptions.put(BuildId.BUILD_ID_KEY, buildId.get())
+                    agentOptions.put(Proguard.UPLOAD_STATE_KEY, uploadStateFile.absolutePath)
 
-                    // tag the map now to avoid Gradle race conditions
+                    // tag the map now to avoid Gradle race conditions. Only the tail of the map
+                    // is read, since maps of large apps can run to hundreds of megabytes.
                     mapFilePath.with {
-                        if (!text.contains(Proguard.NR_MAP_PREFIX)) {
-                            text = text + BuildHelper.NEWLN +
-                                    Proguard.NR_MAP_PREFIX + buildId.get() + BuildHelper.NEWLN
+                        if (!isTagged(it)) {
+                            append(BuildHelper.NEWLN + Proguard.NR_MAP_PREFIX + buildId.get() + BuildHelper.NEWLN)
                             logger.info("Tagging map [" + it.getAbsolutePath() + "] with buildID [" + buildId.get() + "]");
                         }
                     }
@@ -103,6 +114,21 @@ abstract class NewRelicMapUploadTask extends DefaultTask {
         }
     }
 
+    static boolean isTagged(File mapFile) {
+        new ReversedLinesFileReader(mapFile).withCloseable { reader ->
+            String line
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(Proguard.NR_MAP_PREFIX)) {
+                    return true
+                }
+                if (!line.trim().isEmpty()) {
+                    return false
+                }
+            }
+            return false
+        }
+    }
+
     @Internal
     @Override
     Logger getLogger() {
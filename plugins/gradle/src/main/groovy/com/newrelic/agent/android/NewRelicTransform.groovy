@@ -8,6 +8,7 @@ package com.newrelic.agent.android
 import com.android.build.api.transform.*
 import com.android.build.api.variant.VariantInfo
 import com.google.common.collect.ImmutableSet
+import com.newrelic.agent.compile.ClassTransformCache
 import com.newrelic.agent.compile.ClassTransformer
 import com.newrelic.agent.util.BuildId
 import org.gradle.api.Project
@@ -26,6 +27,7 @@ class NewRelicTransform extends Transform {
     private final NewRelicExtension pluginExtension
     private final ObjectFactory objectFactory
     private final ProviderFactory providers
+    private final File cacheDir
 
     private String variantName = BuildId.DEFAULT_VARIANT
     private boolean identityTransform = false
@@ -35,6 +37,7 @@ class NewRelicTransform extends Transform {
         this.pluginExtension = pluginExtension
         this.objectFactory = project.objects
         this.providers = project.providers
+        this.cacheDir = new File(project.gradle.gradleUserHomeDir, ClassTransformWrapperTask.CACHE_DIR)
         this.contentTypes = ImmutableSet.of(
                 QualifiedContent.DefaultContentType.CLASSES as QualifiedContent.ContentType).toSet()
 
@@ -132,6 +135,7 @@ class NewRelicTransform extends Transform {
             logger.debug("[$NAME] Calling class rewriter: ")
 
             ClassTransformer classTransformer
+            ClassTransformCache cache = pluginExtension.instrumentationCacheEnabled.get() ? new ClassTransformCache(cacheDir) : null
 
             inputs.each { input ->
                 input.directoryInputs.each { dirInp ->
@@ -144,6 +148,7 @@ class NewRelicTransform extends Transform {
                     logger.debug("[$NAME] Transform directory[${dirInp.file.getAbsolutePath()}] Output[${contentLocation.getAbsolutePath()}]")
 
                     new ClassTransformer(dirInp.file, contentLocation)
+                            .withCache(cache)
                             .withWriteMode(ClassTransformer.WriteMode.always)
                             .asIdentityTransform(identityTransform)
                             .usingVariant(variantName)
@@ -161,6 +166,7 @@ class NewRelicTransform extends Transform {
 
                     try (JarFile jar = new JarFile(jarInp.file)) {
                         new ClassTransformer(jar, contentLocation)
+                                .withCache(cache)
                                 .withWriteMode(ClassTransformer.WriteMode.always)
                                 .asIdentityTransform(identityTransform)
                                 .usingVariant(variantName)
@@ -169,6 +175,8 @@ class NewRelicTransform extends Transform {
                 }
             }
 
+            cache?.logStatistics()
+
         } catch (final IOException exception) {
             logger.error("[$NAME] failed ", exception)
             throw exception
@@ -71,7 +71,10 @@ class AGP70Adapter extends VariantAdapter {
         } catch (Exception ignored) {
         }
 
-        return registerOrNamed("${ClassTransformWrapperTask.NAME}${variantName.capitalize()}", ClassTransformWrapperTask.class)
+        return registerOrNamed("${ClassTransformWrapperTask.NAME}${variantName.capitalize()}", ClassTransformWrapperTask.class) { transformTask ->
+            // android.jar stubs complete the type hierarchy used to compute frames
+            transformTask.bootClasspath.set(androidComponents.sdkComponents.bootClasspath)
+        }
     }
 
     @Override
@@ -6,7 +6,10 @@
 package com.newrelic.agent.android.obfuscation;
 
 import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
+import com.google.common.io.CountingOutputStream;
 import com.newrelic.agent.InstrumentationAgent;
 import com.newrelic.agent.util.BuildId;
 import com.newrelic.agent.util.Streams;
@@ -18,17 +21,18 @@ import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.commons.io.input.ReversedLinesFileReader;
 import org.slf4j.Logger;
 
-import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.net.HttpURLConnection;
@@ -36,6 +40,7 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -57,6 +62,7 @@ public class Proguard {
     public static final String VARIANT_KEY = "com.newrelic.mapping.variant";
     public static final String LOGLEVEL_KEY = "com.newrelic.loglevel";
     public static final String PROJECT_ROOT_KEY = "com.newrelic.projectroot";
+    public static final String UPLOAD_STATE_KEY = "com.newrelic.mapping.uploads";
 
     static final String PROP_NR_APP_TOKEN = "com.newrelic.application_token";
     static final String PROP_UPLOADING_ENABLED = "com.newrelic.enable_proguard_upload";
@@ -132,6 +138,10 @@ public class Proguard {
     private String buildId = BuildId.getBuildId(BuildId.DEFAULT_VARIANT);
     private Properties newRelicProps;
 
+    // size and duration of the last upload, or -1 if skipped
+    long uploadBytes = -1;
+    long uploadMillis = -1;
+
     public Proguard(final Logger log, final Map<String, String> agentOptions) {
         this.log = log;
         Proguard.agentOptions = agentOptions;
@@ -275,39 +285,42 @@ public class Proguard {
         return true;
     }
 
+    /**
+     * Upload a map, streaming it into the request body. Compressed maps are zipped on the fly,
+     * so neither the map nor its archive is held in memory or written to disk.
+     * <p>
+     * Maps whose content, build ID and destination match a previous successful upload
+     * (recorded in the file named by {@link #UPLOAD_STATE_KEY}) are not sent again.
+     */
     protected void sendMapping(File mapFile) throws IOException {
+        uploadBytes = -1;
+        uploadMillis = -1;
+
         if (mapFile.length() <= 0) {
             log.error("Tried to send a zero-length map file!");
             return;
         }
 
+        final String uploadKey = getUploadKey(mapFile);
+        if (isUploaded(uploadKey)) {
+            log.info("Map [" + mapFile.getAbsolutePath() + "] tagged with build ID [" + buildId + "] has already been uploaded.");
+            return;
+        }
+
+        final long tStart = System.currentTimeMillis();
         HttpURLConnection connection = getHttpURLConnection();
 
         try {
-            if (compressedUploads) {
-                // used if compressedUploads is true
-                final File zipFile = new File(mapFile.getAbsolutePath() + ".zip");
-
-                try (final FileInputStream fis = new FileInputStream(mapFile);
-                     final FileOutputStream fos = new FileOutputStream(zipFile);
-                     final ZipOutputStream zos = new ZipOutputStream(fos)) {
-                    ZipEntry zipEntry = new ZipEntry(mapFile.getName());
-
-                    zos.putNextEntry(zipEntry);
-                    Streams.copy(fis, zos, USEFUL_BUFFER_SIZE);
-                    zos.finish();
+            // the body length is not known until it has been written
+            connection.setChunkedStreamingMode(USEFUL_BUFFER_SIZE);
 
-                    connection.setRequestProperty(Network.ContentType.HEADER, Network.ContentType.MULTIPART_FORM_DATA
-                            + "; boundary=" + MultipartFormWriter.boundary);
-                    connection.setRequestProperty(Network.CONTENT_LENGTH_HEADER, String.valueOf(zipFile.length()));
-
-                    mapFile = zipFile;  // the input is now the *zipped* map
-                }
+            if (compressedUploads) {
+                connection.setRequestProperty(Network.ContentType.HEADER, Network.ContentType.MULTIPART_FORM_DATA
+                        + "; boundary=" + MultipartFormWriter.boundary);
             } else {
                 connection.setRequestProperty(Network.ContentType.HEADER, Network.ContentType.URL_ENCODED);
             }
 
-            final OutputStream outputStrm = connection.getOutputStream();
             String providerHeader = null;
 
             // insert encoding compiler at head of file (like R8 does)
@@ -322,12 +335,13 @@ public class Proguard {
 
             // the request body:
             try (final FileInputStream fis = new FileInputStream(mapFile);
-                 final DataOutputStream dos = new DataOutputStream(outputStrm)) {
+                 final CountingOutputStream cos = new CountingOutputStream(new BufferedOutputStream(connection.getOutputStream(), USEFUL_BUFFER_SIZE));
+                 final DataOutputStream dos = new DataOutputStream(cos)) {
 
                 if (compressedUploads) {
                     // multipart form-data
                     MultipartFormWriter formWriter = new MultipartFormWriter(dos, USEFUL_BUFFER_SIZE);
-                    formWriter.writeFilePart("zip", mapFile, fis);
+                    formWriter.writeZipFilePart("zip", mapFile, fis);
                     formWriter.finish();
 
                 } else {
@@ -342,38 +356,41 @@ public class Proguard {
                         dos.writeBytes(providerHeader);
                     }
 
-                    try (final BufferedInputStream bis = new BufferedInputStream(fis)) {
-                        final byte[] cbuf = new byte[USEFUL_BUFFER_SIZE];
-                        while (bis.read(cbuf, 0, USEFUL_BUFFER_SIZE) != -1) {
-                            if (cbuf.length > 0) {
-                                dos.writeBytes(URLEncoder.encode(new String(cbuf), StandardCharsets.UTF_8));
-                            }
+                    try (final Reader reader = new InputStreamReader(fis, StandardCharsets.UTF_8)) {
+                        final char[] cbuf = new char[USEFUL_BUFFER_SIZE];
+                        int n;
+                        while ((n = reader.read(cbuf, 0, cbuf.length)) != -1) {
+                            dos.writeBytes(URLEncoder.encode(new String(cbuf, 0, n), StandardCharsets.UTF_8));
                         }
                     }
                 }
 
                 dos.writeBytes("&buildId=" + buildId);
                 dos.flush();
-                log.debug("sendMapping writing [" + dos.size() + "] bytes" + (compressedUploads ? " (compressed)" : ""));
-
-            } finally {
-                outputStrm.close();
+                uploadBytes = cos.getCount();
+                log.debug("sendMapping writing [" + uploadBytes + "] bytes" + (compressedUploads ? " (compressed)" : ""));
             }
 
             final int responseCode = connection.getResponseCode();
             log.debug("Mapping.txt upload returns [" + responseCode + "]");
 
+            uploadMillis = System.currentTimeMillis() - tStart;
+            log.info("Mapping.txt upload of [" + uploadBytes + "] bytes (map [" + mapFile.length() + "] bytes) took [" + uploadMillis + "] ms");
+
             switch (responseCode) {
                 case HttpURLConnection.HTTP_OK:
                     log.info("Mapping.txt updated.");
+                    setUploaded(uploadKey);
                     break;
 
                 case HttpURLConnection.HTTP_CREATED:
                     log.info("Successfully sent ProGuard/DexGuard 'mapping.txt' to New Relic.");
+                    setUploaded(uploadKey);
                     break;
 
                 case HttpURLConnection.HTTP_ACCEPTED:
                     log.info("Successfully sent ProGuard/DexGuard 'mapping.txt' to New Relic for background processing.");
+                    setUploaded(uploadKey);
                     break;
 
                 case HttpURLConnection.HTTP_BAD_REQUEST:
@@ -389,6 +406,7 @@ public class Proguard {
 
                 case HttpURLConnection.HTTP_CONFLICT:
                     log.info("A ProGuard/DexGuard 'mapping.txt' tagged with build ID [" + buildId + "] has already been stored.");
+                    setUploaded(uploadKey);
                     break;
 
                 default:
@@ -418,6 +436,60 @@ public class Proguard {
         }
     }
 
+    /**
+     * Returns a key identifying the map content, its build ID and the upload destination,
+     * or null if the map could not be read.
+     */
+    String getUploadKey(File mapFile) {
+        try {
+            final Hasher hasher = Hashing.sha256().newHasher();
+
+            hasher.putBytes(com.google.common.io.Files.asByteSource(mapFile).hash(Hashing.sha256()).asBytes());
+            hasher.putString(String.valueOf(buildId), StandardCharsets.UTF_8);
+            hasher.putString(String.valueOf(mappingApiHost) + mappingApiPath, StandardCharsets.UTF_8);
+            hasher.putString(String.valueOf(licenseKey), StandardCharsets.UTF_8);
+
+            return hasher.hash().toString();
+
+        } catch (IOException e) {
+            log.debug("Unable to hash map [" + mapFile.getAbsolutePath() + "]: " + e.getLocalizedMessage());
+        }
+
+        return null;
+    }
+
+    File getUploadStateFile() {
+        final String uploadState = agentOptions.get(UPLOAD_STATE_KEY);
+        return Strings.isNullOrEmpty(uploadState) ? null : new File(uploadState);
+    }
+
+    boolean isUploaded(String uploadKey) {
+        final File stateFile = getUploadStateFile();
+
+        if (uploadKey != null && stateFile != null && stateFile.isFile()) {
+            try {
+                return Files.readAllLines(stateFile.toPath(), StandardCharsets.UTF_8).contains(uploadKey);
+            } catch (IOException e) {
+                log.debug("Unable to read map upload state [" + stateFile.getAbsolutePath() + "]: " + e.getLocalizedMessage());
+            }
+        }
+
+        return false;
+    }
+
+    void setUploaded(String uploadKey) {
+        final File stateFile = getUploadStateFile();
+
+        if (uploadKey != null && stateFile != null) {
+            stateFile.getAbsoluteFile().getParentFile().mkdirs();
+            try (final FileWriter fileWriter = new FileWriter(stateFile, true)) {
+                fileWriter.write(uploadKey + "\n");
+            } catch (IOException e) {
+                log.debug("Unable to write map upload state [" + stateFile.getAbsolutePath() + "]: " + e.getLocalizedMessage());
+            }
+        }
+    }
+
     HttpURLConnection getHttpURLConnection() throws IOException {
         String host = DEFAULT_MAPPING_API_HOST;
 
@@ -516,11 +588,41 @@ public class Proguard {
         }
 
         void writeFilePart(final String partName, final File filePart, final InputStream is) throws IOException {
+            writePartHeader(partName, filePart.getName());
+            Streams.copy(is, os, bufferSz);            // the file itself
+        }
+
+        /**
+         * Write a part containing the file zipped as it is read, named [file name].zip
+         */
+        void writeZipFilePart(final String partName, final File filePart, final InputStream is) throws IOException {
+            writePartHeader(partName, filePart.getName() + ".zip");
+
+            // finish the archive, but leave the request body open
+            final OutputStream partStream = new FilterOutputStream(os) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+
+            try (final ZipOutputStream zos = new ZipOutputStream(partStream)) {
+                zos.putNextEntry(new ZipEntry(filePart.getName()));
+                Streams.copy(is, zos, bufferSz);
+                zos.closeEntry();
+            }
+        }
+
+        private void writePartHeader(final String partName, final String fileName) throws IOException {
             writeString("--" + boundary + newLn);
-            writeString("Content-Disposition: form-data; name=\"" + partName + "\"; filename=\"" + filePart.getName() + "\"" + newLn);
-            writeString("Content-Type: " + URLConnection.guessContentTypeFromName(filePart.getName()) + newLn);
+            writeString("Content-Disposition: form-data; name=\"" + partName + "\"; filename=\"" + fileName + "\"" + newLn);
+            writeString("Content-Type: " + URLConnection.guessContentTypeFromName(fileName) + newLn);
             writeString("Content-Transfer-Encoding: binary" + newLn + newLn);
-            Streams.copy(is, os, bufferSz);            // the file itself
         }
 
         public void finish() throws IOException {
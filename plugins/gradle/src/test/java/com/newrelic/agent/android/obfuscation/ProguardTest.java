@@ -13,6 +13,7 @@ import com.google.common.io.BaseEncoding;
 import com.google.common.io.Files;
 import com.newrelic.agent.util.BuildId;
 import com.newrelic.agent.util.Streams;
+import com.sun.net.httpserver.HttpServer;
 
 import org.apache.commons.io.input.ReversedLinesFileReader;
 import org.junit.After;
@@ -26,16 +27,25 @@ import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.zip.ZipInputStream;
 
 @RunWith(JUnit4.class)
 public class ProguardTest {
@@ -275,7 +285,7 @@ public class ProguardTest {
 
             Assert.assertTrue(connection.getRequestProperties().containsKey(Proguard.Network.ContentType.HEADER));
             Assert.assertTrue(connection.getRequestProperties().get(Proguard.Network.ContentType.HEADER).get(0).startsWith(Proguard.Network.ContentType.MULTIPART_FORM_DATA));
-            Assert.assertTrue(new File(mappingTxt.getAbsolutePath() + ".zip").exists());
+            Assert.assertFalse(new File(mappingTxt.getAbsolutePath() + ".zip").exists());
             fos.close();
 
             String outBytes;
@@ -283,10 +293,117 @@ public class ProguardTest {
                 outBytes = Streams.slurp(fis, "UTF-8");
             }
 
+            Assert.assertTrue(outBytes.contains("filename=\"mapping.txt.zip\""));
             Assert.assertTrue(outBytes.endsWith("&buildId=" + buildId));
+            Assert.assertEquals(osFile.length(), proguard.uploadBytes);
         }
     }
 
+    @Test
+    public void sendMappingToServer() throws IOException {
+        List<byte[]> requests = new ArrayList<>();
+        HttpServer server = startServer(requests, HttpURLConnection.HTTP_CREATED);
+
+        try {
+            storeServerProperties(server);
+            proguard.fetchConfiguration();
+            proguard.sendMapping(mappingTxt);
+
+            Assert.assertEquals(1, requests.size());
+            Assert.assertEquals(requests.get(0).length, proguard.uploadBytes);
+            Assert.assertTrue(proguard.uploadMillis >= 0);
+
+            // the zip part holds the map
+            byte[] body = requests.get(0);
+            int zipStart = indexOf(body, new byte[]{'P', 'K', 3, 4});
+            Assert.assertTrue(zipStart > 0);
+            try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(body, zipStart, body.length - zipStart))) {
+                Assert.assertEquals(Proguard.MAPPING_FILENAME, zis.getNextEntry().getName());
+                Assert.assertArrayEquals(Files.toByteArray(mappingTxt), Streams.slurpBytes(zis));
+            }
+
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void skipUploadedMapping() throws IOException {
+        List<byte[]> requests = new ArrayList<>();
+        HttpServer server = startServer(requests, HttpURLConnection.HTTP_CREATED);
+        File uploadState = new File(projectRoot.getRoot(), "uploads.txt");
+
+        try {
+            agentOptions.put(Proguard.UPLOAD_STATE_KEY, uploadState.getAbsolutePath());
+            storeServerProperties(server);
+            proguard.fetchConfiguration();
+
+            proguard.sendMapping(mappingTxt);
+            proguard.sendMapping(mappingTxt);
+            Assert.assertEquals(1, requests.size());
+            Assert.assertEquals(-1, proguard.uploadBytes);
+
+            // a changed map is sent again
+            Files.append(Proguard.NR_MAP_PREFIX + "changed", mappingTxt, StandardCharsets.UTF_8);
+            proguard.sendMapping(mappingTxt);
+            Assert.assertEquals(2, requests.size());
+
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void retryFailedUpload() throws IOException {
+        List<byte[]> requests = new ArrayList<>();
+        HttpServer server = startServer(requests, HttpURLConnection.HTTP_INTERNAL_ERROR);
+
+        try {
+            agentOptions.put(Proguard.UPLOAD_STATE_KEY, new File(projectRoot.getRoot(), "uploads.txt").getAbsolutePath());
+            storeServerProperties(server);
+            proguard.fetchConfiguration();
+
+            proguard.sendMapping(mappingTxt);
+            proguard.sendMapping(mappingTxt);
+            Assert.assertEquals(2, requests.size());
+
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private HttpServer startServer(List<byte[]> requests, int responseCode) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(Proguard.DEFAULT_MAPPING_API_PATH, exchange -> {
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                requests.add(Streams.slurpBytes(inputStream));
+            }
+            exchange.sendResponseHeaders(responseCode, -1);
+            exchange.close();
+        });
+        server.start();
+
+        return server;
+    }
+
+    private void storeServerProperties(HttpServer server) throws IOException {
+        props.put(Proguard.PROP_UPLOADING_ENABLED, "true");
+        props.put(Proguard.PROP_SSL_CONNECTION, "false");
+        props.put(Proguard.PROP_MAPPING_API_HOST, "localhost:" + server.getAddress().getPort());
+        try (FileOutputStream fos = new FileOutputStream(properties)) {
+            props.store(fos, "");
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Test
     public void testCustomPostKey() throws IOException {
         props.put(Proguard.PROP_UPLOADING_ENABLED, "true");
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2024. New Relic Corporation. All rights reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.newrelic.agent.android.testapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.newrelic.agent.android.SavedState;
+import com.newrelic.agent.android.harvest.HarvestConfiguration;
+
+/**
+ * Measures the cost of agent saved state on the calling (main) thread during startup:
+ * the time for the SavedState constructor to return, the wait for the first access to
+ * connect information, and the cost of persisting an updated harvest configuration.
+ * <p>
+ * Results are logged under the "SavedStateBenchmark" tag:
+ * <pre>adb logcat -s SavedStateBenchmark</pre>
+ */
+public class SavedStateStartupBenchmark extends AndroidTestCase {
+    private static final String TAG = "SavedStateBenchmark";
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 50;
+
+    public void testSavedStateStartup() {
+        final Context context = getContext();
+
+        // seed the store so each iteration loads a fully populated snapshot
+        SavedState seed = new SavedState(context);
+        seed.saveHarvestConfiguration(provideHarvestConfiguration());
+        seed.flush();
+
+        long constructNs = 0;
+        long firstAccessNs = 0;
+        long saveNs = 0;
+
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long t0 = System.nanoTime();
+            SavedState savedState = new SavedState(context);
+            long t1 = System.nanoTime();
+            assertNotNull(savedState.getConnectInformation());
+            long t2 = System.nanoTime();
+            savedState.saveHarvestConfiguration(provideHarvestConfiguration());
+            long t3 = System.nanoTime();
+            savedState.flush();
+
+            if (i >= WARMUP) {
+                constructNs += (t1 - t0);
+                firstAccessNs += (t2 - t1);
+                saveNs += (t3 - t2);
+            }
+        }
+
+        Log.i(TAG, String.format("SavedState: construct[%.3f ms] first access[%.3f ms] save configuration[%.3f ms] (mean of %d)",
+                constructNs / 1e6 / ITERATIONS, firstAccessNs / 1e6 / ITERATIONS, saveNs / 1e6 / ITERATIONS, ITERATIONS));
+    }
+
+    public void testSharedPreferencesBaseline() {
+        final Context context = getContext();
+        final String prefsName = "com.newrelic.android.agent.benchmark";
+        long saveNs = 0;
+
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            SharedPreferences prefs = context.getSharedPreferences(prefsName, 0);
+            SharedPreferences.Editor editor = prefs.edit();
+
+            // the previous SavedState implementation applied each configuration value individually
+            long t0 = System.nanoTime();
+            for (int key = 0; key < 20; key++) {
+                editor.putString("key" + key, "value" + i);
+                editor.apply();
+            }
+            long t1 = System.nanoTime();
+
+            if (i >= WARMUP) {
+                saveNs += (t1 - t0);
+            }
+        }
+
+        Log.i(TAG, String.format("SharedPreferences: save configuration[%.3f ms] (mean of %d)", saveNs / 1e6 / ITERATIONS, ITERATIONS));
+    }
+
+    private HarvestConfiguration provideHarvestConfiguration() {
+        HarvestConfiguration harvestConfiguration = new HarvestConfiguration();
+        harvestConfiguration.setData_token(new int[]{111, 111});
+        harvestConfiguration.setCross_process_id("x-process-id");
+        harvestConfiguration.setAccount_id("1");
+        harvestConfiguration.setTrusted_account_key("33");
+        harvestConfiguration.setReport_max_transaction_count(1000);
+        return harvestConfiguration;
+    }
+}